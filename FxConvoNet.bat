@@ -1,7 +1,7 @@
 
 setLocal
 
-set jdkbase=C:\ZZ-java-tools\jdk-19
+set jdkbase=C:\ZZ-java-tools\jdk-21
 set jfxbase=C:\ZZ-java-tools\javafx-sdk-19
 
 set jfx=%jfxbase%\bin
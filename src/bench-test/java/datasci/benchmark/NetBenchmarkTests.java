@@ -0,0 +1,70 @@
+package datasci.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import datasci.backend.model.ImageDataSet;
+import datasci.backend.model.ImageDataUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class NetBenchmarkTests {
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void syntheticDataSet() {
+        ImageDataSet a = ImageDataUtil.syntheticDataSet(3, 4, 16, 16, 99);
+        ImageDataSet b = ImageDataUtil.syntheticDataSet(3, 4, 16, 16, 99);
+        Assertions.assertEquals(12, a.getSize(), "ImageDataUtil synthetic size failed");
+        byte[] la = new byte[a.getImageSize()];
+        byte[] lb = new byte[b.getImageSize()];
+        for (int n = 0; n < a.getSize(); n++) {
+            Assertions.assertEquals(n / 4, a.getActualIndex(n), "ImageDataUtil synthetic label failed");
+            a.getLevels(n, la, 0);
+            b.getLevels(n, lb, 0);
+            Assertions.assertArrayEquals(la, lb, "ImageDataUtil synthetic seed failed");
+        }
+    }
+
+    @Test
+    void run() throws Exception {
+        File configFile = tempDir.resolve("bench-config.json").toFile();
+        Files.writeString(configFile.toPath(), """
+                {"generalConfig": {"trainingDir": "none", "testingDir": "none"},
+                 "backPropConfig": {"rateModel": {"stepCount": 20, "decayPerStep": 0.3, "minRate": 0.01,
+                                                  "maxRate": 0.05, "rateFn": "Step Decay"},
+                                    "lambda": 1.0E-4, "mu": 0.9, "batchSize": 5},
+                 "inputConfig": {"rows": 16, "cols": 16},
+                 "convoPoolList": [
+                   {"convoConfig": {"actName": "Tiny RELU", "filterSize": 5, "numFilters": 2},
+                    "poolConfig": {"actName": "None", "poolSize": 2}}],
+                 "internalList": [{"actName": "Leaky RELU", "numOutputNodes": 8}],
+                 "outputConfig": {"actName": "Softmax", "numOutputNodes": 3}}
+                """);
+        File outFile = tempDir.resolve("bench-result.json").toFile();
+        NetBenchmark bench = new NetBenchmark();
+        bench.parseArgs(new String[]{"--config", configFile.getPath(), "--name", "tiny", "--warmup", "2",
+                "--batches", "4", "--test-samples", "20", "--test-passes", "2", "--out", outFile.getPath()});
+        BenchResultR result = bench.run();
+        bench.write(result);
+
+        Assertions.assertEquals("tiny", result.name(), "NetBenchmark name failed");
+        Assertions.assertEquals(4, result.trainBatchMillis().length, "NetBenchmark batches failed");
+        Assertions.assertEquals(2, result.testPassMillis().length, "NetBenchmark passes failed");
+        Assertions.assertTrue(result.trainSamplesPerSec() > 0, "NetBenchmark train rate failed");
+        Assertions.assertTrue(result.testSamplesPerSec() > 0, "NetBenchmark test rate failed");
+        // measured batches only
+        Assertions.assertEquals(20, result.trainAlloc().samples(), "NetBenchmark train alloc failed");
+        Assertions.assertEquals(40, result.testAlloc().samples(), "NetBenchmark test alloc failed");
+        // convolution, pool, internal and output layers
+        Assertions.assertEquals(4, result.layers().size(), "NetBenchmark layers failed");
+        Assertions.assertEquals(20, result.layers().get(0).forwardCount(), "NetBenchmark layer count failed");
+        BenchResultR read = new ObjectMapper().readValue(outFile, BenchResultR.class);
+        Assertions.assertEquals(result.trainSamplesPerSec(), read.trainSamplesPerSec(), "NetBenchmark json failed");
+    }
+}
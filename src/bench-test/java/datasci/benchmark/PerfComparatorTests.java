@@ -0,0 +1,65 @@
+package datasci.benchmark;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+public class PerfComparatorTests {
+
+    @TempDir
+    static Path tempDir;
+
+    private static PerfScenarioR scenario(String name, double mean, double spread, double alloc) {
+        double[] samples = new double[10];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = mean + (i % 2 == 0 ? spread : -spread);
+        }
+        return new PerfScenarioR(name, "ops/s", samples, alloc);
+    }
+
+    @Test
+    void compare() {
+        PerfComparator comparator = new PerfComparator();
+        List<PerfScenarioR> baseline = List.of(scenario("a", 1000, 10, 0), scenario("b", 1000, 10, 1024),
+                scenario("c", 1000, 10, 0), scenario("d", 1000, 300, 0), scenario("gone", 1000, 10, 0));
+        List<PerfScenarioR> current = List.of(scenario("a", 990, 10, 8), scenario("b", 1000, 10, 2048),
+                scenario("c", 800, 10, 0), scenario("d", 900, 300, 0), scenario("e", 1000, 10, 0));
+        List<PerfCompareR> compareList = comparator.compare(baseline, current);
+        Assertions.assertEquals(6, compareList.size(), "PerfComparator compare size failed");
+        Assertions.assertEquals(PerfComparator.OK, compareList.get(0).status(), "PerfComparator small change failed");
+        Assertions.assertEquals(PerfComparator.ALLOC_REGRESSED, compareList.get(1).status(),
+                "PerfComparator allocation failed");
+        Assertions.assertEquals(PerfComparator.REGRESSED, compareList.get(2).status(),
+                "PerfComparator throughput failed");
+        Assertions.assertEquals(-20.0, compareList.get(2).changePercent(), 1.0E-9, "PerfComparator change failed");
+        // 10 % lower, but within the noise
+        Assertions.assertEquals(PerfComparator.OK, compareList.get(3).status(), "PerfComparator confidence failed");
+        Assertions.assertEquals(PerfComparator.NEW, compareList.get(4).status(), "PerfComparator new failed");
+        Assertions.assertEquals(PerfComparator.MISSING, compareList.get(5).status(), "PerfComparator missing failed");
+        Assertions.assertTrue(PerfComparator.hasRegression(compareList), "PerfComparator regression failed");
+        String report = comparator.report(compareList);
+        Assertions.assertTrue(report.startsWith("Performance gate: FAILED"), "PerfComparator report failed");
+        Assertions.assertTrue(report.contains(PerfComparator.REGRESSED), "PerfComparator report status failed");
+    }
+
+    @Test
+    void baseline() {
+        File file = tempDir.resolve("perf/baseline.json").toFile();
+        Assertions.assertTrue(PerfComparator.readBaseline(file).isEmpty(), "PerfComparator no baseline failed");
+        PerfComparator.writeBaseline(file, List.of(scenario("a", 1000, 10, 0), scenario("b", 500, 5, 64)));
+        PerfComparator.writeBaseline(file, List.of(scenario("a", 2000, 10, 0)));
+        List<PerfScenarioR> read = PerfComparator.readBaseline(file);
+        Assertions.assertEquals(2, read.size(), "PerfComparator baseline merge failed");
+        Assertions.assertEquals(2000, read.get(0).samples()[1] + 10, 1.0E-9, "PerfComparator baseline update failed");
+        Assertions.assertEquals(64, read.get(1).allocPerOp(), "PerfComparator baseline read failed");
+        Assertions.assertFalse(PerfComparator.hasRegression(new PerfComparator().compare(read, read)),
+                "PerfComparator same failed");
+        // a scenario which did not run fails the gate
+        Assertions.assertTrue(PerfComparator.hasRegression(new PerfComparator().compare(read, read.subList(0, 1))),
+                "PerfComparator missing regression failed");
+    }
+}
@@ -0,0 +1,14 @@
+package datasci.benchmark;
+
+import datasci.backend.model.AllocStatsR;
+import datasci.backend.model.LayerTimeR;
+
+import java.util.List;
+
+public record BenchResultR(String name, String configFile, long timeMillis, String javaVersion, int processors,
+                           long seed, int batchSize, int warmupBatches, int trainBatches,
+                           double trainSamplesPerSec, double trainMsPerBatch, double[] trainBatchMillis,
+                           AllocStatsR trainAlloc, List<LayerTimeR> layers,
+                           int testSamples, int testPasses, double testSamplesPerSec, double testMsPerSample,
+                           double[] testPassMillis, AllocStatsR testAlloc) {
+}
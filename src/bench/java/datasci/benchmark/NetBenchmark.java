@@ -0,0 +1,260 @@
+package datasci.benchmark;
+
+/*
+
+  Copyright 2022 Ronald Cook
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import datasci.backend.control.ConvoNetTest;
+import datasci.backend.control.ConvoNetTrain;
+import datasci.backend.model.AllocStatsR;
+import datasci.backend.model.FileUtil;
+import datasci.backend.model.ImageDataSet;
+import datasci.backend.model.ImageDataUtil;
+import datasci.backend.model.JsonUtil;
+import datasci.backend.model.LayerTimeR;
+import datasci.backend.model.NetConfig;
+import datasci.backend.model.NetResult;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ End-to-end training and inference benchmark of a network configuration, on seeded synthetic
+ images, so results do not depend on image files on disk.
+
+ The network is built from a NetConfig json file; its data directories are not read. Training
+ runs warm-up batches, then measured batches of ConvoNetTrain.fitBatch, timed one by one. The
+ trained network is then tested with ConvoNetTest: one warm-up pass, then measured passes over
+ the test samples. Results hold samples/sec, ms/batch, the time of each measured batch and pass,
+ the per-layer breakdown and allocation of the measured batches, and are written as json.
+
+ Run from the command line:
+ <pre>
+ java -cp ... datasci.benchmark.NetBenchmark --config config/configA1-Step-s10000-b20-c20-c50-i300-o10.json
+      [--name A1] [--warmup 20] [--batches 100] [--test-samples 1000] [--test-passes 3] [--seed 1234]
+      [--out target/bench-result.json]
+ </pre>
+ or with the bench Maven profile: mvn -P bench verify -Dbench.args="..."
+ */
+public class NetBenchmark {
+
+    private static final Logger LOG = Logger.getLogger(NetBenchmark.class.getName());
+
+    // configFile: NetConfig json file
+    public String configFile;
+    // name: scenario name in the results, the config file name by default
+    public String name;
+    // warmupBatches: training batches before measuring
+    public int warmupBatches = 20;
+    // trainBatches: measured training batches
+    public int trainBatches = 100;
+    // testSamples: samples in each test pass
+    public int testSamples = 1000;
+    // testPasses: measured test passes, after one warm-up pass
+    public int testPasses = 3;
+    // seed: synthetic image seed
+    public long seed = 1234;
+    // outFile: json result file, null to write to standard output
+    public String outFile;
+
+    public NetBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        try {
+            NetBenchmark bench = new NetBenchmark();
+            bench.parseArgs(args);
+            BenchResultR result = bench.run();
+            bench.write(result);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            System.exit(1);
+        }
+    }
+
+    /**
+     Set options from command line arguments: --config, --name, --warmup, --batches,
+     --test-samples, --test-passes, --seed, --out
+
+     @param args command line arguments, option then value
+     */
+    public void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for option: " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--config" -> configFile = value;
+                case "--name" -> name = value;
+                case "--warmup" -> warmupBatches = Integer.parseInt(value);
+                case "--batches" -> trainBatches = Integer.parseInt(value);
+                case "--test-samples" -> testSamples = Integer.parseInt(value);
+                case "--test-passes" -> testPasses = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--out" -> outFile = value;
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if (configFile == null) {
+            throw new IllegalArgumentException("Missing option: --config");
+        }
+    }
+
+    /**
+     Run the benchmark
+
+     @return benchmark results
+     */
+    public BenchResultR run() {
+        BenchResultR result = null;
+        try {
+            NetConfig config = readConfig();
+            int batchSize = Math.max(config.backPropConfig.batchSize, 1);
+            int numClasses = config.outputConfig.numOutputNodes;
+            int rows = config.inputConfig.rows;
+            int cols = config.inputConfig.cols;
+            //
+            // training: one epoch of exactly the warm-up and measured batches
+            int trainSamples = (warmupBatches + trainBatches) * batchSize;
+            config.generalConfig.totalTrainingSamples = trainSamples;
+            config.generalConfig.numEpochs = 1;
+            ImageDataSet trainSet = ImageDataUtil.syntheticDataSet(numClasses,
+                    (trainSamples + numClasses - 1) / numClasses, rows, cols, seed);
+            NetResult trainResult = new NetResult();
+            ConvoNetTrain trainNet = new ConvoNetTrain(trainResult, config, trainSet);
+            double[] trainBatchMillis = new double[trainBatches];
+            AllocStatsR startAlloc;
+            List<LayerTimeR> startTimes;
+            long trainNanos;
+            try {
+                for (int b = 0; b < warmupBatches; b++) {
+                    trainNet.fitBatch();
+                }
+                startAlloc = trainResult.allocStats;
+                startTimes = new ArrayList<>(trainResult.layerTimes);
+                long start = System.nanoTime();
+                for (int b = 0; b < trainBatches; b++) {
+                    long batchStart = System.nanoTime();
+                    trainNet.fitBatch();
+                    trainBatchMillis[b] = (System.nanoTime() - batchStart) / 1.0E6;
+                }
+                trainNanos = System.nanoTime() - start;
+            } finally {
+                trainNet.close();
+            }
+            AllocStatsR trainAlloc = trainResult.allocStats.minus(startAlloc);
+            List<LayerTimeR> layers = new ArrayList<>();
+            for (int k = 0; k < trainResult.layerTimes.size(); k++) {
+                layers.add(trainResult.layerTimes.get(k).minus(k < startTimes.size() ? startTimes.get(k) : null));
+            }
+            //
+            // inference: the trained network on other synthetic images
+            config.generalConfig.totalTestingSamples = testSamples;
+            ImageDataSet testSet = ImageDataUtil.syntheticDataSet(numClasses,
+                    (testSamples + numClasses - 1) / numClasses, rows, cols, seed + 1);
+            NetResult testResult = new NetResult();
+            testResult.fitParams = trainNet.createFitParams();
+            ConvoNetTest testNet = new ConvoNetTest(testResult, config, testSet);
+            double[] testPassMillis = new double[testPasses];
+            long testNanos;
+            AllocStatsR testStartAlloc;
+            try {
+                testNet.fit();
+                testStartAlloc = testResult.allocStats;
+                long start = System.nanoTime();
+                for (int p = 0; p < testPasses; p++) {
+                    long passStart = System.nanoTime();
+                    testNet.fit();
+                    testPassMillis[p] = (System.nanoTime() - passStart) / 1.0E6;
+                }
+                testNanos = System.nanoTime() - start;
+            } finally {
+                testNet.close();
+            }
+            AllocStatsR testAlloc = testResult.allocStats.minus(testStartAlloc);
+            //
+            int measuredTrain = trainBatches * batchSize;
+            int measuredTest = testPasses * testSamples;
+            result = new BenchResultR(name != null ? name : new File(configFile).getName(), configFile,
+                    System.currentTimeMillis(), System.getProperty("java.version"),
+                    Runtime.getRuntime().availableProcessors(), seed, batchSize, warmupBatches, trainBatches,
+                    perSec(measuredTrain, trainNanos), trainNanos / 1.0E6 / Math.max(trainBatches, 1),
+                    trainBatchMillis, trainAlloc, layers,
+                    testSamples, testPasses, perSec(measuredTest, testNanos),
+                    testNanos / 1.0E6 / Math.max(measuredTest, 1), testPassMillis, testAlloc);
+            LOG.info("benchmark: " + result.name()
+                    + ", train samples/sec: " + String.format("%.1f", result.trainSamplesPerSec())
+                    + ", ms/batch: " + String.format("%.3f", result.trainMsPerBatch())
+                    + ", KB/sample: " + String.format("%.1f", trainAlloc.bytesPerSample() / 1024.0)
+                    + ", test samples/sec: " + String.format("%.1f", result.testSamplesPerSec()));
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return result;
+    }
+
+    /**
+     Write results as json to the out file, or to standard output
+
+     @param result benchmark results
+     */
+    public void write(BenchResultR result) {
+        try {
+            ObjectMapper objectMapper = new ObjectMapper();
+            if (outFile != null) {
+                File file = new File(outFile);
+                File dir = file.getAbsoluteFile().getParentFile();
+                if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IllegalStateException("Cannot create result directory: " + dir);
+                }
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, result);
+                LOG.info("benchmark results: " + file);
+            } else {
+                System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result));
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     Read the network configuration, without the settings which read or write files
+     */
+    private NetConfig readConfig() throws Exception {
+        NetConfig config;
+        try (InputStream src = FileUtil.getInputStream(new File(configFile))) {
+            config = JsonUtil.jsonToConfig(src);
+        }
+        config.generalConfig.streamTraining = false;
+        config.generalConfig.checkpointDir = null;
+        config.generalConfig.resumeFrom = null;
+        config.generalConfig.telemetryLog = null;
+        return config;
+    }
+
+    private static double perSec(long samples, long nanos) {
+        return nanos > 0 ? samples * 1.0E9 / nanos : 0.0;
+    }
+}  // end class
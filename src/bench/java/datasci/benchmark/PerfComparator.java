@@ -0,0 +1,316 @@
+package datasci.benchmark;
+
+/*
+
+  Copyright 2022 Ronald Cook
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ Compares benchmark scenarios with stored baselines, for the performance regression gate.
+
+ Throughput regresses when its mean falls by more than the threshold percent, and the 99 %
+ confidence interval of the difference of means (Welch) lies wholly below zero, so noise
+ between forks and iterations does not fail the gate. It improves in the same way upwards.
+ Allocated bytes per operation are nearly deterministic, and regress when they grow by more
+ than the allocation threshold percent, plus a few bytes of slack for allocation-free code.
+ A baseline scenario which did not run, e.g. renamed or failed, is missing, and also fails the gate.
+
+ Baselines are a json list of PerfScenarioR, one for each named scenario.
+ */
+public class PerfComparator {
+
+    private static final Logger LOG = Logger.getLogger(PerfComparator.class.getName());
+    public static final String OK = "ok";
+    public static final String IMPROVED = "improved";
+    public static final String REGRESSED = "REGRESSED";
+    public static final String ALLOC_REGRESSED = "ALLOC REGRESSED";
+    public static final String NEW = "new";
+    public static final String MISSING = "MISSING";
+    // two-sided 99 % Student t quantiles for 1 to 30 degrees of freedom
+    private static final double[] T99 = {63.657, 9.925, 5.841, 4.604, 4.032, 3.707, 3.499, 3.355, 3.250, 3.169,
+            3.106, 3.055, 3.012, 2.977, 2.947, 2.921, 2.898, 2.878, 2.861, 2.845,
+            2.831, 2.819, 2.807, 2.797, 2.787, 2.779, 2.771, 2.763, 2.756, 2.750};
+
+    // threshold: throughput change percent which fails the gate
+    public double threshold = 5.0;
+    // allocThreshold: allocation per operation change percent which fails the gate
+    public double allocThreshold = 5.0;
+    // allocSlack: bytes per operation always allowed
+    public double allocSlack = 16.0;
+
+    public PerfComparator() {
+    }
+
+    /**
+     Compare current scenarios with their baselines
+
+     @param baseline baseline scenarios
+     @param current  current scenarios
+     @return comparisons, by scenario name; baselines without a current scenario are missing
+     */
+    public List<PerfCompareR> compare(List<PerfScenarioR> baseline, List<PerfScenarioR> current) {
+        Map<String, PerfScenarioR> baseMap = new LinkedHashMap<>();
+        for (PerfScenarioR base : baseline) {
+            baseMap.put(base.name(), base);
+        }
+        List<PerfCompareR> compareList = new ArrayList<>();
+        for (PerfScenarioR cur : current) {
+            PerfScenarioR base = baseMap.remove(cur.name());
+            compareList.add(compare(base, cur));
+        }
+        for (PerfScenarioR base : baseMap.values()) {
+            compareList.add(new PerfCompareR(base.name(), base.unit(), mean(base.samples()), ci(base.samples()),
+                    0.0, 0.0, 0.0, base.allocPerOp(), 0.0, MISSING));
+        }
+        compareList.sort(Comparator.comparing(PerfCompareR::name));
+        return compareList;
+    }
+
+    /**
+     Compare one scenario with its baseline
+
+     @param base baseline scenario, or null if none
+     @param cur  current scenario
+     @return comparison
+     */
+    public PerfCompareR compare(PerfScenarioR base, PerfScenarioR cur) {
+        double curMean = mean(cur.samples());
+        double curCi = ci(cur.samples());
+        if (base == null) {
+            return new PerfCompareR(cur.name(), cur.unit(), 0.0, 0.0, curMean, curCi, 0.0, 0.0,
+                    cur.allocPerOp(), NEW);
+        }
+        double baseMean = mean(base.samples());
+        double diff = curMean - baseMean;
+        double change = baseMean != 0.0 ? diff / baseMean * 100.0 : 0.0;
+        double diffCi = welchCi(base.samples(), cur.samples());
+        String status = OK;
+        if (change < -threshold && diff + diffCi < 0.0) {
+            status = REGRESSED;
+        } else if (cur.allocPerOp() > base.allocPerOp() * (1.0 + allocThreshold / 100.0) + allocSlack) {
+            status = ALLOC_REGRESSED;
+        } else if (change > threshold && diff - diffCi > 0.0) {
+            status = IMPROVED;
+        }
+        return new PerfCompareR(cur.name(), cur.unit(), baseMean, ci(base.samples()), curMean, curCi, change,
+                base.allocPerOp(), cur.allocPerOp(), status);
+    }
+
+    /**
+     Check if any comparison fails the gate
+
+     @param compareList comparisons
+     @return true if throughput or allocation regressed, or a baseline scenario is missing
+     */
+    public static boolean hasRegression(List<PerfCompareR> compareList) {
+        for (PerfCompareR c : compareList) {
+            if (c.status().equals(REGRESSED) || c.status().equals(ALLOC_REGRESSED) || c.status().equals(MISSING)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     Format comparisons as a readable report, regressions first
+
+     @param compareList comparisons
+     @return report text
+     */
+    public String report(List<PerfCompareR> compareList) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String status : new String[]{REGRESSED, ALLOC_REGRESSED, IMPROVED, OK, NEW, MISSING}) {
+            counts.put(status, 0);
+        }
+        for (PerfCompareR c : compareList) {
+            counts.merge(c.status(), 1, Integer::sum);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Performance gate: ").append(hasRegression(compareList) ? "FAILED" : "passed");
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            sb.append(", ").append(entry.getValue()).append(' ').append(entry.getKey().toLowerCase());
+        }
+        sb.append(String.format("%nthroughput threshold %.1f %%, allocation threshold %.1f %% + %.0f B, 99 %% confidence%n",
+                threshold, allocThreshold, allocSlack));
+        sb.append(String.format("%-48s %-10s %22s %22s %9s %21s  %s%n", "scenario", "unit", "baseline", "current",
+                "change", "alloc B/op", "status"));
+        List<PerfCompareR> sorted = new ArrayList<>(compareList);
+        sorted.sort(Comparator.comparing((PerfCompareR c) -> rank(c.status())).thenComparing(PerfCompareR::name));
+        for (PerfCompareR c : sorted) {
+            sb.append(String.format("%-48s %-10s %22s %22s %8.1f%% %21s  %s%n", c.name(), c.unit(),
+                    meanCi(c.baseMean(), c.baseCi()), meanCi(c.curMean(), c.curCi()), c.changePercent(),
+                    String.format("%.0f -> %.0f", c.baseAlloc(), c.curAlloc()), c.status()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     Get the train and test scenarios of an end-to-end benchmark: samples/sec of each
+     measured batch and test pass, and allocated bytes per sample
+
+     @param result benchmark results
+     @return train and test scenarios
+     */
+    public static List<PerfScenarioR> fromBench(BenchResultR result) {
+        double[] trainRates = new double[result.trainBatchMillis().length];
+        for (int b = 0; b < trainRates.length; b++) {
+            trainRates[b] = result.batchSize() * 1000.0 / result.trainBatchMillis()[b];
+        }
+        double[] testRates = new double[result.testPassMillis().length];
+        for (int p = 0; p < testRates.length; p++) {
+            testRates[p] = result.testSamples() * 1000.0 / result.testPassMillis()[p];
+        }
+        List<PerfScenarioR> scenarios = new ArrayList<>();
+        scenarios.add(new PerfScenarioR("net:" + result.name() + ":train", "samples/s", trainRates,
+                result.trainAlloc().bytesPerSample()));
+        scenarios.add(new PerfScenarioR("net:" + result.name() + ":test", "samples/s", testRates,
+                result.testAlloc().bytesPerSample()));
+        return scenarios;
+    }
+
+    /**
+     Read baseline scenarios
+
+     @param file baseline json file
+     @return scenarios, empty if the file does not exist
+     */
+    public static List<PerfScenarioR> readBaseline(File file) {
+        List<PerfScenarioR> scenarios = new ArrayList<>();
+        try {
+            if (file.isFile()) {
+                scenarios = new ObjectMapper().readValue(file, new TypeReference<List<PerfScenarioR>>() {
+                });
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return scenarios;
+    }
+
+    /**
+     Write baseline scenarios, replacing those of the same name in the file and keeping the others
+
+     @param file    baseline json file, created with its directory if needed
+     @param current scenarios to store
+     */
+    public static void writeBaseline(File file, List<PerfScenarioR> current) {
+        try {
+            Map<String, PerfScenarioR> merged = new LinkedHashMap<>();
+            for (PerfScenarioR s : readBaseline(file)) {
+                merged.put(s.name(), s);
+            }
+            for (PerfScenarioR s : current) {
+                merged.put(s.name(), s);
+            }
+            List<PerfScenarioR> scenarios = new ArrayList<>(merged.values());
+            scenarios.sort(Comparator.comparing(PerfScenarioR::name));
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IllegalStateException("Cannot create baseline directory: " + dir);
+            }
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file, scenarios);
+            LOG.info("baseline scenarios: " + scenarios.size() + ", file: " + file);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    static double mean(double[] samples) {
+        double sum = 0.0;
+        for (double s : samples) {
+            sum += s;
+        }
+        return samples.length > 0 ? sum / samples.length : 0.0;
+    }
+
+    static double variance(double[] samples) {
+        int n = samples.length;
+        if (n < 2) {
+            return 0.0;
+        }
+        double mean = mean(samples);
+        double sum = 0.0;
+        for (double s : samples) {
+            sum += (s - mean) * (s - mean);
+        }
+        return sum / (n - 1);
+    }
+
+    /**
+     Half width of the 99 % confidence interval of the mean
+     */
+    static double ci(double[] samples) {
+        int n = samples.length;
+        return n < 2 ? 0.0 : t99(n - 1) * Math.sqrt(variance(samples) / n);
+    }
+
+    /**
+     Half width of the 99 % confidence interval of the difference of two means, unequal variances
+     */
+    static double welchCi(double[] a, double[] b) {
+        double va = a.length > 0 ? variance(a) / a.length : 0.0;
+        double vb = b.length > 0 ? variance(b) / b.length : 0.0;
+        double se2 = va + vb;
+        if (se2 == 0.0) {
+            return 0.0;
+        }
+        // Welch-Satterthwaite degrees of freedom
+        double denom = (a.length > 1 ? va * va / (a.length - 1) : 0.0) + (b.length > 1 ? vb * vb / (b.length - 1) : 0.0);
+        double df = denom > 0.0 ? se2 * se2 / denom : 1.0;
+        return t99((int) Math.max(Math.floor(df), 1)) * Math.sqrt(se2);
+    }
+
+    static double t99(int df) {
+        if (df <= T99.length) {
+            return T99[Math.max(df, 1) - 1];
+        } else if (df <= 40) {
+            return 2.704;
+        } else if (df <= 60) {
+            return 2.660;
+        } else if (df <= 120) {
+            return 2.617;
+        }
+        return 2.576;
+    }
+
+    private static String meanCi(double mean, double ci) {
+        return mean == 0.0 && ci == 0.0 ? "-" : String.format("%.4g +- %.2g", mean, ci);
+    }
+
+    private static int rank(String status) {
+        return switch (status) {
+            case REGRESSED -> 0;
+            case ALLOC_REGRESSED -> 1;
+            case MISSING -> 2;
+            case IMPROVED -> 3;
+            case NEW -> 4;
+            default -> 5;
+        };
+    }
+}  // end class
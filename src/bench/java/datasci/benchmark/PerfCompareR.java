@@ -0,0 +1,9 @@
+package datasci.benchmark;
+
+/**
+ * Comparison of one scenario with its baseline: means with confidence interval half widths,
+ * throughput change, allocation per operation, and the gate status
+ */
+public record PerfCompareR(String name, String unit, double baseMean, double baseCi, double curMean, double curCi,
+                           double changePercent, double baseAlloc, double curAlloc, String status) {
+}
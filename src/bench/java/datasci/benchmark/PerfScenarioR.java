@@ -0,0 +1,8 @@
+package datasci.benchmark;
+
+/**
+ * Measurements of one named benchmark scenario: throughput samples, e.g. one for each JMH
+ * iteration or each training batch, higher is better; and allocated bytes per operation
+ */
+public record PerfScenarioR(String name, String unit, double[] samples, double allocPerOp) {
+}
@@ -0,0 +1,50 @@
+package datasci.benchmark;
+
+import datasci.backend.activations.ActivationFactory;
+import datasci.backend.activations.ActivationI;
+import datasci.backend.model.Matrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of every activation trainingFn, on a 24x24 convolution map, 300 internal nodes
+ * and 10 output nodes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ActivationBenchmark {
+
+    // ActE labels, except None which is Identity
+    @Param({"Identity", "Leaky Log", "Leaky RELU", "Sigmoid", "Softmax", "Hyperbolic Tangent",
+            "Scaled Hyperbolic Tangent", "Tiny RELU"})
+    public String actName;
+
+    @Param({"24x24", "300x1", "10x1"})
+    public String shape;
+
+    private ActivationI actFn;
+    private Matrix z;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        actFn = ActivationFactory.getActivation(actName);
+        int[] rc = BenchData.shape(shape);
+        z = BenchData.random(rc[0], rc[1], new Random(BenchData.SEED));
+    }
+
+    @Benchmark
+    public Matrix trainingFn() {
+        return actFn.trainingFn(z);
+    }
+}  //end class
@@ -0,0 +1,84 @@
+package datasci.benchmark;
+
+import datasci.backend.model.ConvoNode;
+import datasci.backend.model.Matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded benchmark inputs, so every fork measures the same values
+ */
+public class BenchData {
+
+    public static final long SEED = 1234;
+
+    private BenchData() {
+    }
+
+    /**
+     * Create a matrix of uniform random values in [-1, 1)
+     *
+     * @param rows matrix rows
+     * @param cols matrix columns
+     * @param rand random generator
+     * @return random matrix
+     */
+    public static Matrix random(int rows, int cols, Random rand) {
+        Matrix m = new Matrix(rows, cols);
+        for (int k = 0; k < m.size; k++) {
+            m.a[k] = 2.0 * rand.nextDouble() - 1.0;
+        }
+        return m;
+    }
+
+    /**
+     * Create a list of random matrices, e.g. the feature maps of a layer
+     *
+     * @param count number of matrices
+     * @param rows  matrix rows
+     * @param cols  matrix columns
+     * @param rand  random generator
+     * @return list of random matrices
+     */
+    public static List<Matrix> randomList(int count, int rows, int cols, Random rand) {
+        List<Matrix> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(random(rows, cols, rand));
+        }
+        return list;
+    }
+
+    /**
+     * Create random convolution filter gradients for one sample: nOut nodes of nIn filters
+     *
+     * @param nOut  number of output nodes
+     * @param nIn   number of input nodes
+     * @param fsize filter size
+     * @param rand  random generator
+     * @return list of filter nodes
+     */
+    public static List<ConvoNode> randomNodes(int nOut, int nIn, int fsize, Random rand) {
+        List<ConvoNode> nodes = new ArrayList<>(nOut);
+        for (int i = 0; i < nOut; i++) {
+            ConvoNode node = new ConvoNode();
+            for (int j = 0; j < nIn; j++) {
+                node.add(random(fsize, fsize, rand));
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Parse a shape parameter "rows x cols", e.g. "300x800"
+     *
+     * @param shape shape parameter
+     * @return rows and cols
+     */
+    public static int[] shape(String shape) {
+        String[] parts = shape.split("x");
+        return new int[]{Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+    }
+}  //end class
@@ -0,0 +1,68 @@
+package datasci.benchmark;
+
+import datasci.backend.model.ImageDataUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of 28x28 images: decoding a PNG, and extracting its pixels from the raster or by getRGB
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ImageBenchmark {
+
+    @Param({"gray", "bgr"})
+    public String type;
+
+    private byte[] png;
+    private BufferedImage image;
+    private double[] dest;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int imageType = type.equals("gray") ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR;
+        Random rand = new Random(BenchData.SEED);
+        BufferedImage src = new BufferedImage(28, 28, imageType);
+        for (int y = 0; y < 28; y++) {
+            for (int x = 0; x < 28; x++) {
+                src.setRGB(x, y, 0xff000000 | rand.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(src, "png", bos);
+        png = bos.toByteArray();
+        image = ImageDataUtil.decodeImage(png);
+        dest = new double[28 * 28];
+    }
+
+    @Benchmark
+    public BufferedImage decode() {
+        return ImageDataUtil.decodeImage(png);
+    }
+
+    @Benchmark
+    public double[] extractPixels() {
+        ImageDataUtil.extractPixels(image, dest, 0);
+        return dest;
+    }
+
+    @Benchmark
+    public double[] extractRGB() {
+        ImageDataUtil.extractRGB(image, dest, 0);
+        return dest;
+    }
+}  //end class
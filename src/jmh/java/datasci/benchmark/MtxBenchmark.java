@@ -0,0 +1,175 @@
+package datasci.benchmark;
+
+import datasci.backend.model.ConvoNode;
+import datasci.backend.model.MTX;
+import datasci.backend.model.Matrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the MTX kernels, at the shapes of the MNIST configurations in config/:
+ * 28x28 input, 5x5 filters, 20 then 50 maps of 24x24, 12x12, 8x8 and 4x4,
+ * and 2880 or 800 inputs to 300 internal nodes, then 10 output nodes.
+ * <p>
+ * Each shape group is a separate state, so its parameters do not multiply the others.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MtxBenchmark {
+
+    /**
+     * Convolution input map and filter: 28x28 into the first layer, 12x12 into the second
+     */
+    @State(Scope.Thread)
+    public static class ConvoShape {
+        @Param({"28", "12"})
+        public int size;
+        public int fsize = 5;
+        public Matrix m;
+        public Matrix f;
+        // convolution output, padded by fsize - 1 for the full convolution of back propagation
+        public Matrix out;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random rand = new Random(BenchData.SEED);
+            m = BenchData.random(size, size, rand);
+            f = BenchData.random(fsize, fsize, rand);
+            out = BenchData.random(size - fsize + 1, size - fsize + 1, rand);
+        }
+    }
+
+    /**
+     * Pool input map: 24x24 in the first layer, 8x8 in the second, 2x2 pool
+     */
+    @State(Scope.Thread)
+    public static class PoolShape {
+        @Param({"24", "8"})
+        public int size;
+        public int poolSize = 2;
+        public Matrix m;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            m = BenchData.random(size, size, new Random(BenchData.SEED));
+        }
+    }
+
+    /**
+     * Dense weights, output nodes x input nodes, and the input column
+     */
+    @State(Scope.Thread)
+    public static class DenseShape {
+        @Param({"300x2880", "300x800", "10x300"})
+        public String shape;
+        public Matrix w;
+        public Matrix x;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            int[] rc = BenchData.shape(shape);
+            Random rand = new Random(BenchData.SEED);
+            w = BenchData.random(rc[0], rc[1], rand);
+            x = BenchData.random(rc[1], 1, rand);
+        }
+    }
+
+    /**
+     * Pool output maps flattened into the internal layer: 20 maps of 12x12, or 50 maps of 4x4
+     */
+    @State(Scope.Thread)
+    public static class MapListShape {
+        @Param({"20x12", "50x4"})
+        public String shape;
+        public List<Matrix> maps;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            int[] cs = BenchData.shape(shape);
+            maps = BenchData.randomList(cs[0], cs[1], cs[1], new Random(BenchData.SEED));
+        }
+    }
+
+    /**
+     * Filter gradients of one batch of 20 samples: 20 nodes of 1 filter, or 50 nodes of 20 filters
+     */
+    @State(Scope.Thread)
+    public static class BatchNodeShape {
+        @Param({"20x1", "50x20"})
+        public String shape;
+        public int batchSize = 20;
+        public List<List<ConvoNode>> batch;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            int[] oi = BenchData.shape(shape);
+            Random rand = new Random(BenchData.SEED);
+            batch = new ArrayList<>(batchSize);
+            for (int b = 0; b < batchSize; b++) {
+                batch.add(BenchData.randomNodes(oi[0], oi[1], 5, rand));
+            }
+        }
+    }
+
+    @Benchmark
+    public Matrix convolve(ConvoShape s) {
+        return MTX.convolve(s.m, s.f);
+    }
+
+    @Benchmark
+    public Matrix unfold(ConvoShape s) {
+        return MTX.unfold(s.m, s.fsize, s.fsize);
+    }
+
+    @Benchmark
+    public Matrix copyAndPad(ConvoShape s) {
+        return MTX.copyAndPad(s.out, s.fsize - 1);
+    }
+
+    @Benchmark
+    public Matrix rotate(ConvoShape s) {
+        return MTX.rotate(s.f);
+    }
+
+    @Benchmark
+    public Matrix maxPool(PoolShape s) {
+        return MTX.maxPool(s.m, s.poolSize, s.poolSize);
+    }
+
+    @Benchmark
+    public Matrix poolIndex(PoolShape s) {
+        return MTX.poolIndex(s.m, s.poolSize, s.poolSize);
+    }
+
+    @Benchmark
+    public Matrix mult(DenseShape s) {
+        return MTX.mult(s.w, s.x);
+    }
+
+    @Benchmark
+    public Matrix transpose(DenseShape s) {
+        return MTX.transpose(s.w);
+    }
+
+    @Benchmark
+    public Matrix listToSingleCol(MapListShape s) {
+        return MTX.listToSingleCol(s.maps);
+    }
+
+    @Benchmark
+    public List<ConvoNode> sumOfBatchNestedList(BatchNodeShape s) {
+        return MTX.sumOfBatchNestedList(s.batch);
+    }
+}  //end class
@@ -0,0 +1,216 @@
+package datasci.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Performance regression gate: runs the kernel benchmarks and the end-to-end network benchmarks,
+ * and compares them with the stored baseline.
+ * <p>
+ * Each JMH benchmark and parameter set is a scenario, with one throughput sample for every
+ * measured iteration of every fork, and the gc profiler allocation per operation. Each network
+ * configuration gives a train and a test scenario, see PerfComparator.fromBench.
+ * <p>
+ * Arguments: an optional benchmark regex, then options --baseline, --report, --update,
+ * --threshold, --alloc-threshold, --forks, --warmups, --iterations, --time (ms), --net
+ * (comma separated configuration files, empty for none), --net-warmup, --net-batches,
+ * --net-test-samples, --net-test-passes. With --update true the results replace the baseline
+ * scenarios; otherwise the report is printed and written, and the exit status is 1 on a regression,
+ * a missing scenario, or when there is no baseline to compare with.
+ */
+public class PerfGate {
+
+    private static final Logger LOG = Logger.getLogger(PerfGate.class.getName());
+    // allocation per operation secondary result of the gc profiler
+    public static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    public String include = "datasci.benchmark.MtxBenchmark";
+    public String baselineFile = "perf/baseline.json";
+    public String reportFile;
+    public boolean update;
+    public double threshold = 5.0;
+    public double allocThreshold = 5.0;
+    public int forks = 2;
+    public int warmups = 3;
+    public int iterations = 5;
+    public int timeMillis = 500;
+    public String netConfigs = "";
+    public int netWarmup = 2;
+    public int netBatches = 8;
+    public int netTestSamples = 100;
+    public int netTestPasses = 5;
+
+    public PerfGate() {
+    }
+
+    public static void main(String[] args) {
+        boolean regressed;
+        try {
+            PerfGate gate = new PerfGate();
+            gate.parseArgs(args);
+            regressed = gate.run();
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            regressed = true;
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    /**
+     * Set options from command line arguments
+     *
+     * @param args optional benchmark regex, then option and value pairs
+     */
+    public void parseArgs(String[] args) {
+        int i = 0;
+        if (args.length > 0 && !args[0].startsWith("--")) {
+            include = args[i++];
+        }
+        for (; i < args.length; i++) {
+            String option = args[i];
+            // an empty value may be dropped by the shell or Maven
+            String value = i + 1 < args.length && !args[i + 1].startsWith("--") ? args[++i] : "";
+            switch (option) {
+                case "--baseline" -> baselineFile = value;
+                case "--report" -> reportFile = value.isEmpty() ? null : value;
+                case "--update" -> update = Boolean.parseBoolean(value);
+                case "--threshold" -> threshold = Double.parseDouble(value);
+                case "--alloc-threshold" -> allocThreshold = Double.parseDouble(value);
+                case "--forks" -> forks = Integer.parseInt(value);
+                case "--warmups" -> warmups = Integer.parseInt(value);
+                case "--iterations" -> iterations = Integer.parseInt(value);
+                case "--time" -> timeMillis = Integer.parseInt(value);
+                case "--net" -> netConfigs = value;
+                case "--net-warmup" -> netWarmup = Integer.parseInt(value);
+                case "--net-batches" -> netBatches = Integer.parseInt(value);
+                case "--net-test-samples" -> netTestSamples = Integer.parseInt(value);
+                case "--net-test-passes" -> netTestPasses = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+    }
+
+    /**
+     * Run the scenarios, then update the baseline or compare with it
+     *
+     * @return true if throughput or allocation regressed, or a baseline scenario is missing
+     */
+    public boolean run() throws Exception {
+        File baseline = new File(baselineFile);
+        List<PerfScenarioR> base = update ? List.of() : PerfComparator.readBaseline(baseline);
+        if (!update && base.isEmpty()) {
+            // without a baseline every scenario is new, and the gate could never fail
+            String msg = "No baseline scenarios in: " + baseline + ", run with --update true to store them";
+            LOG.log(Level.SEVERE, msg);
+            throw new RuntimeException(msg);
+        }
+        List<PerfScenarioR> current = new ArrayList<>();
+        if (!include.isEmpty()) {
+            current.addAll(runKernels());
+        }
+        for (String config : netConfigs.split(",")) {
+            if (!config.isBlank()) {
+                current.addAll(runNet(config.trim()));
+            }
+        }
+        if (update) {
+            PerfComparator.writeBaseline(baseline, current);
+            return false;
+        }
+        PerfComparator comparator = new PerfComparator();
+        comparator.threshold = threshold;
+        comparator.allocThreshold = allocThreshold;
+        List<PerfCompareR> compareList = comparator.compare(base, current);
+        String report = comparator.report(compareList);
+        System.out.println(report);
+        if (reportFile != null) {
+            File file = new File(reportFile);
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null) {
+                dir.mkdirs();
+            }
+            Files.writeString(file.toPath(), report);
+        }
+        return PerfComparator.hasRegression(compareList);
+    }
+
+    /**
+     * Run the JMH benchmarks matching the include regex, with the gc profiler
+     */
+    private List<PerfScenarioR> runKernels() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(include)
+                .forks(forks)
+                .warmupIterations(warmups)
+                .warmupTime(TimeValue.milliseconds(timeMillis))
+                .measurementIterations(iterations)
+                .measurementTime(TimeValue.milliseconds(timeMillis))
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        List<PerfScenarioR> scenarios = new ArrayList<>();
+        for (RunResult runResult : results) {
+            List<Double> samples = new ArrayList<>();
+            for (BenchmarkResult forkResult : runResult.getBenchmarkResults()) {
+                for (IterationResult iteration : forkResult.getIterationResults()) {
+                    samples.add(iteration.getPrimaryResult().getScore());
+                }
+            }
+            Result<?> alloc = runResult.getSecondaryResults().get(ALLOC_NORM);
+            scenarios.add(new PerfScenarioR(scenarioName(runResult), runResult.getPrimaryResult().getScoreUnit(),
+                    samples.stream().mapToDouble(Double::doubleValue).toArray(),
+                    alloc != null ? alloc.getScore() : 0.0));
+        }
+        return scenarios;
+    }
+
+    /**
+     * Run the end-to-end benchmark of a network configuration, in this JVM
+     */
+    private List<PerfScenarioR> runNet(String configFile) {
+        NetBenchmark bench = new NetBenchmark();
+        bench.configFile = configFile;
+        bench.warmupBatches = netWarmup;
+        bench.trainBatches = netBatches;
+        bench.testSamples = netTestSamples;
+        bench.testPasses = netTestPasses;
+        return PerfComparator.fromBench(bench.run());
+    }
+
+    /**
+     * Scenario name: class and method, without the package, then the parameters in key order
+     */
+    private static String scenarioName(RunResult runResult) {
+        String benchmark = runResult.getParams().getBenchmark();
+        String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+        StringBuilder sb = new StringBuilder(name);
+        TreeSet<String> keys = new TreeSet<>(runResult.getParams().getParamsKeys());
+        if (!keys.isEmpty()) {
+            sb.append('{');
+            for (String key : keys) {
+                if (sb.charAt(sb.length() - 1) != '{') {
+                    sb.append(',');
+                }
+                sb.append(key).append('=').append(runResult.getParams().getParam(key));
+            }
+            sb.append('}');
+        }
+        return sb.toString();
+    }
+}  //end class
@@ -0,0 +1,135 @@
+package datasci.backend.control;
+
+/*
+
+  Copyright 2022 Ronald Cook
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+import datasci.backend.model.AllocStatsR;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ Allocation and garbage collection counts around each batch.
+
+ Allocated bytes are those of the calling thread, from the HotSpot ThreadMXBean; allocation on
+ other threads, such as the parallel weight update and augment pools, is not counted. Garbage
+ collection counts and times are for the whole JVM. Where allocation counting is not supported,
+ allocated bytes stay zero.
+ */
+public class AllocTelemetry {
+
+    private static final Logger LOG = Logger.getLogger(AllocTelemetry.class.getName());
+    // allocation counting: null if not supported by the JVM
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+    private static final List<GarbageCollectorMXBean> GC_BEANS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private long samples;
+    private long allocatedBytes;
+    private long gcCount;
+    private long gcMillis;
+    private long wallNanos;
+    // values at begin
+    private long startBytes;
+    private long startGcCount;
+    private long startGcMillis;
+    private long startNanos;
+
+    public AllocTelemetry() {
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sunBean && sunBean.isThreadAllocatedMemorySupported()) {
+            if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return sunBean;
+        }
+        LOG.warning("thread allocated memory is not supported, allocation is not counted");
+        return null;
+    }
+
+    /**
+     Get the bytes allocated by the current thread so far
+
+     @return bytes, zero if not supported
+     */
+    public static long threadAllocatedBytes() {
+        return THREAD_BEAN != null ? THREAD_BEAN.getCurrentThreadAllocatedBytes() : 0L;
+    }
+
+    /**
+     Get the number of garbage collections so far, all collectors
+
+     @return collection count
+     */
+    public static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : GC_BEANS) {
+            count += Math.max(bean.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     Get the garbage collection time so far, all collectors
+
+     @return milliseconds
+     */
+    public static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : GC_BEANS) {
+            millis += Math.max(bean.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    /**
+     Start a measured step, on the thread doing the work
+     */
+    public void begin() {
+        startNanos = System.nanoTime();
+        startBytes = threadAllocatedBytes();
+        startGcCount = gcCount();
+        startGcMillis = gcMillis();
+    }
+
+    /**
+     End a measured step, on the thread which called begin
+
+     @param stepSamples samples processed in the step
+     */
+    public void end(int stepSamples) {
+        allocatedBytes += threadAllocatedBytes() - startBytes;
+        gcCount += gcCount() - startGcCount;
+        gcMillis += gcMillis() - startGcMillis;
+        wallNanos += System.nanoTime() - startNanos;
+        samples += stepSamples;
+    }
+
+    /**
+     Get the counts of all steps so far
+
+     @return allocation and garbage collection counts
+     */
+    public AllocStatsR getStats() {
+        return new AllocStatsR(samples, allocatedBytes, gcCount, gcMillis, wallNanos);
+    }
+}  // end class
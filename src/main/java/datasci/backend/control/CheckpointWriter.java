@@ -0,0 +1,282 @@
+package datasci.backend.control;
+
+/*
+
+  Copyright 2022 Ronald Cook
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.FitParamsDelta;
+import datasci.backend.model.TrainState;
+
+import java.io.File;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ Writes training checkpoints on a background thread, so training never waits on disk.
+
+ The trainer hands over a snapshot which it no longer modifies. There is a single slot:
+ a snapshot handed over while the previous one is still waiting replaces it, so a slow disk
+ skips checkpoints instead of queueing them. Each file is written under a temporary name
+ and renamed into place, so a crash never leaves a partial checkpoint. Only the most recent
+ files are kept.
+
+ Checkpoints use the binary FitParams format, or the delta format when given an encoder,
+ named by sample count so they sort in order. A kept delta checkpoint also keeps the
+ checkpoints back to its keyframe, which it is read from.
+ The training state, if given, is written first beside it with the TrainState extension, so a
+ checkpoint file always has its complete state file.
+ */
+public class CheckpointWriter implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(CheckpointWriter.class.getName());
+    public static final String PREFIX = "checkpoint-";
+
+    private final File dir;
+    private final int keep;
+    // encoder: delta encoder, null for the binary format
+    private final FitParamsDelta encoder;
+    private final Thread thread;
+    //
+    private final Object lock = new Object();
+    // pending: latest snapshot not yet written, null if none
+    private FitParams pending;
+    private TrainState pendingState;
+    private long pendingSample;
+    private boolean closed;
+    //
+    private volatile int numWritten;
+    private volatile int numSkipped;
+    private volatile int numFailed;
+    private volatile long writeNanos;
+
+    /**
+     Instantiates a new checkpoint writer, and starts its thread.
+
+     @param dir  checkpoint directory, created if needed
+     @param keep number of most recent checkpoint files kept
+     */
+    public CheckpointWriter(File dir, int keep) {
+        this(dir, keep, null);
+    }
+
+    /**
+     Instantiates a new checkpoint writer with delta encoded checkpoints, and starts its thread.
+
+     @param dir     checkpoint directory, created if needed
+     @param keep    number of most recent checkpoint files kept
+     @param encoder delta encoder, or null for the binary format
+     */
+    public CheckpointWriter(File dir, int keep, FitParamsDelta encoder) {
+        this.dir = dir;
+        this.keep = Math.max(keep, 1);
+        this.encoder = encoder;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            String msg = "Cannot create checkpoint directory: " + dir;
+            LOG.log(Level.SEVERE, msg);
+            throw new RuntimeException(msg);
+        }
+        thread = Thread.ofPlatform().name("checkpoint-writer").daemon(true).start(this::run);
+    }
+
+    /**
+     Hand over a snapshot to be written. Returns at once.
+
+     @param snapshot    copy of the network FitParams, not modified after this call
+     @param state       copy of the training state, or null for FitParams only
+     @param sampleCount training samples completed at the snapshot
+     */
+    public void submit(FitParams snapshot, TrainState state, long sampleCount) {
+        synchronized (lock) {
+            if (pending != null) {
+                numSkipped++;
+            }
+            pending = snapshot;
+            pendingState = state;
+            pendingSample = sampleCount;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     Write any pending snapshot, then stop the writer thread
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        LOG.info("checkpoints written: " + numWritten + ", skipped: " + numSkipped + ", failed: " + numFailed
+                + ", write ms: " + writeNanos / 1000000L);
+    }
+
+    /**
+     Get the most recent checkpoint file in a directory
+
+     @param dir checkpoint directory
+     @return most recent checkpoint, or null if none
+     */
+    public static File latest(File dir) {
+        File[] files = listCheckpoints(dir);
+        return files.length > 0 ? files[files.length - 1] : null;
+    }
+
+    public int getNumWritten() {
+        return numWritten;
+    }
+
+    public int getNumSkipped() {
+        return numSkipped;
+    }
+
+    public int getNumFailed() {
+        return numFailed;
+    }
+
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    private void run() {
+        while (true) {
+            FitParams snapshot;
+            TrainState state;
+            long sampleCount;
+            synchronized (lock) {
+                while (pending == null && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                if (pending == null) {
+                    return;
+                }
+                snapshot = pending;
+                state = pendingState;
+                sampleCount = pendingSample;
+                pending = null;
+                pendingState = null;
+            }
+            write(snapshot, state, sampleCount);
+        }
+    }
+
+    /**
+     Write one checkpoint. Failures are logged, and training carries on.
+     */
+    private void write(FitParams snapshot, TrainState state, long sampleCount) {
+        long start = System.nanoTime();
+        String name = PREFIX + String.format("%012d", sampleCount)
+                + (encoder != null ? FitParamsDelta.EXTENSION : FitParamsBinary.EXTENSION);
+        File tmp = new File(dir, name + ".tmp");
+        File target = new File(dir, name);
+        try {
+            if (state != null) {
+                File stateTarget = TrainState.stateFile(target);
+                File stateTmp = new File(dir, stateTarget.getName() + ".tmp");
+                TrainState.write(state, stateTmp);
+                moveIntoPlace(stateTmp, stateTarget);
+            }
+            if (encoder != null) {
+                encoder.write(snapshot, tmp, name);
+            } else {
+                FitParamsBinary.write(snapshot, tmp);
+            }
+            moveIntoPlace(tmp, target);
+            numWritten++;
+            prune();
+            LOG.fine("checkpoint written: " + target);
+        } catch (Exception ex) {
+            numFailed++;
+            if (encoder != null) {
+                // next checkpoint is a keyframe, it cannot refer to this one
+                encoder.reset();
+            }
+            LOG.log(Level.SEVERE, "checkpoint failed: " + target + ", " + ex.getMessage(), ex);
+            tmp.delete();
+            // a state file without its checkpoint is not listed, so prune would never delete it
+            File stateTarget = TrainState.stateFile(target);
+            if (state != null && !target.exists() && stateTarget.exists() && !stateTarget.delete()) {
+                LOG.warning("cannot delete orphan checkpoint state: " + stateTarget);
+            }
+        }
+        writeNanos += System.nanoTime() - start;
+    }
+
+    private static void moveIntoPlace(File tmp, File target) throws Exception {
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     Delete all but the most recent keep checkpoints, and the checkpoints they are read from,
+     with their state files
+     */
+    private void prune() {
+        File[] files = listCheckpoints(dir);
+        Set<String> needed = new HashSet<>();
+        for (int i = Math.max(files.length - keep, 0); i < files.length; i++) {
+            // follow delta bases back to the keyframe
+            File file = files[i];
+            while (file != null && needed.add(file.getName())) {
+                String base = FitParamsDelta.baseName(file);
+                file = base != null ? new File(dir, base) : null;
+            }
+        }
+        for (int i = 0; i < files.length - keep; i++) {
+            if (needed.contains(files[i].getName())) {
+                continue;
+            }
+            if (!files[i].delete()) {
+                LOG.warning("cannot delete old checkpoint: " + files[i]);
+            }
+            File stateFile = TrainState.stateFile(files[i]);
+            if (stateFile.exists() && !stateFile.delete()) {
+                LOG.warning("cannot delete old checkpoint state: " + stateFile);
+            }
+        }
+    }
+
+    private static File[] listCheckpoints(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX)
+                && (name.endsWith(FitParamsBinary.EXTENSION) || name.endsWith(FitParamsDelta.EXTENSION)));
+        if (files == null) {
+            return new File[0];
+        }
+        // names hold the zero padded sample count, so name order is checkpoint order
+        Arrays.sort(files);
+        return files;
+    }
+}  // end class
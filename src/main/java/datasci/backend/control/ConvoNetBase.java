@@ -142,6 +142,10 @@ public class ConvoNetBase {
     protected int numCorrect;
     protected int batchSampleCount;
     protected int batchNumCorrect;
+    // batchIndex: current batch, over all epochs
+    protected long batchIndex;
+    // epoch: current pass over the samples, starting at zero
+    protected int epoch;
     //
     // NetResult will hold the overall summary of network performance, and also the
     // network training FitParams
@@ -170,6 +174,7 @@ public class ConvoNetBase {
         numCorrect = 0;
         batchSampleCount = 0;
         batchNumCorrect = 0;
+        epoch = 0;
     }
     /**
      * Create network configuration:
@@ -351,7 +356,7 @@ public class ConvoNetBase {
      * @return true if output value is correct
      */
     public EvaluationR evaluate() {
-        EvaluationR eval = new EvaluationR(sampleCount, numCorrect, batchSampleCount, batchNumCorrect);
+        EvaluationR eval = new EvaluationR(sampleCount, numCorrect, batchSampleCount, batchNumCorrect, epoch);
         return eval;
     }
 
@@ -28,4 +28,6 @@ public interface ConvoNetI {
     public void setFitParams(FitParams fitParams);
 
     public NetResult getNetResult();
+
+    public void close();
 }
@@ -17,19 +17,24 @@ package datasci.backend.control;
  * limitations under the License.
  **************************************************************************/
 
+import datasci.backend.jfr.BatchEvent;
+import datasci.backend.jfr.LayerEvent;
 import datasci.backend.layers.ConvoLayer;
 import datasci.backend.layers.ConvoPoolLayer;
 import datasci.backend.layers.InternalLayer;
 import datasci.backend.layers.PoolLayer;
+import datasci.backend.model.ConvoPoolFitParams;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.ImageDataSet;
 import datasci.backend.model.ImageDataUtil;
 import datasci.backend.model.MTX;
+import datasci.backend.model.MappedModel;
+import datasci.backend.model.MathUtil;
 import datasci.backend.model.Matrix;
 import datasci.backend.model.NetConfig;
-import datasci.backend.model.NetData;
 import datasci.backend.model.NetResult;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.logging.Level;
@@ -78,6 +83,7 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
 
     private static final Logger LOG = Logger.getLogger(ConvoNetTest.class.getName());
     //
+    // xIn: input matrix, refilled from the data set for each sample
     private Matrix xIn;
     // seed for random shuffling of input samples
     private static final long SHUFFLE_SEED = 4321;
@@ -91,10 +97,18 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
 
     //
     private String status;
-    // input list of image samples
-    private List<NetData> dataList;
+    // input data set of image samples
+    private ImageDataSet dataSet;
+    // givenDataSet: data set given to the constructor, used instead of loading image files
+    private ImageDataSet givenDataSet;
+    // sampleOrder: shuffled order of sample indexes into dataSet
+    private int[] sampleOrder;
     // list of column matrices for actual output
     private List<Matrix> actualIndexList;
+    // mappedModel: weights read in place from a memory mapped model file, null for netResult.fitParams
+    private MappedModel mappedModel;
+    // telemetry: allocation and garbage collection per batch
+    private final AllocTelemetry telemetry = new AllocTelemetry();
     //
 
     /**
@@ -115,6 +129,30 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
         init();
     }
 
+    /**
+     * Convolution network for testing (no back propagation), with weights read in place from
+     * a memory mapped model; the model is not copied to the layers.
+     */
+    public ConvoNetTest(NetResult netResult, NetConfig config, MappedModel mappedModel) {
+        super(netResult);
+        this.netResult = netResult;
+        this.config = config;
+        this.mappedModel = mappedModel;
+        init();
+    }
+
+    /**
+     * Convolution network for testing (no back propagation) on a given data set, e.g. synthetic
+     * images, instead of the image files of the configuration.
+     */
+    public ConvoNetTest(NetResult netResult, NetConfig config, ImageDataSet dataSet) {
+        super(netResult);
+        this.netResult = netResult;
+        this.config = config;
+        this.givenDataSet = dataSet;
+        init();
+    }
+
     /**
      * Initialize the network: set layer configurations, load sample data
      */
@@ -127,7 +165,10 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
                 LOG.log(Level.SEVERE, msg);
                 throw new RuntimeException(msg);
             }
-            if(netResult.fitParams != null){
+            if (mappedModel != null) {
+                LOG.info("using mapped model: " + mappedModel.getFile());
+                checkMappedModel();
+            } else if(netResult.fitParams != null){
                 LOG.info("setting fitParams");
                 setFitParams(netResult.fitParams);
             } else {
@@ -145,6 +186,32 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
         this.doNow = doNow;
     }
 
+    /**
+     * Check the mapped model layers match the configured network
+     */
+    private void checkMappedModel() {
+        FitParams shapes = mappedModel.getShapes();
+        String msg = null;
+        if (shapes.convoPoolList.size() != convoPoolLayers.size() || shapes.internalList.size() != internalLayers.size()
+                || shapes.outputFitParams == null) {
+            msg = "Mapped model layers do not match the network configuration";
+        } else {
+            for (int k = 0; k < convoPoolLayers.size(); k++) {
+                ConvoLayer convoLayer = convoPoolLayers.get(k).convoLayer;
+                ConvoPoolFitParams convoPool = shapes.convoPoolList.get(k);
+                int filterSize = convoLayer.getFilterSize();
+                if (convoPool.filterList.size() != convoLayer.getnOut()
+                        || convoPool.filterList.get(0).get(0).size != filterSize * filterSize) {
+                    msg = "Mapped model filters do not match convolution layer: " + k;
+                }
+            }
+        }
+        if (msg != null) {
+            LOG.log(Level.SEVERE, msg);
+            throw new RuntimeException(msg);
+        }
+    }
+
     /**
      * Perform all preparations before network propagation
      */
@@ -152,11 +219,11 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
         boolean isOk = true;
         try {
             LOG.info("prepTestingData");
-            // Prepare test data sample list.
-            dataList = prepTestData();
-            if (dataList == null) {
+            // Prepare test data set.
+            dataSet = prepTestData();
+            if (dataSet == null) {
                 isOk = false;
-                LOG.severe("dataList is null");
+                LOG.severe("dataSet is null");
             } else {
                 LOG.info("call prepActualMatrix");
                 // Prepare list of actual column matrices for measuring network performance.
@@ -187,12 +254,12 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
     }
 
     /**
-     * Prepare test data list.
+     * Prepare test data set and shuffled sample order.
      *
-     * @return the list of test data
+     * @return the test data set
      */
-    public List<NetData> prepTestData() {
-        List<NetData> dataList = new ArrayList<>();
+    public ImageDataSet prepTestData() {
+        ImageDataSet dataSet = null;
         try {
             LOG.info("prepTestData");
             String dataDir = config.generalConfig.testingDir;
@@ -203,35 +270,47 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
             // number of files to load for each class
             int numEachclass = totalSamples / numOutputNodes;
             // load image data, only for specified classes
-            // groupedData list contains separate list for each class index
-            List<List<NetData>> groupedData = ImageDataUtil.loadData(dataDir, numOutputNodes, numEachclass);
+            // dataSet contains the samples of each class index in turn
+            if (givenDataSet != null) {
+                LOG.info("using given dataSet");
+                dataSet = givenDataSet;
+            } else {
+                dataSet = ImageDataUtil.loadDataSet(dataDir, numOutputNodes, numEachclass,
+                        config.inputConfig.rows, config.inputConfig.cols, config.generalConfig.threads);
+            }
             //
-            for (List<NetData> singleData : groupedData) {
-                // copy class data to combined data list
-                dataList.addAll(singleData);
+            int len = dataSet.getSize();
+            sampleOrder = new int[len];
+            for (int i = 0; i < len; i++) {
+                sampleOrder[i] = i;
             }
             Random rand = new Random(SHUFFLE_SEED);
             //
-            // shuffle image data randomly
-            Collections.shuffle(dataList, rand);
+            // shuffle sample indexes, same order as shuffling the sample list
+            MathUtil.shuffle(sampleOrder, rand);
+            xIn = dataSet.createInput();
             //
-            int len = dataList.size();
-            LOG.info("dataList size: " + len);
+            LOG.info("dataSet size: " + len);
             // check total samples size
             if (totalSamples > len) {
                 totalSamples = len;
             }
             // check first few image classes
-            for(int i = 0; i < 10; i++) {
-                NetData d = dataList.get(i);
-                LOG.info("actual class index: " + d.getActualIndex());
+            for(int i = 0; i < Math.min(10, len); i++) {
+                LOG.info("actual class index: " + dataSet.getActualIndex(sampleOrder[i]));
             }
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
             throw new RuntimeException(ex);
         }
-        return dataList;
+        return dataSet;
     }
+    /**
+     * Release the test data source; test data is held in memory, nothing to release
+     */
+    public void close() {
+    }
+
     /**
      * Test network forward propagation for all samples
      */
@@ -259,26 +338,33 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
             //testing forward propagation
             batchSampleCount = 0;
             batchNumCorrect = 0;
+            telemetry.begin();
+            BatchEvent batchEvent = new BatchEvent();
+            batchEvent.begin();
+            batchIndex = batchSampleBase / batchSize;
             for (int i = 0; i < batchSize; i++) {
                 // next data sample
-                NetData netData = dataList.get(batchSampleBase + i);
-                // next sample image
-                Matrix xIn = netData.getInputData();
+                int n = sampleOrder[batchSampleBase + i];
+                // next sample image, normalized into the reused input matrix
+                dataSet.fillInput(n, xIn);
                 //
                 // test one sample forward through all network layers
                 testAllLayers(xIn);
                 //
                 // actual class index for current image sample
-                int actualIndedx = netData.getActualIndex();
+                int actualIndedx = dataSet.getActualIndex(n);
                 //  LOG.info("actualIndedx: " + actualIndedx);
                 // update network performance evaluation
                 updateEval(actualIndedx);
                 sampleCount++;
                 batchSampleCount++;
             }
+            batchEvent.end(BatchEvent.TEST, epoch, batchIndex, batchSize, sampleCount, batchNumCorrect);
             setStatus("Samples completed: " + sampleCount);
             // update batchSampleBase
             batchSampleBase += batchSize;
+            telemetry.end(batchSize);
+            netResult.allocStats = telemetry.getStats();
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
             throw new RuntimeException(ex);
@@ -303,25 +389,56 @@ public class ConvoNetTest extends ConvoNetBase implements ConvoNetI {
             Matrix internalIn = null;
             Matrix internalOut = null;
             //testing forward propagation in Convolution layer/Pool layer
-            for (ConvoPoolLayer convoPool : convoPoolLayers) {
+            for (int k = 0; k < convoPoolLayers.size(); k++) {
+                ConvoPoolLayer convoPool = convoPoolLayers.get(k);
                 ConvoLayer convoLayer = convoPool.convoLayer;
                 // input to ConvoLayer may be xIn or poolOut
-                convoOut = convoLayer.testForward(poolOut);
+                LayerEvent event = new LayerEvent();
+                event.begin();
+                if (mappedModel != null) {
+                    convoOut = convoLayer.testForward(poolOut, mappedModel.getFilters(k), mappedModel.getConvoBias(k));
+                } else {
+                    convoOut = convoLayer.testForward(poolOut);
+                }
+                event.end(convoLayer.getLayerID(), convoLayer.getLayerType(), LayerEvent.TEST_FORWARD,
+                        batchIndex, batchSampleCount, poolOut);
                 //
                 PoolLayer poolLayer = convoPool.poolLayer;
+                event = new LayerEvent();
+                event.begin();
                 poolOut = poolLayer.testForward(convoOut);
+                event.end(poolLayer.getLayerID(), poolLayer.getLayerType(), LayerEvent.TEST_FORWARD,
+                        batchIndex, batchSampleCount, convoOut);
             }
             // concatenate poolOut matrix list to a single matrix for the internal layer
             internalIn = MTX.listToSingleCol(poolOut);
             //
             //testing forward propagation in Internal layer
-            for (InternalLayer internal : internalLayers) {
-                internalOut = internal.testForward(internalIn);
+            for (int k = 0; k < internalLayers.size(); k++) {
+                InternalLayer internal = internalLayers.get(k);
+                LayerEvent event = new LayerEvent();
+                event.begin();
+                if (mappedModel != null) {
+                    internalOut = internal.testForward(internalIn, mappedModel.getInternalW(k), mappedModel.getInternalB(k));
+                } else {
+                    internalOut = internal.testForward(internalIn);
+                }
+                event.end(internal.getLayerID(), internal.getLayerType(), LayerEvent.TEST_FORWARD,
+                        batchIndex, batchSampleCount, internalIn);
                 internalIn = internalOut;
             }
             //
             //testing forward propagation in Output layer
-            Matrix finalOut = outputLayer.testForward(internalOut);
+            Matrix finalOut;
+            LayerEvent event = new LayerEvent();
+            event.begin();
+            if (mappedModel != null) {
+                finalOut = outputLayer.testForward(internalOut, mappedModel.getOutputW(), mappedModel.getOutputB());
+            } else {
+                finalOut = outputLayer.testForward(internalOut);
+            }
+            event.end(outputLayer.getLayerID(), outputLayer.getLayerType(), LayerEvent.TEST_FORWARD,
+                    batchIndex, batchSampleCount, internalOut);
 
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
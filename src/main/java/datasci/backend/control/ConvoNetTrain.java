@@ -17,23 +17,39 @@ package datasci.backend.control;
   limitations under the License.
  */
 
+import datasci.backend.jfr.BatchEvent;
+import datasci.backend.jfr.LayerEvent;
 import datasci.backend.layers.ConvoLayer;
 import datasci.backend.layers.ConvoPoolLayer;
 import datasci.backend.layers.InternalLayer;
 import datasci.backend.layers.PoolLayer;
+import datasci.backend.model.BatchFeeder;
+import datasci.backend.model.CheckpointStatsR;
+import datasci.backend.model.ConvoNode;
+import datasci.backend.model.EpochR;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.FitParamsDelta;
+import datasci.backend.model.ImageAugmenter;
+import datasci.backend.model.ImageDataSet;
 import datasci.backend.model.ImageDataUtil;
+import datasci.backend.model.ImageStream;
 import datasci.backend.model.MTX;
 import datasci.backend.model.MathUtil;
 import datasci.backend.model.Matrix;
+import datasci.backend.model.MomentumNode;
 import datasci.backend.model.NetConfig;
-import datasci.backend.model.NetData;
 import datasci.backend.model.NetResult;
+import datasci.backend.model.PrecisionE;
+import datasci.backend.model.SampleBatch;
+import datasci.backend.model.TrainState;
+import datasci.backend.optimizers.OptE;
+import datasci.backend.optimizers.OptimizerFactory;
+import datasci.backend.optimizers.OptimizerI;
 import datasci.backend.model.EtaModel;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Random;
@@ -236,27 +252,59 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
     //
     private double accuracyPrev;
     private double accuracy;
+    // convoTime: forward nanoseconds of the convolution and pool layers
     private long convoTime;
+    // profiler: per-layer forward, backward and weight update time
+    private LayerProfiler profiler;
+    // telemetry: allocation and garbage collection per batch
+    private final AllocTelemetry telemetry = new AllocTelemetry();
+    // metrics: progress and health published to the TrainingMetrics MBean after each batch
+    private final TrainingMetrics metrics = TrainingMetrics.getInstance();
+    private boolean metricsStarted;
+    // eta: gradient descent rate of the last sample
+    private double eta;
     //
     private int batchSampleBase;
+    // totalSamples: number of samples in one epoch
     private int totalSamples;
+    private int numEpochs;
+    // start of current epoch: time, and counts at the end of the previous epoch
+    private long epochStartNanos;
+    private int epochStartCount;
+    private int epochStartCorrect;
     private int batchSize;
     //
     // doNow flag for debug logging
     private boolean doNow;
     //
     private String status;
-    // input list of image samples
-    private List<NetData> dataList;
+    // input data set of image samples
+    private ImageDataSet dataSet;
+    // givenDataSet: data set given to the constructor, used instead of loading image files
+    private ImageDataSet givenDataSet;
+    // sampleOrder: shuffled order of sample indexes into dataSet
+    private int[] sampleOrder;
+    // imageStream: background source of shuffled batches, used instead of dataSet when streaming
+    private ImageStream imageStream;
+    // feeder: batches of normalized, optionally augmented, network inputs
+    private BatchFeeder feeder;
+    // firstEpoch: epoch training starts in, after zero only when resuming
+    private int firstEpoch;
+    // checkpointWriter: background writer of periodic checkpoints, null for none
+    private CheckpointWriter checkpointWriter;
+    private int checkpointBatches;
+    private long checkpointNanos;
+    private int batchesSinceCheckpoint;
+    private long lastCheckpointNanos;
+    // time training paused to snapshot FitParams for checkpoints
+    private CheckpointStatsR checkpointStats = new CheckpointStatsR(0, 0, 0);
     // list of column matrices for actual output
     private List<Matrix> actualOutList;
     //
     // rateModel:  gradient descent rate
     private EtaModel rateModel;
-    // lambda: L2 regularization parameter
-    private double lambda;
-    // mu:  momentum parameter
-    private double mu;
+    // optimizer: weight update rule, selected by BackPropConfig.optName
+    private OptimizerI optimizer;
 
 
     /**
@@ -277,14 +325,47 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
         init();
     }
 
+    /**
+     Convolution network for training on a given data set, e.g. synthetic images,
+     instead of the image files of the configuration.
+     */
+    public ConvoNetTrain(NetResult netResult, NetConfig config, ImageDataSet dataSet) {
+        super(netResult);
+        this.netResult = netResult;
+        this.config = config;
+        this.givenDataSet = dataSet;
+        init();
+    }
+
     /**
      Init.
      */
     public void init() {
         try {
             configureNet(config);
+            // checkpoint to resume from, read before prepAll so the stream starts at the resumed epoch
+            FitParams resumeParams = null;
+            TrainState resumeState = null;
+            File checkpoint = resumeCheckpoint();
+            if (checkpoint != null) {
+                LOG.info("resume from checkpoint: " + checkpoint);
+                resumeParams = FitParamsDelta.isDelta(checkpoint) ? FitParamsDelta.read(checkpoint)
+                        : FitParamsBinary.read(checkpoint);
+                File stateFile = TrainState.stateFile(checkpoint);
+                if (stateFile.isFile()) {
+                    resumeState = TrainState.read(stateFile);
+                    firstEpoch = resumeState.epoch;
+                } else {
+                    LOG.warning("no training state for checkpoint, resume with weights only: " + stateFile);
+                }
+            }
             prepAll();
-            if(netResult.fitParams != null){
+            if (resumeParams != null) {
+                setFitParams(resumeParams);
+                if (resumeState != null) {
+                    setTrainState(resumeState);
+                }
+            } else if(netResult.fitParams != null){
                 LOG.info("init network with fitParams");
                 setFitParams(netResult.fitParams);
             } else {
@@ -334,13 +415,13 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
     }
 
     /**
-     Prepare training data sample list.
-     Scale to  digitize to small values (0.0, 0.1)
+     Prepare training data set and shuffled sample order.
+     Pixels are stored as 8 bit gray levels, and scaled to small values (0.0, 1.0) when used.
 
-     @return the list of training data
+     @return the training data set
      */
-    public List<NetData> prepTrainingData() {
-        List<NetData> dataList = new ArrayList<>();
+    public ImageDataSet prepTrainingData() {
+        ImageDataSet dataSet = null;
         try {
             String dataDir = config.generalConfig.trainingDir;
             LOG.info("dataDir: " + dataDir + ", numOutputNodes: " + numOutputNodes);
@@ -349,53 +430,147 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
             LOG.info("totalSamples: " + totalSamples);
             setStatus("Load input samples");
             int numClassesToLoad = numOutputNodes;
-            List<List<NetData>> groupedData = null;
-            if (totalSamples <= numOutputNodes) {
+            int rows = config.inputConfig.rows;
+            int cols = config.inputConfig.cols;
+            if (givenDataSet != null) {
+                LOG.info("using given dataSet");
+                dataSet = givenDataSet;
+            } else if (totalSamples <= numOutputNodes) {
                 int numEachClass = totalSamples / numOutputNodes;
                 if (numEachClass == 0) {
                     numClassesToLoad = totalSamples;
                     numEachClass = 1;
                 }
                 // load image data, only for specified classes
-                groupedData = ImageDataUtil.loadData(dataDir, numClassesToLoad,
-                        numEachClass);
+                dataSet = ImageDataUtil.loadDataSet(dataDir, numClassesToLoad, numEachClass, rows, cols,
+                        config.generalConfig.threads);
 
             } else {
                 // totalSamples > numOutputNodes
                 // number of files to load for each class
                 int numEachClass = totalSamples / numOutputNodes;
-                // groupedData list contains separate list for each class index
-                groupedData = ImageDataUtil.loadData(dataDir, numClassesToLoad, numEachClass);
+                // dataSet contains the samples of each class index in turn
+                dataSet = ImageDataUtil.loadDataSet(dataDir, numClassesToLoad, numEachClass, rows, cols,
+                        config.generalConfig.threads);
             }
-            LOG.info("groupedData size: " + groupedData.size());
+            LOG.info("dataSet: " + dataSet);
             //
-            for (List<NetData> singleClassData : groupedData) {
-                // copy class data to combined data list
-                dataList.addAll(singleClassData);
+            int len = dataSet.getSize();
+            sampleOrder = new int[len];
+            for (int i = 0; i < len; i++) {
+                sampleOrder[i] = i;
             }
-            //
             // randomly shuffle the image data order
             Random rand = new Random(SHUFFLE_SEED);
-            // shuffle image data randomly
-            Collections.shuffle(dataList, rand);
+            // shuffle sample indexes, same order as shuffling the sample list
+            MathUtil.shuffle(sampleOrder, rand);
             //
-            int len = dataList.size();
-            LOG.info("dataList size: " + len);
+            LOG.info("dataSet size: " + len);
             // check total samples size
             if (totalSamples > len) {
                 totalSamples = len;
             }
             //
             // check first few image classes
-            for (int i = 0; i < numClassesToLoad; i++) {
-                NetData d = dataList.get(i);
-                LOG.info("actual class index: " + d.getActualIndex());
+            for (int i = 0; i < Math.min(numClassesToLoad, len); i++) {
+                LOG.info("actual class index: " + dataSet.getActualIndex(sampleOrder[i]));
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return dataSet;
+    }
+
+    /**
+     Prepare stream of training data batches, read in the background during training.
+     Only the image files are listed here; no images are read before the stream is started.
+
+     @return the training data stream
+     */
+    public ImageStream prepTrainingStream() {
+        ImageStream stream = null;
+        try {
+            totalSamples = config.generalConfig.totalTrainingSamples;
+            LOG.info("totalSamples: " + totalSamples);
+            setStatus("Open input stream");
+            int numClassesToLoad = numOutputNodes;
+            // number of files to load for each class
+            int numEachClass = totalSamples / numOutputNodes;
+            if (numEachClass == 0) {
+                numClassesToLoad = totalSamples;
+                numEachClass = 1;
+            }
+            int rows = config.inputConfig.rows;
+            int cols = config.inputConfig.cols;
+            stream = new ImageStream(config.generalConfig, numClassesToLoad, numEachClass, rows, cols,
+                    SHUFFLE_SEED);
+            // check total samples size
+            if (totalSamples > stream.getTotalSamples()) {
+                totalSamples = stream.getTotalSamples();
             }
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
             throw new RuntimeException(ex);
         }
-        return dataList;
+        return stream;
+    }
+
+    /**
+     Prepare feeder of training batches, with random distortions if augment is configured
+
+     @return the batch feeder
+     */
+    public BatchFeeder prepFeeder() {
+        BatchFeeder batchFeeder = null;
+        try {
+            int rows = config.inputConfig.rows;
+            int cols = config.inputConfig.cols;
+            ImageAugmenter augmenter = null;
+            if (config.generalConfig.augment) {
+                augmenter = new ImageAugmenter(config.generalConfig, rows, cols);
+            }
+            batchFeeder = new BatchFeeder(dataSet, sampleOrder, imageStream, batchSize, totalSamples, numEpochs,
+                    SHUFFLE_SEED, augmenter);
+            batchFeeder.init(rows, cols, config.generalConfig.threads);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return batchFeeder;
+    }
+
+    /**
+     Prepare background checkpoint writer, if a checkpoint directory and interval are configured
+
+     @return the checkpoint writer, or null for none
+     */
+    public CheckpointWriter prepCheckpoint() {
+        CheckpointWriter writer = null;
+        try {
+            String dir = config.generalConfig.checkpointDir;
+            checkpointBatches = Math.max(config.generalConfig.checkpointBatches, 0);
+            checkpointNanos = Math.max(config.generalConfig.checkpointSeconds, 0) * 1000000000L;
+            if (dir != null && !dir.isBlank() && (checkpointBatches > 0 || checkpointNanos > 0)) {
+                PrecisionE precision = PrecisionE.valueOfLabel(config.generalConfig.checkpointPrecision);
+                if (precision == null) {
+                    precision = PrecisionE.DOUBLE;
+                }
+                int keyframe = Math.max(config.generalConfig.checkpointKeyframe, 1);
+                // full double precision checkpoints only: the plain binary format
+                FitParamsDelta encoder = precision != PrecisionE.DOUBLE || keyframe > 1
+                        ? new FitParamsDelta(precision, keyframe) : null;
+                writer = new CheckpointWriter(new File(dir), config.generalConfig.checkpointKeep, encoder);
+                lastCheckpointNanos = System.nanoTime();
+                LOG.info("checkpointDir: " + dir + ", checkpointBatches: " + checkpointBatches
+                        + ", checkpointSeconds: " + config.generalConfig.checkpointSeconds
+                        + ", precision: " + precision + ", keyframe: " + keyframe);
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return writer;
     }
 
     /**
@@ -404,27 +579,42 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
     public boolean prepAll() {
         boolean isOk = true;
         try {
-            LOG.info("prepTrainingData");
-            // Prepare training data sample list.
-            dataList = prepTrainingData();
-            if (dataList == null) {
-                isOk = false;
+            int len;
+            if (config.generalConfig.streamTraining && givenDataSet == null) {
+                LOG.info("prepTrainingStream");
+                // Prepare training data stream.
+                imageStream = prepTrainingStream();
+                len = imageStream.getTotalSamples();
+            } else {
+                LOG.info("prepTrainingData");
+                // Prepare training data set.
+                dataSet = prepTrainingData();
+                isOk = dataSet != null;
+                len = isOk ? dataSet.getSize() : 0;
             }
             if (isOk) {
                 LOG.info("prepActualMatrix");
                 // Prepare list of actual column matrices for measuring network performance.
                 actualOutList = prepActualMatrix();
             } else{
-                String msg = "dataList is null";
+                String msg = "dataSet is null";
                 LOG.log(Level.SEVERE, msg);
                 throw new RuntimeException(msg);
             }
-            int len = dataList.size();
             batchSize = config.backPropConfig.batchSize;
             // check batch size
             if (batchSize > len) {
                 batchSize = len;
             }
+            numEpochs = Math.max(config.generalConfig.numEpochs, 1);
+            LOG.info("numEpochs: " + numEpochs);
+            if (imageStream != null) {
+                // training starts as soon as the first batch is ready
+                imageStream.start(batchSize, numEpochs, firstEpoch);
+            }
+            feeder = prepFeeder();
+            checkpointWriter = prepCheckpoint();
+            profiler = prepProfiler();
             //
             // Prepare back prop parameters
             prepBackProp();
@@ -436,12 +626,12 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
     }
 
     /**
-     Get total number of data samples
+     Get total number of data samples, over all epochs
 
      @return total number of data samples
      */
     public int getTotalSamples() {
-        return totalSamples;
+        return totalSamples * numEpochs;
     }
 
     /**
@@ -453,6 +643,31 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
         return batchSize;
     }
 
+    /**
+     Release the training data source; stops the background stream reader and augment threads, if any
+     */
+    public void close() {
+        if (metricsStarted) {
+            metrics.stop();
+            metricsStarted = false;
+        }
+        if (feeder != null) {
+            LOG.info("augment wait ms: " + feeder.getWaitNanos() / 1000000L);
+            feeder.close();
+        }
+        if (imageStream != null) {
+            LOG.info("stream wait ms: " + imageStream.getWaitNanos() / 1000000L);
+            imageStream.close();
+        }
+        if (checkpointWriter != null) {
+            LOG.info("checkpoint snapshots: " + checkpointStats.snapshots() + ", pause ms: "
+                    + checkpointStats.pauseMillis() + ", max pause ms: " + checkpointStats.maxPauseMillis());
+            // writes the last pending snapshot
+            checkpointWriter.close();
+            checkpointWriter = null;
+        }
+    }
+
     /**
      Train network for all samples
      */
@@ -460,7 +675,7 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
         try {
             LOG.fine("runNet");
             //testing forward propagation
-            int totalSamples = config.generalConfig.totalTrainingSamples;
+            int totalSamples = getTotalSamples();
             batchSampleBase = 0;
             for (int k = 0; k < totalSamples; k++) {
                 // next batch
@@ -481,20 +696,31 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
             batchSampleCount = 0;
             batchNumCorrect = 0;
             boolean batchCompleted = false;
-            if ((sampleCount + batchSize) <= totalSamples) {
+            if ((batchSampleBase + batchSize) <= totalSamples) {
+                if (batchSampleBase == 0 && epochStartNanos == 0) {
+                    epochStartNanos = System.nanoTime();
+                }
+                if (!metricsStarted) {
+                    metrics.start(sampleCount, getTotalSamples());
+                    metricsStarted = true;
+                }
+                telemetry.begin();
+                BatchEvent batchEvent = new BatchEvent();
+                batchEvent.begin();
+                // batches are full, so the sample count gives the batch index
+                batchIndex = sampleCount / batchSize;
+                // next batch of input images, already shuffled
+                SampleBatch batch = feeder.next();
                 for (int i = 0; i < batchSize; i++) {
-                    // next data sample
-                    NetData netData = dataList.get(batchSampleBase + i);
-               //         LOG.log(Level.FINE, " netData: " + netData);
                     // next sample image
-                    Matrix xIn = netData.getInputData();
+                    Matrix xIn = batch.inputs[i];
             //        LOG.log(Level.FINE, " xIn: " + xIn);
                     //
                     // train one image sample forward through all network layers
                     trainAllLayers(xIn, doNow);
                     //
                     // actual class index for current image sample
-                    int actualIndedx = netData.getActualIndex();
+                    int actualIndedx = batch.labels[i];
                     //  LOG.info("actualIndedx: " + actualIndedx);
                     updateEval(actualIndedx);
                     //prepare backprop
@@ -513,9 +739,250 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
                     // back prop batch
                     backProp(batchCompleted);
                 }
-                setStatus("Samples completed: " + sampleCount);
+                batchEvent.end(BatchEvent.TRAIN, epoch, batchIndex, batchSize, sampleCount, batchNumCorrect);
+                setStatus("Epoch " + (epoch + 1) + " of " + numEpochs + ", samples completed: " + sampleCount);
+                convoTime = profiler.getConvoNanos(convoPoolLayers.size());
+                netResult.convoTime = convoTime;
+                netResult.layerTimes = profiler.getLayerTimes();
                 // update batchSampleBase
                 batchSampleBase += batchSize;
+                if ((batchSampleBase + batchSize) > totalSamples) {
+                    // no full batch left in this epoch
+                    endEpoch();
+                }
+                // after endEpoch, so a checkpoint at the end of an epoch resumes at the start of the next
+                checkpoint();
+                telemetry.end(batchSize);
+                netResult.allocStats = telemetry.getStats();
+                metrics.batch(epoch, sampleCount, numCorrect, getTotalSamples(), batchSampleCount, batchNumCorrect,
+                        eta, netResult.allocStats, netResult.layerTimes);
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     Hand a snapshot of the weights and biases to the checkpoint writer, when an interval has passed.
+     Training pauses only for the copy; the file is written in the background.
+     */
+    private void checkpoint() {
+        if (checkpointWriter == null) {
+            return;
+        }
+        batchesSinceCheckpoint++;
+        long now = System.nanoTime();
+        boolean due = (checkpointBatches > 0 && batchesSinceCheckpoint >= checkpointBatches)
+                || (checkpointNanos > 0 && now - lastCheckpointNanos >= checkpointNanos);
+        if (due) {
+            FitParams snapshot = createFitParams().copy();
+            checkpointWriter.submit(snapshot, createTrainState(), sampleCount);
+            long pause = System.nanoTime() - now;
+            checkpointStats = new CheckpointStatsR(checkpointStats.snapshots() + 1, checkpointStats.pauseNanos() + pause,
+                    Math.max(checkpointStats.maxPauseNanos(), pause));
+            netResult.checkpointStats = checkpointStats;
+            metrics.checkpoint(checkpointStats);
+            batchesSinceCheckpoint = 0;
+            lastCheckpointNanos = now;
+        }
+    }
+
+    /**
+     Get the checkpoint to resume from: the resumeFrom file, or the latest checkpoint in the resumeFrom directory
+
+     @return checkpoint file, or null to start training from the beginning
+     */
+    private File resumeCheckpoint() {
+        String resumeFrom = config.generalConfig.resumeFrom;
+        if (resumeFrom == null || resumeFrom.isBlank()) {
+            return null;
+        }
+        File file = new File(resumeFrom);
+        if (file.isDirectory()) {
+            file = CheckpointWriter.latest(file);
+        }
+        if (file == null || !file.isFile()) {
+            String msg = "No checkpoint to resume from: " + resumeFrom;
+            LOG.log(Level.SEVERE, msg);
+            throw new RuntimeException(msg);
+        }
+        return file;
+    }
+
+    /**
+     Copy the training state at a batch boundary: velocities, counts and sample order position.
+     With createFitParams, enough to resume training exactly.
+
+     @return training state, sharing no matrices with the network
+     */
+    public TrainState createTrainState() {
+        TrainState state = new TrainState();
+        try {
+            state.epoch = epoch;
+            state.batchSampleBase = batchSampleBase;
+            state.sampleCount = sampleCount;
+            state.numCorrect = numCorrect;
+            state.epochStartCount = epochStartCount;
+            state.epochStartCorrect = epochStartCorrect;
+            state.sampleOrder = feeder.getEpochOrder(epoch);
+            for (ConvoPoolLayer convoPool : convoPoolLayers) {
+                List<Matrix> momentum = new ArrayList<>();
+                for (MomentumNode momentumNode : convoPool.convoLayer.getMomentumList()) {
+                    for (Matrix v : momentumNode.getMomentumNodeList()) {
+                        momentum.add(new Matrix(v));
+                    }
+                }
+                state.convoMomentumList.add(momentum);
+                List<Matrix> second = new ArrayList<>();
+                for (MomentumNode secondNode : convoPool.convoLayer.getSecondList()) {
+                    for (Matrix s : secondNode.getMomentumNodeList()) {
+                        second.add(new Matrix(s));
+                    }
+                }
+                state.convoSecondList.add(second);
+            }
+            for (InternalLayer internal : internalLayers) {
+                state.internalVelocityList.add(new Matrix(internal.getV()));
+                state.internalSecondList.add(internal.getS() != null ? new Matrix(internal.getS()) : null);
+            }
+            state.outputVelocity = new Matrix(outputLayer.getV());
+            state.outputSecond = outputLayer.getS() != null ? new Matrix(outputLayer.getS()) : null;
+            if (optimizer.updatesBias()) {
+                // bias state in layer order: convolution, internal, output
+                for (ConvoPoolLayer convoPool : convoPoolLayers) {
+                    state.biasVelocityList.add(copy(convoPool.convoLayer.getBiasV()));
+                    state.biasSecondList.add(copy(convoPool.convoLayer.getBiasS()));
+                }
+                for (InternalLayer internal : internalLayers) {
+                    state.biasVelocityList.add(copy(internal.getBiasV()));
+                    state.biasSecondList.add(copy(internal.getBiasS()));
+                }
+                state.biasVelocityList.add(copy(outputLayer.getBiasV()));
+                state.biasSecondList.add(copy(outputLayer.getBiasS()));
+            }
+            state.optName = optimizer.getOptName();
+            state.optStep = optimizer.getStep();
+            state.summaryResults = new Matrix(netResult.summaryResults);
+            state.epochResults = new ArrayList<>(netResult.epochResults);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return state;
+    }
+
+    /**
+     Restore the training state after setFitParams, before the first batch
+
+     @param state training state of the same checkpoint as the FitParams
+     */
+    public void setTrainState(TrainState state) {
+        try {
+            // optimizer state only applies to the same optimizer
+            String optName = state.optName != null ? state.optName : OptE.SGD.label;
+            if (optName.equals(optimizer.getOptName())) {
+                for (int k = 0; k < convoPoolLayers.size(); k++) {
+                    ConvoLayer convoLayer = convoPoolLayers.get(k).convoLayer;
+                    convoLayer.setMomentumList(toNodes(convoLayer, state.convoMomentumList.get(k)));
+                    if (k < state.convoSecondList.size() && !state.convoSecondList.get(k).isEmpty()) {
+                        convoLayer.setSecondList(toNodes(convoLayer, state.convoSecondList.get(k)));
+                    }
+                }
+                for (int k = 0; k < internalLayers.size(); k++) {
+                    internalLayers.get(k).setV(state.internalVelocityList.get(k));
+                    if (k < state.internalSecondList.size()) {
+                        internalLayers.get(k).setS(state.internalSecondList.get(k));
+                    }
+                }
+                outputLayer.setV(state.outputVelocity);
+                outputLayer.setS(state.outputSecond);
+                // bias state in layer order: convolution, internal, output; none before version 3
+                if (!state.biasVelocityList.isEmpty()) {
+                    int n = 0;
+                    for (ConvoPoolLayer convoPool : convoPoolLayers) {
+                        convoPool.convoLayer.setBiasV(state.biasVelocityList.get(n));
+                        convoPool.convoLayer.setBiasS(state.biasSecondList.get(n));
+                        n++;
+                    }
+                    for (InternalLayer internal : internalLayers) {
+                        internal.setBiasV(state.biasVelocityList.get(n));
+                        internal.setBiasS(state.biasSecondList.get(n));
+                        n++;
+                    }
+                    outputLayer.setBiasV(state.biasVelocityList.get(n));
+                    outputLayer.setBiasS(state.biasSecondList.get(n));
+                }
+                optimizer.setStep(state.optStep);
+            } else {
+                LOG.warning("checkpoint optimizer: " + optName + ", training optimizer: " + optimizer.getOptName()
+                        + ", optimizer state starts from zero");
+            }
+            if (state.summaryResults != null) {
+                netResult.summaryResults = state.summaryResults;
+            }
+            netResult.epochResults = new ArrayList<>(state.epochResults);
+            //
+            epoch = state.epoch;
+            batchSampleBase = state.batchSampleBase;
+            sampleCount = state.sampleCount;
+            numCorrect = state.numCorrect;
+            epochStartCount = state.epochStartCount;
+            epochStartCorrect = state.epochStartCorrect;
+            // time of the resumed epoch counts from here
+            epochStartNanos = System.nanoTime();
+            feeder.setPosition(epoch, batchSampleBase, sampleCount, state.sampleOrder);
+            LOG.info("resumed at epoch: " + (epoch + 1) + ", epoch samples: " + batchSampleBase
+                    + ", total samples: " + sampleCount);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     Group a flat list of per-filter matrices by filter row, the shape of the filter list
+     */
+    private static List<MomentumNode> toNodes(ConvoLayer convoLayer, List<Matrix> matrixList) {
+        List<MomentumNode> nodeList = new ArrayList<>();
+        int n = 0;
+        for (ConvoNode filterRow : convoLayer.getFilterList()) {
+            MomentumNode node = new MomentumNode();
+            for (int i = 0; i < filterRow.size(); i++) {
+                node.add(matrixList.get(n++));
+            }
+            nodeList.add(node);
+        }
+        return nodeList;
+    }
+
+    /**
+     Copy a state matrix, null if the layer has none
+     */
+    private static Matrix copy(Matrix m) {
+        return m != null ? new Matrix(m) : null;
+    }
+
+    /**
+     Record results of the completed epoch, and start the next epoch, if any.
+     The feeder reshuffles the sample order for the next epoch.
+     */
+    private void endEpoch() {
+        try {
+            double seconds = (System.nanoTime() - epochStartNanos) / 1.0E9;
+            int samples = sampleCount - epochStartCount;
+            int correct = numCorrect - epochStartCorrect;
+            double epochAccuracy = samples > 0 ? ((double) correct / samples) * 100.0 : 0.0;
+            EpochR epochR = new EpochR(epoch, samples, correct, epochAccuracy, seconds,
+                    samples / Math.max(seconds, 1.0E-9));
+            netResult.epochResults.add(epochR);
+            LOG.info("epoch completed: " + epochR);
+            if (epoch + 1 < numEpochs) {
+                epoch++;
+                batchSampleBase = 0;
+                epochStartNanos = System.nanoTime();
+                epochStartCount = sampleCount;
+                epochStartCorrect = numCorrect;
             }
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
@@ -540,36 +1007,55 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
             List<Matrix> convoOut = null;
             Matrix internalIn = null;
             Matrix internalOut = null;
-            Instant startConvo = Instant.now();
+            // profiler layer index, in forward order
+            int layer = 0;
+            long start = profiler.start();
             //training forward propagation convo/pool layers
             for (ConvoPoolLayer convoPool : convoPoolLayers) {
                 ConvoLayer convoLayer = convoPool.convoLayer;
                 convoLayer.setDoNow(doNow);
                 // input to ConvoLayer may be xIn or poolOut
+                LayerEvent event = new LayerEvent();
+                event.begin();
                 convoOut = convoLayer.trainForward(poolOut);
+                start = profiler.forward(layer++, start);
+                event.end(convoLayer.getLayerID(), convoLayer.getLayerType(), LayerEvent.TRAIN_FORWARD,
+                        batchIndex, batchSampleCount, poolOut);
                 //
                 PoolLayer poolLayer = convoPool.poolLayer;
+                event = new LayerEvent();
+                event.begin();
                 poolOut = poolLayer.trainForward(convoOut);
+                start = profiler.forward(layer++, start);
+                event.end(poolLayer.getLayerID(), poolLayer.getLayerType(), LayerEvent.TRAIN_FORWARD,
+                        batchIndex, batchSampleCount, convoOut);
             }
-            // time passes
-            Instant endConvo = Instant.now();
-            Duration timeElapsed = Duration.between(startConvo, endConvo);
-            convoTime += timeElapsed.toSeconds();
 
             // concatenate poolOut matrix list to a single matrix for the internal layer
             internalIn = MTX.listToSingleCol(poolOut);
             // in case there is no InternalLayer, init internalOut
             internalOut = internalIn;
             //
+            start = profiler.start();
             for (InternalLayer internalLayer : internalLayers) {
                 internalLayer.setDoNow(doNow);
+                LayerEvent event = new LayerEvent();
+                event.begin();
                 internalOut = internalLayer.trainForward(internalIn);
+                start = profiler.forward(layer++, start);
+                event.end(internalLayer.getLayerID(), internalLayer.getLayerType(), LayerEvent.TRAIN_FORWARD,
+                        batchIndex, batchSampleCount, internalIn);
                 internalIn = internalOut;
             }
      //       internalOut.checkNaN("internalOut");
             //
             outputLayer.setDoNow(doNow);
+            LayerEvent event = new LayerEvent();
+            event.begin();
             Matrix finalOut = outputLayer.trainForward(internalOut);
+            profiler.forward(layer, start);
+            event.end(outputLayer.getLayerID(), outputLayer.getLayerType(), LayerEvent.TRAIN_FORWARD,
+                    batchIndex, batchSampleCount, internalOut);
 
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
@@ -577,6 +1063,24 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
         }
     }
 
+    /**
+     Prepare the layer profiler: convolution and pool layers, internal layers, then the output layer
+
+     @return layer profiler
+     */
+    private LayerProfiler prepProfiler() {
+        List<String> names = new ArrayList<>();
+        for (int k = 1; k <= convoPoolLayers.size(); k++) {
+            names.add("Convo " + k);
+            names.add("Pool " + k);
+        }
+        for (int k = 1; k <= internalLayers.size(); k++) {
+            names.add("Internal " + k);
+        }
+        names.add("Output");
+        return new LayerProfiler(names, config.generalConfig.profileLayerAlloc);
+    }
+
     /**
      Prepare back prop parameters
      */
@@ -584,10 +1088,10 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
         try {
             // etaSchedule: gradient descent rate schedule
             rateModel = config.backPropConfig.rateModel;
-            // lambda: L2 regularization parameter
-            lambda = config.backPropConfig.lambda;
-            // mu:  momentum parameter
-            mu = config.backPropConfig.mu;
+            // optimizer with lambda: L2 regularization parameter, mu: momentum parameter
+            // update time is charged to each layer by the profiler
+            optimizer = profiler.wrap(OptimizerFactory.getOptimizer(config.backPropConfig));
+            LOG.info("optimizer: " + optimizer.getOptName());
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
             throw new RuntimeException(ex);
@@ -601,14 +1105,27 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
     public void backProp(boolean batchCompleted) {
         try {
             //
-            double eta = nextEta();
+            eta = nextEta();
+            if (batchCompleted) {
+                // layers update weights on this call
+                optimizer.nextStep();
+            }
             //
             outputLayer.setEta(eta);
-            outputLayer.setLambda(lambda);
-            outputLayer.setMu(mu);
+            outputLayer.setOptimizer(optimizer);
+            // profiler layer index, in forward order
+            int layer = 2 * convoPoolLayers.size() + internalLayers.size();
+            // batchSampleCount is already counted for this sample
+            int batchSample = batchSampleCount - 1;
+            LayerEvent event = new LayerEvent();
+            event.begin();
+            long start = profiler.startBackward(layer);
             // dLdZ : batch loss function
             Matrix dLdZ = outputLayer.lossFn();
             Matrix dLdXOutput = outputLayer.backProp(dLdZ, batchCompleted);
+            profiler.backward(layer, start);
+            event.end(outputLayer.getLayerID(), outputLayer.getLayerType(), LayerEvent.BACK_PROP,
+                    batchIndex, batchSample, dLdZ);
             //
             Matrix dLdXInternal = dLdXOutput;
             //
@@ -619,9 +1136,15 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
                 while (internalIter.hasPrevious()) {
                     internalLayer = internalIter.previous();
                     internalLayer.setEta(eta);
-                    internalLayer.setLambda(lambda);
-                    internalLayer.setMu(mu);
+                    internalLayer.setOptimizer(optimizer);
+                    event = new LayerEvent();
+                    event.begin();
+                    Matrix dLdYInternal = dLdXInternal;
+                    start = profiler.startBackward(--layer);
                     dLdXInternal = internalLayer.backProp(dLdXInternal, batchCompleted);
+                    profiler.backward(layer, start);
+                    event.end(internalLayer.getLayerID(), internalLayer.getLayerType(), LayerEvent.BACK_PROP,
+                            batchIndex, batchSample, dLdYInternal);
                 }
             }
             //
@@ -639,13 +1162,24 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
                     convoPool = convoPoolIter.previous();
                     //
                     poolLayer = convoPool.poolLayer;
+                    event = new LayerEvent();
+                    event.begin();
+                    start = profiler.startBackward(--layer);
                     List<Matrix> dLdXPool = poolLayer.backProp(dLdXList);
+                    profiler.backward(layer, start);
+                    event.end(poolLayer.getLayerID(), poolLayer.getLayerType(), LayerEvent.BACK_PROP,
+                            batchIndex, batchSample, dLdXList);
                     //
                     ConvoLayer convoLayer = convoPool.convoLayer;
                     convoLayer.setEta(eta);
-                    convoLayer.setLambda(lambda);
-                    convoLayer.setMu(mu);
+                    convoLayer.setOptimizer(optimizer);
+                    event = new LayerEvent();
+                    event.begin();
+                    start = profiler.startBackward(--layer);
                     List<Matrix> dLdXConvo = convoLayer.backProp(dLdXPool, batchCompleted);
+                    profiler.backward(layer, start);
+                    event.end(convoLayer.getLayerID(), convoLayer.getLayerType(), LayerEvent.BACK_PROP,
+                            batchIndex, batchSample, dLdXPool);
                     // reset poolLayer backprop input
                     dLdXList = dLdXConvo;
                 }
@@ -679,6 +1213,11 @@ public class ConvoNetTrain extends ConvoNetBase implements ConvoNetI {
         return eta;
     }
 
+    /**
+     Get the forward time of the convolution and pool layers
+
+     @return nanoseconds
+     */
     public long getConvoTime() {
         return convoTime;
     }
@@ -0,0 +1,206 @@
+package datasci.backend.control;
+
+/*
+
+  Copyright 2022 Ronald Cook
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+import datasci.backend.model.LayerTimeR;
+import datasci.backend.model.Matrix;
+import datasci.backend.optimizers.OptimizerI;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ Per-layer training time: forward, backward and weight update nanoseconds, with call counts.
+
+ The trainer reads System.nanoTime around each layer call and hands over the start time, so
+ the cost is one clock read per call and a few array adds. Weight update time is measured by
+ wrapping the optimizer, and is taken out of the backward time of the layer being updated.
+ With allocation counting on, the bytes allocated by the training thread in each layer are
+ also recorded, at the cost of reading the thread allocation counter per call.
+ Used by the training thread only.
+ */
+public class LayerProfiler {
+
+    // layer names, in forward order
+    private final String[] names;
+    private final long[] forwardNanos;
+    private final long[] forwardCount;
+    private final long[] backwardNanos;
+    private final long[] backwardCount;
+    private final long[] updateNanos;
+    private final long[] updateCount;
+    private final boolean countAlloc;
+    private final long[] allocatedBytes;
+    // thread allocated bytes at the start of the current call
+    private long startBytes;
+    // layer in backward, charged for optimizer updates
+    private int current = -1;
+    private long currentUpdateNanos;
+
+    /**
+     Instantiates a new layer profiler.
+
+     @param names      layer names, in forward order
+     @param countAlloc true to record allocated bytes per layer
+     */
+    public LayerProfiler(List<String> names, boolean countAlloc) {
+        this.names = names.toArray(new String[0]);
+        int n = this.names.length;
+        forwardNanos = new long[n];
+        forwardCount = new long[n];
+        backwardNanos = new long[n];
+        backwardCount = new long[n];
+        updateNanos = new long[n];
+        updateCount = new long[n];
+        this.countAlloc = countAlloc;
+        allocatedBytes = new long[n];
+    }
+
+    /**
+     Start the first of a sequence of forward calls
+
+     @return System.nanoTime now
+     */
+    public long start() {
+        if (countAlloc) {
+            startBytes = AllocTelemetry.threadAllocatedBytes();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     Record a forward call
+
+     @param layer layer index
+     @param start System.nanoTime at the start of the call
+     @return System.nanoTime now, the start of the next call
+     */
+    public long forward(int layer, long start) {
+        long now = System.nanoTime();
+        forwardNanos[layer] += now - start;
+        forwardCount[layer]++;
+        if (countAlloc) {
+            long bytes = AllocTelemetry.threadAllocatedBytes();
+            allocatedBytes[layer] += bytes - startBytes;
+            startBytes = bytes;
+        }
+        return now;
+    }
+
+    /**
+     Start a backward call; optimizer updates until the matching backward are charged to this layer
+
+     @param layer layer index
+     @return System.nanoTime now
+     */
+    public long startBackward(int layer) {
+        current = layer;
+        currentUpdateNanos = updateNanos[layer];
+        return start();
+    }
+
+    /**
+     Record a backward call, less its optimizer updates
+
+     @param layer layer index
+     @param start System.nanoTime at the start of the call
+     */
+    public void backward(int layer, long start) {
+        long update = updateNanos[layer] - currentUpdateNanos;
+        backwardNanos[layer] += System.nanoTime() - start - update;
+        backwardCount[layer]++;
+        if (countAlloc) {
+            allocatedBytes[layer] += AllocTelemetry.threadAllocatedBytes() - startBytes;
+        }
+        if (update > 0) {
+            // one weight update per layer per batch
+            updateCount[layer]++;
+        }
+        current = -1;
+    }
+
+    /**
+     Wrap an optimizer, so its update time is charged to the layer in backward
+
+     @param optimizer optimizer
+     @return timed optimizer
+     */
+    public OptimizerI wrap(OptimizerI optimizer) {
+        return new OptimizerI() {
+            public String getOptName() {
+                return optimizer.getOptName();
+            }
+
+            public boolean hasSecondMoment() {
+                return optimizer.hasSecondMoment();
+            }
+
+            public boolean updatesBias() {
+                return optimizer.updatesBias();
+            }
+
+            public void nextStep() {
+                optimizer.nextStep();
+            }
+
+            public long getStep() {
+                return optimizer.getStep();
+            }
+
+            public void setStep(long step) {
+                optimizer.setStep(step);
+            }
+
+            public void update(Matrix dLdW, double gradScale, double eta, Matrix w, Matrix v, Matrix s) {
+                long start = System.nanoTime();
+                optimizer.update(dLdW, gradScale, eta, w, v, s);
+                if (current >= 0) {
+                    updateNanos[current] += System.nanoTime() - start;
+                }
+            }
+        };
+    }
+
+    /**
+     Get the times and counts since training started
+
+     @return one record per layer, in forward order
+     */
+    public List<LayerTimeR> getLayerTimes() {
+        List<LayerTimeR> layerTimes = new ArrayList<>(names.length);
+        for (int k = 0; k < names.length; k++) {
+            layerTimes.add(new LayerTimeR(names[k], forwardNanos[k], forwardCount[k], backwardNanos[k],
+                    backwardCount[k], updateNanos[k], updateCount[k], allocatedBytes[k]));
+        }
+        return layerTimes;
+    }
+
+    /**
+     Get the total forward time of the convolution and pool layers
+
+     @param numConvoPool number of convolution and pool layer pairs, the first layers
+     @return nanoseconds
+     */
+    public long getConvoNanos(int numConvoPool) {
+        long nanos = 0;
+        for (int k = 0; k < 2 * numConvoPool; k++) {
+            nanos += forwardNanos[k];
+        }
+        return nanos;
+    }
+}  // end class
@@ -0,0 +1,259 @@
+package datasci.backend.control;
+
+/*
+
+  Copyright 2022 Ronald Cook
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import datasci.backend.model.EvaluationR;
+import datasci.backend.model.FileUtil;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.JsonUtil;
+import datasci.backend.model.MappedModel;
+import datasci.backend.model.ModelRegistry;
+import datasci.backend.model.NetConfig;
+import datasci.backend.model.NetResult;
+import datasci.backend.model.ProgressR;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ Headless command line runner: trains or tests a network configuration without the JavaFX
+ user interface, e.g. for batch jobs on servers. It uses only backend classes, so the headless
+ jar runs it with no JavaFX on the class path:
+
+ java -jar fxconvonet-headless.jar --config config/configA1-Step-s10000-b20-c20-c50-i300-o10.json
+ --fit-params-out model.cnfp
+
+ Options: --config (NetConfig json, required), --mode (train or test, default train),
+ --fit-params-in (FitParams to start training from, required to test: binary, delta or json),
+ --fit-params-out (trained FitParams, binary for the binary extension, otherwise json),
+ --threads (image decode and augment threads, default one per processor for decoding and a core
+ less for augmenting; also sizes the common pool if it is not yet in use),
+ --report-interval (seconds between progress lines, default 10), --format (text or json lines).
+
+ Progress goes to standard output, one line for each interval and a last line at the end;
+ logging goes to standard error. The exit status is 0 on success, 1 on failure and 2 for
+ invalid arguments.
+ */
+public class NetRunner {
+
+    private static final Logger LOG = Logger.getLogger(NetRunner.class.getName());
+    public static final String TRAIN = "train";
+    public static final String TEST = "test";
+    public static final String TEXT = "text";
+    public static final String JSON = "json";
+    // system property of the common fork join pool size, read only when the pool is first used
+    private static final String PARALLELISM = "java.util.concurrent.ForkJoinPool.common.parallelism";
+
+    public String configFile;
+    public String mode = TRAIN;
+    public String fitParamsIn;
+    public String fitParamsOut;
+    // threads: zero for the default
+    public int threads;
+    public double reportInterval = 10.0;
+    public String format = TEXT;
+    // out: progress output
+    public PrintStream out = System.out;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public NetRunner() {
+    }
+
+    public static void main(String[] args) {
+        NetRunner runner = new NetRunner();
+        try {
+            runner.parseArgs(args);
+        } catch (Exception ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("usage: --config FILE [--mode train|test] [--fit-params-in FILE] [--fit-params-out FILE]"
+                    + " [--threads N] [--report-interval SECONDS] [--format text|json]");
+            System.exit(2);
+        }
+        try {
+            runner.run();
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            System.exit(1);
+        }
+    }
+
+    /**
+     Set options from command line arguments, option then value
+
+     @param args command line arguments
+     */
+    public void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for option: " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--config" -> configFile = value;
+                case "--mode" -> mode = value.toLowerCase();
+                case "--fit-params-in" -> fitParamsIn = value;
+                case "--fit-params-out" -> fitParamsOut = value;
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--report-interval" -> reportInterval = Double.parseDouble(value);
+                case "--format" -> format = value.toLowerCase();
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if (configFile == null) {
+            throw new IllegalArgumentException("Missing option: --config");
+        }
+        if (!mode.equals(TRAIN) && !mode.equals(TEST)) {
+            throw new IllegalArgumentException("Invalid mode: " + mode);
+        }
+        if (mode.equals(TEST) && fitParamsIn == null) {
+            throw new IllegalArgumentException("Missing option for test mode: --fit-params-in");
+        }
+        if (!format.equals(TEXT) && !format.equals(JSON)) {
+            throw new IllegalArgumentException("Invalid format: " + format);
+        }
+    }
+
+    /**
+     Run the network over all samples of the configuration, reporting progress
+
+     @return network results; for training, with the trained FitParams
+     */
+    public NetResult run() {
+        NetResult netResult = new NetResult();
+        try {
+            if (threads > 0) {
+                // no effect if the common pool is already in use
+                System.setProperty(PARALLELISM, Integer.toString(threads));
+            }
+            NetConfig config;
+            try (InputStream src = FileUtil.getInputStream(new File(configFile))) {
+                config = JsonUtil.jsonToConfig(src);
+            }
+            if (threads > 0) {
+                // decode and augment pools take the thread count explicitly
+                config.generalConfig.threads = threads;
+            }
+            LOG.info("mode: " + mode + ", config: " + configFile + ", threads: " + config.generalConfig.threads
+                    + ", common pool: " + ForkJoinPool.getCommonPoolParallelism());
+            ConvoNetI net;
+            File modelFile = fitParamsIn != null ? new File(fitParamsIn) : null;
+            if (mode.equals(TEST) && modelFile != null && FitParamsBinary.isBinary(modelFile)) {
+                // scoring a binary model: weights read in place from the mapped file, not loaded to the heap
+                net = new ConvoNetTest(netResult, config, MappedModel.open(modelFile));
+            } else {
+                if (modelFile != null) {
+                    netResult.fitParams = ModelRegistry.read(modelFile);
+                }
+                net = mode.equals(TRAIN) ? new ConvoNetTrain(netResult, config) : new ConvoNetTest(netResult, config);
+            }
+            try {
+                int totalSamples = net.getTotalSamples();
+                int batchSize = Math.max(net.getBatchSize(), 1);
+                long intervalNanos = (long) (reportInterval * 1.0E9);
+                long reportNanos = System.nanoTime();
+                int reportSamples = 0;
+                ProgressR progress = null;
+                for (int samples = 0; samples + batchSize <= totalSamples; samples += batchSize) {
+                    net.fitBatch();
+                    long now = System.nanoTime();
+                    if (now - reportNanos >= intervalNanos) {
+                        progress = progress(net, totalSamples, reportSamples, now - reportNanos);
+                        report(progress);
+                        reportNanos = now;
+                        reportSamples = progress.samplesCompleted();
+                    }
+                }
+                long now = System.nanoTime();
+                if (progress == null || progress.samplesCompleted() < net.evaluate().sampleCount()) {
+                    report(progress(net, totalSamples, reportSamples, now - reportNanos));
+                }
+                if (mode.equals(TRAIN)) {
+                    netResult.fitParams = net.createFitParams();
+                    if (fitParamsOut != null) {
+                        writeFitParams(netResult.fitParams, new File(fitParamsOut));
+                    }
+                }
+            } finally {
+                net.close();
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return netResult;
+    }
+
+    /**
+     Get the progress so far, with the throughput since the last report
+     */
+    private ProgressR progress(ConvoNetI net, int totalSamples, int reportSamples, long nanos) {
+        EvaluationR eval = net.evaluate();
+        int samples = eval.sampleCount();
+        double samplesPerSec = nanos > 0 ? (samples - reportSamples) * 1.0E9 / nanos : 0.0;
+        double remaining = samplesPerSec > 0.0 ? Math.max(totalSamples - samples, 0) / samplesPerSec : 0.0;
+        NetResult netResult = net.getNetResult();
+        double bytesPerSample = netResult.allocStats != null ? netResult.allocStats.bytesPerSample() : 0.0;
+        return new ProgressR(System.currentTimeMillis(), mode, eval.epoch(), samples, totalSamples,
+                percent(eval.numCorrect(), samples), percent(eval.batchNumCorrect(), eval.batchSampleCount()),
+                samplesPerSec, remaining, bytesPerSample);
+    }
+
+    private static double percent(int correct, int samples) {
+        return samples > 0 ? correct * 100.0 / samples : 0.0;
+    }
+
+    /**
+     Print one progress line, text or json
+     */
+    private void report(ProgressR p) throws Exception {
+        if (format.equals(JSON)) {
+            out.println(mapper.writeValueAsString(p));
+        } else {
+            long seconds = Math.round(p.remainingSeconds());
+            out.println(String.format("%s epoch %d, samples %d of %d (%.1f %%), accuracy %.2f %%, batch accuracy %.2f %%,"
+                            + " %.1f samples/s, remaining %d:%02d:%02d, alloc %.1f KB/sample",
+                    p.mode(), p.epoch() + 1, p.samplesCompleted(), p.totalSamples(),
+                    percent(p.samplesCompleted(), p.totalSamples()), p.accuracy(), p.batchAccuracy(),
+                    p.samplesPerSec(), seconds / 3600, seconds / 60 % 60, seconds % 60, p.bytesPerSample() / 1024.0));
+        }
+        out.flush();
+    }
+
+    /**
+     Write FitParams: binary for the binary extension, otherwise json
+     */
+    private static void writeFitParams(FitParams fitParams, File file) throws Exception {
+        if (FitParamsBinary.isBinaryName(file)) {
+            FitParamsBinary.write(fitParams, file);
+        } else {
+            try (OutputStream fos = FileUtil.getOutputStream(file)) {
+                JsonUtil.FitParamsToJson(fitParams, fos);
+            }
+        }
+        LOG.info("write FitParams: " + file + ", bytes: " + file.length());
+    }
+}  // end class
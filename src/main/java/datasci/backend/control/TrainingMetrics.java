@@ -0,0 +1,289 @@
+package datasci.backend.control;
+
+/*
+
+  Copyright 2022 Ronald Cook
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+import datasci.backend.model.AllocStatsR;
+import datasci.backend.model.CheckpointStatsR;
+import datasci.backend.model.LayerTimeR;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ Training progress and health, registered as a platform MBean, so headless runs can be scraped
+ over JMX, e.g. with jconsole or a JMX exporter, under the object name datasci:type=TrainingMetrics.
+
+ The training thread publishes an immutable snapshot after each batch with one volatile write;
+ readers only read the latest snapshot, so fitBatch never waits on a lock or on a JMX client.
+ Heap use is read when asked. There is one shared instance: with several networks training at
+ once, it shows the last batch of any of them.
+ */
+public class TrainingMetrics implements TrainingMetricsMXBean {
+
+    private static final Logger LOG = Logger.getLogger(TrainingMetrics.class.getName());
+    public static final String OBJECT_NAME = "datasci:type=TrainingMetrics";
+    // weight of the latest batch in the throughput average
+    public static final double EWMA_ALPHA = 0.2;
+    private static final TrainingMetrics INSTANCE = new TrainingMetrics();
+
+    /**
+     Values after one batch
+     */
+    private record SnapshotR(boolean running, int epoch, long samplesCompleted, long totalSamples,
+                             double samplesPerSec, double eta, double batchAccuracy, double accuracy,
+                             long batchNanos, AllocStatsR alloc, List<LayerTimeR> layers) {
+    }
+
+    private volatile SnapshotR snapshot = new SnapshotR(false, 0, 0, 0, 0.0, 0.0, 0.0, 0.0, 0, null, List.of());
+    // checkpoint pauses, published after each checkpoint snapshot
+    private volatile CheckpointStatsR checkpoints = new CheckpointStatsR(0, 0, 0);
+    // written by the training thread only
+    private long lastNanos;
+    private long lastSamples;
+
+    public TrainingMetrics() {
+    }
+
+    static {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (Exception ex) {
+            // metrics are optional, training carries on without them
+            LOG.log(Level.WARNING, "cannot register training metrics: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     Get the shared instance, registered with the platform MBean server
+
+     @return training metrics
+     */
+    public static TrainingMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     Start a training run, from the training thread
+
+     @param samplesCompleted samples already completed, e.g. when resuming
+     @param totalSamples     samples over all epochs
+     */
+    public void start(long samplesCompleted, long totalSamples) {
+        lastNanos = System.nanoTime();
+        lastSamples = samplesCompleted;
+        snapshot = new SnapshotR(true, 0, samplesCompleted, totalSamples, 0.0, 0.0, 0.0, 0.0, lastNanos,
+                null, List.of());
+        checkpoints = new CheckpointStatsR(0, 0, 0);
+    }
+
+    /**
+     Publish the values after a batch, from the training thread
+
+     @param epoch            current epoch
+     @param samplesCompleted samples over all epochs
+     @param numCorrect       correct samples over all epochs
+     @param totalSamples     samples over all epochs
+     @param batchSamples     samples of the batch
+     @param batchCorrect     correct samples of the batch
+     @param eta              gradient descent rate of the batch
+     @param alloc            allocation of all batches, or null
+     @param layers           time of each layer since training started
+     */
+    public void batch(int epoch, long samplesCompleted, long numCorrect, long totalSamples, int batchSamples,
+                      int batchCorrect, double eta, AllocStatsR alloc, List<LayerTimeR> layers) {
+        long now = System.nanoTime();
+        SnapshotR prev = snapshot;
+        double rate = now > lastNanos ? (samplesCompleted - lastSamples) * 1.0E9 / (now - lastNanos) : 0.0;
+        double samplesPerSec = prev.samplesPerSec() > 0.0
+                ? prev.samplesPerSec() + EWMA_ALPHA * (rate - prev.samplesPerSec()) : rate;
+        lastNanos = now;
+        lastSamples = samplesCompleted;
+        snapshot = new SnapshotR(true, epoch, samplesCompleted, totalSamples, samplesPerSec, eta,
+                percent(batchCorrect, batchSamples), percent(numCorrect, samplesCompleted), now, alloc, layers);
+    }
+
+    /**
+     Publish the checkpoint pauses after a snapshot, from the training thread
+
+     @param stats checkpoint pauses of the run so far
+     */
+    public void checkpoint(CheckpointStatsR stats) {
+        checkpoints = stats;
+    }
+
+    /**
+     End the training run, from the training thread; the last values are kept
+     */
+    public void stop() {
+        SnapshotR s = snapshot;
+        snapshot = new SnapshotR(false, s.epoch(), s.samplesCompleted(), s.totalSamples(), s.samplesPerSec(),
+                s.eta(), s.batchAccuracy(), s.accuracy(), s.batchNanos(), s.alloc(), s.layers());
+    }
+
+    private static double percent(long correct, long samples) {
+        return samples > 0 ? correct * 100.0 / samples : 0.0;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return snapshot.running();
+    }
+
+    @Override
+    public int getEpoch() {
+        return snapshot.epoch();
+    }
+
+    @Override
+    public long getSamplesCompleted() {
+        return snapshot.samplesCompleted();
+    }
+
+    @Override
+    public long getTotalSamples() {
+        return snapshot.totalSamples();
+    }
+
+    @Override
+    public double getSamplesPerSec() {
+        return snapshot.samplesPerSec();
+    }
+
+    @Override
+    public double getEta() {
+        return snapshot.eta();
+    }
+
+    @Override
+    public double getBatchAccuracy() {
+        return snapshot.batchAccuracy();
+    }
+
+    @Override
+    public double getAccuracy() {
+        return snapshot.accuracy();
+    }
+
+    @Override
+    public double getRemainingSeconds() {
+        SnapshotR s = snapshot;
+        if (s.samplesPerSec() <= 0.0) {
+            return -1.0;
+        }
+        return Math.max(s.totalSamples() - s.samplesCompleted(), 0) / s.samplesPerSec();
+    }
+
+    @Override
+    public double getSecondsSinceLastBatch() {
+        SnapshotR s = snapshot;
+        return s.batchNanos() != 0 ? (System.nanoTime() - s.batchNanos()) / 1.0E9 : -1.0;
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return heap().getUsed();
+    }
+
+    @Override
+    public long getHeapMaxBytes() {
+        return heap().getMax();
+    }
+
+    private static MemoryUsage heap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    }
+
+    @Override
+    public double getAllocBytesPerSample() {
+        AllocStatsR alloc = snapshot.alloc();
+        return alloc != null ? alloc.bytesPerSample() : 0.0;
+    }
+
+    @Override
+    public double getGcPercent() {
+        AllocStatsR alloc = snapshot.alloc();
+        return alloc != null ? alloc.gcPercent() : 0.0;
+    }
+
+    @Override
+    public int getCheckpointSnapshots() {
+        return checkpoints.snapshots();
+    }
+
+    @Override
+    public double getCheckpointPauseMillis() {
+        return checkpoints.pauseMillis();
+    }
+
+    @Override
+    public double getCheckpointMaxPauseMillis() {
+        return checkpoints.maxPauseMillis();
+    }
+
+    @Override
+    public String[] getLayerNames() {
+        List<LayerTimeR> layers = snapshot.layers();
+        String[] names = new String[layers.size()];
+        for (int k = 0; k < names.length; k++) {
+            names[k] = layers.get(k).layer();
+        }
+        return names;
+    }
+
+    @Override
+    public double[] getLayerForwardMicros() {
+        List<LayerTimeR> layers = snapshot.layers();
+        double[] micros = new double[layers.size()];
+        for (int k = 0; k < micros.length; k++) {
+            LayerTimeR t = layers.get(k);
+            micros[k] = t.forwardNanos() / 1.0E3 / Math.max(t.forwardCount(), 1);
+        }
+        return micros;
+    }
+
+    @Override
+    public double[] getLayerBackwardMicros() {
+        List<LayerTimeR> layers = snapshot.layers();
+        double[] micros = new double[layers.size()];
+        for (int k = 0; k < micros.length; k++) {
+            LayerTimeR t = layers.get(k);
+            micros[k] = t.backwardNanos() / 1.0E3 / Math.max(t.backwardCount(), 1);
+        }
+        return micros;
+    }
+
+    @Override
+    public double[] getLayerUpdateMicros() {
+        List<LayerTimeR> layers = snapshot.layers();
+        double[] micros = new double[layers.size()];
+        for (int k = 0; k < micros.length; k++) {
+            LayerTimeR t = layers.get(k);
+            micros[k] = t.updateNanos() / 1.0E3 / Math.max(t.updateCount(), 1);
+        }
+        return micros;
+    }
+}  // end class
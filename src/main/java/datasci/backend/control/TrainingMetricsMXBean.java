@@ -0,0 +1,76 @@
+package datasci.backend.control;
+
+/*
+
+  Copyright 2022 Ronald Cook
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+
+/**
+ Training progress and health attributes of the TrainingMetrics platform MBean
+ */
+public interface TrainingMetricsMXBean {
+
+    // true from the first batch until training closes
+    boolean isRunning();
+
+    int getEpoch();
+
+    long getSamplesCompleted();
+
+    long getTotalSamples();
+
+    // throughput, exponentially weighted over recent batches
+    double getSamplesPerSec();
+
+    // gradient descent rate of the last batch
+    double getEta();
+
+    // percent correct of the last batch
+    double getBatchAccuracy();
+
+    // percent correct over all samples so far
+    double getAccuracy();
+
+    // remaining samples at the current throughput, -1 before the first batch
+    double getRemainingSeconds();
+
+    // seconds since the last batch completed or training started, -1 before training starts
+    double getSecondsSinceLastBatch();
+
+    long getHeapUsedBytes();
+
+    long getHeapMaxBytes();
+
+    // allocation of the training thread and garbage collection share of the wall time, all batches
+    double getAllocBytesPerSample();
+
+    double getGcPercent();
+
+    // training pauses to snapshot checkpoints: count, total and longest pause
+    int getCheckpointSnapshots();
+
+    double getCheckpointPauseMillis();
+
+    double getCheckpointMaxPauseMillis();
+
+    // per-layer average time, forward order: microseconds per call, update microseconds per batch
+    String[] getLayerNames();
+
+    double[] getLayerForwardMicros();
+
+    double[] getLayerBackwardMicros();
+
+    double[] getLayerUpdateMicros();
+}
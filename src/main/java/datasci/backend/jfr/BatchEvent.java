@@ -0,0 +1,69 @@
+package datasci.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one batch of training or testing samples.
+ * <p>
+ * Disabled unless a recording enables it, e.g. with the training.jfc settings.
+ */
+@Name("datasci.Batch")
+@Label("Batch")
+@Category({"ConvoNet", "Training"})
+@Description("One batch of samples through the network")
+@Enabled(false)
+@StackTrace(false)
+public class BatchEvent extends Event {
+
+    public static final String TRAIN = "train";
+    public static final String TEST = "test";
+
+    @Label("Network")
+    @Description("train or test")
+    public String network;
+
+    @Label("Epoch")
+    public int epoch;
+
+    @Label("Batch Index")
+    public long batchIndex;
+
+    @Label("Batch Size")
+    public int batchSize;
+
+    @Label("Sample Count")
+    @Description("Samples completed, over all epochs")
+    public long sampleCount;
+
+    @Label("Batch Correct")
+    @Description("Correct predictions in the batch")
+    public int batchCorrect;
+
+    /**
+     * End the event and commit it if recording
+     *
+     * @param network      TRAIN or TEST
+     * @param epoch        epoch index
+     * @param batchIndex   batch index, over all epochs
+     * @param batchSize    samples in the batch
+     * @param sampleCount  samples completed, over all epochs
+     * @param batchCorrect correct predictions in the batch
+     */
+    public void end(String network, int epoch, long batchIndex, int batchSize, long sampleCount, int batchCorrect) {
+        if (shouldCommit()) {
+            this.network = network;
+            this.epoch = epoch;
+            this.batchIndex = batchIndex;
+            this.batchSize = batchSize;
+            this.sampleCount = sampleCount;
+            this.batchCorrect = batchCorrect;
+            commit();
+        }
+    }
+}  //end class
@@ -0,0 +1,56 @@
+package datasci.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for loading image data: one class, or a whole data set.
+ * <p>
+ * Disabled unless a recording enables it, e.g. with the training.jfc settings.
+ */
+@Name("datasci.DataLoad")
+@Label("Data Load")
+@Category({"ConvoNet", "Data"})
+@Description("Image files read and decoded")
+@Enabled(false)
+@StackTrace(false)
+public class DataLoadEvent extends Event {
+
+    @Label("Directory")
+    public String directory;
+
+    @Label("Class Index")
+    @Description("Data class loaded, -1 for all classes")
+    public int classIndex;
+
+    @Label("Files")
+    @Description("Files requested")
+    public int numFiles;
+
+    @Label("Samples")
+    @Description("Samples loaded")
+    public int numLoaded;
+
+    /**
+     * End the event and commit it if recording
+     *
+     * @param directory  image directory
+     * @param classIndex data class loaded, -1 for all classes
+     * @param numFiles   files requested
+     * @param numLoaded  samples loaded
+     */
+    public void end(String directory, int classIndex, int numFiles, int numLoaded) {
+        if (shouldCommit()) {
+            this.directory = directory;
+            this.classIndex = classIndex;
+            this.numFiles = numFiles;
+            this.numLoaded = numLoaded;
+            commit();
+        }
+    }
+}  //end class
@@ -0,0 +1,77 @@
+package datasci.backend.jfr;
+
+import datasci.backend.model.FitParams;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.io.File;
+
+/**
+ * Flight recorder event for one FitParams import or export.
+ * <p>
+ * Disabled unless a recording enables it, e.g. with the training.jfc settings.
+ */
+@Name("datasci.FitParamsIO")
+@Label("FitParams IO")
+@Category({"ConvoNet", "Data"})
+@Description("FitParams read, written or mapped")
+@Enabled(false)
+@StackTrace(false)
+public class FitParamsIOEvent extends Event {
+
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+    public static final String MAP = "map";
+    //
+    public static final String BINARY = "binary";
+    public static final String DELTA = "delta";
+    public static final String JSON = "json";
+
+    @Label("Operation")
+    @Description("read, write or map")
+    public String operation;
+
+    @Label("Format")
+    @Description("binary, delta or json")
+    public String format;
+
+    @Label("Path")
+    @Description("File path, null for a stream")
+    public String path;
+
+    @Label("File Bytes")
+    @Description("Bytes read or written, 0 if unknown")
+    @DataAmount
+    public long fileBytes;
+
+    @Label("Value Bytes")
+    @Description("Bytes of weight and bias values")
+    @DataAmount
+    public long valueBytes;
+
+    /**
+     * End the event and commit it if recording
+     *
+     * @param operation READ, WRITE or MAP
+     * @param format    BINARY, DELTA or JSON
+     * @param file      file read or written, null for a stream
+     * @param fileBytes bytes read or written, 0 if unknown
+     * @param fitParams FitParams read or written, may be null
+     */
+    public void end(String operation, String format, File file, long fileBytes, FitParams fitParams) {
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.format = format;
+            this.path = file != null ? file.getPath() : null;
+            this.fileBytes = fileBytes;
+            this.valueBytes = fitParams != null ? fitParams.valueBytes() : 0;
+            commit();
+        }
+    }
+}  //end class
@@ -0,0 +1,91 @@
+package datasci.backend.jfr;
+
+import datasci.backend.layers.LayerE;
+import datasci.backend.model.Matrix;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.List;
+
+/**
+ * Flight recorder event for one layer call on one sample: forward in training or testing,
+ * or back propagation. The input shape is the first input matrix, and the number of matrices.
+ * <p>
+ * Disabled unless a recording enables it, e.g. with the training.jfc settings.
+ */
+@Name("datasci.Layer")
+@Label("Layer")
+@Category({"ConvoNet", "Layer"})
+@Description("One layer call on one sample")
+@Enabled(false)
+@StackTrace(false)
+public class LayerEvent extends Event {
+
+    public static final String TRAIN_FORWARD = "trainForward";
+    public static final String TEST_FORWARD = "testForward";
+    public static final String BACK_PROP = "backProp";
+
+    @Label("Layer ID")
+    public String layerID;
+
+    @Label("Layer Type")
+    public String layerType;
+
+    @Label("Phase")
+    @Description("trainForward, testForward or backProp")
+    public String phase;
+
+    @Label("Batch Index")
+    public long batchIndex;
+
+    @Label("Batch Sample")
+    @Description("Sample index in the batch")
+    public int batchSample;
+
+    @Label("Input Matrices")
+    public int inputCount;
+
+    @Label("Input Rows")
+    public int inputRows;
+
+    @Label("Input Columns")
+    public int inputCols;
+
+    /**
+     * End the event and commit it if recording
+     *
+     * @param layerID     layer ID
+     * @param layerType   layer type
+     * @param phase       TRAIN_FORWARD, TEST_FORWARD or BACK_PROP
+     * @param batchIndex  batch index, over all epochs
+     * @param batchSample sample index in the batch
+     * @param in          layer input: a Matrix or a list of matrices
+     */
+    public void end(String layerID, LayerE layerType, String phase, long batchIndex, int batchSample, Object in) {
+        if (shouldCommit()) {
+            this.layerID = layerID;
+            this.layerType = String.valueOf(layerType);
+            this.phase = phase;
+            this.batchIndex = batchIndex;
+            this.batchSample = batchSample;
+            Matrix first = null;
+            if (in instanceof Matrix m) {
+                inputCount = 1;
+                first = m;
+            } else if (in instanceof List<?> list && !list.isEmpty()) {
+                inputCount = list.size();
+                first = (Matrix) list.get(0);
+            }
+            if (first != null) {
+                inputRows = first.rows;
+                inputCols = first.cols;
+            }
+            commit();
+        }
+    }
+}  //end class
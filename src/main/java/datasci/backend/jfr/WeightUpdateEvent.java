@@ -0,0 +1,54 @@
+package datasci.backend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one weight matrix update by an optimizer.
+ * <p>
+ * Disabled unless a recording enables it, e.g. with the training.jfc settings.
+ */
+@Name("datasci.WeightUpdate")
+@Label("Weight Update")
+@Category({"ConvoNet", "Optimizer"})
+@Description("One weight matrix update")
+@Enabled(false)
+@StackTrace(false)
+public class WeightUpdateEvent extends Event {
+
+    @Label("Optimizer")
+    public String optimizer;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Columns")
+    public int cols;
+
+    @Label("Parallel")
+    @Description("Updated in parallel chunks")
+    public boolean parallel;
+
+    /**
+     * End the event and commit it if recording
+     *
+     * @param optimizer optimizer label
+     * @param rows      weight matrix rows
+     * @param cols      weight matrix columns
+     * @param parallel  true if updated in parallel chunks
+     */
+    public void end(String optimizer, int rows, int cols, boolean parallel) {
+        if (shouldCommit()) {
+            this.optimizer = optimizer;
+            this.rows = rows;
+            this.cols = cols;
+            this.parallel = parallel;
+            commit();
+        }
+    }
+}  //end class
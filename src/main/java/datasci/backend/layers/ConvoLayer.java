@@ -3,10 +3,11 @@ package datasci.backend.layers;
 import datasci.backend.activations.ActivationI;
 import datasci.backend.model.ConvoNode;
 import datasci.backend.model.MTX;
-import datasci.backend.model.MathUtil;
 import datasci.backend.model.Matrix;
 import datasci.backend.model.MomentumNode;
+import datasci.backend.optimizers.OptimizerI;
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -66,8 +67,9 @@ import java.util.logging.Logger;
  For bias:
  dZ/dB = I
  dL/dB = (dL/dZ)*(dZ/dB) = (dL/dZ)
- Bias correction after each batch from i to i+1:
+ Bias correction after each batch from i to i+1, with SGD:
  B(i + 1) = B(i) + batch ave[dL/dB]
+ Other optimizers update the bias like the filters, with its own state matrices.
 
  //
  Reference:
@@ -103,11 +105,8 @@ public class ConvoLayer {
     //
     // eta: gradient descent rate for back propagation
     private double eta;
-    // lambda: L2 regularization parameter
-    private double lambda;
-    private double oneMinusLambda;
-    // mu:  momentum parameter
-    private double mu;
+    // optimizer: weight update rule with its hyperparameters, shared by all layers
+    private OptimizerI optimizer;
     // dLdXList: backprop derivative to pass to previous layer as dLdY
     private List<Matrix> dLdXList = new ArrayList<>();
     //
@@ -133,6 +132,11 @@ public class ConvoLayer {
     private Matrix batchBias;
     // velocity matrix: same size as filterList, nOut rows, nIn columns
     private List<MomentumNode> momentumList = new ArrayList<>();
+    // second moment matrices: same shape as momentumList, for optimizers which use them, else empty
+    private List<MomentumNode> secondList = new ArrayList<>();
+    // bias state matrices: nOut rows, one column, for optimizers which update biases, else null
+    private Matrix biasV;
+    private Matrix biasS;
     // to reproduce results, use same seed for output layer weights
     private static final long OUTPUT_WT_SEED = 4321;
 
@@ -184,13 +188,8 @@ public class ConvoLayer {
         this.eta = eta;
     }
 
-    public void setLambda(double lambda) {
-        this.lambda = lambda;
-        this.oneMinusLambda = 1.0 - lambda;
-    }
-
-    public void setMu(double mu) {
-        this.mu = mu;
+    public void setOptimizer(OptimizerI optimizer) {
+        this.optimizer = optimizer;
     }
 
     public List<ConvoNode> getFilterList() {
@@ -211,6 +210,62 @@ public class ConvoLayer {
         initMomentumList(filterSize, nOut);
     }
 
+    /**
+     Get velocity matrices, one MomentumNode for each filter row
+     */
+    public List<MomentumNode> getMomentumList() {
+        return momentumList;
+    }
+
+    /**
+     Set velocity matrices, e.g. when resuming training; call after setFilterList
+     */
+    public void setMomentumList(List<MomentumNode> momentumList) {
+        this.momentumList = momentumList;
+    }
+
+    /**
+     Get second moment matrices, one MomentumNode for each filter row; empty if the optimizer does not use them
+     */
+    public List<MomentumNode> getSecondList() {
+        return secondList;
+    }
+
+    /**
+     Set second moment matrices, e.g. when resuming training; call after setFilterList
+     */
+    public void setSecondList(List<MomentumNode> secondList) {
+        this.secondList = secondList;
+    }
+
+    /**
+     Get bias velocity matrix, same size as bias, or null if the optimizer does not update biases
+     */
+    public Matrix getBiasV() {
+        return biasV;
+    }
+
+    /**
+     Set bias velocity matrix, e.g. when resuming training; call after setFilterList
+     */
+    public void setBiasV(Matrix biasV) {
+        this.biasV = biasV;
+    }
+
+    /**
+     Get bias second moment matrix, same size as bias, or null if not used
+     */
+    public Matrix getBiasS() {
+        return biasS;
+    }
+
+    /**
+     Set bias second moment matrix, e.g. when resuming training; call after setFilterList
+     */
+    public void setBiasS(Matrix biasS) {
+        this.biasS = biasS;
+    }
+
     public int getnOut() {
         return nOut;
     }
@@ -281,6 +336,11 @@ public class ConvoLayer {
 
     public void initMomentumList(int filterSize, int nOut) {
         try {
+            momentumList.clear();
+            // created on the first update, if the optimizer uses it
+            secondList = new ArrayList<>();
+            biasV = null;
+            biasS = null;
             // momentumList: one velocity row = list of column velocities
             for (int k = 0; k < nOut; k++) {
                 MomentumNode momentumNode = new MomentumNode();
@@ -296,6 +356,20 @@ public class ConvoLayer {
         }
     }
 
+    /**
+     Init second moment matrices, same shape as the filter list
+     */
+    public void initSecondList() {
+        secondList = new ArrayList<>();
+        for (ConvoNode filterRow : filterList) {
+            MomentumNode secondNode = new MomentumNode();
+            for (int i = 0; i < filterRow.size(); i++) {
+                secondNode.add(new Matrix(filterSize, filterSize));
+            }
+            secondList.add(secondNode);
+        }
+    }
+
     /**
      Init b.
      */
@@ -319,6 +393,8 @@ public class ConvoLayer {
         //    cols: x.cols - filterSize + 1;
         List<Matrix> outList = new ArrayList<>();
         try {
+            // derivatives of this sample only, used by the next backProp
+            derivList.clear();
             // convolve matrix x with each filter w in filterList to create matrix z
             // matrix z: number of rows = x #rows - filterSize + 1
             // matrix z: number of cols = x #cols - filterSize + 1
@@ -402,6 +478,19 @@ public class ConvoLayer {
      @return matrix output y from this layer
      */
     public List<Matrix> testForward(List<Matrix> inList) {
+        return testForward(inList, null, null);
+    }
+
+    /**
+     Testing phase forward propagation with filters and bias read in place from buffers,
+     e.g. a memory mapped model, instead of the layer filter list and bias
+
+     @param inList      input to this layer
+     @param filters     filters by output node, then by input node; null for the layer filters
+     @param biasBuffer  bias of each output node; null for the layer bias
+     @return matrix output y from this layer
+     */
+    public List<Matrix> testForward(List<Matrix> inList, List<DoubleBuffer> filters, DoubleBuffer biasBuffer) {
         this.inList = inList;
         List<Matrix> outList = new ArrayList<>();
         try {
@@ -429,21 +518,26 @@ public class ConvoLayer {
             // outList size = nOut
             for (int k = 0; k < nOut; k++) {
                 // get next row of filters
-                ConvoNode filterRow = filterList.get(k);
-                double b = bias.a[k];
+                ConvoNode filterRow = filters == null ? filterList.get(k) : null;
+                double b = biasBuffer == null ? bias.a[k] : biasBuffer.get(k);
                 // sumZ: sum of convolutions over nIn for one output node
                 Matrix sumZ = new Matrix(zrows, zcols);
                 // inList size = nIn
                 for (int i = 0; i < nIn; i++) {
-                    Matrix w = filterRow.get(i);
                     // matrix xu size: # rows = zrows * zcols, # cols = filterSize * filterSize
                     Matrix xu = unfoldList.get(i);
-                    // flatten f for unfolded convolve
-                    w.cols = 1;
-                    w.rows = w.size;
-                    //
                     // matrix z size: # rows = zrows * zcols, # cols = 1
-                    Matrix z = MTX.mult(xu, w);
+                    Matrix z;
+                    if (filters == null) {
+                        Matrix w = filterRow.get(i);
+                        // flatten f for unfolded convolve
+                        w.cols = 1;
+                        w.rows = w.size;
+                        z = MTX.mult(xu, w);
+                    } else {
+                        // buffer filters are flat already
+                        z = MTX.mult(xu, filters.get(k * nIn + i));
+                    }
                     // reset z size to match sumZ matrix
                     z.rows = zrows;
                     z.cols = zcols;
@@ -605,6 +699,9 @@ public class ConvoLayer {
             //    LOG.log(Level.INFO, "batchSumList: " + batchSumList);
                 //
                 double inv = 1.0 / batchCount;
+                if (secondList.isEmpty() && optimizer.hasSecondMoment()) {
+                    initSecondList();
+                }
                 // loop over number of output nodes, nOut
                 for (int k = 0; k < nOut; k++) {
                     ConvoNode filterRow = filterList.get(k);
@@ -612,22 +709,22 @@ public class ConvoLayer {
                     ConvoNode dLdWSumNode = dLdWSumList.get(k);
                     //
                     MomentumNode momentumRow = momentumList.get(k);
+                    MomentumNode secondRow = secondList.isEmpty() ? null : secondList.get(k);
                     //
                     //
                     // loop over number of input nodes, nIn
                     for (int i = 0; i < nIn; i++) {
                         Matrix dLdWSum = dLdWSumNode.get(i);
-                        // average of dLdW over sample batch
-                        Matrix avgdLdW = MTX.mulConstant(dLdWSum, inv);
                   //      LOG.log(Level.INFO, "ConvoLayer ID: " + layerID + ", batchCount: " + batchCount);
-                  //      LOG.log(Level.INFO, "avgdLdW: " + avgdLdW);
                         //x = inList.get(j);
                         Matrix w = filterRow.get(i);
                         w.checkNaN("ConvoLayer ID: " + layerID + ", batch w");
                         // each filter matrix has an associated velocity matrix
                         Matrix v = momentumRow.get(i);
                         //
-                        MathUtil.updateWeightMatrix(avgdLdW, eta, w, v, mu, oneMinusLambda);
+                        Matrix s = secondRow != null ? secondRow.get(i) : null;
+                        // average of dLdW over sample batch, scaled within the fused update
+                        optimizer.update(dLdWSum, inv, eta, w, v, s);
                     }
                 }
             }
@@ -636,17 +733,28 @@ public class ConvoLayer {
             //
             if (batchCompleted) {
                 double inv = 1.0 / batchCount;
-                // average of dLdB over batch count
-                // avgdLdB: one row per output node, one column
-                Matrix avgdLdB = MTX.mulConstant(batchBias, inv);
-                // db(n, 1) = dLdB(n,1)*(-eta)
-                Matrix dB = MTX.mulConstant(avgdLdB, -eta);
-           //     LOG.log(Level.INFO, "batchCount: " + batchCount);
-           //     LOG.log(Level.INFO, "dB: " + dB);
-
-                // bias(n, 1) = bias(n, 1) + db(n, 1)
-                // bias: nOut rows, one column
-                MTX.addInplace(bias, dB);
+                if (optimizer.updatesBias()) {
+                    if (biasV == null) {
+                        biasV = new Matrix(nOut, 1);
+                    }
+                    if (biasS == null && optimizer.hasSecondMoment()) {
+                        biasS = new Matrix(nOut, 1);
+                    }
+                    // batch sum of dLdB, averaged within the fused update
+                    optimizer.update(batchBias, inv, eta, bias, biasV, biasS);
+                } else {
+                    // average of dLdB over batch count
+                    // avgdLdB: one row per output node, one column
+                    Matrix avgdLdB = MTX.mulConstant(batchBias, inv);
+                    // db(n, 1) = dLdB(n,1)*(-eta)
+                    Matrix dB = MTX.mulConstant(avgdLdB, -eta);
+               //     LOG.log(Level.INFO, "batchCount: " + batchCount);
+               //     LOG.log(Level.INFO, "dB: " + dB);
+
+                    // bias(n, 1) = bias(n, 1) + db(n, 1)
+                    // bias: nOut rows, one column
+                    MTX.addInplace(bias, dB);
+                }
                 //
                 batchCount = 0;
                 batchFilterUpdates.clear();
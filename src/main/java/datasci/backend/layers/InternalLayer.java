@@ -2,9 +2,10 @@ package datasci.backend.layers;
 
 import datasci.backend.activations.ActivationI;
 import datasci.backend.model.MTX;
-import datasci.backend.model.MathUtil;
 import datasci.backend.model.Matrix;
+import datasci.backend.optimizers.OptimizerI;
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -41,9 +42,12 @@ import java.util.logging.Logger;
  Weight correction after each batch from i to i+1:
  W(i + 1) = (1 - lambda)*W(i) + v(i + 1)
  See MathUtil. updateWeightMatrix for implementation details.
+ This is the SGD optimizer; BackPropConfig.optName selects another update rule, such as Adam,
+ from the optimizers package.
  //
- Bias correction after each batch from i to i+1:
+ Bias correction after each batch from i to i+1, with SGD:
  B(i + 1) = B(i) – eta * batch ave[dL/dB]
+ Other optimizers update the bias like the weights, with its own state matrices.
  //
  How to calculate dL/dW?
  dL/dW = (dL/dY)*(dY/dZ)*(dZ/dW)
@@ -92,6 +96,11 @@ public class InternalLayer {
     private Matrix w;
     // velocity matrix: nOut rows, nIn columns
     private Matrix v;
+    // second moment matrix: nOut rows, nIn columns, for optimizers which use it, else null
+    private Matrix s;
+    // bias state matrices: nOut rows, 1 col, for optimizers which update biases, else null
+    private Matrix biasV;
+    private Matrix biasS;
     // bias matrix: 1 col, nOut rows
     private Matrix b;
     // output matrix with one column and nOut rows, y = actFn(z) becomes input x for next layer
@@ -103,11 +112,8 @@ public class InternalLayer {
     //
     // eta: gradient descent rate for back propagation
     private double eta;
-    // lambda: L2 regularization parameter
-    private double lambda;
-    private double oneMinusLambda;
-    // mu:  momentum parameter
-    private double mu;
+    // optimizer: weight update rule with its hyperparameters, shared by all layers
+    private OptimizerI optimizer;
     //
     private int batchCount;
     private List<Matrix> batchWeight = new ArrayList<>();
@@ -158,13 +164,8 @@ public class InternalLayer {
         this.eta = eta;
     }
 
-    public void setLambda(double lambda) {
-        this.lambda = lambda;
-        this.oneMinusLambda = 1.0 - lambda;
-    }
-
-    public void setMu(double mu) {
-        this.mu = mu;
+    public void setOptimizer(OptimizerI optimizer) {
+        this.optimizer = optimizer;
     }
 
     public void initLayer() {
@@ -209,6 +210,10 @@ public class InternalLayer {
         try {
             // velocity matrix w will be matrix with outputs rows and inputs columns
             v = new Matrix(nOut, nIn);
+            // created on the first update, if the optimizer uses it
+            s = null;
+            biasV = null;
+            biasS = null;
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
             throw new RuntimeException(ex);
@@ -241,6 +246,62 @@ public class InternalLayer {
         this.b = b;
     }
 
+    /**
+     * Get velocity matrix, same size as w
+     */
+    public Matrix getV() {
+        return v;
+    }
+
+    /**
+     * Set velocity matrix, e.g. when resuming training; call after setW
+     */
+    public void setV(Matrix v) {
+        this.v = v;
+    }
+
+    /**
+     * Get bias velocity matrix, same size as b, or null if the optimizer does not update biases
+     */
+    public Matrix getBiasV() {
+        return biasV;
+    }
+
+    /**
+     * Set bias velocity matrix, e.g. when resuming training; call after setW
+     */
+    public void setBiasV(Matrix biasV) {
+        this.biasV = biasV;
+    }
+
+    /**
+     * Get bias second moment matrix, same size as b, or null if not used
+     */
+    public Matrix getBiasS() {
+        return biasS;
+    }
+
+    /**
+     * Set bias second moment matrix, e.g. when resuming training; call after setW
+     */
+    public void setBiasS(Matrix biasS) {
+        this.biasS = biasS;
+    }
+
+    /**
+     * Get second moment matrix, same size as w, or null if the optimizer does not use one
+     */
+    public Matrix getS() {
+        return s;
+    }
+
+    /**
+     * Set second moment matrix, e.g. when resuming training; call after setW
+     */
+    public void setS(Matrix s) {
+        this.s = s;
+    }
+
     /**
      * Perform forward propagation for this network layer
      *
@@ -282,6 +343,23 @@ public class InternalLayer {
         return y;
     }
 
+    /**
+     * Testing phase forward propagation with weights and bias read in place from buffers,
+     * e.g. a memory mapped model, instead of the layer w and b
+     *
+     * @param x       input column matrix
+     * @param wBuffer weights in row order, nOut rows of nIn
+     * @param bBuffer bias of each output node
+     * @return matrix output y from this layer
+     */
+    public Matrix testForward(Matrix x, DoubleBuffer wBuffer, DoubleBuffer bBuffer) {
+        this.x = x;
+        nIn = x.rows;
+        Matrix z = MTX.aXplusB(wBuffer, x, bBuffer);
+        y = actFn.testingFn(z);
+        return y;
+    }
+
     /**
      * Perform backward propagation for this network layer
      *
@@ -335,20 +413,37 @@ public class InternalLayer {
             // dLdY(n, 1) ** dYdZ(n,1) was done above
             // dLdW(n, m) = dLdZ(n,1) * dZdW(1,m)
             Matrix dLdW = MTX.mult(dLdZ, dZdW);
-            // db(n, 1) = dLdB(n,1)*eta
-            Matrix dB = MTX.mulConstant(dLdB, -eta);
+            // db(n, 1) = dLdB(n,1)*eta; dLdB itself if the optimizer updates biases
+            Matrix dB = optimizer.updatesBias() ? dLdB : MTX.mulConstant(dLdB, -eta);
             //
             batchWeight.add(dLdW);
             batchBias.add(dB);
             if(batchCompleted) {
                 w.checkNaN("InternalLayer ID: " + layerID + ", batch w");
-                dLdW = MTX.listAverage(batchWeight);
-                MathUtil.updateWeightMatrix(dLdW, eta, w, v, mu, oneMinusLambda);
+                // batch sum, averaged within the fused update
+                double inv = 1.0 / batchWeight.size();
+                dLdW = MTX.sumOfList(batchWeight);
+                batchWeight.clear();
+                if (s == null && optimizer.hasSecondMoment()) {
+                    s = new Matrix(nOut, nIn);
+                }
+                optimizer.update(dLdW, inv, eta, w, v, s);
                 //
                 // update bias matrix
-                // bias(n, 1) = bias(n, 1) + db(n, 1)
-                dB = MTX.listAverage(batchBias);
-                MTX.addInplace(b, dB);
+                if (optimizer.updatesBias()) {
+                    if (biasV == null) {
+                        biasV = new Matrix(nOut, 1);
+                    }
+                    if (biasS == null && optimizer.hasSecondMoment()) {
+                        biasS = new Matrix(nOut, 1);
+                    }
+                    optimizer.update(MTX.sumOfList(batchBias), inv, eta, b, biasV, biasS);
+                } else {
+                    // SGD: plain gradient descent
+                    // bias(n, 1) = bias(n, 1) + db(n, 1)
+                    dB = MTX.listAverage(batchBias);
+                    MTX.addInplace(b, dB);
+                }
                 //
                 batchCount = 0;
                 batchWeight.clear();
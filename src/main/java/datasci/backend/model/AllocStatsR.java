@@ -0,0 +1,31 @@
+package datasci.backend.model;
+
+public record AllocStatsR(long samples, long allocatedBytes, long gcCount, long gcMillis, long wallNanos) {
+
+    /**
+     * Get the counts since an earlier record
+     *
+     * @param prev earlier record, or null
+     * @return difference
+     */
+    public AllocStatsR minus(AllocStatsR prev) {
+        if (prev == null) {
+            return this;
+        }
+        return new AllocStatsR(samples - prev.samples, allocatedBytes - prev.allocatedBytes,
+                gcCount - prev.gcCount, gcMillis - prev.gcMillis, wallNanos - prev.wallNanos);
+    }
+
+    public double bytesPerSample() {
+        return samples > 0 ? (double) allocatedBytes / samples : 0.0;
+    }
+
+    /**
+     * Get the garbage collection time as a share of the wall time
+     *
+     * @return percent
+     */
+    public double gcPercent() {
+        return wallNanos > 0 ? gcMillis * 1.0E8 / wallNanos : 0.0;
+    }
+}
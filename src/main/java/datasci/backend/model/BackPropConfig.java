@@ -10,8 +10,15 @@ public class BackPropConfig {
     public EtaModel rateModel;
     // lambda: L2 regularization parameter
     public double lambda;
-    // mu:  momentum parameter
+    // mu:  momentum parameter, beta1 for Adam and AdamW
     public double mu;
+    // optName: optimizer label, see OptE; null for SGD with momentum.
+    // Adam, AdamW and RMSProp update biases too; with SGD biases take a plain gradient descent step
+    public String optName;
+    // beta2: decay of the squared gradient average for Adam, AdamW and RMSProp
+    public double beta2 = 0.999;
+    // epsilon: small number added to the adaptive step denominator
+    public double epsilon = 1.0E-8;
     public int batchSize;
     //
     public BackPropConfig() {
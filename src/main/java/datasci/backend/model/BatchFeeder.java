@@ -0,0 +1,303 @@
+package datasci.backend.model;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Feeds training batches of network inputs, from an in-memory data set or an image stream.
+ * <p>
+ * Without augmentation, each batch is normalized when it is requested. With augmentation,
+ * the next batch is distorted in parallel on a pool of threads while the network trains on
+ * the current batch, using two sets of input buffers in turn.
+ * <p>
+ * For an in-memory data set, the sample order is reshuffled at the start of each epoch after
+ * the first.
+ */
+public class BatchFeeder implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(BatchFeeder.class.getName());
+
+    private final ImageDataSet dataSet;
+    private final int[] sampleOrder;
+    private final ImageStream stream;
+    private final int batchSize;
+    private final int epochSamples;
+    private final int numEpochs;
+    private final long shuffleSeed;
+    private final ImageAugmenter augmenter;
+    //
+    // read position: epoch, sample base in epoch, samples read over all epochs
+    private int readEpoch;
+    private int readBase;
+    private long readSample;
+    // prevOrder: sample order of the epoch before readEpoch, kept for training state
+    private int[] prevOrder;
+    // skipBatches: stream batches already trained before a resume
+    private int skipBatches;
+    // two sets of buffers, used in turn when augmenting
+    private final SampleBatch[] buffers = new SampleBatch[2];
+    private int next;
+    // pending: batch being filled in the background, null if none
+    private SampleBatch pending;
+    private CompletableFuture<Void> pendingFill;
+    private boolean started;
+    //
+    private ExecutorService pool;
+    private ImageAugmenter.Scratch[] scratch;
+    // waitNanos: time training waited for the next batch
+    private long waitNanos;
+
+    /**
+     * Instantiates a new batch feeder.
+     *
+     * @param dataSet      in-memory data set, or null when streaming
+     * @param sampleOrder  shuffled sample order of the first epoch, or null when streaming
+     * @param stream       started image stream, or null for an in-memory data set
+     * @param batchSize    number of samples in each batch
+     * @param epochSamples number of samples in each epoch
+     * @param numEpochs    number of epochs
+     * @param shuffleSeed  seed of the first epoch shuffle; epoch k reshuffles with shuffleSeed + k
+     * @param augmenter    random distortions, or null for none
+     */
+    public BatchFeeder(ImageDataSet dataSet, int[] sampleOrder, ImageStream stream, int batchSize,
+                       int epochSamples, int numEpochs, long shuffleSeed, ImageAugmenter augmenter) {
+        this.dataSet = dataSet;
+        this.sampleOrder = sampleOrder;
+        this.stream = stream;
+        this.batchSize = batchSize;
+        this.epochSamples = epochSamples;
+        this.numEpochs = numEpochs;
+        this.shuffleSeed = shuffleSeed;
+        this.augmenter = augmenter;
+    }
+
+    /**
+     * Create input buffers, and the augment thread pool if augmenting
+     *
+     * @param rows    input rows
+     * @param cols    input columns
+     * @param threads augment threads, zero for the default
+     */
+    public void init(int rows, int cols, int threads) {
+        buffers[0] = new SampleBatch(batchSize, rows, cols);
+        if (augmenter != null) {
+            buffers[1] = new SampleBatch(batchSize, rows, cols);
+            // by default as many as the common pool: a core less than the processors, since training
+            // runs on its own thread
+            int numThreads = threads > 0 ? threads : Math.max(ForkJoinPool.getCommonPoolParallelism(), 1);
+            pool = Executors.newFixedThreadPool(numThreads,
+                    Thread.ofPlatform().name("augment-", 0).daemon(true).factory());
+            scratch = new ImageAugmenter.Scratch[numThreads];
+            for (int t = 0; t < numThreads; t++) {
+                scratch[t] = augmenter.createScratch();
+            }
+            LOG.info("augment threads: " + numThreads);
+        }
+    }
+
+    /**
+     * Get the next batch of inputs. The batch is valid until the next call.
+     *
+     * @return next batch, or null when all epochs have been read
+     */
+    public SampleBatch next() {
+        SampleBatch ready = null;
+        try {
+            if (augmenter == null) {
+                SampleBatch batch = buffers[0];
+                if (readSource(batch)) {
+                    fill(batch, 0, batch.size, null);
+                    ready = batch;
+                }
+            } else {
+                if (!started) {
+                    started = true;
+                    submit(buffers[next]);
+                }
+                if (pending != null) {
+                    long start = System.nanoTime();
+                    pendingFill.join();
+                    waitNanos += System.nanoTime() - start;
+                    ready = pending;
+                    pending = null;
+                    // augment the batch after this one into the other buffers
+                    next = 1 - next;
+                    submit(buffers[next]);
+                }
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return ready;
+    }
+
+    /**
+     * Set the read position, e.g. when resuming training. Call before the first next().
+     * When streaming, the stream must have been started at the given epoch.
+     *
+     * @param epoch      epoch of the next batch
+     * @param epochBase  samples already read in that epoch, a multiple of the batch size
+     * @param sample     samples already read over all epochs
+     * @param epochOrder sample order of that epoch, or null when streaming
+     */
+    public void setPosition(int epoch, int epochBase, long sample, int[] epochOrder) {
+        if (started) {
+            throw new IllegalStateException("BatchFeeder already started");
+        }
+        readEpoch = epoch;
+        readBase = epochBase;
+        readSample = sample;
+        if (stream != null) {
+            skipBatches = epochBase / batchSize;
+        } else {
+            if (epochOrder.length != sampleOrder.length) {
+                throw new IllegalArgumentException("Sample order length " + epochOrder.length
+                        + " does not match data set order length " + sampleOrder.length);
+            }
+            System.arraycopy(epochOrder, 0, sampleOrder, 0, sampleOrder.length);
+        }
+    }
+
+    /**
+     * Get a copy of the in-memory sample order of an epoch. Batches are read ahead of training,
+     * so the epoch may be one before, or one after, the epoch being read.
+     *
+     * @param epoch training epoch
+     * @return sample order of the epoch, null when streaming
+     */
+    public int[] getEpochOrder(int epoch) {
+        if (sampleOrder == null) {
+            return null;
+        }
+        int[] order;
+        if (epoch == readEpoch - 1 && prevOrder != null) {
+            order = prevOrder.clone();
+        } else if (epoch == readEpoch + 1) {
+            // not yet reshuffled by the reader
+            order = sampleOrder.clone();
+            MathUtil.shuffle(order, new Random(shuffleSeed + epoch));
+        } else if (epoch == readEpoch) {
+            order = sampleOrder.clone();
+        } else {
+            throw new IllegalArgumentException("Sample order of epoch " + epoch + " not available, reading epoch "
+                    + readEpoch);
+        }
+        return order;
+    }
+
+    /**
+     * Get total time training has waited for augmented batches, in nanoseconds
+     *
+     * @return wait time
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * Get the number of augment threads
+     *
+     * @return augment threads, zero if not augmenting
+     */
+    public int getAugmentThreads() {
+        return scratch != null ? scratch.length : 0;
+    }
+
+    /**
+     * Stop the augment threads
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Read the next source batch, and start filling it on the augment threads
+     */
+    private void submit(SampleBatch batch) {
+        if (!readSource(batch)) {
+            return;
+        }
+        int numTasks = scratch.length;
+        int chunk = (batch.size + numTasks - 1) / numTasks;
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[numTasks];
+        for (int t = 0; t < numTasks; t++) {
+            int lo = Math.min(t * chunk, batch.size);
+            int hi = Math.min(lo + chunk, batch.size);
+            ImageAugmenter.Scratch taskScratch = scratch[t];
+            tasks[t] = CompletableFuture.runAsync(() -> fill(batch, lo, hi, taskScratch), pool);
+        }
+        pending = batch;
+        pendingFill = CompletableFuture.allOf(tasks);
+    }
+
+    /**
+     * Fill inputs lo to hi of the batch from its source
+     */
+    private void fill(SampleBatch batch, int lo, int hi, ImageAugmenter.Scratch taskScratch) {
+        ImageDataSet source = batch.source;
+        for (int i = lo; i < hi; i++) {
+            int n = batch.sourceIndex[i];
+            if (augmenter != null) {
+                augmenter.augment(source, n, batch.firstSample + i, batch.inputs[i].a, taskScratch);
+            } else {
+                source.fillInput(n, batch.inputs[i]);
+            }
+            batch.labels[i] = source.getActualIndex(n);
+        }
+    }
+
+    /**
+     * Set the source data set and sample indexes of the next batch
+     *
+     * @return false when all epochs have been read
+     */
+    private boolean readSource(SampleBatch batch) {
+        if (stream != null) {
+            ImageDataSet streamBatch = stream.nextBatch();
+            // skip the smaller last batch of each epoch, and batches trained before a resume
+            while (streamBatch != null && (streamBatch.getSize() < batchSize || skipBatches > 0)) {
+                if (streamBatch.getSize() == batchSize) {
+                    skipBatches--;
+                }
+                streamBatch = stream.nextBatch();
+            }
+            if (streamBatch == null) {
+                return false;
+            }
+            batch.source = streamBatch;
+            for (int i = 0; i < batchSize; i++) {
+                batch.sourceIndex[i] = i;
+            }
+        } else {
+            if (readBase + batchSize > epochSamples) {
+                // no full batch left in this epoch
+                if (readEpoch + 1 >= numEpochs) {
+                    return false;
+                }
+                readEpoch++;
+                readBase = 0;
+                if (prevOrder == null) {
+                    prevOrder = new int[sampleOrder.length];
+                }
+                System.arraycopy(sampleOrder, 0, prevOrder, 0, sampleOrder.length);
+                MathUtil.shuffle(sampleOrder, new Random(shuffleSeed + readEpoch));
+            }
+            batch.source = dataSet;
+            System.arraycopy(sampleOrder, readBase, batch.sourceIndex, 0, batchSize);
+            readBase += batchSize;
+        }
+        batch.size = batchSize;
+        batch.firstSample = readSample;
+        readSample += batchSize;
+        return true;
+    }
+}  //end class
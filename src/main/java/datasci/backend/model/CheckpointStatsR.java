@@ -0,0 +1,15 @@
+package datasci.backend.model;
+
+/**
+ * Training pauses to snapshot FitParams for checkpoints: count, total and longest pause
+ */
+public record CheckpointStatsR(int snapshots, long pauseNanos, long maxPauseNanos) {
+
+    public double pauseMillis() {
+        return pauseNanos / 1.0E6;
+    }
+
+    public double maxPauseMillis() {
+        return maxPauseNanos / 1.0E6;
+    }
+}
@@ -0,0 +1,5 @@
+package datasci.backend.model;
+
+public record EpochR(int epoch, int samples, int numCorrect, double accuracy, double seconds,
+                     double samplesPerSec) {
+}
@@ -1,11 +1,7 @@
 package datasci.backend.model;
 
-import javafx.beans.property.SimpleDoubleProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.beans.property.SimpleStringProperty;
-
 /**
- * Observable properties model for gradient descent rate (eta)
+ * Model for gradient descent rate (eta)
  */
 public class EtaModel {
     public int stepCount;
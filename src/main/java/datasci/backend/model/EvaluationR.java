@@ -1,4 +1,4 @@
 package datasci.backend.model;
 
-public record EvaluationR(int sampleCount, int numCorrect, int batchSampleCount, int batchNumCorrect) {
+public record EvaluationR(int sampleCount, int numCorrect, int batchSampleCount, int batchNumCorrect, int epoch) {
 }
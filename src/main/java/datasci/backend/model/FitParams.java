@@ -22,4 +22,64 @@ public class FitParams {
 
     public FitParams() {
     }
+
+    /**
+     * Deep copy of all weights and biases, e.g. a snapshot taken during training
+     *
+     * @return copy, sharing no matrices with this FitParams
+     */
+    public FitParams copy() {
+        FitParams copy = new FitParams();
+        for (ConvoPoolFitParams convoPool : convoPoolList) {
+            ConvoPoolFitParams convoPoolCopy = new ConvoPoolFitParams();
+            convoPoolCopy.layerID = convoPool.layerID;
+            convoPoolCopy.filterList = new ArrayList<>();
+            for (ConvoNode node : convoPool.filterList) {
+                ConvoNode nodeCopy = new ConvoNode();
+                for (Matrix w : node.getFilterNodeList()) {
+                    nodeCopy.add(new Matrix(w));
+                }
+                convoPoolCopy.filterList.add(nodeCopy);
+            }
+            convoPoolCopy.bias = new Matrix(convoPool.bias);
+            copy.convoPoolList.add(convoPoolCopy);
+        }
+        for (InternalFitParams internal : internalList) {
+            InternalFitParams internalCopy = new InternalFitParams();
+            internalCopy.layerID = internal.layerID;
+            internalCopy.w = new Matrix(internal.w);
+            internalCopy.b = new Matrix(internal.b);
+            copy.internalList.add(internalCopy);
+        }
+        if (outputFitParams != null) {
+            copy.outputFitParams = new OutputFitParams();
+            copy.outputFitParams.w = new Matrix(outputFitParams.w);
+            copy.outputFitParams.b = new Matrix(outputFitParams.b);
+        }
+        return copy;
+    }
+
+    /**
+     * Get the heap size of the matrix values, e.g. for memory accounting
+     *
+     * @return number of bytes of all weights and biases
+     */
+    public long valueBytes() {
+        long count = 0;
+        for (ConvoPoolFitParams convoPool : convoPoolList) {
+            for (ConvoNode node : convoPool.filterList) {
+                for (Matrix w : node.getFilterNodeList()) {
+                    count += w.size;
+                }
+            }
+            count += convoPool.bias.size;
+        }
+        for (InternalFitParams internal : internalList) {
+            count += internal.w.size + internal.b.size;
+        }
+        if (outputFitParams != null) {
+            count += outputFitParams.w.size + outputFitParams.b.size;
+        }
+        return count * Double.BYTES;
+    }
 }
@@ -0,0 +1,330 @@
+package datasci.backend.model;
+
+import datasci.backend.jfr.FitParamsIOEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Binary file format for network FitParams.
+ * <p>
+ * Layout, little endian:
+ * <pre>
+ * header:
+ *   4 bytes magic "CNFP", int version, int dataOffset
+ *   int numConvoPool, for each: layerID, int numFilters, int nIn, int filterRows, int filterCols,
+ *                               int biasRows, int biasCols
+ *   int numInternal,  for each: layerID, int wRows, int wCols, int bRows, int bCols
+ *   int hasOutput,    if 1:     int wRows, int wCols, int bRows, int bCols
+ *   layerID: int byte length (-1 for null), UTF-8 bytes
+ * data, from dataOffset (multiple of 8):
+ *   raw doubles of every matrix, in header order; convolution filters by filter, then by input
+ * </pre>
+ * The file is written with one gather write, and read through a memory mapping.
+ */
+public class FitParamsBinary {
+
+    private static final Logger LOG = Logger.getLogger(FitParamsBinary.class.getName());
+    public static final byte[] MAGIC = {'C', 'N', 'F', 'P'};
+    public static final int VERSION = 1;
+    // file name extension used to select the binary format on export
+    public static final String EXTENSION = ".cnfp";
+
+    /**
+     * Check if a file name selects the binary format
+     *
+     * @param file file to write
+     * @return true if the file name ends with EXTENSION
+     */
+    public static boolean isBinaryName(File file) {
+        return file.getName().toLowerCase().endsWith(EXTENSION);
+    }
+
+    /**
+     * Check if a file starts with the binary format magic bytes
+     *
+     * @param file file to read
+     * @return true if the file is in binary format
+     */
+    public static boolean isBinary(File file) {
+        boolean isBinary = false;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] head = in.readNBytes(MAGIC.length);
+            isBinary = Arrays.equals(head, MAGIC);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return isBinary;
+    }
+
+    /**
+     * Write FitParams to a binary file
+     *
+     * @param fitParams network training FitParams
+     * @param file      output file
+     * @return number of bytes written
+     */
+    public static long write(FitParams fitParams, File file) {
+        long size = 0;
+        try {
+            FitParamsIOEvent event = new FitParamsIOEvent();
+            event.begin();
+            long start = System.nanoTime();
+            List<Matrix> matrixList = new ArrayList<>();
+            ByteBuffer header = createHeader(fitParams, matrixList);
+            // one buffer for the header, one for each matrix
+            ByteBuffer[] buffers = new ByteBuffer[matrixList.size() + 1];
+            buffers[0] = header;
+            for (int i = 0; i < matrixList.size(); i++) {
+                Matrix m = matrixList.get(i);
+                ByteBuffer buf = ByteBuffer.allocate(m.size * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                buf.asDoubleBuffer().put(m.a, 0, m.size);
+                buffers[i + 1] = buf;
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // gather write may write fewer bytes than remain, repeat until all are written
+                while (buffers[buffers.length - 1].hasRemaining()) {
+                    size += channel.write(buffers);
+                }
+            }
+            event.end(FitParamsIOEvent.WRITE, FitParamsIOEvent.BINARY, file, size, fitParams);
+            LOG.info("write binary FitParams, bytes: " + size + ", ms: " + (System.nanoTime() - start) / 1000000L);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return size;
+    }
+
+    /**
+     * Read FitParams from a binary file through a memory mapping
+     *
+     * @param file binary FitParams file
+     * @return FitParams
+     */
+    public static FitParams read(File file) {
+        FitParams fitParams = new FitParams();
+        try {
+            FitParamsIOEvent event = new FitParamsIOEvent();
+            event.begin();
+            long start = System.nanoTime();
+            long size;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                size = channel.size();
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                ByteBuffer buf = mapped.order(ByteOrder.LITTLE_ENDIAN);
+                List<Matrix> matrixList = new ArrayList<>();
+                int dataOffset = readHeader(buf, fitParams, matrixList, true);
+                // matrices were allocated by readHeader; fill them from the data section
+                buf.position(dataOffset);
+                for (Matrix m : matrixList) {
+                    buf.asDoubleBuffer().get(m.a, 0, m.size);
+                    buf.position(buf.position() + m.size * Double.BYTES);
+                }
+            }
+            event.end(FitParamsIOEvent.READ, FitParamsIOEvent.BINARY, file, size, fitParams);
+            LOG.info("read binary FitParams, bytes: " + size + ", ms: " + (System.nanoTime() - start) / 1000000L);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return fitParams;
+    }
+
+    /**
+     * Create the file header, and list the matrices in data order
+     */
+    static ByteBuffer createHeader(FitParams fitParams, List<Matrix> matrixList) {
+        // header is small, size it generously and flip
+        int capacity = 64;
+        for (ConvoPoolFitParams convoPool : fitParams.convoPoolList) {
+            capacity += 32 + idBytes(convoPool.layerID).length;
+        }
+        for (InternalFitParams internal : fitParams.internalList) {
+            capacity += 24 + idBytes(internal.layerID).length;
+        }
+        capacity += 24;
+        ByteBuffer header = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        // dataOffset, set below
+        header.putInt(0);
+        //
+        header.putInt(fitParams.convoPoolList.size());
+        for (ConvoPoolFitParams convoPool : fitParams.convoPoolList) {
+            putID(header, convoPool.layerID);
+            List<ConvoNode> filterList = convoPool.filterList;
+            int numFilters = filterList.size();
+            int nIn = numFilters > 0 ? filterList.get(0).size() : 0;
+            Matrix first = nIn > 0 ? filterList.get(0).get(0) : new Matrix();
+            header.putInt(numFilters);
+            header.putInt(nIn);
+            header.putInt(first.rows);
+            header.putInt(first.cols);
+            for (ConvoNode node : filterList) {
+                if (node.size() != nIn) {
+                    throw new RuntimeException("Filter input count differs in layer: " + convoPool.layerID);
+                }
+                for (Matrix w : node.getFilterNodeList()) {
+                    if (w.rows != first.rows || w.cols != first.cols) {
+                        throw new RuntimeException("Filter size differs in layer: " + convoPool.layerID);
+                    }
+                    matrixList.add(w);
+                }
+            }
+            putShape(header, convoPool.bias);
+            matrixList.add(convoPool.bias);
+        }
+        //
+        header.putInt(fitParams.internalList.size());
+        for (InternalFitParams internal : fitParams.internalList) {
+            putID(header, internal.layerID);
+            putShape(header, internal.w);
+            putShape(header, internal.b);
+            matrixList.add(internal.w);
+            matrixList.add(internal.b);
+        }
+        //
+        OutputFitParams output = fitParams.outputFitParams;
+        header.putInt(output != null ? 1 : 0);
+        if (output != null) {
+            putShape(header, output.w);
+            putShape(header, output.b);
+            matrixList.add(output.w);
+            matrixList.add(output.b);
+        }
+        // align data to 8 bytes
+        while (header.position() % Double.BYTES != 0) {
+            header.put((byte) 0);
+        }
+        header.putInt(MAGIC.length + Integer.BYTES, header.position());
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Read the file header into FitParams, and list the matrices in data order
+     *
+     * @param allocate true to allocate the matrix values, false for shapes only, with null values
+     * @return data offset
+     */
+    static int readHeader(ByteBuffer buf, FitParams fitParams, List<Matrix> matrixList, boolean allocate)
+            throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buf.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary FitParams file");
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary FitParams version: " + version);
+        }
+        int dataOffset = buf.getInt();
+        //
+        int numConvoPool = buf.getInt();
+        for (int k = 0; k < numConvoPool; k++) {
+            ConvoPoolFitParams convoPool = new ConvoPoolFitParams();
+            convoPool.layerID = getID(buf);
+            int numFilters = buf.getInt();
+            int nIn = buf.getInt();
+            int rows = buf.getInt();
+            int cols = buf.getInt();
+            convoPool.filterList = new ArrayList<>();
+            for (int f = 0; f < numFilters; f++) {
+                ConvoNode node = new ConvoNode();
+                for (int i = 0; i < nIn; i++) {
+                    Matrix w = newMatrix(rows, cols, allocate);
+                    node.add(w);
+                    matrixList.add(w);
+                }
+                convoPool.filterList.add(node);
+            }
+            convoPool.bias = getShape(buf, allocate);
+            matrixList.add(convoPool.bias);
+            fitParams.convoPoolList.add(convoPool);
+        }
+        //
+        int numInternal = buf.getInt();
+        for (int k = 0; k < numInternal; k++) {
+            InternalFitParams internal = new InternalFitParams();
+            internal.layerID = getID(buf);
+            internal.w = getShape(buf, allocate);
+            internal.b = getShape(buf, allocate);
+            matrixList.add(internal.w);
+            matrixList.add(internal.b);
+            fitParams.internalList.add(internal);
+        }
+        //
+        if (buf.getInt() == 1) {
+            OutputFitParams output = new OutputFitParams();
+            output.w = getShape(buf, allocate);
+            output.b = getShape(buf, allocate);
+            matrixList.add(output.w);
+            matrixList.add(output.b);
+            fitParams.outputFitParams = output;
+        }
+        return dataOffset;
+    }
+
+    private static byte[] idBytes(String layerID) {
+        return layerID == null ? new byte[0] : layerID.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putID(ByteBuffer buf, String layerID) {
+        if (layerID == null) {
+            buf.putInt(-1);
+        } else {
+            byte[] bytes = idBytes(layerID);
+            buf.putInt(bytes.length);
+            buf.put(bytes);
+        }
+    }
+
+    private static String getID(ByteBuffer buf) {
+        int len = buf.getInt();
+        String layerID = null;
+        if (len >= 0) {
+            byte[] bytes = new byte[len];
+            buf.get(bytes);
+            layerID = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return layerID;
+    }
+
+    private static void putShape(ByteBuffer buf, Matrix m) {
+        buf.putInt(m.rows);
+        buf.putInt(m.cols);
+    }
+
+    private static Matrix getShape(ByteBuffer buf, boolean allocate) {
+        int rows = buf.getInt();
+        int cols = buf.getInt();
+        return newMatrix(rows, cols, allocate);
+    }
+
+    private static Matrix newMatrix(int rows, int cols, boolean allocate) {
+        if (allocate) {
+            return new Matrix(rows, cols);
+        }
+        Matrix m = new Matrix();
+        m.rows = rows;
+        m.cols = cols;
+        m.size = rows * cols;
+        return m;
+    }
+}  //end class
@@ -0,0 +1,326 @@
+package datasci.backend.model;
+
+import datasci.backend.jfr.FitParamsIOEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Delta encoded, compressed file format for a series of FitParams checkpoints.
+ * <p>
+ * Values are rounded to a PrecisionE. A keyframe stores the value bits; a delta stores the XOR of
+ * the value bits with those of the previous file written, its base. Successive checkpoints differ
+ * little, so the XOR is zero in the sign, exponent and high mantissa bits. The bits are split into
+ * byte planes, most significant byte first, so those zeros form long runs, and deflated at the
+ * fastest level.
+ * <p>
+ * Each file is rounded on its own, so the error of a delta is that of one rounding, it does not grow
+ * along the chain. Reading a delta reads its base files back to the keyframe.
+ * <p>
+ * Layout, big endian:
+ * <pre>
+ *   4 bytes magic "CNFD", int version, int precision (PrecisionE ordinal),
+ *   base file name (DataOutput UTF, empty for a keyframe),
+ *   int header length, binary FitParams header (FitParamsBinary layout, no data),
+ *   int number of values,
+ *   deflated byte planes of the value bits, in FitParamsBinary data order
+ * </pre>
+ */
+public class FitParamsDelta {
+
+    private static final Logger LOG = Logger.getLogger(FitParamsDelta.class.getName());
+    public static final byte[] MAGIC = {'C', 'N', 'F', 'D'};
+    public static final int VERSION = 1;
+    // file name extension of delta encoded checkpoints
+    public static final String EXTENSION = ".cnfd";
+
+    private final PrecisionE precision;
+    private final int keyframeInterval;
+    // prevBits: value bits of the last file written, base of the next delta; null to write a keyframe next
+    private long[] prevBits;
+    private String prevName;
+    private int sinceKeyframe;
+
+    /**
+     * Instantiates a new delta encoder.
+     *
+     * @param precision        precision of stored values
+     * @param keyframeInterval write a keyframe every keyframeInterval files, deltas between
+     */
+    public FitParamsDelta(PrecisionE precision, int keyframeInterval) {
+        this.precision = precision;
+        this.keyframeInterval = Math.max(keyframeInterval, 1);
+    }
+
+    /**
+     * Write FitParams as a keyframe or as a delta to the last file written
+     *
+     * @param fitParams network training FitParams
+     * @param file      output file
+     * @param name      file name the output file is read by, the base name of the next delta
+     * @return number of bytes written
+     */
+    public long write(FitParams fitParams, File file, String name) {
+        long size = 0;
+        try {
+            FitParamsIOEvent event = new FitParamsIOEvent();
+            event.begin();
+            long start = System.nanoTime();
+            List<Matrix> matrixList = new ArrayList<>();
+            ByteBuffer header = FitParamsBinary.createHeader(fitParams, matrixList);
+            long[] bits = toBits(matrixList);
+            boolean keyframe = prevBits == null || prevBits.length != bits.length
+                    || sinceKeyframe >= keyframeInterval;
+            long[] coded = bits;
+            if (!keyframe) {
+                coded = new long[bits.length];
+                for (int i = 0; i < bits.length; i++) {
+                    coded[i] = bits[i] ^ prevBits[i];
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath()), 1 << 16))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(precision.ordinal());
+                out.writeUTF(keyframe ? "" : prevName);
+                out.writeInt(header.remaining());
+                out.write(header.array(), header.position(), header.remaining());
+                out.writeInt(coded.length);
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try {
+                    // not closed here, out is closed by the enclosing try
+                    DeflaterOutputStream zout = new DeflaterOutputStream(out, deflater, 1 << 16);
+                    zout.write(toPlanes(coded, precision.bytes));
+                    zout.finish();
+                } finally {
+                    deflater.end();
+                }
+            }
+            size = file.length();
+            prevBits = bits;
+            prevName = name;
+            sinceKeyframe = keyframe ? 1 : sinceKeyframe + 1;
+            event.end(FitParamsIOEvent.WRITE, FitParamsIOEvent.DELTA, file, size, fitParams);
+            LOG.info("write " + (keyframe ? "keyframe" : "delta") + " FitParams, precision: " + precision
+                    + ", values: " + bits.length + ", bytes: " + size + ", ms: " + (System.nanoTime() - start) / 1000000L);
+        } catch (Exception ex) {
+            // the next file must not refer to a file which may not exist
+            reset();
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return size;
+    }
+
+    /**
+     * Forget the last file written, so the next file is a keyframe
+     */
+    public void reset() {
+        prevBits = null;
+        prevName = null;
+        sinceKeyframe = 0;
+    }
+
+    /**
+     * Check if a file starts with the delta format magic bytes
+     *
+     * @param file file to read
+     * @return true if the file is delta encoded
+     */
+    public static boolean isDelta(File file) {
+        boolean isDelta = false;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] head = in.readNBytes(MAGIC.length);
+            isDelta = Arrays.equals(head, MAGIC);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return isDelta;
+    }
+
+    /**
+     * Get the base file name of a delta, in the same directory
+     *
+     * @param file delta encoded file
+     * @return base file name, or null for a keyframe or a file in another format
+     */
+    public static String baseName(File file) {
+        String baseName = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            byte[] head = in.readNBytes(MAGIC.length);
+            if (Arrays.equals(head, MAGIC)) {
+                in.readInt();
+                in.readInt();
+                String name = in.readUTF();
+                baseName = name.isEmpty() ? null : name;
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return baseName;
+    }
+
+    /**
+     * Read FitParams from a delta encoded file, and its base files back to the keyframe
+     *
+     * @param file delta encoded file
+     * @return FitParams
+     */
+    public static FitParams read(File file) {
+        FitParams fitParams;
+        try {
+            FitParamsIOEvent event = new FitParamsIOEvent();
+            event.begin();
+            long start = System.nanoTime();
+            // chain from the file back to its keyframe
+            List<File> chain = new ArrayList<>();
+            File next = file;
+            while (next != null) {
+                if (chain.contains(next)) {
+                    throw new IOException("Delta base cycle at: " + next);
+                }
+                chain.add(next);
+                String base = baseName(next);
+                next = base != null ? new File(file.getParentFile(), base) : null;
+                if (next != null && !next.isFile()) {
+                    throw new IOException("Missing delta base: " + next);
+                }
+            }
+            // apply the deltas forward from the keyframe
+            FrameR frame = null;
+            long[] bits = null;
+            for (int k = chain.size() - 1; k >= 0; k--) {
+                frame = readFrame(chain.get(k));
+                if (bits == null) {
+                    bits = frame.bits();
+                } else {
+                    if (frame.bits().length != bits.length) {
+                        throw new IOException("Delta size differs from its base: " + chain.get(k));
+                    }
+                    for (int i = 0; i < bits.length; i++) {
+                        bits[i] ^= frame.bits()[i];
+                    }
+                }
+            }
+            fromBits(bits, frame.precision(), frame.matrixList());
+            fitParams = frame.fitParams();
+            // file bytes of the whole chain
+            long size = 0;
+            for (File f : chain) {
+                size += f.length();
+            }
+            event.end(FitParamsIOEvent.READ, FitParamsIOEvent.DELTA, file, size, fitParams);
+            LOG.info("read delta FitParams, files: " + chain.size() + ", ms: " + (System.nanoTime() - start) / 1000000L);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return fitParams;
+    }
+
+    /**
+     * One file: FitParams with allocated matrices, and the stored bits, XOR coded for a delta
+     */
+    private record FrameR(PrecisionE precision, FitParams fitParams, List<Matrix> matrixList, long[] bits) {
+    }
+
+    private static FrameR readFrame(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 1 << 16))) {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a delta FitParams file: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported delta FitParams version: " + version);
+            }
+            PrecisionE precision = PrecisionE.values()[in.readInt()];
+            in.readUTF();
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            FitParams fitParams = new FitParams();
+            List<Matrix> matrixList = new ArrayList<>();
+            FitParamsBinary.readHeader(ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN), fitParams, matrixList,
+                    true);
+            int numValues = in.readInt();
+            byte[] planes = new byte[numValues * precision.bytes];
+            try (InputStream zin = new InflaterInputStream(in)) {
+                if (zin.readNBytes(planes, 0, planes.length) != planes.length) {
+                    throw new IOException("Truncated delta FitParams file: " + file);
+                }
+            }
+            return new FrameR(precision, fitParams, matrixList, fromPlanes(planes, numValues, precision.bytes));
+        }
+    }
+
+    private long[] toBits(List<Matrix> matrixList) {
+        int n = 0;
+        for (Matrix m : matrixList) {
+            n += m.size;
+        }
+        long[] bits = new long[n];
+        int i = 0;
+        for (Matrix m : matrixList) {
+            for (int k = 0; k < m.size; k++) {
+                bits[i++] = precision.toBits(m.a[k]);
+            }
+        }
+        return bits;
+    }
+
+    private static void fromBits(long[] bits, PrecisionE precision, List<Matrix> matrixList) {
+        int i = 0;
+        for (Matrix m : matrixList) {
+            for (int k = 0; k < m.size; k++) {
+                m.a[k] = precision.fromBits(bits[i++]);
+            }
+        }
+    }
+
+    /**
+     * Split value bits into byte planes, most significant byte of every value first
+     */
+    private static byte[] toPlanes(long[] bits, int width) {
+        int n = bits.length;
+        byte[] planes = new byte[n * width];
+        for (int b = 0; b < width; b++) {
+            int shift = 8 * (width - 1 - b);
+            int base = b * n;
+            for (int i = 0; i < n; i++) {
+                planes[base + i] = (byte) (bits[i] >>> shift);
+            }
+        }
+        return planes;
+    }
+
+    private static long[] fromPlanes(byte[] planes, int n, int width) {
+        long[] bits = new long[n];
+        for (int b = 0; b < width; b++) {
+            int shift = 8 * (width - 1 - b);
+            int base = b * n;
+            for (int i = 0; i < n; i++) {
+                bits[i] |= (planes[base + i] & 0xFFL) << shift;
+            }
+        }
+        return bits;
+    }
+}  //end class
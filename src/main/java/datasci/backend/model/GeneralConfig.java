@@ -11,6 +11,58 @@ public class GeneralConfig {
     //
     public int totalTrainingSamples;
     public int totalTestingSamples;
+    // numEpochs: number of passes over the training samples, zero is treated as one
+    public int numEpochs = 1;
+    //
+    // streamTraining: read training samples in batches on a background thread during training,
+    // instead of loading all samples before training
+    public boolean streamTraining;
+    // trainingFile: packed image file to stream instead of the trainingDir png files, may be empty
+    public String trainingFile;
+    // prefetchBatches: number of batches read ahead of training when streaming
+    public int prefetchBatches = 4;
+    // shuffleWindow: number of samples in the shuffle window when streaming
+    public int shuffleWindow = 10000;
+    //
+    // augment: apply random distortions to training inputs
+    public boolean augment;
+    // augmentShift: max shift in pixels, each direction
+    public double augmentShift = 2.0;
+    // augmentRotation: max rotation in degrees, each direction
+    public double augmentRotation = 10.0;
+    // augmentElasticAlpha: elastic distortion size in pixels, zero for none
+    public double augmentElasticAlpha = 0.0;
+    // augmentElasticSigma: elastic distortion smoothness in pixels
+    public double augmentElasticSigma = 4.0;
+    // augmentNoise: standard deviation of noise added to each pixel, zero for none
+    public double augmentNoise = 0.0;
+    // augmentSeed: with the sample number, selects the distortions of each sample
+    public long augmentSeed = 1234;
+    //
+    // checkpointDir: directory for training checkpoints written in the background, empty for none
+    public String checkpointDir;
+    // checkpointBatches: write a checkpoint after every checkpointBatches batches, zero for none
+    public int checkpointBatches = 0;
+    // checkpointSeconds: write a checkpoint when checkpointSeconds have passed since the last, zero for none
+    public int checkpointSeconds = 0;
+    // checkpointKeep: number of most recent checkpoint files kept
+    public int checkpointKeep = 3;
+    // checkpointPrecision: PrecisionE label of checkpoint values; below Double, values are rounded
+    public String checkpointPrecision = PrecisionE.DOUBLE.label;
+    // checkpointKeyframe: write a full checkpoint every checkpointKeyframe checkpoints, and deltas
+    // to the previous checkpoint between; 1 for full checkpoints only
+    public int checkpointKeyframe = 1;
+    // resumeFrom: checkpoint file, or checkpoint directory for its latest checkpoint, to resume
+    // training from; empty to start from FitParams or random weights
+    public String resumeFrom;
+    //
+    // profileLayerAlloc: record bytes allocated in each layer, in the layer times of the network result
+    public boolean profileLayerAlloc;
+    // telemetryLog: file to append a json line of timing and allocation telemetry to after each
+    // subset, empty for none
+    public String telemetryLog;
+    // threads: image decode and augment threads, zero for the default
+    public int threads;
 
     //
     public GeneralConfig() {
@@ -0,0 +1,195 @@
+package datasci.backend.model;
+
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+
+/**
+ * Random distortions of training images: shift, rotation, elastic distortion and noise.
+ * <p>
+ * The distortions of a sample depend only on the seed and the sample number, so a run gives the
+ * same inputs whatever the number of threads. Each thread passes its own Scratch buffers,
+ * and nothing is allocated for each sample.
+ * <p>
+ * Elastic distortion reference:
+ * Simard, Steinkraus, Platt, "Best Practices for Convolutional Neural Networks Applied to
+ * Visual Document Analysis", 2003
+ */
+public class ImageAugmenter {
+
+    private static final Logger LOG = Logger.getLogger(ImageAugmenter.class.getName());
+    // mixes the sample number into the seed
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final int rows;
+    private final int cols;
+    private final double maxShift;
+    private final double maxRadians;
+    private final double elasticAlpha;
+    private final double noise;
+    private final long seed;
+    // gaussian smoothing kernel for elastic distortion, center at index radius
+    private final double[] kernel;
+    private final int radius;
+
+    /**
+     * Buffers used by one thread
+     */
+    public static class Scratch {
+        private final double[] source;
+        private final double[] dx;
+        private final double[] dy;
+        private final double[] tmp;
+
+        private Scratch(int imageSize) {
+            source = new double[imageSize];
+            dx = new double[imageSize];
+            dy = new double[imageSize];
+            tmp = new double[imageSize];
+        }
+    }
+
+    /**
+     * Instantiates a new image augmenter.
+     *
+     * @param generalConfig augment settings
+     * @param rows          image rows (height)
+     * @param cols          image columns (width)
+     */
+    public ImageAugmenter(GeneralConfig generalConfig, int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.maxShift = Math.max(generalConfig.augmentShift, 0.0);
+        this.maxRadians = Math.toRadians(Math.max(generalConfig.augmentRotation, 0.0));
+        this.elasticAlpha = Math.max(generalConfig.augmentElasticAlpha, 0.0);
+        this.noise = Math.max(generalConfig.augmentNoise, 0.0);
+        this.seed = generalConfig.augmentSeed;
+        double sigma = Math.max(generalConfig.augmentElasticSigma, 0.5);
+        radius = (int) Math.ceil(3.0 * sigma);
+        kernel = new double[2 * radius + 1];
+        double sum = 0.0;
+        for (int i = -radius; i <= radius; i++) {
+            kernel[i + radius] = Math.exp(-(i * i) / (2.0 * sigma * sigma));
+            sum += kernel[i + radius];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= sum;
+        }
+        LOG.info("maxShift: " + maxShift + ", maxRotation: " + generalConfig.augmentRotation
+                + ", elasticAlpha: " + elasticAlpha + ", elasticSigma: " + sigma + ", noise: " + noise);
+    }
+
+    /**
+     * Create buffers for one thread
+     *
+     * @return scratch buffers
+     */
+    public Scratch createScratch() {
+        return new Scratch(rows * cols);
+    }
+
+    /**
+     * Write a randomly distorted copy of sample n into dest, pixel values 0 to 1.0
+     *
+     * @param dataSet      source data set
+     * @param n            sample index in the data set
+     * @param sampleNumber training sample number, selects the distortions
+     * @param dest         destination array, rows * cols cells
+     * @param scratch      buffers of the calling thread
+     */
+    public void augment(ImageDataSet dataSet, int n, long sampleNumber, double[] dest, Scratch scratch) {
+        SplittableRandom rand = new SplittableRandom(seed + sampleNumber * GOLDEN_GAMMA);
+        double[] source = scratch.source;
+        dataSet.fillInput(n, source, 0);
+        //
+        double shiftX = maxShift * (2.0 * rand.nextDouble() - 1.0);
+        double shiftY = maxShift * (2.0 * rand.nextDouble() - 1.0);
+        double angle = maxRadians * (2.0 * rand.nextDouble() - 1.0);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        boolean elastic = elasticAlpha > 0.0;
+        if (elastic) {
+            randomField(rand, scratch.dx, scratch.tmp);
+            randomField(rand, scratch.dy, scratch.tmp);
+        }
+        // rotate about the image center
+        double cy = (rows - 1) / 2.0;
+        double cx = (cols - 1) / 2.0;
+        int k = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                // inverse map each output pixel to its source position
+                double u = j - cx - shiftX;
+                double v = i - cy - shiftY;
+                double sx = cos * u + sin * v + cx;
+                double sy = -sin * u + cos * v + cy;
+                if (elastic) {
+                    sx += scratch.dx[k];
+                    sy += scratch.dy[k];
+                }
+                double value = bilinear(source, sx, sy);
+                if (noise > 0.0) {
+                    value += noise * rand.nextGaussian();
+                }
+                dest[k++] = Math.min(Math.max(value, 0.0), 1.0);
+            }
+        }
+    }
+
+    /**
+     * Smoothed random displacement field, uniform -1 to 1 before smoothing, scaled by elasticAlpha
+     */
+    private void randomField(SplittableRandom rand, double[] field, double[] tmp) {
+        int size = rows * cols;
+        for (int k = 0; k < size; k++) {
+            tmp[k] = 2.0 * rand.nextDouble() - 1.0;
+        }
+        // separable gaussian: rows into field, then columns back into tmp
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                double sum = 0.0;
+                for (int t = -radius; t <= radius; t++) {
+                    int jj = j + t;
+                    if (jj >= 0 && jj < cols) {
+                        sum += kernel[t + radius] * tmp[i * cols + jj];
+                    }
+                }
+                field[i * cols + j] = sum;
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                double sum = 0.0;
+                for (int t = -radius; t <= radius; t++) {
+                    int ii = i + t;
+                    if (ii >= 0 && ii < rows) {
+                        sum += kernel[t + radius] * field[ii * cols + j];
+                    }
+                }
+                tmp[i * cols + j] = sum;
+            }
+        }
+        for (int k = 0; k < size; k++) {
+            field[k] = elasticAlpha * tmp[k];
+        }
+    }
+
+    /**
+     * Bilinear interpolation of the source image; zero outside the image
+     */
+    private double bilinear(double[] source, double x, double y) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        double fx = x - x0;
+        double fy = y - y0;
+        double top = (1.0 - fx) * pixel(source, y0, x0) + fx * pixel(source, y0, x0 + 1);
+        double bottom = (1.0 - fx) * pixel(source, y0 + 1, x0) + fx * pixel(source, y0 + 1, x0 + 1);
+        return (1.0 - fy) * top + fy * bottom;
+    }
+
+    private double pixel(double[] source, int i, int j) {
+        if (i < 0 || i >= rows || j < 0 || j >= cols) {
+            return 0.0;
+        }
+        return source[i * cols + j];
+    }
+}  //end class
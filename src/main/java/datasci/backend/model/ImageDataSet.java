@@ -0,0 +1,192 @@
+package datasci.backend.model;
+
+import java.awt.image.BufferedImage;
+import java.util.logging.Logger;
+
+/**
+ * Compact store of gray image samples, one byte for each pixel, along with the actual output value
+ * of each sample. Pixels of all samples are held in one shared array; a sample is normalized
+ * into a network input matrix only when it is used.
+ */
+public class ImageDataSet {
+
+    private static final Logger LOG = Logger.getLogger(ImageDataSet.class.getName());
+    // normalized pixel value for each gray level 0 to 255
+    private static final double[] NORM_LUT = initNormLut();
+
+    private final int size;
+    private final int rows;
+    private final int cols;
+    // imageSize: pixels in one sample, rows * cols
+    private final int imageSize;
+    // pixels: gray level of all samples, sample n starts at n * imageSize
+    private final byte[] pixels;
+    // labels: true output index (of class) of each sample
+    private final int[] labels;
+
+    /**
+     * Instantiates an empty data set.
+     *
+     * @param size number of samples
+     * @param rows image rows (height)
+     * @param cols image columns (width)
+     */
+    public ImageDataSet(int size, int rows, int cols) {
+        this.size = size;
+        this.rows = rows;
+        this.cols = cols;
+        this.imageSize = rows * cols;
+        this.pixels = new byte[Math.multiplyExact(size, imageSize)];
+        this.labels = new int[size];
+    }
+
+    /**
+     * Store one decoded image as sample n.
+     * Samples may be set from different threads, as each sample is a separate slice of the arrays.
+     *
+     * @param n           sample index
+     * @param image       decoded image with the data set rows and cols
+     * @param actualIndex true output index (of class)
+     */
+    public void setImage(int n, BufferedImage image, int actualIndex) {
+        if (image.getHeight() != rows || image.getWidth() != cols) {
+            String msg = "Image size " + image.getHeight() + "x" + image.getWidth()
+                    + " does not match data set size " + rows + "x" + cols;
+            throw new RuntimeException(new Exception(msg));
+        }
+        ImageDataUtil.extractGrayLevels(image, pixels, n * imageSize);
+        labels[n] = actualIndex;
+    }
+
+    /**
+     * Store gray levels of one sample.
+     *
+     * @param n           sample index
+     * @param levels      gray levels, imageSize cells from offset
+     * @param offset      index in levels for the first pixel
+     * @param actualIndex true output index (of class)
+     */
+    public void setLevels(int n, byte[] levels, int offset, int actualIndex) {
+        System.arraycopy(levels, offset, pixels, n * imageSize, imageSize);
+        labels[n] = actualIndex;
+    }
+
+    /**
+     * Copy gray levels of one sample.
+     *
+     * @param n      sample index
+     * @param dest   destination array, imageSize cells from offset
+     * @param offset index in dest for the first pixel
+     */
+    public void getLevels(int n, byte[] dest, int offset) {
+        System.arraycopy(pixels, n * imageSize, dest, offset, imageSize);
+    }
+
+    /**
+     * Copy the first samples into a new, smaller data set
+     *
+     * @param count number of samples to copy
+     * @return new data set with count samples
+     */
+    public ImageDataSet subset(int count) {
+        ImageDataSet subset = new ImageDataSet(count, rows, cols);
+        System.arraycopy(pixels, 0, subset.pixels, 0, count * imageSize);
+        System.arraycopy(labels, 0, subset.labels, 0, count);
+        return subset;
+    }
+
+    /**
+     * Normalize sample n into an existing input matrix, without allocating.
+     *
+     * @param n   sample index
+     * @param xIn input matrix with the data set rows and cols
+     */
+    public void fillInput(int n, Matrix xIn) {
+        fillInput(n, xIn.a, 0);
+    }
+
+    /**
+     * Normalize sample n into an existing array, without allocating.
+     *
+     * @param n      sample index
+     * @param dest   destination array, imageSize cells from offset
+     * @param offset index in dest for the first pixel
+     */
+    public void fillInput(int n, double[] dest, int offset) {
+        int p = n * imageSize;
+        for (int i = 0; i < imageSize; i++) {
+            dest[offset + i] = NORM_LUT[pixels[p + i] & 0xff];
+        }
+    }
+
+    /**
+     * Create an input matrix sized for one sample
+     *
+     * @return input matrix
+     */
+    public Matrix createInput() {
+        return new Matrix(rows, cols);
+    }
+
+    /**
+     * Create network data for sample n, with a new input matrix
+     *
+     * @param n sample index
+     * @return network data
+     */
+    public NetData getNetData(int n) {
+        Matrix xIn = createInput();
+        fillInput(n, xIn);
+        return new NetData(xIn, labels[n]);
+    }
+
+    /**
+     * Gets actual output of sample n.
+     *
+     * @param n sample index
+     * @return the actual output index
+     */
+    public int getActualIndex(int n) {
+        return labels[n];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getImageSize() {
+        return imageSize;
+    }
+
+    /**
+     * Build lookup table from gray level to normalized pixel value, same value as
+     * ImageDataUtil.extractPixels for a gray image
+     *
+     * @return normalized pixel value for each gray level
+     */
+    private static double[] initNormLut() {
+        double[] lut = new double[256];
+        for (int g = 0; g < 256; g++) {
+            lut[g] = (g + g + g) / 3.0 / 255.0;
+        }
+        return lut;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageDataSet{" +
+                "size=" + size +
+                ", rows=" + rows +
+                ", cols=" + cols +
+                ", bytes=" + pixels.length +
+                '}';
+    }
+}
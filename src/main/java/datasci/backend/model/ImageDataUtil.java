@@ -1,11 +1,28 @@
 package datasci.backend.model;
 
+import datasci.backend.jfr.DataLoadEvent;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,9 +58,54 @@ import java.util.logging.Logger;
  * The subDirectories 0 to 9 contain hundreds of digit images. After the image files are read
  * sequentially, and stored in matrix format, the matrix list is then randomly shuffled to avoid
  * skewed results.
+ * <p>
+ * loadDataParallel reads the same files in the same order as loadData, but reads each file on a
+ * virtual thread and decodes the png bytes on a bounded pool of platform threads.
+ * <p>
+ * Pixel values are read in bulk from the image raster for 8 bit gray, BGR and ABGR images;
+ * other image types fall back to BufferedImage.getRGB.
  */
 public class ImageDataUtil {
     private static final Logger LOG = Logger.getLogger(ImageDataUtil.class.getName());
+    // default number of platform threads used to decode png images
+    private static final int DECODE_THREADS = Runtime.getRuntime().availableProcessors();
+    // max number of files read into memory, but not yet decoded, for each decode thread
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+    // sRGB gray level for each gray level of a TYPE_BYTE_GRAY image
+    private static final int[] GRAY_LEVEL = initGrayLevel();
+    // normalized pixel value for each gray level of a TYPE_BYTE_GRAY image
+    private static final double[] GRAY_LUT = initGrayLut();
+
+    /**
+     * Convert one decoded image, at index n of the load list, into a result
+     */
+    @FunctionalInterface
+    public interface ImageFn<T> {
+        T apply(BufferedImage image, int n);
+    }
+
+    /**
+     * Holder for the shared pools of daemon platform threads used to decode images, one for each
+     * thread count; each pool is created on first use.
+     */
+    private static class DecodePool {
+        private static final Map<Integer, ExecutorService> POOLS = new ConcurrentHashMap<>();
+
+        static ExecutorService get(int threads) {
+            return POOLS.computeIfAbsent(threads, t -> Executors.newFixedThreadPool(t,
+                    Thread.ofPlatform().name("png-decode-" + t + "-", 0).daemon(true).factory()));
+        }
+    }
+
+    /**
+     * Get the number of decode threads to use
+     *
+     * @param threads requested threads, zero or less for the default: one for each processor
+     * @return number of decode threads
+     */
+    public static int decodeThreads(int threads) {
+        return threads > 0 ? threads : DECODE_THREADS;
+    }
 
 
     /**
@@ -90,6 +152,325 @@ public class ImageDataUtil {
         return dataList;
     }
 
+    /**
+     * Load image data into list of network data, decoding the image files in parallel.
+     * The returned list has the same order as loadData: one list for each class index,
+     * and within each class the same file order as the directory listing.
+     *
+     * @param parentDir directory to image input data
+     * @return list of network data
+     */
+    public static List<List<NetData>> loadDataParallel(String parentDir, int numClassestoLoad, int numEachClass) {
+        List<List<NetData>> dataList = new ArrayList<>();
+        try {
+            LOG.info("parentDir: " + parentDir + ", numClassestoLoad: " + numClassestoLoad
+                    + ", numEachClass: " + numEachClass + ", decodeThreads: " + DECODE_THREADS);
+            // k = class index, one array of files for each class
+            List<File[]> classFiles = listClassFiles(parentDir, numClassestoLoad, numEachClass);
+            List<File> files = new ArrayList<>();
+            int[] classIndex = flattenClassFiles(classFiles, files);
+            List<NetData> loadList = decodeFiles(files,
+                    (image, n) -> new NetData(imageToMatrix(image), classIndex[n]));
+            // regroup into one list for each class index
+            int n = 0;
+            for (File[] classFileArray : classFiles) {
+                dataList.add(new ArrayList<>(loadList.subList(n, n + classFileArray.length)));
+                n += classFileArray.length;
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return dataList;
+    }
+
+    /**
+     * Load image data into a compact data set of 8 bit gray levels, decoding the image files
+     * in parallel. Samples are stored in the same order as loadData: class by class,
+     * and within each class the same file order as the directory listing.
+     *
+     * @param parentDir        directory to image input data
+     * @param numClassestoLoad number of class subdirectories to load
+     * @param numEachClass     max number of files to load for each class
+     * @param rows             image rows (height)
+     * @param cols             image columns (width)
+     * @return compact data set of all loaded images
+     */
+    public static ImageDataSet loadDataSet(String parentDir, int numClassestoLoad, int numEachClass,
+                                           int rows, int cols) {
+        return loadDataSet(parentDir, numClassestoLoad, numEachClass, rows, cols, 0);
+    }
+
+    /**
+     * Load image data into a compact data set, as loadDataSet, on a given number of decode threads
+     *
+     * @param parentDir        directory to image input data
+     * @param numClassestoLoad number of class subdirectories to load
+     * @param numEachClass     max number of files to load for each class
+     * @param rows             image rows (height)
+     * @param cols             image columns (width)
+     * @param threads          decode threads, zero for the default
+     * @return compact data set of all loaded images
+     */
+    public static ImageDataSet loadDataSet(String parentDir, int numClassestoLoad, int numEachClass,
+                                           int rows, int cols, int threads) {
+        ImageDataSet dataSet = null;
+        try {
+            DataLoadEvent event = new DataLoadEvent();
+            event.begin();
+            LOG.info("parentDir: " + parentDir + ", numClassestoLoad: " + numClassestoLoad
+                    + ", numEachClass: " + numEachClass + ", decodeThreads: " + decodeThreads(threads));
+            List<File[]> classFiles = listClassFiles(parentDir, numClassestoLoad, numEachClass);
+            List<File> files = new ArrayList<>();
+            int[] classIndex = flattenClassFiles(classFiles, files);
+            ImageDataSet imageSet = new ImageDataSet(files.size(), rows, cols);
+            // each decode thread writes a separate slice of the shared pixel array
+            decodeFiles(files, threads, (image, n) -> {
+                imageSet.setImage(n, image, classIndex[n]);
+                return n;
+            });
+            dataSet = imageSet;
+            event.end(parentDir, -1, files.size(), files.size());
+            LOG.info("dataSet: " + dataSet);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return dataSet;
+    }
+
+    /**
+     * Create a data set of seeded synthetic images, e.g. for benchmarks without image files.
+     * Class k is a bright vertical band in the k-th of numClasses column ranges, on a dark
+     * background, with random noise in every pixel; white on black, like the image files.
+     * As with loadDataSet, the data set contains the samples of each class index in turn.
+     *
+     * @param numClasses   number of classes
+     * @param numEachClass number of samples of each class
+     * @param rows         image rows (height)
+     * @param cols         image columns (width)
+     * @param seed         random seed, the same seed gives the same images
+     * @return synthetic data set
+     */
+    public static ImageDataSet syntheticDataSet(int numClasses, int numEachClass, int rows, int cols, long seed) {
+        ImageDataSet dataSet = new ImageDataSet(numClasses * numEachClass, rows, cols);
+        Random rand = new Random(seed);
+        byte[] levels = new byte[rows * cols];
+        int n = 0;
+        for (int k = 0; k < numClasses; k++) {
+            for (int i = 0; i < numEachClass; i++) {
+                for (int y = 0; y < rows; y++) {
+                    for (int x = 0; x < cols; x++) {
+                        int level = (x * numClasses / cols) == k ? 192 : 0;
+                        levels[y * cols + x] = (byte) (level + rand.nextInt(64));
+                    }
+                }
+                dataSet.setLevels(n++, levels, 0, k);
+            }
+        }
+        LOG.info("synthetic dataSet: " + dataSet + ", seed: " + seed);
+        return dataSet;
+    }
+
+    /**
+     * Read and decode image files in parallel.
+     * Each file is read on a virtual thread, and decoded on the bounded pool of platform threads.
+     * Results are returned in the same order as the input file list.
+     *
+     * @param files   image files to decode
+     * @param imageFn converts each decoded image, with its index in the file list, to a result
+     * @return list of results, one for each file
+     */
+    public static <T> List<T> decodeFiles(List<File> files, ImageFn<T> imageFn) {
+        return decodeFiles(files, 0, imageFn);
+    }
+
+    /**
+     * Read and decode image files in parallel, as decodeFiles, on a given number of decode threads
+     *
+     * @param files   image files to decode
+     * @param threads decode threads, zero for the default
+     * @param imageFn converts each decoded image, with its index in the file list, to a result
+     * @return list of results, one for each file
+     */
+    public static <T> List<T> decodeFiles(List<File> files, int threads, ImageFn<T> imageFn) {
+        List<T> resultList = new ArrayList<>(files.size());
+        try {
+            long start = System.nanoTime();
+            int decodeThreads = decodeThreads(threads);
+            ExecutorService decodePool = DecodePool.get(decodeThreads);
+            // fair semaphore, so files are read roughly in listing order
+            Semaphore inFlight = new Semaphore(IN_FLIGHT_PER_THREAD * decodeThreads, true);
+            // decodeNanos: png decode time, extractNanos: pixel extract time, summed over all files
+            LongAdder decodeNanos = new LongAdder();
+            LongAdder extractNanos = new LongAdder();
+            List<Future<T>> futureList = new ArrayList<>(files.size());
+            // one virtual thread per file for file I/O; closing the executor waits for all reads
+            try (ExecutorService readPool = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int n = 0; n < files.size(); n++) {
+                    File f = files.get(n);
+                    int index = n;
+                    futureList.add(readPool.submit(() -> readAndDecode(f, index, decodePool, inFlight, imageFn,
+                            decodeNanos, extractNanos)));
+                }
+            }
+            // collect results in submit order to keep the deterministic file order
+            for (Future<T> future : futureList) {
+                resultList.add(future.get());
+            }
+            int totalFiles = files.size();
+            double seconds = (System.nanoTime() - start) / 1.0E9;
+            LOG.fine("decoded files: " + totalFiles + ", seconds: " + seconds
+                    + ", files/sec: " + Math.round(totalFiles / Math.max(seconds, 1.0E-9)));
+            if (totalFiles > 0) {
+                LOG.fine("per image, decode usec: " + decodeNanos.sum() / (1000L * totalFiles)
+                        + ", extract usec: " + extractNanos.sum() / (1000L * totalFiles));
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return resultList;
+    }
+
+    /**
+     * List the image files to load for each class, in the same order used by loadData
+     *
+     * @param parentDir        directory to image input data
+     * @param numClassestoLoad number of class subdirectories to list
+     * @param numEachClass     max number of files to list for each class
+     * @return list with one array of files for each class index
+     */
+    public static List<File[]> listClassFiles(String parentDir, int numClassestoLoad, int numEachClass) {
+        List<File[]> classFiles = new ArrayList<>();
+        // k = class index
+        for (int k = 0; k < numClassestoLoad; k++) {
+            // full directory path to one set of image files
+            String fullDir = parentDir + File.separator + k;
+            File dirFile = new File(fullDir);
+            if (dirFile.isDirectory()) {
+                File[] files = dirFile.listFiles();
+                int numFiles = Math.min(files.length, numEachClass);
+                LOG.info("fullDir: " + fullDir + ", numFiles: " + numFiles);
+                File[] loadFiles = new File[numFiles];
+                System.arraycopy(files, 0, loadFiles, 0, numFiles);
+                classFiles.add(loadFiles);
+            } else {
+                String msg = "Not a directory: " + fullDir;
+                throw new RuntimeException(new Exception(msg));
+            }
+        }
+        return classFiles;
+    }
+
+    /**
+     * Copy the files of all classes into one list, class by class
+     *
+     * @param classFiles one array of files for each class index
+     * @param files      output list of all files
+     * @return class index of each file in the output list
+     */
+    private static int[] flattenClassFiles(List<File[]> classFiles, List<File> files) {
+        for (File[] classFileArray : classFiles) {
+            files.addAll(Arrays.asList(classFileArray));
+        }
+        int[] classIndex = new int[files.size()];
+        int n = 0;
+        for (int k = 0; k < classFiles.size(); k++) {
+            int numFiles = classFiles.get(k).length;
+            Arrays.fill(classIndex, n, n + numFiles, k);
+            n += numFiles;
+        }
+        return classIndex;
+    }
+
+    /**
+     * Copy the files of all classes into one list, taking one file from each class in turn,
+     * so that any run of consecutive files is spread across the classes
+     *
+     * @param classFiles one array of files for each class index
+     * @param files      output list of all files
+     * @return class index of each file in the output list
+     */
+    public static int[] interleaveClassFiles(List<File[]> classFiles, List<File> files) {
+        List<Integer> labelList = new ArrayList<>();
+        int maxFiles = 0;
+        for (File[] classFileArray : classFiles) {
+            maxFiles = Math.max(maxFiles, classFileArray.length);
+        }
+        for (int i = 0; i < maxFiles; i++) {
+            for (int k = 0; k < classFiles.size(); k++) {
+                File[] classFileArray = classFiles.get(k);
+                if (i < classFileArray.length) {
+                    files.add(classFileArray[i]);
+                    labelList.add(k);
+                }
+            }
+        }
+        return labelList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Read one image file on the calling (virtual) thread, then decode it on the decode pool
+     *
+     * @param f            image file
+     * @param n            index of file in the load list
+     * @param decodePool   decode threads
+     * @param inFlight     limits the number of file contents held in memory
+     * @param imageFn      converts the decoded image to a result
+     * @param decodeNanos  accumulates png decode time
+     * @param extractNanos accumulates pixel extract time
+     * @return result for one file
+     */
+    private static <T> T readAndDecode(File f, int n, ExecutorService decodePool, Semaphore inFlight,
+                                       ImageFn<T> imageFn, LongAdder decodeNanos, LongAdder extractNanos)
+            throws Exception {
+        inFlight.acquire();
+        try {
+            byte[] bytes = Files.readAllBytes(f.toPath());
+            Future<T> result = decodePool.submit(() -> {
+                long start = System.nanoTime();
+                BufferedImage image = decodeImage(bytes);
+                long decoded = System.nanoTime();
+                T data = imageFn.apply(image, n);
+                extractNanos.add(System.nanoTime() - decoded);
+                decodeNanos.add(decoded - start);
+                return data;
+            });
+            return result.get();
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Decode image file contents into matrix of normalized pixel values
+     *
+     * @param bytes image file contents
+     * @return the matrix of normalized pixel values
+     */
+    public static Matrix decodeImageData(byte[] bytes) {
+        return imageToMatrix(decodeImage(bytes));
+    }
+
+    /**
+     * Decode image file contents
+     *
+     * @param bytes image file contents
+     * @return the decoded image
+     */
+    public static BufferedImage decodeImage(byte[] bytes) {
+        BufferedImage image = null;
+        try {
+            // memory cache avoids the temporary file ImageIO may create for an input stream
+            image = ImageIO.read(new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes)));
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return image;
+    }
+
     /**
      * Load image data into list of network data.
      *
@@ -145,6 +526,8 @@ public class ImageDataUtil {
     public static List<NetData> loadClassData(File[] files, int classIndex, int numFiles) {
         List<NetData> classDataList = new ArrayList<>();
         try {
+            DataLoadEvent event = new DataLoadEvent();
+            event.begin();
             for (int n = 0; n < numFiles; n++) {
                 // one image file
                 File f = files[n];
@@ -158,6 +541,8 @@ public class ImageDataUtil {
                     LOG.info("File null for n: " + n);
                 }
             }
+            event.end(files.length > 0 && files[0] != null ? files[0].getParent() : null, classIndex, numFiles,
+                    classDataList.size());
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
             throw new RuntimeException(ex);
@@ -177,33 +562,30 @@ public class ImageDataUtil {
         Matrix data = null;
         try {
             BufferedImage image = ImageIO.read(f);
+            data = imageToMatrix(image);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return data;
+    }
+
+    /**
+     * Convert image into matrix of normalized pixel values
+     * Matrix rows = image height, matrix cols = image width,
+     * matrix cell(i, j) = pixel at image row i (y), image column j (x)
+     *
+     * @param image decoded image
+     * @return the matrix of normalized pixel values, or null if image is null
+     */
+    public static Matrix imageToMatrix(BufferedImage image) {
+        Matrix data = null;
+        try {
             if (image != null) {
                 int w = image.getWidth();
                 int h = image.getHeight();
                 data = new Matrix(h, w);
-                for (int y = 0; y < h; y++) {
-                    for (int x = 0; x < w; x++) {
-                        // Reads a 32-bit integer representation of the color of a pixel
-                        int p = image.getRGB(y, x);
-                        // extract each color (r,g,b), 0 to 255; ignore alpha a
-                        // int a = (p>>24)&0xff;
-                        int r = (p >> 16) & 0xff;
-                        int g = (p >> 8) & 0xff;
-                        int b = p & 0xff;
-
-                        //calculate average, 0 to 255
-                        double avg = (r + g + b) / 3.0;
-
-                        // normalizes value to gray 0 to 1.0
-                        double d = (avg / 255.0);
-
-                        // translate to create - and + values : -0.5 to +0.5
-                 //       d -= 0.5;
-
-                        //   LOG.info("loadImageData, x: " + x + ", y: " + y + ", d: " + d);
-                        MTX.setCell(data, x, y, d);
-                    }
-                }
+                extractPixels(image, data.a, 0);
             } else {
                 LOG.log(Level.INFO, "image is null");
             }
@@ -214,5 +596,193 @@ public class ImageDataUtil {
         return data;
     }
 
+    /**
+     * Write normalized pixel values of image into array, one image row after another.
+     * Note: assumes original image is white(255) on a black(0) background,
+     * and normalizes the pixel values to between 0.0(black) and 1.0(white)
+     *
+     * @param image  decoded image
+     * @param dest   destination array, at least width * height cells from offset
+     * @param offset index in dest for the first pixel
+     */
+    public static void extractPixels(BufferedImage image, double[] dest, int offset) {
+        int type = image.getType();
+        Raster raster = image.getRaster();
+        boolean isByteRaster = raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getSampleModel() instanceof ComponentSampleModel;
+        if (isByteRaster && type == BufferedImage.TYPE_BYTE_GRAY) {
+            extractBytes(raster, 1, dest, offset);
+        } else if (isByteRaster && (type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_4BYTE_ABGR)) {
+            extractBytes(raster, 3, dest, offset);
+        } else {
+            extractRGB(image, dest, offset);
+        }
+    }
+
+    /**
+     * Read pixel values straight from the byte data buffer of the raster
+     *
+     * @param raster   image raster with byte data buffer and component sample model
+     * @param numBands 1 for gray, 3 for r,g,b (alpha band is ignored)
+     * @param dest     destination array
+     * @param offset   index in dest for the first pixel
+     */
+    private static void extractBytes(Raster raster, int numBands, double[] dest, int offset) {
+        ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+        byte[] pixels = db.getData();
+        int w = raster.getWidth();
+        int h = raster.getHeight();
+        int scanline = sm.getScanlineStride();
+        int pixelStride = sm.getPixelStride();
+        int[] bandOffsets = sm.getBandOffsets();
+        // index of pixel (0, 0) in the data buffer
+        int base = db.getOffset()
+                + (raster.getMinY() - raster.getSampleModelTranslateY()) * scanline
+                + (raster.getMinX() - raster.getSampleModelTranslateX()) * pixelStride;
+        int k = offset;
+        if (numBands == 1) {
+            int band0 = bandOffsets[0];
+            for (int y = 0; y < h; y++) {
+                int p = base + y * scanline + band0;
+                for (int x = 0; x < w; x++) {
+                    dest[k++] = GRAY_LUT[pixels[p] & 0xff];
+                    p += pixelStride;
+                }
+            }
+        } else {
+            int band0 = bandOffsets[0];
+            int band1 = bandOffsets[1];
+            int band2 = bandOffsets[2];
+            for (int y = 0; y < h; y++) {
+                int p = base + y * scanline;
+                for (int x = 0; x < w; x++) {
+                    int sum = (pixels[p + band0] & 0xff) + (pixels[p + band1] & 0xff) + (pixels[p + band2] & 0xff);
+                    //calculate average, 0 to 255, and normalize to gray 0 to 1.0
+                    dest[k++] = (sum / 3.0) / 255.0;
+                    p += pixelStride;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read pixel values with getRGB, for image types without a fast path
+     *
+     * @param image  decoded image
+     * @param dest   destination array
+     * @param offset index in dest for the first pixel
+     */
+    public static void extractRGB(BufferedImage image, double[] dest, int offset) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int k = offset;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                // Reads a 32-bit integer representation of the color of a pixel
+                int p = image.getRGB(x, y);
+                dest[k++] = rgbToGray(p);
+            }
+        }
+    }
+
+    /**
+     * Average the r,g,b colors of a 32-bit pixel, and normalize to gray 0 to 1.0
+     *
+     * @param p 32-bit integer representation of the color of a pixel
+     * @return normalized gray value
+     */
+    private static double rgbToGray(int p) {
+        // extract each color (r,g,b), 0 to 255; ignore alpha a
+        int r = (p >> 16) & 0xff;
+        int g = (p >> 8) & 0xff;
+        int b = p & 0xff;
+        //calculate average, 0 to 255
+        double avg = (r + g + b) / 3.0;
+        // normalizes value to gray 0 to 1.0
+        return (avg / 255.0);
+    }
+
+    /**
+     * Write 8 bit gray level (0 to 255) of each image pixel into array, one image row after another.
+     * Gray images keep their sRGB gray level, so gray level / 255 equals the value from extractPixels;
+     * color images store the r,g,b average rounded to the nearest level.
+     *
+     * @param image  decoded image
+     * @param dest   destination array, at least width * height cells from offset
+     * @param offset index in dest for the first pixel
+     */
+    public static void extractGrayLevels(BufferedImage image, byte[] dest, int offset) {
+        int type = image.getType();
+        Raster raster = image.getRaster();
+        boolean isByteRaster = raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getSampleModel() instanceof ComponentSampleModel;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int k = offset;
+        if (isByteRaster && type == BufferedImage.TYPE_BYTE_GRAY) {
+            ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+            DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+            byte[] pixels = db.getData();
+            int scanline = sm.getScanlineStride();
+            int pixelStride = sm.getPixelStride();
+            int base = db.getOffset() + sm.getBandOffsets()[0]
+                    + (raster.getMinY() - raster.getSampleModelTranslateY()) * scanline
+                    + (raster.getMinX() - raster.getSampleModelTranslateX()) * pixelStride;
+            for (int y = 0; y < h; y++) {
+                int p = base + y * scanline;
+                for (int x = 0; x < w; x++) {
+                    dest[k++] = (byte) GRAY_LEVEL[pixels[p] & 0xff];
+                    p += pixelStride;
+                }
+            }
+        } else {
+            // color images are not on the hot path, convert through normalized values
+            double[] row = new double[w];
+            for (int y = 0; y < h; y++) {
+                extractPixels(image.getSubimage(0, y, w, 1), row, 0);
+                for (int x = 0; x < w; x++) {
+                    dest[k++] = (byte) Math.round(row[x] * 255.0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build lookup table from gray level to sRGB gray level.
+     * getRGB converts the linear gray color space to sRGB, so the table is built with getRGB
+     * to keep the same pixel values as the per-pixel path.
+     *
+     * @return sRGB gray level 0 to 255 for each gray level 0 to 255
+     */
+    private static int[] initGrayLevel() {
+        BufferedImage gray = new BufferedImage(256, 1, BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = gray.getRaster();
+        for (int g = 0; g < 256; g++) {
+            raster.setSample(g, 0, 0, g);
+        }
+        int[] level = new int[256];
+        for (int g = 0; g < 256; g++) {
+            // r = g = b for a gray pixel
+            level[g] = gray.getRGB(g, 0) & 0xff;
+        }
+        return level;
+    }
+
+    /**
+     * Build lookup table from gray level to normalized pixel value.
+     *
+     * @return normalized pixel value for each gray level 0 to 255
+     */
+    private static double[] initGrayLut() {
+        double[] lut = new double[256];
+        for (int g = 0; g < 256; g++) {
+            int s = GRAY_LEVEL[g];
+            lut[g] = rgbToGray((s << 16) | (s << 8) | s);
+        }
+        return lut;
+    }
+
 
 }  //end class
@@ -0,0 +1,350 @@
+package datasci.backend.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stream of shuffled sample batches, read and decoded by a background thread while the network
+ * trains on the current batch.
+ * <p>
+ * Samples are read from png class directories, one class after another in turn, or from a
+ * packed image file. Shuffling uses a window of samples: each new sample replaces a randomly
+ * chosen sample of the window, which is sent on to the next batch. Memory is bounded by the
+ * window plus prefetchBatches + 2 batches, whatever the size of the data set.
+ */
+public class ImageStream implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ImageStream.class.getName());
+    // number of png files decoded at a time
+    private static final int READ_CHUNK = 256;
+    // end of stream marker
+    private static final ImageDataSet END = new ImageDataSet(0, 0, 0);
+
+    private final String parentDir;
+    private final File packedFile;
+    private final int rows;
+    private final int cols;
+    private final int shuffleWindow;
+    private final int prefetchBatches;
+    // decode threads for png files, zero for the default
+    private final int threads;
+    private final long seed;
+    // png files and their class index, in read order; not used for a packed file
+    private final List<File> files = new ArrayList<>();
+    private int[] labels;
+    private final int totalSamples;
+    //
+    private int batchSize;
+    private int numEpochs;
+    private int firstEpoch;
+    // full batches ready for training
+    private BlockingQueue<ImageDataSet> readyQueue;
+    // empty batches for the producer to fill
+    private BlockingQueue<ImageDataSet> freeQueue;
+    // batch currently used by training, returned to freeQueue on the next call
+    private ImageDataSet current;
+    private Thread producer;
+    private volatile Exception failure;
+    // waitNanos: time training waited for the next batch
+    private long waitNanos;
+
+    /**
+     * Instantiates a new image stream. Lists the png files, or reads the packed file header,
+     * without reading any images.
+     *
+     * @param generalConfig   trainingDir, or trainingFile for a packed file, and decode threads
+     * @param numClasses      number of class subdirectories to read
+     * @param numEachClass    max number of samples to read for each class
+     * @param rows            image rows (height)
+     * @param cols            image columns (width)
+     * @param seed            seed for the shuffle window
+     */
+    public ImageStream(GeneralConfig generalConfig, int numClasses, int numEachClass, int rows, int cols,
+                       long seed) {
+        this.rows = rows;
+        this.cols = cols;
+        this.seed = seed;
+        this.shuffleWindow = Math.max(generalConfig.shuffleWindow, 1);
+        this.prefetchBatches = Math.max(generalConfig.prefetchBatches, 1);
+        this.threads = generalConfig.threads;
+        try {
+            String trainingFile = generalConfig.trainingFile;
+            if (trainingFile != null && !trainingFile.isBlank()) {
+                parentDir = null;
+                packedFile = new File(trainingFile);
+                try (PackedImageFile packed = new PackedImageFile(packedFile)) {
+                    if (packed.getRows() != rows || packed.getCols() != cols) {
+                        String msg = "Packed file image size " + packed.getRows() + "x" + packed.getCols()
+                                + " does not match input size " + rows + "x" + cols;
+                        throw new RuntimeException(new Exception(msg));
+                    }
+                    totalSamples = Math.min(packed.getCount(), numClasses * numEachClass);
+                }
+            } else {
+                parentDir = generalConfig.trainingDir;
+                packedFile = null;
+                List<File[]> classFiles = ImageDataUtil.listClassFiles(parentDir, numClasses, numEachClass);
+                labels = ImageDataUtil.interleaveClassFiles(classFiles, files);
+                totalSamples = files.size();
+            }
+            LOG.info("source: " + (packedFile != null ? packedFile : parentDir) + ", totalSamples: " + totalSamples
+                    + ", shuffleWindow: " + shuffleWindow + ", prefetchBatches: " + prefetchBatches);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Start reading batches on the background thread, for one epoch.
+     *
+     * @param batchSize number of samples in each batch
+     */
+    public void start(int batchSize) {
+        start(batchSize, 1);
+    }
+
+    /**
+     * Start reading batches on the background thread.
+     * All samples are read again for each epoch, with a different shuffle;
+     * the first batch of the next epoch is read ahead while the current epoch trains.
+     *
+     * @param batchSize number of samples in each batch
+     * @param numEpochs number of passes over all samples
+     */
+    public void start(int batchSize, int numEpochs) {
+        start(batchSize, numEpochs, 0);
+    }
+
+    /**
+     * Start reading batches on the background thread, from a given epoch, e.g. when resuming training.
+     * Each epoch has the same shuffle as when started from the first epoch.
+     *
+     * @param batchSize  number of samples in each batch
+     * @param numEpochs  number of passes over all samples
+     * @param firstEpoch first epoch to read, 0 to numEpochs - 1
+     */
+    public void start(int batchSize, int numEpochs, int firstEpoch) {
+        this.batchSize = batchSize;
+        this.numEpochs = numEpochs;
+        this.firstEpoch = firstEpoch;
+        // one batch in training, one being filled, the rest waiting in readyQueue
+        readyQueue = new ArrayBlockingQueue<>(prefetchBatches + 1);
+        freeQueue = new ArrayBlockingQueue<>(prefetchBatches + 2);
+        for (int i = 0; i < prefetchBatches + 2; i++) {
+            freeQueue.add(new ImageDataSet(batchSize, rows, cols));
+        }
+        producer = Thread.ofPlatform().name("image-stream").daemon(true).start(this::produce);
+    }
+
+    /**
+     * Get the next batch of shuffled samples, waiting for it if necessary.
+     * The previous batch is given back to the stream, so it must no longer be used.
+     *
+     * @return next batch, the last batch of each epoch may be smaller; null at the end of the stream
+     */
+    public ImageDataSet nextBatch() {
+        ImageDataSet batch = null;
+        try {
+            if (current != null && current.getSize() == batchSize) {
+                freeQueue.put(current);
+            }
+            current = null;
+            long start = System.nanoTime();
+            batch = readyQueue.take();
+            waitNanos += System.nanoTime() - start;
+            if (batch == END) {
+                // keep END in the queue for any later call
+                readyQueue.put(END);
+                batch = null;
+                if (failure != null) {
+                    throw failure;
+                }
+                LOG.fine("end of stream, training wait ms: " + waitNanos / 1000000L);
+            }
+            current = batch;
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return batch;
+    }
+
+    /**
+     * Get total number of samples in the stream
+     *
+     * @return total number of samples
+     */
+    public int getTotalSamples() {
+        return totalSamples;
+    }
+
+    /**
+     * Get total time training has waited for batches, in nanoseconds
+     *
+     * @return wait time
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * Stop the background thread. Batches already taken may still be used.
+     */
+    @Override
+    public void close() {
+        if (producer != null) {
+            producer.interrupt();
+        }
+    }
+
+    /**
+     * Background thread: for each epoch, read all samples through the shuffle window into batches
+     */
+    private void produce() {
+        PackedImageFile packed = null;
+        boolean closed = false;
+        try {
+            int imageSize = rows * cols;
+            int window = Math.min(shuffleWindow, Math.max(totalSamples, 1));
+            byte[] windowLevels = new byte[window * imageSize];
+            int[] windowLabels = new int[window];
+            BatchFill fill = new BatchFill(windowLevels, windowLabels, imageSize);
+            ImageDataSet chunk = new ImageDataSet(READ_CHUNK, rows, cols);
+            for (int epoch = firstEpoch; epoch < numEpochs; epoch++) {
+                long start = System.nanoTime();
+                int filled = 0;
+                // each epoch has its own shuffle
+                Random rand = new Random(seed + epoch);
+                if (packedFile != null) {
+                    packed = new PackedImageFile(packedFile);
+                }
+                for (int base = 0; base < totalSamples; base += READ_CHUNK) {
+                    int chunkCount = readChunk(chunk, packed, base, Math.min(READ_CHUNK, totalSamples - base));
+                    for (int n = 0; n < chunkCount; n++) {
+                        int slot;
+                        if (filled < window) {
+                            slot = filled++;
+                        } else {
+                            // send a random window sample on, and put the new sample in its place
+                            slot = rand.nextInt(window);
+                            fill.emit(slot);
+                        }
+                        chunk.getLevels(n, windowLevels, slot * imageSize);
+                        windowLabels[slot] = chunk.getActualIndex(n);
+                    }
+                }
+                // drain the window in random order
+                for (int i = filled; i > 0; i--) {
+                    int slot = rand.nextInt(i);
+                    fill.emit(slot);
+                    // move the last remaining sample into the emptied slot
+                    System.arraycopy(windowLevels, (i - 1) * imageSize, windowLevels, slot * imageSize, imageSize);
+                    windowLabels[slot] = windowLabels[i - 1];
+                }
+                fill.flush();
+                if (packed != null) {
+                    packed.close();
+                    packed = null;
+                }
+                double seconds = (System.nanoTime() - start) / 1.0E9;
+                LOG.info("stream epoch: " + epoch + ", samples: " + totalSamples + ", seconds: " + seconds
+                        + ", samples/sec: " + Math.round(totalSamples / Math.max(seconds, 1.0E-9)));
+            }
+        } catch (InterruptedException ex) {
+            closed = true;
+            LOG.fine("image stream closed");
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            failure = ex;
+        } finally {
+            if (packed != null) {
+                try {
+                    packed.close();
+                } catch (Exception ex) {
+                    LOG.log(Level.WARNING, ex.getMessage(), ex);
+                }
+            }
+            if (closed) {
+                // training no longer takes batches
+                readyQueue.offer(END);
+            } else {
+                try {
+                    readyQueue.put(END);
+                } catch (InterruptedException ex) {
+                    readyQueue.offer(END);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the next chunk of samples, in stream order
+     *
+     * @param chunk  data set to read into, starting at sample 0
+     * @param packed open packed file, or null to decode png files
+     * @param base   stream index of the first sample
+     * @param count  number of samples to read
+     * @return number of samples read
+     */
+    private int readChunk(ImageDataSet chunk, PackedImageFile packed, int base, int count) throws Exception {
+        int numRead;
+        if (packed != null) {
+            numRead = packed.read(chunk, count);
+        } else {
+            ImageDataUtil.decodeFiles(files.subList(base, base + count), threads, (image, n) -> {
+                chunk.setImage(n, image, labels[base + n]);
+                return n;
+            });
+            numRead = count;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        return numRead;
+    }
+
+    /**
+     * Copies window samples into batches, and hands each full batch to training
+     */
+    private class BatchFill {
+        private final byte[] windowLevels;
+        private final int[] windowLabels;
+        private final int imageSize;
+        private ImageDataSet batch;
+        private int count;
+
+        BatchFill(byte[] windowLevels, int[] windowLabels, int imageSize) {
+            this.windowLevels = windowLevels;
+            this.windowLabels = windowLabels;
+            this.imageSize = imageSize;
+        }
+
+        void emit(int slot) throws InterruptedException {
+            if (batch == null) {
+                batch = freeQueue.take();
+                count = 0;
+            }
+            batch.setLevels(count++, windowLevels, slot * imageSize, windowLabels[slot]);
+            if (count == batchSize) {
+                readyQueue.put(batch);
+                batch = null;
+            }
+        }
+
+        void flush() throws InterruptedException {
+            if (batch != null && count > 0) {
+                // last batch is smaller, copy it so the full size batches stay reusable
+                readyQueue.put(batch.subset(count));
+                freeQueue.put(batch);
+                batch = null;
+            }
+        }
+    }
+}  //end class
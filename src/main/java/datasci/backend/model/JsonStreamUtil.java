@@ -0,0 +1,353 @@
+package datasci.backend.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import datasci.backend.jfr.FitParamsIOEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming JSON read and write of FitParams and matrix lists, token by token.
+ * <p>
+ * Same json fields as ObjectMapper databinding of the public fields, so files written either
+ * way can be read either way. Matrix values are written straight from Matrix.a and parsed
+ * into a double[] allocated from the matrix size, so no tree or boxed values are held.
+ * Fields may come in any order; unknown fields are skipped.
+ */
+public class JsonStreamUtil {
+
+    private static final Logger LOG = Logger.getLogger(JsonStreamUtil.class.getName());
+    // NaN and Infinity are written as strings by default, accept them as numbers as well
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_NON_NUMERIC_NUMBERS).build();
+
+    /**
+     * Write network FitParams as json
+     *
+     * @param fitParams network training FitParams
+     * @param out       json output stream
+     * @param indent    true to indent the output, false for compact output
+     */
+    public static void FitParamsToJson(FitParams fitParams, OutputStream out, boolean indent) {
+        FitParamsIOEvent event = new FitParamsIOEvent();
+        event.begin();
+        try (JsonGenerator gen = FACTORY.createGenerator(out)) {
+            if (indent) {
+                gen.useDefaultPrettyPrinter();
+            }
+            gen.writeStartObject();
+            gen.writeFieldName("convoPoolList");
+            gen.writeStartArray();
+            for (ConvoPoolFitParams convoPool : fitParams.convoPoolList) {
+                gen.writeStartObject();
+                gen.writeStringField("layerID", convoPool.layerID);
+                gen.writeFieldName("filterList");
+                if (convoPool.filterList == null) {
+                    gen.writeNull();
+                } else {
+                    gen.writeStartArray();
+                    for (ConvoNode node : convoPool.filterList) {
+                        gen.writeStartObject();
+                        gen.writeFieldName("filterNodeList");
+                        writeMatrixList(gen, node.getFilterNodeList());
+                        gen.writeEndObject();
+                    }
+                    gen.writeEndArray();
+                }
+                gen.writeFieldName("bias");
+                writeMatrix(gen, convoPool.bias);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            //
+            gen.writeFieldName("internalList");
+            gen.writeStartArray();
+            for (InternalFitParams internal : fitParams.internalList) {
+                gen.writeStartObject();
+                gen.writeStringField("layerID", internal.layerID);
+                gen.writeFieldName("w");
+                writeMatrix(gen, internal.w);
+                gen.writeFieldName("b");
+                writeMatrix(gen, internal.b);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            //
+            gen.writeFieldName("outputFitParams");
+            OutputFitParams output = fitParams.outputFitParams;
+            if (output == null) {
+                gen.writeNull();
+            } else {
+                gen.writeStartObject();
+                gen.writeFieldName("w");
+                writeMatrix(gen, output.w);
+                gen.writeFieldName("b");
+                writeMatrix(gen, output.b);
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        event.end(FitParamsIOEvent.WRITE, FitParamsIOEvent.JSON, null, 0, fitParams);
+    }
+
+    /**
+     * Read json into network training FitParams
+     *
+     * @param src json input stream
+     * @return FitParams, or null for a json null
+     */
+    public static FitParams jsonToFitParams(InputStream src) {
+        FitParams fitParams = null;
+        FitParamsIOEvent event = new FitParamsIOEvent();
+        event.begin();
+        try (JsonParser parser = FACTORY.createParser(src)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                fitParams = new FitParams();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "convoPoolList" -> fitParams.convoPoolList = readConvoPoolList(parser);
+                        case "internalList" -> fitParams.internalList = readInternalList(parser);
+                        case "outputFitParams" -> fitParams.outputFitParams = readOutput(parser);
+                        default -> parser.skipChildren();
+                    }
+                }
+            }
+            event.end(FitParamsIOEvent.READ, FitParamsIOEvent.JSON, null,
+                    parser.getCurrentLocation().getByteOffset(), fitParams);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return fitParams;
+    }
+
+    /**
+     * Write matrix list as compact json
+     *
+     * @param matrixList matrices to write
+     * @param out        json output stream
+     */
+    public static void matrixListToJson(List<Matrix> matrixList, OutputStream out) {
+        try (JsonGenerator gen = FACTORY.createGenerator(out)) {
+            writeMatrixList(gen, matrixList);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Read json into matrix list
+     *
+     * @param src json input stream
+     * @return matrix list, or null for a json null
+     */
+    public static List<Matrix> jsonToMatrixList(InputStream src) {
+        List<Matrix> matrixList = null;
+        try (JsonParser parser = FACTORY.createParser(src)) {
+            parser.nextToken();
+            matrixList = readMatrixList(parser);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return matrixList;
+    }
+
+    private static void writeMatrixList(JsonGenerator gen, List<Matrix> matrixList) throws IOException {
+        if (matrixList == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartArray();
+        for (Matrix m : matrixList) {
+            writeMatrix(gen, m);
+        }
+        gen.writeEndArray();
+    }
+
+    private static void writeMatrix(JsonGenerator gen, Matrix m) throws IOException {
+        if (m == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        gen.writeNumberField("rows", m.rows);
+        gen.writeNumberField("cols", m.cols);
+        gen.writeNumberField("size", m.size);
+        gen.writeFieldName("a");
+        if (m.a == null) {
+            gen.writeNull();
+        } else {
+            gen.writeArray(m.a, 0, m.a.length);
+        }
+        gen.writeEndObject();
+    }
+
+    private static List<ConvoPoolFitParams> readConvoPoolList(JsonParser parser) throws IOException {
+        List<ConvoPoolFitParams> convoPoolList = new ArrayList<>();
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return convoPoolList;
+        }
+        expect(parser, JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            ConvoPoolFitParams convoPool = new ConvoPoolFitParams();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "layerID" -> convoPool.layerID = parser.getValueAsString();
+                    case "filterList" -> convoPool.filterList = readFilterList(parser);
+                    case "bias" -> convoPool.bias = readMatrix(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            convoPoolList.add(convoPool);
+        }
+        return convoPoolList;
+    }
+
+    private static List<ConvoNode> readFilterList(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, JsonToken.START_ARRAY);
+        List<ConvoNode> filterList = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            ConvoNode node = new ConvoNode();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("filterNodeList")) {
+                    node.setFilterNodeList(readMatrixList(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            filterList.add(node);
+        }
+        return filterList;
+    }
+
+    private static List<InternalFitParams> readInternalList(JsonParser parser) throws IOException {
+        List<InternalFitParams> internalList = new ArrayList<>();
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return internalList;
+        }
+        expect(parser, JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            InternalFitParams internal = new InternalFitParams();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "layerID" -> internal.layerID = parser.getValueAsString();
+                    case "w" -> internal.w = readMatrix(parser);
+                    case "b" -> internal.b = readMatrix(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            internalList.add(internal);
+        }
+        return internalList;
+    }
+
+    private static OutputFitParams readOutput(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, JsonToken.START_OBJECT);
+        OutputFitParams output = new OutputFitParams();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "w" -> output.w = readMatrix(parser);
+                case "b" -> output.b = readMatrix(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return output;
+    }
+
+    private static List<Matrix> readMatrixList(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, JsonToken.START_ARRAY);
+        List<Matrix> matrixList = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            matrixList.add(token == JsonToken.VALUE_NULL ? null : readMatrix(parser));
+        }
+        return matrixList;
+    }
+
+    private static Matrix readMatrix(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, JsonToken.START_OBJECT);
+        Matrix m = new Matrix();
+        // size from rows and cols when a comes first is not known; -1 until then
+        int expected = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "rows" -> m.rows = parser.getIntValue();
+                case "cols" -> m.cols = parser.getIntValue();
+                case "size" -> {
+                    m.size = parser.getIntValue();
+                    expected = m.size;
+                }
+                case "a" -> m.a = readDoubles(parser, expected >= 0 ? expected : m.rows * m.cols);
+                default -> parser.skipChildren();
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Parse a json number array into a double[], allocated once when the length is known
+     */
+    private static double[] readDoubles(JsonParser parser, int expected) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, JsonToken.START_ARRAY);
+        double[] a = new double[expected];
+        int n = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (n == a.length) {
+                // length not given ahead of the values
+                a = Arrays.copyOf(a, Math.max(16, 2 * a.length));
+            }
+            a[n++] = token == JsonToken.VALUE_STRING ? Double.parseDouble(parser.getText()) : parser.getDoubleValue();
+        }
+        return n == a.length ? a : Arrays.copyOf(a, n);
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException {
+        if (parser.currentToken() != token) {
+            throw new IOException("Expected " + token + " but found " + parser.currentToken()
+                    + " at " + parser.getCurrentLocation());
+        }
+    }
+}  //end class
@@ -93,41 +93,24 @@ public class JsonUtil {
     }
 
     /**
-     * Write network FitParams to json file
+     * Write network FitParams to json file, compact, streamed without object binding
      *
      * @param fitParams network training FitParams, including weights and biases for all layers
      * @param out      json output stream
      */
     public static void FitParamsToJson(FitParams fitParams, OutputStream out) {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
-            //  objectMapper.writerWithDefaultPrettyPrinter().writeValue(out, config);
-            boolean b = objectMapper.canSerialize(FitParams.class);
-            LOG.log(Level.INFO, "Can serialize FitParams? " + b);
-            objectMapper.writeValue(out, fitParams);
-        } catch (Exception ex) {
-            LOG.log(Level.SEVERE, ex.getMessage(), ex);
-            throw new RuntimeException(ex);
-        }
+        JsonStreamUtil.FitParamsToJson(fitParams, out, false);
     }
 
     /**
-     * Read json file into network training FitParams, including weights and biases for all layers
+     * Read json file into network training FitParams, including weights and biases for all layers.
+     * Streamed without object binding.
      *
      * @param src json input stream
      * @return FitParams
      */
     public static FitParams jsonToFitParams(InputStream src) {
-        FitParams fitParams = null;
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            fitParams = objectMapper.readValue(src, FitParams.class);
-
-        } catch (Exception ex) {
-            LOG.log(Level.SEVERE, ex.getMessage(), ex);
-            throw new RuntimeException(ex);
-        }
-        return fitParams;
+        return JsonStreamUtil.jsonToFitParams(src);
     }
 
     /**
@@ -205,41 +188,23 @@ public class JsonUtil {
     }
 
     /**
-     * Write matrix list json file
+     * Write matrix list json file, streamed without object binding
      *
      * @param matrixList
      * @param out        json output stream
      */
     public static void matrixListToJson(List<Matrix> matrixList, OutputStream out) {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            TypeReference<List<Matrix>> mapType = new TypeReference<List<Matrix>>() {
-            };
-            objectMapper.writeValue(out, matrixList);
-        } catch (Exception ex) {
-            LOG.log(Level.SEVERE, ex.getMessage(), ex);
-            throw new RuntimeException(ex);
-        }
+        JsonStreamUtil.matrixListToJson(matrixList, out);
     }
 
     /**
-     * Read json file into matrix list
+     * Read json file into matrix list, streamed without object binding
      *
      * @param src json input stream
      * @return matrix list
      */
     public static List<Matrix> jsonToMatrixList(InputStream src) {
-        List<Matrix> matrixList = null;
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            TypeReference<List<Matrix>> mapType = new TypeReference<List<Matrix>>() {
-            };
-            matrixList = objectMapper.readValue(src, mapType);
-        } catch (Exception ex) {
-            LOG.log(Level.SEVERE, ex.getMessage(), ex);
-            throw new RuntimeException(ex);
-        }
-        return matrixList;
+        return JsonStreamUtil.jsonToMatrixList(src);
     }
 
     /**
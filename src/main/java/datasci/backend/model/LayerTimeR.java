@@ -0,0 +1,21 @@
+package datasci.backend.model;
+
+public record LayerTimeR(String layer, long forwardNanos, long forwardCount, long backwardNanos, long backwardCount,
+                         long updateNanos, long updateCount, long allocatedBytes) {
+
+    /**
+     * Get the times and counts since an earlier record of the same layer
+     *
+     * @param prev earlier record, or null
+     * @return difference
+     */
+    public LayerTimeR minus(LayerTimeR prev) {
+        if (prev == null) {
+            return this;
+        }
+        return new LayerTimeR(layer, forwardNanos - prev.forwardNanos, forwardCount - prev.forwardCount,
+                backwardNanos - prev.backwardNanos, backwardCount - prev.backwardCount,
+                updateNanos - prev.updateNanos, updateCount - prev.updateCount,
+                allocatedBytes - prev.allocatedBytes);
+    }
+}
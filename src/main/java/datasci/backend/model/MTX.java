@@ -16,6 +16,7 @@ package datasci.backend.model;
  * limitations under the License.
  **************************************************************************/
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -907,6 +908,68 @@ public class MTX {
         }
         return c;
     }
+    /**
+     Multiply a matrix by a column vector read in place from a buffer, e.g. a memory mapped filter.
+     Same order of operations as mult, so the product is the same.
+
+     @param m   matrix to be multiplied
+     @param col column vector, m #cols values
+     @return product column matrix = m * col, #rows = m #rows
+     */
+    public static Matrix mult(Matrix m, DoubleBuffer col) {
+        Matrix c = null;
+        try {
+            c = new Matrix(m.rows, 1);
+            for (int i = 0; i < m.rows; i++) {
+                double temp = 0;
+                int base = i * m.cols;
+                for (int k = 0; k < m.cols; k++) {
+                    temp += m.a[base + k] * col.get(k);
+                }
+                c.a[i] = temp;
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return c;
+    }
+
+    /**
+     Matrix times column plus column, with the matrix and bias read in place from buffers,
+     e.g. memory mapped weights. Same order of operations as aXplusB, so the result is the same.
+
+     @param w weight matrix values in row order, b #rows by x #rows
+     @param x column matrix
+     @param b bias column values
+     @return column matrix c = w * x + b
+     */
+    public static Matrix aXplusB(DoubleBuffer w, Matrix x, DoubleBuffer b) {
+        Matrix c = null;
+        try {
+            int rows = b.limit();
+            int cols = x.rows;
+            if (w.limit() != rows * cols) {
+                String msg = "Cannot multiply: weights size " + w.limit() + " is not " + rows + " x " + cols;
+                LOG.log(Level.SEVERE, msg);
+                throw new RuntimeException(msg);
+            }
+            c = new Matrix(rows, 1);
+            for (int i = 0; i < rows; i++) {
+                double temp = 0;
+                int base = i * cols;
+                for (int k = 0; k < cols; k++) {
+                    temp += w.get(base + k) * x.a[k];
+                }
+                c.a[i] = temp + b.get(i);
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return c;
+    }
+
     /**
      Normalizes matrix z with mean and std dev
 
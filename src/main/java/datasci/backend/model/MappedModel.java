@@ -0,0 +1,142 @@
+package datasci.backend.model;
+
+import datasci.backend.jfr.FitParamsIOEvent;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Network weights and biases served from a memory mapped binary FitParams file.
+ * <p>
+ * Only the header is read. Each matrix is a read-only DoubleBuffer view of the mapping, read in
+ * place by the forward pass, so opening takes milliseconds whatever the model size. Pages are read
+ * from the file on first use, and are shared through the page cache by every process mapping the
+ * same file.
+ */
+public class MappedModel {
+
+    private static final Logger LOG = Logger.getLogger(MappedModel.class.getName());
+
+    private final File file;
+    // shapes: FitParams of the file with matrix shapes only, values are null
+    private final FitParams shapes = new FitParams();
+    // filterList: for each convolution layer, the filters by output node, then by input node
+    private final List<List<DoubleBuffer>> filterList = new ArrayList<>();
+    private final List<DoubleBuffer> convoBiasList = new ArrayList<>();
+    private final List<DoubleBuffer> internalWList = new ArrayList<>();
+    private final List<DoubleBuffer> internalBList = new ArrayList<>();
+    private DoubleBuffer outputW;
+    private DoubleBuffer outputB;
+
+    private MappedModel(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Map a binary FitParams file
+     *
+     * @param file binary FitParams file
+     * @return mapped model
+     */
+    public static MappedModel open(File file) {
+        MappedModel model = new MappedModel(file);
+        try {
+            FitParamsIOEvent event = new FitParamsIOEvent();
+            event.begin();
+            long start = System.nanoTime();
+            MappedByteBuffer mapped;
+            // the mapping stays valid after the channel is closed
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            ByteBuffer buf = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            List<Matrix> matrixList = new ArrayList<>();
+            int offset = FitParamsBinary.readHeader(buf, model.shapes, matrixList, false);
+            // a view of each matrix, in data order
+            List<DoubleBuffer> views = new ArrayList<>(matrixList.size());
+            for (Matrix m : matrixList) {
+                ByteBuffer slice = buf.slice(offset, m.size * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                views.add(slice.asDoubleBuffer());
+                offset += m.size * Double.BYTES;
+            }
+            int n = 0;
+            for (ConvoPoolFitParams convoPool : model.shapes.convoPoolList) {
+                List<DoubleBuffer> filters = new ArrayList<>();
+                for (ConvoNode node : convoPool.filterList) {
+                    for (int i = 0; i < node.size(); i++) {
+                        filters.add(views.get(n++));
+                    }
+                }
+                model.filterList.add(filters);
+                model.convoBiasList.add(views.get(n++));
+            }
+            for (int k = 0; k < model.shapes.internalList.size(); k++) {
+                model.internalWList.add(views.get(n++));
+                model.internalBList.add(views.get(n++));
+            }
+            if (model.shapes.outputFitParams != null) {
+                model.outputW = views.get(n++);
+                model.outputB = views.get(n++);
+            }
+            event.end(FitParamsIOEvent.MAP, FitParamsIOEvent.BINARY, file, mapped.capacity(), model.shapes);
+            LOG.info("map model: " + file + ", bytes: " + mapped.capacity() + ", ms: "
+                    + (System.nanoTime() - start) / 1000000.0);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return model;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the matrix shapes of the model; matrix values are null
+     *
+     * @return FitParams with shapes only
+     */
+    public FitParams getShapes() {
+        return shapes;
+    }
+
+    /**
+     * Get the filters of a convolution layer
+     *
+     * @param layer convolution layer index
+     * @return filters by output node, then by input node
+     */
+    public List<DoubleBuffer> getFilters(int layer) {
+        return filterList.get(layer);
+    }
+
+    public DoubleBuffer getConvoBias(int layer) {
+        return convoBiasList.get(layer);
+    }
+
+    public DoubleBuffer getInternalW(int layer) {
+        return internalWList.get(layer);
+    }
+
+    public DoubleBuffer getInternalB(int layer) {
+        return internalBList.get(layer);
+    }
+
+    public DoubleBuffer getOutputW() {
+        return outputW;
+    }
+
+    public DoubleBuffer getOutputB() {
+        return outputB;
+    }
+}  //end class
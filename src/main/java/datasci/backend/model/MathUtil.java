@@ -1,9 +1,13 @@
 package datasci.backend.model;
 
+import datasci.backend.jfr.WeightUpdateEvent;
+
 import java.text.DecimalFormat;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
  The type MathUtil.
@@ -13,6 +17,11 @@ public class MathUtil {
     private static final Logger LOG = Logger.getLogger(MathUtil.class.getName());
     private static final DecimalFormat fmtThree = new DecimalFormat("##0.###");
     public static double dLdW_NORM = 10.0;
+    // weight updates of at least UPDATE_PARALLEL_MIN cells run in parallel, UPDATE_CHUNK cells per task
+    private static final int UPDATE_PARALLEL_MIN = 1 << 16;
+    private static final int UPDATE_CHUNK = 1 << 14;
+    // optimizer label of weight update events from updateWeightMatrix
+    private static final String UPDATE_EVENT_NAME = "SGD Momentum";
     /**
      In array find index of maximum value
 
@@ -108,22 +117,36 @@ public class MathUtil {
      */
     public static void updateWeightMatrix(Matrix dLdW, double eta, Matrix w, Matrix v,
                                           double mu, double oneMinusLambda) {
+        updateWeightMatrix(dLdW, 1.0, eta, w, v, mu, oneMinusLambda);
+    }
+
+    /**
+     Update weight matrix from a scaled gradient, e.g. a batch sum scaled by 1/batch count.
+     One pass over the matrices, no allocation; large matrices are updated in parallel chunks.
+     Each cell is computed with the same operations in the same order as separate matrix
+     operations would, so results do not depend on the chunking.
+
+     @param dLdW           gradient of loss with respect to weight, before scaling
+     @param gradScale      gradient scale, 1.0 for none
+     @param eta            gradient descent rate
+     @param w              weight matrix
+     @param v              velocity matrix
+     @param mu             momentum parameter
+     @param oneMinusLambda one minus L2 regularization parameter
+     */
+    public static void updateWeightMatrix(Matrix dLdW, double gradScale, double eta, Matrix w, Matrix v,
+                                          double mu, double oneMinusLambda) {
         try {
-            // update delta weight matrix
-            // dw(n, m) = - eta * dLdW(n, m)
-            Matrix dw = MTX.mulConstant(dLdW, -eta);
-            // update velocity matrix, initially zero
-            MTX.mulConstInPlace(v, mu);
-            // update velocity matrix with gradient
-            // v = mu * v - eta * dLdW
-            MTX.addInplace(v, dw);
-            // L2 regularization to reduce weights on back prop
-            // W(n, m) = W(n, m) * (1 - lambda)
-            MTX.mulConstInPlace(w, oneMinusLambda);
-            // update weight matrix
-            // W(n, m) = W(n, m) + dw(m, n) without momentum
-            // W(n, m) = W(n, m) + v  with momentum
-            MTX.addInplace(w, v);
+            WeightUpdateEvent event = new WeightUpdateEvent();
+            event.begin();
+            int n = w.size;
+            if (dLdW.size != n || v.size != n) {
+                throw new IllegalArgumentException("updateWeightMatrix size mismatch, dLdW: " + dLdW.size
+                        + ", w: " + n + ", v: " + v.size);
+            }
+            forRange(n, (from, to) -> updateRange(dLdW.a, gradScale, eta, w.a, v.a, mu, oneMinusLambda,
+                    from, to));
+            event.end(UPDATE_EVENT_NAME, w.rows, w.cols, isParallel(n));
             //     w.checkNaN("output backprop w");
             //     LOG.fine("after update, w : " + w);
         } catch (Exception ex) {
@@ -132,6 +155,85 @@ public class MathUtil {
         }
     }
 
+    /**
+     Function of a range of array indices [from, to)
+     */
+    @FunctionalInterface
+    public interface RangeFn {
+        void apply(int from, int to);
+    }
+
+    /**
+     Apply a function to the index range [0, n): in one call for small n, otherwise in parallel
+     chunks. For element-wise updates, where cells are independent, results do not depend on
+     the chunking.
+
+     @param n  number of array cells
+     @param fn function of an index range
+     */
+    public static void forRange(int n, RangeFn fn) {
+        if (!isParallel(n)) {
+            fn.apply(0, n);
+        } else {
+            int numChunks = (n + UPDATE_CHUNK - 1) / UPDATE_CHUNK;
+            IntStream.range(0, numChunks).parallel().forEach(c -> {
+                int from = c * UPDATE_CHUNK;
+                fn.apply(from, Math.min(from + UPDATE_CHUNK, n));
+            });
+        }
+    }
+
+    /**
+     Check if forRange applies a function to n cells in parallel chunks
+
+     @param n number of array cells
+     @return true if in parallel chunks
+     */
+    public static boolean isParallel(int n) {
+        return n >= UPDATE_PARALLEL_MIN;
+    }
+
+    /**
+     Fused momentum and L2 update of cells [from, to)
+     */
+    private static void updateRange(double[] g, double gradScale, double eta, double[] w, double[] v,
+                                    double mu, double oneMinusLambda, int from, int to) {
+        double minusEta = -eta;
+        if (gradScale == 1.0) {
+            for (int k = from; k < to; k++) {
+                // v = mu * v - eta * dLdW
+                double vk = v[k] * mu + g[k] * minusEta;
+                v[k] = vk;
+                // L2 regularization, then momentum step
+                // W = W * (1 - lambda) + v
+                w[k] = w[k] * oneMinusLambda + vk;
+            }
+        } else {
+            for (int k = from; k < to; k++) {
+                double vk = v[k] * mu + (g[k] * gradScale) * minusEta;
+                v[k] = vk;
+                w[k] = w[k] * oneMinusLambda + vk;
+            }
+        }
+    }
+
+    /**
+     Randomly permute an index array in place.
+     Uses the same swaps as Collections.shuffle, so an index array shuffled with a given Random
+     has the same order as a list shuffled with an equal Random.
+
+     @param order index array
+     @param rand  source of randomness
+     */
+    public static void shuffle(int[] order, Random rand) {
+        for (int i = order.length; i > 1; i--) {
+            int j = rand.nextInt(i);
+            int tmp = order[i - 1];
+            order[i - 1] = order[j];
+            order[j] = tmp;
+        }
+    }
+
     /**
      Triangle function
      ref:  https://www.jeremyjordan.me/nn-learning-rate/
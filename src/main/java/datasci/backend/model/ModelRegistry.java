@@ -0,0 +1,324 @@
+package datasci.backend.model;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of network models by ID, loaded on first use and kept in memory up to a size limit.
+ * <p>
+ * A model is registered with its file, and read when first requested: binary, delta checkpoint or
+ * json, by the leading magic bytes. Later requests get the same FitParams without reading the file.
+ * When the resident models exceed the size limit, the least recently used are released; with soft
+ * references they are kept until the garbage collector needs the memory. A released model is read
+ * again on its next request. A model put without a file cannot be read again, so it is never released.
+ * <p>
+ * IDs are free form, e.g. the file path of an imported model; isCurrent tells if a registered file
+ * is unchanged on disk, so importing it again does not read it again.
+ */
+public class ModelRegistry {
+
+    private static final Logger LOG = Logger.getLogger(ModelRegistry.class.getName());
+    // shared registry: a quarter of the max heap, with soft references
+    private static final ModelRegistry INSTANCE = new ModelRegistry(Runtime.getRuntime().maxMemory() / 4, true);
+
+    private final long maxBytes;
+    private final boolean softRefs;
+    // entries in access order, least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+    //
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * One model: its file, and the FitParams when resident
+     */
+    private static class Entry {
+        final String id;
+        final File file;
+        // file size and modified time when registered
+        final long length;
+        final long lastModified;
+        FitParams fitParams;
+        SoftReference<FitParams> softRef;
+        long bytes;
+        MappedModel mappedModel;
+        // removed: no longer registered, a read in progress is not counted as resident
+        boolean removed;
+
+        Entry(String id, File file) {
+            this.id = id;
+            this.file = file;
+            this.length = file != null ? file.length() : 0;
+            this.lastModified = file != null ? file.lastModified() : 0;
+        }
+
+        FitParams resident() {
+            FitParams resident = fitParams;
+            if (resident == null && softRef != null) {
+                resident = softRef.get();
+            }
+            return resident;
+        }
+    }
+
+    /**
+     * Instantiates a new model registry.
+     *
+     * @param maxBytes max bytes of resident model values
+     * @param softRefs true to keep released models until the garbage collector needs the memory
+     */
+    public ModelRegistry(long maxBytes, boolean softRefs) {
+        this.maxBytes = maxBytes;
+        this.softRefs = softRefs;
+    }
+
+    public static ModelRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register a model file, read on first use. A registered ID is replaced.
+     *
+     * @param id   model ID
+     * @param file FitParams file: binary, delta checkpoint or json
+     */
+    public synchronized void register(String id, File file) {
+        remove(id);
+        entries.put(id, new Entry(id, file));
+        LOG.info("register model: " + id + ", file: " + file);
+    }
+
+    /**
+     * Put a model in memory, e.g. a trained network; it has no file, so it is never released.
+     * A registered ID is replaced.
+     *
+     * @param id        model ID
+     * @param fitParams model FitParams
+     */
+    public synchronized void put(String id, FitParams fitParams) {
+        remove(id);
+        Entry entry = new Entry(id, null);
+        entry.fitParams = fitParams;
+        entry.bytes = fitParams.valueBytes();
+        residentBytes += entry.bytes;
+        entries.put(id, entry);
+        evict(entry);
+    }
+
+    /**
+     * Remove a model
+     *
+     * @param id model ID
+     */
+    public synchronized void remove(String id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            entry.removed = true;
+            if (entry.fitParams != null) {
+                residentBytes -= entry.bytes;
+            }
+        }
+    }
+
+    /**
+     * Check if a model ID is registered
+     *
+     * @param id model ID
+     * @return true if registered
+     */
+    public synchronized boolean contains(String id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * Get the registered model IDs, least recently used first
+     *
+     * @return model IDs
+     */
+    public synchronized List<String> getIDs() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Get the file of a registered model
+     *
+     * @param id model ID
+     * @return model file, or null for a model put without a file
+     */
+    public synchronized File getFile(String id) {
+        return entry(id).file;
+    }
+
+    /**
+     * Check if a model ID is registered with a file, unchanged on disk since it was registered
+     *
+     * @param id   model ID
+     * @param file model file
+     * @return true if registered with the file, and its size and modified time are unchanged
+     */
+    public synchronized boolean isCurrent(String id, File file) {
+        Entry entry = entries.get(id);
+        return entry != null && entry.file != null && entry.file.equals(file)
+                && entry.length == file.length() && entry.lastModified == file.lastModified();
+    }
+
+    /**
+     * Get a model, reading its file if it is not resident
+     *
+     * @param id model ID
+     * @return model FitParams, shared: not to be modified
+     */
+    public FitParams get(String id) {
+        Entry entry = entry(id);
+        FitParams fitParams;
+        // one reader per model, other models are not blocked
+        synchronized (entry) {
+            synchronized (this) {
+                fitParams = entry.resident();
+                if (fitParams != null) {
+                    hits.incrementAndGet();
+                    if (entry.fitParams == null && !entry.removed) {
+                        // kept by the soft reference, resident again
+                        entry.fitParams = fitParams;
+                        residentBytes += entry.bytes;
+                        evict(entry);
+                    }
+                    return fitParams;
+                }
+            }
+            misses.incrementAndGet();
+            long start = System.nanoTime();
+            fitParams = read(entry.file);
+            long nanos = System.nanoTime() - start;
+            loads.incrementAndGet();
+            loadNanos.addAndGet(nanos);
+            synchronized (this) {
+                if (!entry.removed) {
+                    entry.fitParams = fitParams;
+                    entry.softRef = null;
+                    entry.bytes = fitParams.valueBytes();
+                    residentBytes += entry.bytes;
+                    evict(entry);
+                }
+            }
+            LOG.info("load model: " + id + ", bytes: " + entry.bytes + ", ms: " + nanos / 1000000L);
+        }
+        return fitParams;
+    }
+
+    /**
+     * Get a model memory mapped from its binary file; mapped models are outside the size limit
+     *
+     * @param id model ID of a binary FitParams file
+     * @return mapped model
+     */
+    public MappedModel getMapped(String id) {
+        Entry entry = entry(id);
+        synchronized (entry) {
+            if (entry.mappedModel != null) {
+                hits.incrementAndGet();
+            } else {
+                if (entry.file == null || !FitParamsBinary.isBinary(entry.file)) {
+                    String msg = "Model has no binary file to map: " + id;
+                    LOG.log(Level.SEVERE, msg);
+                    throw new RuntimeException(msg);
+                }
+                misses.incrementAndGet();
+                long start = System.nanoTime();
+                entry.mappedModel = MappedModel.open(entry.file);
+                loads.incrementAndGet();
+                loadNanos.addAndGet(System.nanoTime() - start);
+            }
+            return entry.mappedModel;
+        }
+    }
+
+    /**
+     * Get registry metrics
+     *
+     * @return model counts, resident bytes, and hit, miss, load and eviction counts
+     */
+    public synchronized RegistryStatsR getStats() {
+        int resident = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.fitParams != null) {
+                resident++;
+            }
+        }
+        return new RegistryStatsR(entries.size(), resident, residentBytes, maxBytes, hits.get(), misses.get(),
+                loads.get(), loadNanos.get(), evictions.get());
+    }
+
+    private synchronized Entry entry(String id) {
+        // get also moves the entry to most recently used
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            String msg = "Model not registered: " + id;
+            LOG.log(Level.SEVERE, msg);
+            throw new RuntimeException(msg);
+        }
+        return entry;
+    }
+
+    /**
+     * Release least recently used models until the resident models fit, keeping the given entry
+     */
+    private void evict(Entry keep) {
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            if (residentBytes <= maxBytes) {
+                break;
+            }
+            Entry entry = mapEntry.getValue();
+            if (entry == keep || entry.fitParams == null || entry.file == null) {
+                continue;
+            }
+            if (softRefs) {
+                entry.softRef = new SoftReference<>(entry.fitParams);
+            }
+            entry.fitParams = null;
+            residentBytes -= entry.bytes;
+            evictions.incrementAndGet();
+            LOG.fine("release model: " + entry.id);
+        }
+    }
+
+    /**
+     * Read a FitParams file: binary, delta checkpoint or json, by the leading magic bytes
+     *
+     * @param file FitParams file
+     * @return FitParams
+     */
+    public static FitParams read(File file) {
+        FitParams fitParams;
+        if (FitParamsBinary.isBinary(file)) {
+            fitParams = FitParamsBinary.read(file);
+        } else if (FitParamsDelta.isDelta(file)) {
+            fitParams = FitParamsDelta.read(file);
+        } else {
+            try (InputStream src = FileUtil.getInputStream(file)) {
+                fitParams = JsonUtil.jsonToFitParams(src);
+            } catch (Exception ex) {
+                LOG.log(Level.SEVERE, ex.getMessage(), ex);
+                throw new RuntimeException(ex);
+            }
+        }
+        if (fitParams == null) {
+            String msg = "No FitParams in file: " + file;
+            LOG.log(Level.SEVERE, msg);
+            throw new RuntimeException(msg);
+        }
+        return fitParams;
+    }
+}  //end class
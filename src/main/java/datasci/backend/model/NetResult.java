@@ -1,5 +1,7 @@
 package datasci.backend.model;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -17,7 +19,17 @@ public class NetResult {
     public int batchSamplesCompleted;
     public int batchSamplesCorrect;
     //
+    // forward nanoseconds of the convolution and pool layers
     public long convoTime;
+    // training time of each layer since training started, in forward order
+    public List<LayerTimeR> layerTimes = new ArrayList<>();
+    // allocation and garbage collection of all batches so far, null before the first batch
+    public AllocStatsR allocStats;
+    // checkpoint snapshot pauses so far, null when not writing checkpoints
+    public CheckpointStatsR checkpointStats;
+    //
+    // timing, throughput and accuracy of each completed training epoch
+    public List<EpochR> epochResults = new ArrayList<>();
     //
 
     /**
@@ -53,6 +65,7 @@ public class NetResult {
                 ", samplesCorrect=" + samplesCorrect +
                 ", batchSamplesCompleted=" + batchSamplesCompleted +
                 ", batchSamplesCorrect=" + batchSamplesCorrect +
+                ", epochResults=" + epochResults +
                 '}';
     }
 }  //end class
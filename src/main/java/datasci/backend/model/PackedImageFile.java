@@ -0,0 +1,151 @@
+package datasci.backend.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Packed file of gray image samples, read one sample after another without decoding.
+ * <p>
+ * File layout, big endian:
+ * <pre>
+ * int magic, int count, int rows, int cols
+ * count records of: byte actualIndex, rows * cols bytes of gray levels
+ * </pre>
+ * Gray levels are the same 8 bit levels held by ImageDataSet, so a packed sample gives the same
+ * network input as the png file it was packed from.
+ */
+public class PackedImageFile implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(PackedImageFile.class.getName());
+    // magic: "CNP1"
+    public static final int MAGIC = 0x434E5031;
+    // number of png files decoded at a time while packing
+    private static final int PACK_CHUNK = 1024;
+
+    private final DataInputStream in;
+    private final int count;
+    private final int rows;
+    private final int cols;
+
+    /**
+     * Open a packed file and read its header.
+     *
+     * @param packedFile packed image file
+     * @throws IOException if the file cannot be read or is not a packed image file
+     */
+    public PackedImageFile(File packedFile) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(packedFile), 1 << 16));
+        try {
+            int magic = in.readInt();
+            if (magic != MAGIC) {
+                throw new IOException("Not a packed image file: " + packedFile);
+            }
+            count = in.readInt();
+            rows = in.readInt();
+            cols = in.readInt();
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the next samples into a data set, starting at sample 0
+     *
+     * @param dataSet data set with the file rows and cols
+     * @param max     maximum number of samples to read
+     * @return number of samples read, less than max only at the end of the file
+     * @throws IOException on read error
+     */
+    public int read(ImageDataSet dataSet, int max) throws IOException {
+        int imageSize = rows * cols;
+        byte[] levels = new byte[imageSize];
+        int n = 0;
+        while (n < max) {
+            int actualIndex = in.read();
+            if (actualIndex < 0) {
+                break;
+            }
+            in.readFully(levels);
+            dataSet.setLevels(n++, levels, 0, actualIndex);
+        }
+        return n;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Pack png image files into one packed file, one class after another in turn.
+     * Images are decoded a chunk at a time, so the data set never has to fit in memory.
+     *
+     * @param parentDir        directory to image input data
+     * @param numClassestoLoad number of class subdirectories to load
+     * @param numEachClass     max number of files to load for each class
+     * @param rows             image rows (height)
+     * @param cols             image columns (width)
+     * @param packedFile       output packed file
+     * @return number of samples written
+     */
+    public static int pack(String parentDir, int numClassestoLoad, int numEachClass, int rows, int cols,
+                           File packedFile) {
+        int count = 0;
+        try {
+            List<File[]> classFiles = ImageDataUtil.listClassFiles(parentDir, numClassestoLoad, numEachClass);
+            List<File> files = new ArrayList<>();
+            int[] labels = ImageDataUtil.interleaveClassFiles(classFiles, files);
+            count = files.size();
+            ImageDataSet chunk = new ImageDataSet(PACK_CHUNK, rows, cols);
+            byte[] levels = new byte[chunk.getImageSize()];
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(packedFile), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(count);
+                out.writeInt(rows);
+                out.writeInt(cols);
+                for (int base = 0; base < count; base += PACK_CHUNK) {
+                    int chunkBase = base;
+                    List<File> chunkFiles = files.subList(base, Math.min(base + PACK_CHUNK, count));
+                    ImageDataUtil.decodeFiles(chunkFiles, (image, n) -> {
+                        chunk.setImage(n, image, labels[chunkBase + n]);
+                        return n;
+                    });
+                    for (int n = 0; n < chunkFiles.size(); n++) {
+                        chunk.getLevels(n, levels, 0);
+                        out.writeByte(chunk.getActualIndex(n));
+                        out.write(levels);
+                    }
+                }
+            }
+            LOG.info("packed samples: " + count + ", file: " + packedFile + ", bytes: " + packedFile.length());
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return count;
+    }
+}  //end class
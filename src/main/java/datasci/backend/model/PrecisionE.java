@@ -0,0 +1,152 @@
+package datasci.backend.model;
+
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Floating point precision of stored values, with conversion of a double to and from its bits.
+ */
+public enum PrecisionE {
+    DOUBLE("Double", 8),
+    FLOAT("Float", 4),
+    BFLOAT16("BFloat16", 2),
+    FLOAT16("Float16", 2);
+
+    // label may have spaces and may be more user-friendly than the enum value
+    public final String label;
+    // bytes: number of bytes stored per value
+    public final int bytes;
+
+    /**
+     * Create a new precision.
+     *
+     * @param label string label
+     * @param bytes bytes per value
+     */
+    private PrecisionE(String label, int bytes) {
+        this.label = label;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+
+    /**
+     * Round a value to this precision, and get its bits
+     *
+     * @param value value to round
+     * @return bits of the rounded value, in the low order bytes
+     */
+    public long toBits(double value) {
+        return switch (this) {
+            case DOUBLE -> Double.doubleToRawLongBits(value);
+            case FLOAT -> Float.floatToRawIntBits((float) value) & 0xFFFFFFFFL;
+            case BFLOAT16 -> {
+                int bits = Float.floatToRawIntBits((float) value);
+                if (Float.isNaN((float) value)) {
+                    // keep a quiet NaN, rounding could carry into infinity
+                    yield (bits >>> 16) | 0x40;
+                }
+                // round to nearest even on the dropped low 16 bits
+                yield ((bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16) & 0xFFFFL;
+            }
+            case FLOAT16 -> toFloat16((float) value);
+        };
+    }
+
+    /**
+     * Get the value of bits from toBits
+     *
+     * @param bits value bits
+     * @return value
+     */
+    public double fromBits(long bits) {
+        return switch (this) {
+            case DOUBLE -> Double.longBitsToDouble(bits);
+            case FLOAT -> Float.intBitsToFloat((int) bits);
+            case BFLOAT16 -> Float.intBitsToFloat((int) bits << 16);
+            case FLOAT16 -> fromFloat16((int) bits);
+        };
+    }
+
+    /*
+     * Float16 conversions by bit manipulation. Float.floatToFloat16 and float16ToFloat are not used:
+     * their compiled intrinsics in JDK 21.0.1 intermittently return zero for normal values.
+     */
+
+    /**
+     * Round a float to the nearest float16, ties to even
+     */
+    private static long toFloat16(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int abs = bits & 0x7FFFFFFF;
+        int h;
+        if (abs >= 0x7F800000) {
+            // infinity, or a quiet NaN
+            h = 0x7C00 | (abs > 0x7F800000 ? 0x200 : 0);
+        } else if (abs >= 0x477FF000) {
+            // 65520 and above round to infinity
+            h = 0x7C00;
+        } else if (abs < 0x38800000) {
+            // below 2^-14: subnormal, in units of 2^-24; rint rounds ties to even
+            h = (int) Math.rint(Float.intBitsToFloat(abs) * 0x1.0p24);
+        } else {
+            // rebias the exponent from 127 to 15, and drop 13 mantissa bits
+            h = (abs - 0x38000000) >>> 13;
+            int rest = abs & 0x1FFF;
+            if (rest > 0x1000 || (rest == 0x1000 && (h & 1) != 0)) {
+                // a carry into the exponent is still the right value
+                h++;
+            }
+        }
+        return sign | h;
+    }
+
+    private static float fromFloat16(int h) {
+        int sign = (h & 0x8000) << 16;
+        int exp = (h >>> 10) & 0x1F;
+        int mant = h & 0x3FF;
+        float f;
+        if (exp == 0) {
+            // zero or subnormal, exact as a float
+            f = mant * 0x1.0p-24f;
+            f = sign != 0 ? -f : f;
+        } else if (exp == 0x1F) {
+            f = Float.intBitsToFloat(sign | 0x7F800000 | (mant << 13));
+        } else {
+            f = Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mant << 13));
+        }
+        return f;
+    }
+
+    // use TreeMap to sort by keys: key = string label, value = enum value
+    private static final TreeMap<String, PrecisionE> LABEL_MAP = new TreeMap<>();
+
+    static {
+        for (PrecisionE e : values()) {
+            LABEL_MAP.put(e.label, e);
+        }
+    }
+
+    /**
+     * Get enum value for given string value
+     *
+     * @param label the label
+     * @return the enum value
+     */
+    public static PrecisionE valueOfLabel(String label) {
+        return LABEL_MAP.get(label);
+    }
+
+    /**
+     * Gets sorted string labels.
+     *
+     * @return enum string labels
+     */
+    public static Set<String> getLabels() {
+        return LABEL_MAP.keySet();
+    }
+}
@@ -0,0 +1,99 @@
+package datasci.backend.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Progress snapshots passed from a worker thread to a reader, e.g. from training to the user
+ * interface, without either waiting on the other.
+ * <p>
+ * The worker publishes immutable snapshots; the reader polls when it chooses, e.g. once a frame,
+ * takes the latest snapshot, and drains those published since its last poll, for charts which
+ * need every point. Snapshots published between two polls coalesce into one poll, so the reader
+ * does a bounded amount of work whatever the publish rate. The ring has a fixed capacity; when
+ * the reader falls that far behind, new snapshots are still the latest, but are not kept for
+ * draining, and are counted as dropped.
+ * <p>
+ * Lock-free, for one publishing thread and one reading thread.
+ *
+ * @param <T> snapshot type, immutable
+ */
+public class ProgressBus<T> {
+
+    private final AtomicReferenceArray<T> ring;
+    private final int mask;
+    // head: sequence of the next snapshot to drain, written by the reader only
+    private final AtomicLong head = new AtomicLong();
+    // tail: sequence of the next snapshot to publish, written by the publisher only
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicReference<T> latest = new AtomicReference<>();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Instantiates a new progress bus.
+     *
+     * @param capacity snapshots kept for draining, rounded up to a power of 2
+     */
+    public ProgressBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 1) - 1) << 1;
+        size = Math.max(size, 1);
+        ring = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Publish a snapshot. Never blocks.
+     *
+     * @param snapshot immutable snapshot
+     */
+    public void publish(T snapshot) {
+        long t = tail.get();
+        if (t - head.get() < ring.length()) {
+            ring.set((int) (t & mask), snapshot);
+            tail.set(t + 1);
+        } else {
+            dropped.increment();
+        }
+        latest.set(snapshot);
+    }
+
+    /**
+     * Get the latest snapshot
+     *
+     * @return latest snapshot, or null if none published
+     */
+    public T latest() {
+        return latest.get();
+    }
+
+    /**
+     * Pass the snapshots published since the last drain to a consumer, oldest first
+     *
+     * @param consumer snapshot consumer, called on the reading thread
+     * @return number of snapshots drained
+     */
+    public int drain(Consumer<? super T> consumer) {
+        long h = head.get();
+        long t = tail.get();
+        for (long s = h; s < t; s++) {
+            int k = (int) (s & mask);
+            T snapshot = ring.get(k);
+            ring.set(k, null);
+            consumer.accept(snapshot);
+        }
+        head.set(t);
+        return (int) (t - h);
+    }
+
+    /**
+     * Get the number of snapshots not kept for draining, because the reader fell behind
+     *
+     * @return dropped snapshots
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+}  //end class
@@ -0,0 +1,10 @@
+package datasci.backend.model;
+
+/**
+ * Progress of a headless run: counts and accuracy so far, throughput over the last reporting
+ * interval, estimated time remaining, and allocation per sample of all batches
+ */
+public record ProgressR(long timeMillis, String mode, int epoch, int samplesCompleted, int totalSamples,
+                        double accuracy, double batchAccuracy, double samplesPerSec, double remainingSeconds,
+                        double bytesPerSample) {
+}
@@ -0,0 +1,5 @@
+package datasci.backend.model;
+
+public record RegistryStatsR(int models, int resident, long residentBytes, long maxBytes, long hits, long misses,
+                             long loads, long loadNanos, long evictions) {
+}
@@ -0,0 +1,36 @@
+package datasci.backend.model;
+
+/**
+ * One batch of network input matrices with their actual output values.
+ * The input matrices are allocated once, and refilled for each batch.
+ */
+public class SampleBatch {
+
+    public final Matrix[] inputs;
+    // labels: true output index (of class) of each input
+    public final int[] labels;
+    // sourceIndex: index of each input in the source data set
+    public final int[] sourceIndex;
+    // size: number of inputs filled
+    public int size;
+    // firstSample: training sample number of the first input, counted over all epochs
+    public long firstSample;
+    // source: data set the inputs are filled from
+    public ImageDataSet source;
+
+    /**
+     * Instantiates a new sample batch.
+     *
+     * @param batchSize number of inputs
+     * @param rows      input rows
+     * @param cols      input columns
+     */
+    public SampleBatch(int batchSize, int rows, int cols) {
+        inputs = new Matrix[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            inputs[i] = new Matrix(rows, cols);
+        }
+        labels = new int[batchSize];
+        sourceIndex = new int[batchSize];
+    }
+}  //end class
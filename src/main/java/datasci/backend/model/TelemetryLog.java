@@ -0,0 +1,66 @@
+package datasci.backend.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Machine readable log: one json object per line, appended to a file and flushed after each line,
+ * so the file can be read while training runs.
+ */
+public class TelemetryLog implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(TelemetryLog.class.getName());
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BufferedWriter writer;
+
+    /**
+     * Open a log file for appending, creating its directory if needed
+     *
+     * @param file log file
+     */
+    public TelemetryLog(File file) {
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IllegalStateException("Cannot create telemetry log directory: " + dir);
+            }
+            writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Append one json line
+     *
+     * @param value record or object to write as json
+     */
+    public void write(Object value) {
+        try {
+            writer.write(objectMapper.writeValueAsString(value));
+            writer.newLine();
+            writer.flush();
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+}  //end class
@@ -0,0 +1,7 @@
+package datasci.backend.model;
+
+import java.util.List;
+
+public record TelemetryR(long timeMillis, String task, int samplesCompleted, int subsetCompleted, int subsetCorrect,
+                         double bytesPerSample, double gcPercent, AllocStatsR alloc, List<LayerTimeR> layers) {
+}
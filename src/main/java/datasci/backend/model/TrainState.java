@@ -0,0 +1,282 @@
+package datasci.backend.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Training state which is not part of FitParams: momentum velocities, counts, and the position
+ * in the sample order. With the FitParams of the same checkpoint, training resumes exactly where
+ * it stopped.
+ * <p>
+ * No random generator state is held: each epoch shuffle is seeded from the epoch number and each
+ * augment distortion from the sample number, so the position is enough.
+ * <p>
+ * File format, big endian: int magic "CNTS", int version, counts, sample order, then matrices
+ * as int rows, int cols and the doubles. Version 2 adds the optimizer name, step count and
+ * second moment matrices; version 1 files are read as SGD state. Version 3 adds the bias state
+ * matrices; earlier files have none, so bias state starts from zero.
+ */
+public class TrainState {
+
+    private static final Logger LOG = Logger.getLogger(TrainState.class.getName());
+    public static final int MAGIC = 0x434E5453;
+    public static final int VERSION = 3;
+    // file name extension of the state file written beside each checkpoint
+    public static final String EXTENSION = ".state";
+
+    // position: epoch, and samples completed in the epoch
+    public int epoch;
+    public int batchSampleBase;
+    // counts over all epochs; sampleCount also selects the gradient descent rate
+    public int sampleCount;
+    public int numCorrect;
+    // counts at the start of the current epoch
+    public int epochStartCount;
+    public int epochStartCorrect;
+    // sampleOrder: in-memory sample order of the current epoch, null when streaming
+    public int[] sampleOrder;
+    //
+    // convoMomentumList size: # of convolution layers;
+    // each list holds the velocity of every filter, by output node then by input node
+    public List<List<Matrix>> convoMomentumList = new ArrayList<>();
+    // internalVelocityList size: # of internal layers
+    public List<Matrix> internalVelocityList = new ArrayList<>();
+    public Matrix outputVelocity;
+    //
+    // optimizer label and batch steps completed; the velocities above are its first state
+    public String optName;
+    public long optStep;
+    // second moment matrices, same shapes as the velocities; empty lists and null for
+    // optimizers which do not use them
+    public List<List<Matrix>> convoSecondList = new ArrayList<>();
+    public List<Matrix> internalSecondList = new ArrayList<>();
+    public Matrix outputSecond;
+    // bias state of each layer: convolution layers, then internal layers, then the output layer;
+    // null for layers without the state, empty lists for optimizers which do not update biases
+    public List<Matrix> biasVelocityList = new ArrayList<>();
+    public List<Matrix> biasSecondList = new ArrayList<>();
+    //
+    // confusion matrix and completed epochs so far
+    public Matrix summaryResults;
+    public List<EpochR> epochResults = new ArrayList<>();
+
+    public TrainState() {
+    }
+
+    /**
+     * Get the state file written beside a checkpoint file
+     *
+     * @param checkpoint FitParams checkpoint file
+     * @return state file
+     */
+    public static File stateFile(File checkpoint) {
+        String name = checkpoint.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(checkpoint.getParentFile(), base + EXTENSION);
+    }
+
+    /**
+     * Write training state to a file
+     *
+     * @param state training state
+     * @param file  output file
+     */
+    public static void write(TrainState state, File file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(state.epoch);
+            out.writeInt(state.batchSampleBase);
+            out.writeInt(state.sampleCount);
+            out.writeInt(state.numCorrect);
+            out.writeInt(state.epochStartCount);
+            out.writeInt(state.epochStartCorrect);
+            int[] order = state.sampleOrder;
+            out.writeInt(order == null ? -1 : order.length);
+            if (order != null) {
+                for (int n : order) {
+                    out.writeInt(n);
+                }
+            }
+            //
+            out.writeInt(state.convoMomentumList.size());
+            for (List<Matrix> momentum : state.convoMomentumList) {
+                out.writeInt(momentum.size());
+                for (Matrix v : momentum) {
+                    writeMatrix(out, v);
+                }
+            }
+            out.writeInt(state.internalVelocityList.size());
+            for (Matrix v : state.internalVelocityList) {
+                writeMatrix(out, v);
+            }
+            writeMatrix(out, state.outputVelocity);
+            writeMatrix(out, state.summaryResults);
+            //
+            out.writeInt(state.epochResults.size());
+            for (EpochR epochR : state.epochResults) {
+                out.writeInt(epochR.epoch());
+                out.writeInt(epochR.samples());
+                out.writeInt(epochR.numCorrect());
+                out.writeDouble(epochR.accuracy());
+                out.writeDouble(epochR.seconds());
+                out.writeDouble(epochR.samplesPerSec());
+            }
+            //
+            out.writeUTF(state.optName != null ? state.optName : "");
+            out.writeLong(state.optStep);
+            out.writeInt(state.convoSecondList.size());
+            for (List<Matrix> second : state.convoSecondList) {
+                out.writeInt(second.size());
+                for (Matrix s : second) {
+                    writeMatrix(out, s);
+                }
+            }
+            out.writeInt(state.internalSecondList.size());
+            for (Matrix s : state.internalSecondList) {
+                writeMatrix(out, s);
+            }
+            writeMatrix(out, state.outputSecond);
+            //
+            writeMatrixList(out, state.biasVelocityList);
+            writeMatrixList(out, state.biasSecondList);
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Read training state from a file
+     *
+     * @param file state file
+     * @return training state
+     */
+    public static TrainState read(File file) {
+        TrainState state = new TrainState();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a training state file: " + file);
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported training state version: " + version);
+            }
+            state.epoch = in.readInt();
+            state.batchSampleBase = in.readInt();
+            state.sampleCount = in.readInt();
+            state.numCorrect = in.readInt();
+            state.epochStartCount = in.readInt();
+            state.epochStartCorrect = in.readInt();
+            int orderLength = in.readInt();
+            if (orderLength >= 0) {
+                state.sampleOrder = new int[orderLength];
+                for (int i = 0; i < orderLength; i++) {
+                    state.sampleOrder[i] = in.readInt();
+                }
+            }
+            //
+            int numConvo = in.readInt();
+            for (int k = 0; k < numConvo; k++) {
+                int count = in.readInt();
+                List<Matrix> momentum = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    momentum.add(readMatrix(in));
+                }
+                state.convoMomentumList.add(momentum);
+            }
+            int numInternal = in.readInt();
+            for (int k = 0; k < numInternal; k++) {
+                state.internalVelocityList.add(readMatrix(in));
+            }
+            state.outputVelocity = readMatrix(in);
+            state.summaryResults = readMatrix(in);
+            //
+            int numEpochs = in.readInt();
+            for (int k = 0; k < numEpochs; k++) {
+                state.epochResults.add(new EpochR(in.readInt(), in.readInt(), in.readInt(),
+                        in.readDouble(), in.readDouble(), in.readDouble()));
+            }
+            //
+            if (version >= 2) {
+                String optName = in.readUTF();
+                state.optName = optName.isEmpty() ? null : optName;
+                state.optStep = in.readLong();
+                int numConvoSecond = in.readInt();
+                for (int k = 0; k < numConvoSecond; k++) {
+                    int count = in.readInt();
+                    List<Matrix> second = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        second.add(readMatrix(in));
+                    }
+                    state.convoSecondList.add(second);
+                }
+                int numInternalSecond = in.readInt();
+                for (int k = 0; k < numInternalSecond; k++) {
+                    state.internalSecondList.add(readMatrix(in));
+                }
+                state.outputSecond = readMatrix(in);
+            }
+            if (version >= 3) {
+                state.biasVelocityList = readMatrixList(in);
+                state.biasSecondList = readMatrixList(in);
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return state;
+    }
+
+    private static void writeMatrix(DataOutputStream out, Matrix m) throws IOException {
+        if (m == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(m.rows);
+        out.writeInt(m.cols);
+        for (int k = 0; k < m.size; k++) {
+            out.writeDouble(m.a[k]);
+        }
+    }
+
+    private static void writeMatrixList(DataOutputStream out, List<Matrix> list) throws IOException {
+        out.writeInt(list.size());
+        for (Matrix m : list) {
+            writeMatrix(out, m);
+        }
+    }
+
+    private static List<Matrix> readMatrixList(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Matrix> list = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            list.add(readMatrix(in));
+        }
+        return list;
+    }
+
+    private static Matrix readMatrix(DataInputStream in) throws IOException {
+        int rows = in.readInt();
+        if (rows < 0) {
+            return null;
+        }
+        int cols = in.readInt();
+        Matrix m = new Matrix(rows, cols);
+        for (int k = 0; k < m.size; k++) {
+            m.a[k] = in.readDouble();
+        }
+        return m;
+    }
+}  //end class
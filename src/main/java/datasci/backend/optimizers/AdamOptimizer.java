@@ -0,0 +1,122 @@
+package datasci.backend.optimizers;
+
+import datasci.backend.jfr.WeightUpdateEvent;
+import datasci.backend.model.MathUtil;
+import datasci.backend.model.Matrix;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Adam: gradient steps scaled by running averages of the gradient and of its square
+ * <p>
+ * With L2 regularization added to the gradient, g = dL/dW + lambda * W:
+ * <pre>
+ *   m = beta1 * m + (1 - beta1) * g
+ *   s = beta2 * s + (1 - beta2) * g * g
+ *   W = W - eta * mHat / (sqrt(sHat) + epsilon)
+ * </pre>
+ * mHat and sHat are m and s divided by (1 - beta^t), correcting their bias towards zero over
+ * the first steps t. m is held in the velocity matrix v.
+ * With decoupled weight decay (AdamW), lambda is not added to the gradient; instead
+ * W = W * (1 - eta * lambda) before the step.
+ */
+public class AdamOptimizer implements OptimizerI {
+    private static final Logger LOG = Logger.getLogger(AdamOptimizer.class.getName());
+
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+    private final double lambda;
+    private final boolean decoupled;
+    private long step;
+    // bias corrections of the current step: 1 / (1 - beta^t)
+    private double corr1 = 1.0;
+    private double corr2 = 1.0;
+
+    /**
+     * Instantiates a new Adam optimizer.
+     *
+     * @param beta1   decay of the gradient average
+     * @param beta2   decay of the squared gradient average
+     * @param epsilon small number added to the step denominator
+     * @param lambda  L2 regularization parameter
+     */
+    public AdamOptimizer(double beta1, double beta2, double epsilon, double lambda) {
+        this(beta1, beta2, epsilon, lambda, false);
+    }
+
+    protected AdamOptimizer(double beta1, double beta2, double epsilon, double lambda, boolean decoupled) {
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+        this.lambda = lambda;
+        this.decoupled = decoupled;
+    }
+
+    public String getOptName() {
+        return OptE.ADAM.label;
+    }
+
+    public boolean hasSecondMoment() {
+        return true;
+    }
+
+    public boolean updatesBias() {
+        return true;
+    }
+
+    public void nextStep() {
+        setStep(step + 1);
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public void setStep(long step) {
+        this.step = step;
+        if (step > 0) {
+            corr1 = 1.0 / (1.0 - Math.pow(beta1, step));
+            corr2 = 1.0 / (1.0 - Math.pow(beta2, step));
+        }
+    }
+
+    public void update(Matrix dLdW, double gradScale, double eta, Matrix w, Matrix m, Matrix s) {
+        try {
+            WeightUpdateEvent event = new WeightUpdateEvent();
+            event.begin();
+            int n = w.size;
+            if (dLdW.size != n || m.size != n || s.size != n) {
+                throw new IllegalArgumentException("Adam update size mismatch, dLdW: " + dLdW.size
+                        + ", w: " + n + ", m: " + m.size + ", s: " + s.size);
+            }
+            double[] g = dLdW.a;
+            double[] wa = w.a;
+            double[] ma = m.a;
+            double[] sa = s.a;
+            // coupled: lambda in the gradient; decoupled: weight decay scaled by eta
+            double l2 = decoupled ? 0.0 : lambda;
+            double decay = decoupled ? 1.0 - eta * lambda : 1.0;
+            double oneMinusBeta1 = 1.0 - beta1;
+            double oneMinusBeta2 = 1.0 - beta2;
+            double c1 = corr1;
+            double c2 = corr2;
+            MathUtil.forRange(n, (from, to) -> {
+                for (int k = from; k < to; k++) {
+                    double wk = wa[k];
+                    double gk = g[k] * gradScale + l2 * wk;
+                    double mk = beta1 * ma[k] + oneMinusBeta1 * gk;
+                    double sk = beta2 * sa[k] + oneMinusBeta2 * gk * gk;
+                    ma[k] = mk;
+                    sa[k] = sk;
+                    wa[k] = wk * decay - eta * (mk * c1) / (Math.sqrt(sk * c2) + epsilon);
+                }
+            });
+            event.end(getOptName(), w.rows, w.cols, MathUtil.isParallel(n));
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+}  // end class
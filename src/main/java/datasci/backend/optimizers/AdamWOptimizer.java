@@ -0,0 +1,26 @@
+package datasci.backend.optimizers;
+
+/**
+ * AdamW: Adam with weight decay decoupled from the gradient averages
+ * <p>
+ * W = W * (1 - eta * lambda) - eta * mHat / (sqrt(sHat) + epsilon)
+ */
+public class AdamWOptimizer extends AdamOptimizer {
+
+    /**
+     * Instantiates a new AdamW optimizer.
+     *
+     * @param beta1   decay of the gradient average
+     * @param beta2   decay of the squared gradient average
+     * @param epsilon small number added to the step denominator
+     * @param lambda  weight decay parameter
+     */
+    public AdamWOptimizer(double beta1, double beta2, double epsilon, double lambda) {
+        super(beta1, beta2, epsilon, lambda, true);
+    }
+
+    @Override
+    public String getOptName() {
+        return OptE.ADAMW.label;
+    }
+}  // end class
@@ -0,0 +1,59 @@
+package datasci.backend.optimizers;
+
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The enum OptE: weight update rules for back propagation.
+ */
+public enum OptE {
+    SGD("SGD Momentum"),
+    ADAM("Adam"),
+    ADAMW("AdamW"),
+    RMSPROP("RMSProp");
+
+    // label may have spaces and may be more user-friendly than the enum value
+    public final String label;
+
+    /**
+     * Create a new Opt e.
+     *
+     * @param label string label
+     */
+    private OptE(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+
+    // use TreeMap to sort by keys: key = string label, value = enum value
+    private static final TreeMap<String, OptE> LABEL_MAP = new TreeMap<>();
+
+    static {
+        for (OptE e : values()) {
+            LABEL_MAP.put(e.label, e);
+        }
+    }
+
+    /**
+     * Get enum value for given string value
+     *
+     * @param label the label
+     * @return the enum value
+     */
+    public static OptE valueOfLabel(String label) {
+        return LABEL_MAP.get(label);
+    }
+
+    /**
+     * Gets sorted string labels.
+     *
+     * @return enum string labels
+     */
+    public static Set<String> getLabels() {
+        return LABEL_MAP.keySet();
+    }
+}
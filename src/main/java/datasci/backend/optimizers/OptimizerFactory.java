@@ -0,0 +1,49 @@
+package datasci.backend.optimizers;
+
+import datasci.backend.model.BackPropConfig;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class OptimizerFactory {
+    private static final Logger LOG = Logger.getLogger(OptimizerFactory.class.getName());
+
+    public OptimizerFactory() {
+    }
+
+    /**
+     * Get the optimizer selected in a back prop config; SGD with momentum if none is selected
+     *
+     * @param config back prop config
+     * @return new optimizer, at step zero
+     */
+    public static OptimizerI getOptimizer(BackPropConfig config) {
+        OptimizerI optimizer = null;
+        try {
+            OptE optType = config.optName == null ? OptE.SGD : OptE.valueOfLabel(config.optName);
+            if (optType == null) {
+                LOG.warning("unknown optimizer: " + config.optName + ", using " + OptE.SGD.label);
+                optType = OptE.SGD;
+            }
+            switch (optType) {
+                case ADAM:
+                    optimizer = new AdamOptimizer(config.mu, config.beta2, config.epsilon, config.lambda);
+                    break;
+                case ADAMW:
+                    optimizer = new AdamWOptimizer(config.mu, config.beta2, config.epsilon, config.lambda);
+                    break;
+                case RMSPROP:
+                    optimizer = new RMSPropOptimizer(config.beta2, config.epsilon, config.lambda);
+                    break;
+
+                default:
+                    optimizer = new SgdOptimizer(config.mu, config.lambda);
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return optimizer;
+    }
+
+}  // end class
@@ -0,0 +1,59 @@
+package datasci.backend.optimizers;
+
+import datasci.backend.model.Matrix;
+
+/**
+ * Weight update rule applied at the end of each batch.
+ * <p>
+ * Each weight matrix has a state matrix v of the same size, and a second state matrix s
+ * if hasSecondMoment is true. The layers own the state matrices; the optimizer holds the
+ * hyperparameters and the batch step count, shared by all layers.
+ * <p>
+ * If updatesBias is true, each bias matrix is updated the same way, with its own state
+ * matrices. SGD keeps the plain gradient descent step of the batch average for biases,
+ * eta * dL/dB, with no momentum or regularization, as before optimizers were added.
+ */
+public interface OptimizerI {
+
+    public String getOptName();
+
+    /**
+     * Check if the update needs the second state matrix s
+     *
+     * @return true if s is used
+     */
+    public boolean hasSecondMoment();
+
+    /**
+     * Check if biases take this update rule, with their own state matrices
+     *
+     * @return true if biases are updated by the optimizer, false for a plain gradient descent step
+     */
+    public boolean updatesBias();
+
+    /**
+     * Start the next batch step, before the layer updates of the batch
+     */
+    public void nextStep();
+
+    public long getStep();
+
+    /**
+     * Set the batch step count, e.g. when resuming training
+     *
+     * @param step batch steps completed
+     */
+    public void setStep(long step);
+
+    /**
+     * Update a weight matrix and its state in one pass
+     *
+     * @param dLdW      gradient of loss with respect to weight, before scaling
+     * @param gradScale gradient scale, e.g. 1/batch count to average a batch sum
+     * @param eta       gradient descent rate
+     * @param w         weight matrix
+     * @param v         first state matrix, same size as w
+     * @param s         second state matrix, same size as w, null if hasSecondMoment is false
+     */
+    public void update(Matrix dLdW, double gradScale, double eta, Matrix w, Matrix v, Matrix s);
+}
@@ -0,0 +1,94 @@
+package datasci.backend.optimizers;
+
+import datasci.backend.jfr.WeightUpdateEvent;
+import datasci.backend.model.MathUtil;
+import datasci.backend.model.Matrix;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * RMSProp: gradient steps scaled by a running average of the squared gradient
+ * <p>
+ * With L2 regularization added to the gradient, g = dL/dW + lambda * W:
+ * <pre>
+ *   v = rho * v + (1 - rho) * g * g
+ *   W = W - eta * g / (sqrt(v) + epsilon)
+ * </pre>
+ * The squared gradient average is held in the velocity matrix v; no second state is needed.
+ */
+public class RMSPropOptimizer implements OptimizerI {
+    private static final Logger LOG = Logger.getLogger(RMSPropOptimizer.class.getName());
+
+    private final String optName = OptE.RMSPROP.label;
+    private final double rho;
+    private final double epsilon;
+    private final double lambda;
+    private long step;
+
+    /**
+     * Instantiates a new RMSProp optimizer.
+     *
+     * @param rho     decay of the squared gradient average
+     * @param epsilon small number added to the step denominator
+     * @param lambda  L2 regularization parameter
+     */
+    public RMSPropOptimizer(double rho, double epsilon, double lambda) {
+        this.rho = rho;
+        this.epsilon = epsilon;
+        this.lambda = lambda;
+    }
+
+    public String getOptName() {
+        return optName;
+    }
+
+    public boolean hasSecondMoment() {
+        return false;
+    }
+
+    public boolean updatesBias() {
+        return true;
+    }
+
+    public void nextStep() {
+        step++;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public void setStep(long step) {
+        this.step = step;
+    }
+
+    public void update(Matrix dLdW, double gradScale, double eta, Matrix w, Matrix v, Matrix s) {
+        try {
+            WeightUpdateEvent event = new WeightUpdateEvent();
+            event.begin();
+            int n = w.size;
+            if (dLdW.size != n || v.size != n) {
+                throw new IllegalArgumentException("RMSProp update size mismatch, dLdW: " + dLdW.size
+                        + ", w: " + n + ", v: " + v.size);
+            }
+            double[] g = dLdW.a;
+            double[] wa = w.a;
+            double[] va = v.a;
+            double oneMinusRho = 1.0 - rho;
+            MathUtil.forRange(n, (from, to) -> {
+                for (int k = from; k < to; k++) {
+                    double wk = wa[k];
+                    double gk = g[k] * gradScale + lambda * wk;
+                    double vk = rho * va[k] + oneMinusRho * gk * gk;
+                    va[k] = vk;
+                    wa[k] = wk - eta * gk / (Math.sqrt(vk) + epsilon);
+                }
+            });
+            event.end(optName, w.rows, w.cols, MathUtil.isParallel(n));
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+}  // end class
@@ -0,0 +1,58 @@
+package datasci.backend.optimizers;
+
+import datasci.backend.model.MathUtil;
+import datasci.backend.model.Matrix;
+
+/**
+ * Stochastic gradient descent with momentum and L2 regularization
+ * <p>
+ * v = mu * v - eta * dL/dW
+ * W = (1 - lambda) * W + v
+ */
+public class SgdOptimizer implements OptimizerI {
+
+    private final String optName = OptE.SGD.label;
+    // mu:  momentum parameter
+    private final double mu;
+    private final double oneMinusLambda;
+    private long step;
+
+    /**
+     * Instantiates a new SGD optimizer.
+     *
+     * @param mu     momentum parameter
+     * @param lambda L2 regularization parameter
+     */
+    public SgdOptimizer(double mu, double lambda) {
+        this.mu = mu;
+        this.oneMinusLambda = 1.0 - lambda;
+    }
+
+    public String getOptName() {
+        return optName;
+    }
+
+    public boolean hasSecondMoment() {
+        return false;
+    }
+
+    public boolean updatesBias() {
+        return false;
+    }
+
+    public void nextStep() {
+        step++;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public void setStep(long step) {
+        this.step = step;
+    }
+
+    public void update(Matrix dLdW, double gradScale, double eta, Matrix w, Matrix v, Matrix s) {
+        MathUtil.updateWeightMatrix(dLdW, gradScale, eta, w, v, mu, oneMinusLambda);
+    }
+}  // end class
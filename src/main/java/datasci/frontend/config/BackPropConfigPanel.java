@@ -1,10 +1,12 @@
 package datasci.frontend.config;
 
 import datasci.backend.model.BackPropConfig;
+import datasci.backend.optimizers.OptE;
 import datasci.frontend.util.Cert;
 import javafx.scene.Group;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.GridPane;
@@ -29,6 +31,10 @@ public class BackPropConfigPanel {
     private final TextField lambdaField = new TextField();
     // mu:  momentum parameter
     private final TextField muField = new TextField();
+    private final ChoiceBox<String> optChoices = new ChoiceBox<>();
+    // beta2, epsilon: adaptive optimizer parameters
+    private final TextField beta2Field = new TextField();
+    private final TextField epsilonField = new TextField();
     private final TextField batchField = new TextField();
     /**
      * Instantiates a new Hyper config panel.
@@ -54,18 +60,36 @@ public class BackPropConfigPanel {
             grid.add(labelRate, 0, row);
             grid.add(gRate, 1, row);
             //
+            Label labelOpt = new Label("Optimizer:");
+            // grid cell index: col, row
+            grid.add(labelOpt, 0, ++row);
+            optChoices.getItems().setAll(OptE.getLabels());
+            grid.add(optChoices, 1, row);
+            //
             Label labelLambda = new Label("L2 Regularization parameter:");
             // grid cell index: col, row
             grid.add(labelLambda, 0, ++row);
             grid.add(lambdaField, 1, row);
             Cert.checkDblField(lambdaField);
             //
-            Label labelMu = new Label("Momentum parameter:");
+            Label labelMu = new Label("Momentum parameter (Adam beta1):");
             // grid cell index: col, row
             grid.add(labelMu, 0, ++row);
             grid.add(muField, 1, row);
             Cert.checkDblField(muField);
             //
+            Label labelBeta2 = new Label("Squared gradient decay (beta2):");
+            // grid cell index: col, row
+            grid.add(labelBeta2, 0, ++row);
+            grid.add(beta2Field, 1, row);
+            Cert.checkDblField(beta2Field);
+            //
+            Label labelEpsilon = new Label("Adaptive step epsilon:");
+            // grid cell index: col, row
+            grid.add(labelEpsilon, 0, ++row);
+            grid.add(epsilonField, 1, row);
+            Cert.checkDblField(epsilonField);
+            //
             Label labelBatch = new Label("Batch Size:");
             // grid cell index: col, row
             grid.add(labelBatch, 0, ++row);
@@ -101,9 +125,11 @@ public class BackPropConfigPanel {
             AtomicBoolean isValid4 = Cert.validateDoubleField(lambdaField);
             AtomicBoolean isValid5 = Cert.validateDoubleField(muField);
             AtomicBoolean isValid3 = Cert.validateIntField(batchField);
+            AtomicBoolean isValid6 = Cert.validateDoubleField(beta2Field);
+            AtomicBoolean isValid7 = Cert.validateDoubleField(epsilonField);
 
             // check if all fields are valid
-            if (isValid3.get() &&isValid4.get() && isValid5.get()) {
+            if (isValid3.get() &&isValid4.get() && isValid5.get() && isValid6.get() && isValid7.get()) {
                 isOk = true;
             }
         } catch (Exception ex) {
@@ -126,6 +152,8 @@ public class BackPropConfigPanel {
                 backPropConfig.lambda = Double.parseDouble(lambdaField.getText());
                 backPropConfig.mu = Double.parseDouble(muField.getText());
                 backPropConfig.batchSize = Integer.parseInt(batchField.getText());
+                backPropConfig.beta2 = Double.parseDouble(beta2Field.getText());
+                backPropConfig.epsilon = Double.parseDouble(epsilonField.getText());
             } else{
                     Alert alert = new Alert(Alert.AlertType.ERROR,
                             "Fix error in BackProp params",
@@ -137,6 +165,7 @@ public class BackPropConfigPanel {
             }
             //
             backPropConfig.rateModel = ratePanel.getRateModel();
+            backPropConfig.optName = optChoices.getValue();
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
             throw new RuntimeException(ex);
@@ -157,6 +186,9 @@ public class BackPropConfigPanel {
             lambdaField.setText(SIZE_FMT.format(backPropConfig.lambda));
             muField.setText(SIZE_FMT.format(backPropConfig.mu));
             batchField.setText(Integer.toString(backPropConfig.batchSize));
+            optChoices.setValue(backPropConfig.optName != null ? backPropConfig.optName : OptE.SGD.label);
+            beta2Field.setText(SIZE_FMT.format(backPropConfig.beta2));
+            epsilonField.setText(Double.toString(backPropConfig.epsilon));
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
             throw new RuntimeException(ex);
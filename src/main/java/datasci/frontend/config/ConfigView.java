@@ -20,11 +20,13 @@ import datasci.backend.model.ConvoConfig;
 import datasci.backend.model.ConvoPoolConfig;
 import datasci.backend.model.FileUtil;
 import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
 import datasci.backend.model.GeneralConfig;
 import datasci.backend.model.BackPropConfig;
 import datasci.backend.model.InputConfig;
 import datasci.backend.model.InternalConfig;
 import datasci.backend.model.JsonUtil;
+import datasci.backend.model.ModelRegistry;
 import datasci.backend.model.NetConfig;
 import datasci.backend.model.NetResult;
 import datasci.backend.model.OutputConfig;
@@ -790,12 +792,25 @@ public class ConfigView {
         try {
             File file = ViewUtil.openFileDialog("Import Training FitParams");
             if (file != null) {
-                InputStream src = FileUtil.getInputStream(file);
-                FitParams fitParams = JsonUtil.jsonToFitParams(src);
-                if(fitParams != null) {
-                    FitParamsCache fitParamsCache = FitParamsCache.getInstance();
-                    fitParamsCache.setFitParams(fitParams);
-                } else{
+                long start = System.nanoTime();
+                // the registry reads binary, delta checkpoint or json, by the leading magic bytes;
+                // importing a file again reads it again only if it changed on disk
+                FitParamsCache fitParamsCache = FitParamsCache.getInstance();
+                String previousID = fitParamsCache.getModelID();
+                String id = file.getAbsolutePath();
+                FitParams fitParams = null;
+                try {
+                    fitParamsCache.selectFile(id, file);
+                    fitParams = fitParamsCache.getFitParams();
+                } catch (Exception ex) {
+                    // keep the previous model selected
+                    LOG.log(Level.WARNING, "cannot import FitParams: " + file, ex);
+                    ModelRegistry.getInstance().remove(id);
+                    fitParamsCache.setModelID(previousID);
+                }
+                LOG.info("Import FitParams, bytes: " + file.length() + ", ms: "
+                        + (System.nanoTime() - start) / 1000000L);
+                if(fitParams == null) {
                     Alert alert = new Alert(Alert.AlertType.ERROR,
                             "FitParams could not be imported",
                             ButtonType.OK);
@@ -819,9 +834,17 @@ public class ConfigView {
             if(fitParams != null) {
                 File file = ViewUtil.openCreateFileDialog("Export Training FitParams");
                 if (file != null) {
-                    //
-                    OutputStream fos = FileUtil.getOutputStream(file);
-                    JsonUtil.FitParamsToJson(fitParams, fos);
+                    long start = System.nanoTime();
+                    // binary for the binary extension, otherwise json
+                    if (FitParamsBinary.isBinaryName(file)) {
+                        FitParamsBinary.write(fitParams, file);
+                    } else {
+                        try (OutputStream fos = FileUtil.getOutputStream(file)) {
+                            JsonUtil.FitParamsToJson(fitParams, fos);
+                        }
+                    }
+                    LOG.info("Export FitParams, bytes: " + file.length() + ", ms: "
+                            + (System.nanoTime() - start) / 1000000L);
                 }
             } else {
                 Alert alert = new Alert(Alert.AlertType.INFORMATION,
@@ -1,9 +1,12 @@
 package datasci.frontend.config;
 
 import datasci.backend.model.GeneralConfig;
+import datasci.backend.model.PrecisionE;
 import datasci.frontend.util.Cert;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.GridPane;
@@ -28,6 +31,31 @@ public class GeneralConfigPanel {
     //
     private final TextField totalTrainField = new TextField();
     private final TextField totalTestField = new TextField();
+    private final TextField numEpochsField = new TextField();
+    //
+    private final CheckBox streamTrainBox = new CheckBox("Stream training samples");
+    private final TextField trainFileField = new TextField();
+    private final TextField prefetchField = new TextField();
+    private final TextField shuffleWindowField = new TextField();
+    //
+    private final CheckBox augmentBox = new CheckBox("Augment training samples");
+    private final TextField shiftField = new TextField();
+    private final TextField rotationField = new TextField();
+    private final TextField elasticAlphaField = new TextField();
+    private final TextField elasticSigmaField = new TextField();
+    private final TextField noiseField = new TextField();
+    private final TextField augmentSeedField = new TextField();
+    //
+    private final TextField checkpointDirField = new TextField();
+    private final TextField checkpointBatchesField = new TextField();
+    private final TextField checkpointSecondsField = new TextField();
+    private final TextField checkpointKeepField = new TextField();
+    private final ChoiceBox<String> checkpointPrecisionChoices = new ChoiceBox<>();
+    private final TextField checkpointKeyframeField = new TextField();
+    private final TextField resumeFromField = new TextField();
+    //
+    private final CheckBox profileLayerAllocBox = new CheckBox("Count allocated bytes per layer");
+    private final TextField telemetryLogField = new TextField();
 
 
     /**
@@ -72,6 +100,138 @@ public class GeneralConfigPanel {
             grid.add(labelTotalTest, 0, ++row);
             grid.add(totalTestField, 1, row);
             Cert.checkIntField(totalTestField);
+            //
+            Label labelEpochs = new Label("Training epochs:");
+            // grid cell index: col, row
+            grid.add(labelEpochs, 0, ++row);
+            grid.add(numEpochsField, 1, row);
+            Cert.checkIntField(numEpochsField);
+            //
+            grid.add(streamTrainBox, 1, ++row);
+            //
+            Label labelTrainFile = new Label("Packed training file (optional):");
+            // grid cell index: col, row
+            grid.add(labelTrainFile, 0, ++row);
+            grid.add(trainFileField, 1, row);
+            trainFileField.setPrefColumnCount(30);
+            //
+            Label labelPrefetch = new Label("Batches to read ahead:");
+            // grid cell index: col, row
+            grid.add(labelPrefetch, 0, ++row);
+            grid.add(prefetchField, 1, row);
+            Cert.checkIntField(prefetchField);
+            //
+            Label labelShuffleWindow = new Label("Shuffle window samples:");
+            // grid cell index: col, row
+            grid.add(labelShuffleWindow, 0, ++row);
+            grid.add(shuffleWindowField, 1, row);
+            Cert.checkIntField(shuffleWindowField);
+            //
+            grid.add(augmentBox, 1, ++row);
+            //
+            Label labelShift = new Label("Max shift (pixels):");
+            // grid cell index: col, row
+            grid.add(labelShift, 0, ++row);
+            grid.add(shiftField, 1, row);
+            Cert.checkDblField(shiftField);
+            //
+            Label labelRotation = new Label("Max rotation (degrees):");
+            // grid cell index: col, row
+            grid.add(labelRotation, 0, ++row);
+            grid.add(rotationField, 1, row);
+            Cert.checkDblField(rotationField);
+            //
+            Label labelElasticAlpha = new Label("Elastic distortion (pixels):");
+            // grid cell index: col, row
+            grid.add(labelElasticAlpha, 0, ++row);
+            grid.add(elasticAlphaField, 1, row);
+            Cert.checkDblField(elasticAlphaField);
+            //
+            Label labelElasticSigma = new Label("Elastic smoothness (pixels):");
+            // grid cell index: col, row
+            grid.add(labelElasticSigma, 0, ++row);
+            grid.add(elasticSigmaField, 1, row);
+            Cert.checkDblField(elasticSigmaField);
+            //
+            Label labelNoise = new Label("Noise std dev:");
+            // grid cell index: col, row
+            grid.add(labelNoise, 0, ++row);
+            grid.add(noiseField, 1, row);
+            Cert.checkDblField(noiseField);
+            //
+            Label labelAugmentSeed = new Label("Augment seed:");
+            // grid cell index: col, row
+            grid.add(labelAugmentSeed, 0, ++row);
+            grid.add(augmentSeedField, 1, row);
+            Cert.checkIntField(augmentSeedField);
+            //
+            Label labelCheckpointDir = new Label("Checkpoint directory (optional):");
+            // grid cell index: col, row
+            grid.add(labelCheckpointDir, 0, ++row);
+            grid.add(checkpointDirField, 1, row);
+            checkpointDirField.setPrefColumnCount(30);
+            //
+            Label labelCheckpointBatches = new Label("Checkpoint every N batches:");
+            // grid cell index: col, row
+            grid.add(labelCheckpointBatches, 0, ++row);
+            grid.add(checkpointBatchesField, 1, row);
+            Cert.checkIntField(checkpointBatchesField);
+            //
+            Label labelCheckpointSeconds = new Label("Checkpoint every T seconds:");
+            // grid cell index: col, row
+            grid.add(labelCheckpointSeconds, 0, ++row);
+            grid.add(checkpointSecondsField, 1, row);
+            Cert.checkIntField(checkpointSecondsField);
+            //
+            Label labelCheckpointKeep = new Label("Checkpoints to keep:");
+            // grid cell index: col, row
+            grid.add(labelCheckpointKeep, 0, ++row);
+            grid.add(checkpointKeepField, 1, row);
+            Cert.checkIntField(checkpointKeepField);
+            //
+            Label labelCheckpointPrecision = new Label("Checkpoint precision:");
+            // grid cell index: col, row
+            grid.add(labelCheckpointPrecision, 0, ++row);
+            checkpointPrecisionChoices.getItems().setAll(PrecisionE.getLabels());
+            grid.add(checkpointPrecisionChoices, 1, row);
+            //
+            Label labelCheckpointKeyframe = new Label("Full checkpoint every N checkpoints:");
+            // grid cell index: col, row
+            grid.add(labelCheckpointKeyframe, 0, ++row);
+            grid.add(checkpointKeyframeField, 1, row);
+            Cert.checkIntField(checkpointKeyframeField);
+            //
+            Label labelResumeFrom = new Label("Resume from checkpoint (optional):");
+            // grid cell index: col, row
+            grid.add(labelResumeFrom, 0, ++row);
+            grid.add(resumeFromField, 1, row);
+            resumeFromField.setPrefColumnCount(30);
+            //
+            grid.add(profileLayerAllocBox, 1, ++row);
+            //
+            Label labelTelemetryLog = new Label("Telemetry log file (optional):");
+            // grid cell index: col, row
+            grid.add(labelTelemetryLog, 0, ++row);
+            grid.add(telemetryLogField, 1, row);
+            telemetryLogField.setPrefColumnCount(30);
+            //
+            // augment fields are used only when augmenting
+            for (TextField field : new TextField[]{shiftField, rotationField, elasticAlphaField,
+                    elasticSigmaField, noiseField, augmentSeedField}) {
+                field.disableProperty().bind(augmentBox.selectedProperty().not());
+            }
+            //
+            // default values, replaced by setConfig
+            GeneralConfig defaults = new GeneralConfig();
+            numEpochsField.setText(Integer.toString(defaults.numEpochs));
+            prefetchField.setText(Integer.toString(defaults.prefetchBatches));
+            shuffleWindowField.setText(Integer.toString(defaults.shuffleWindow));
+            setAugmentFields(defaults);
+            setCheckpointFields(defaults);
+            // stream fields are used only when streaming
+            trainFileField.disableProperty().bind(streamTrainBox.selectedProperty().not());
+            prefetchField.disableProperty().bind(streamTrainBox.selectedProperty().not());
+            shuffleWindowField.disableProperty().bind(streamTrainBox.selectedProperty().not());
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
             throw new RuntimeException(ex);
@@ -84,9 +244,28 @@ public class GeneralConfigPanel {
         try {
             AtomicBoolean isValid1 = Cert.validateIntField(totalTrainField);
             AtomicBoolean isValid2 = Cert.validateIntField(totalTestField);
+            AtomicBoolean isValid3 = Cert.validateIntField(prefetchField);
+            AtomicBoolean isValid4 = Cert.validateIntField(shuffleWindowField);
+            AtomicBoolean isValid5 = Cert.validateIntField(numEpochsField);
+            AtomicBoolean isValid6 = new AtomicBoolean(true);
+            for (TextField field : new TextField[]{shiftField, rotationField, elasticAlphaField,
+                    elasticSigmaField, noiseField}) {
+                if (!Cert.validateDoubleField(field).get()) {
+                    isValid6.set(false);
+                }
+            }
+            AtomicBoolean isValid7 = Cert.validateIntField(augmentSeedField);
+            AtomicBoolean isValid8 = new AtomicBoolean(true);
+            for (TextField field : new TextField[]{checkpointBatchesField, checkpointSecondsField,
+                    checkpointKeepField, checkpointKeyframeField}) {
+                if (!Cert.validateIntField(field).get()) {
+                    isValid8.set(false);
+                }
+            }
 
             // check if all fields are valid
-            if (isValid1.get() && isValid2.get() ) {
+            if (isValid1.get() && isValid2.get() && isValid3.get() && isValid4.get() && isValid5.get()
+                    && isValid6.get() && isValid7.get() && isValid8.get()) {
                 isOk = true;
             }
         } catch (Exception ex) {
@@ -106,6 +285,14 @@ public class GeneralConfigPanel {
         try {
             generalConfig.trainingDir = trainDirField.getText();
             generalConfig.testingDir = testDirField.getText();
+            generalConfig.streamTraining = streamTrainBox.isSelected();
+            generalConfig.trainingFile = trainFileField.getText();
+            generalConfig.augment = augmentBox.isSelected();
+            generalConfig.checkpointDir = checkpointDirField.getText();
+            generalConfig.resumeFrom = resumeFromField.getText();
+            generalConfig.checkpointPrecision = checkpointPrecisionChoices.getValue();
+            generalConfig.profileLayerAlloc = profileLayerAllocBox.isSelected();
+            generalConfig.telemetryLog = telemetryLogField.getText();
             //
             // allow zero to edit later ?
             generalConfig.totalTrainingSamples = 0;
@@ -113,6 +300,19 @@ public class GeneralConfigPanel {
             if (validateNumberFields()) {
                 generalConfig.totalTrainingSamples = Integer.parseInt(totalTrainField.getText());
                 generalConfig.totalTestingSamples = Integer.parseInt(totalTestField.getText());
+                generalConfig.numEpochs = Integer.parseInt(numEpochsField.getText());
+                generalConfig.prefetchBatches = Integer.parseInt(prefetchField.getText());
+                generalConfig.shuffleWindow = Integer.parseInt(shuffleWindowField.getText());
+                generalConfig.augmentShift = Double.parseDouble(shiftField.getText());
+                generalConfig.augmentRotation = Double.parseDouble(rotationField.getText());
+                generalConfig.augmentElasticAlpha = Double.parseDouble(elasticAlphaField.getText());
+                generalConfig.augmentElasticSigma = Double.parseDouble(elasticSigmaField.getText());
+                generalConfig.augmentNoise = Double.parseDouble(noiseField.getText());
+                generalConfig.augmentSeed = Integer.parseInt(augmentSeedField.getText());
+                generalConfig.checkpointBatches = Integer.parseInt(checkpointBatchesField.getText());
+                generalConfig.checkpointSeconds = Integer.parseInt(checkpointSecondsField.getText());
+                generalConfig.checkpointKeep = Integer.parseInt(checkpointKeepField.getText());
+                generalConfig.checkpointKeyframe = Integer.parseInt(checkpointKeyframeField.getText());
             } else{
                     Alert alert = new Alert(Alert.AlertType.ERROR,
                             "Fix error in General params",
@@ -141,6 +341,17 @@ public class GeneralConfigPanel {
             //
             totalTrainField.setText(Integer.toString(generalConfig.totalTrainingSamples));
             totalTestField.setText(Integer.toString(generalConfig.totalTestingSamples));
+            //
+            numEpochsField.setText(Integer.toString(generalConfig.numEpochs));
+            streamTrainBox.setSelected(generalConfig.streamTraining);
+            trainFileField.setText(generalConfig.trainingFile);
+            prefetchField.setText(Integer.toString(generalConfig.prefetchBatches));
+            shuffleWindowField.setText(Integer.toString(generalConfig.shuffleWindow));
+            augmentBox.setSelected(generalConfig.augment);
+            setAugmentFields(generalConfig);
+            setCheckpointFields(generalConfig);
+            profileLayerAllocBox.setSelected(generalConfig.profileLayerAlloc);
+            telemetryLogField.setText(generalConfig.telemetryLog);
 
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
@@ -148,4 +359,23 @@ public class GeneralConfigPanel {
         }
     }
 
+    private void setAugmentFields(GeneralConfig generalConfig) {
+        shiftField.setText(Double.toString(generalConfig.augmentShift));
+        rotationField.setText(Double.toString(generalConfig.augmentRotation));
+        elasticAlphaField.setText(Double.toString(generalConfig.augmentElasticAlpha));
+        elasticSigmaField.setText(Double.toString(generalConfig.augmentElasticSigma));
+        noiseField.setText(Double.toString(generalConfig.augmentNoise));
+        augmentSeedField.setText(Long.toString(generalConfig.augmentSeed));
+    }
+
+    private void setCheckpointFields(GeneralConfig generalConfig) {
+        checkpointDirField.setText(generalConfig.checkpointDir);
+        checkpointBatchesField.setText(Integer.toString(generalConfig.checkpointBatches));
+        checkpointSecondsField.setText(Integer.toString(generalConfig.checkpointSeconds));
+        checkpointKeepField.setText(Integer.toString(generalConfig.checkpointKeep));
+        checkpointPrecisionChoices.setValue(generalConfig.checkpointPrecision);
+        checkpointKeyframeField.setText(Integer.toString(generalConfig.checkpointKeyframe));
+        resumeFromField.setText(generalConfig.resumeFrom);
+    }
+
 }  //end class
@@ -16,6 +16,7 @@ package datasci.frontend.ctrl;
  * limitations under the License.
  **************************************************************************/
 
+import datasci.backend.model.ModelRegistry;
 import datasci.backend.model.NetConfig;
 import datasci.frontend.config.ConfigView;
 import datasci.frontend.config.PixelView;
@@ -26,6 +27,7 @@ import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.ChoiceDialog;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
@@ -244,6 +246,19 @@ public class AppMenu {
                 }
             });
             //
+            MenuItem selectFitParamsItem = new MenuItem("Select Training Model Fit Parameters");
+            menuItemList.add(selectFitParamsItem);
+            selectFitParamsItem.setOnAction(new EventHandler<ActionEvent>() {
+                @Override
+                public void handle(ActionEvent t) {
+                    LOG.log(Level.INFO, "Select FitParams");
+                    // models imported or trained in this session, already read models are not read again
+                    if (selectModel()) {
+                        exportFitParamsItem.setDisable(false);
+                    }
+                }
+            });
+            //
             exportFitParamsItem = new MenuItem("Export Training Model Fit Parameters");
             menuItemList.add(exportFitParamsItem);
             exportFitParamsItem.setOnAction(new EventHandler<ActionEvent>() {
@@ -448,6 +463,36 @@ public class AppMenu {
 
     }
 
+    /**
+     Select a registered model by ID, for the next test run or export
+
+     @return true if a model is selected
+     */
+    private boolean selectModel() {
+        FitParamsCache fitParamsCache = FitParamsCache.getInstance();
+        List<String> ids = ModelRegistry.getInstance().getIDs();
+        if (ids.isEmpty()) {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION,
+                    "No Fit Parameters imported or trained",
+                    ButtonType.OK);
+            alert.showAndWait();
+            return false;
+        }
+        String current = fitParamsCache.getModelID();
+        // default: the selected model, else the most recently used
+        String choice = ids.contains(current) ? current : ids.get(ids.size() - 1);
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(choice, ids);
+        dialog.setTitle("Select Fit Parameters");
+        dialog.setHeaderText("Model ID");
+        Optional<String> result = dialog.showAndWait();
+        if (result.isPresent()) {
+            fitParamsCache.setModelID(result.get());
+            LOG.log(Level.INFO, "selected model: " + result.get());
+            return true;
+        }
+        return false;
+    }
+
     /**
      Exit application
      */
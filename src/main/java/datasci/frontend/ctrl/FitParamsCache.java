@@ -1,18 +1,26 @@
 package datasci.frontend.ctrl;
 
 import datasci.backend.model.FitParams;
+import datasci.backend.model.ModelRegistry;
+
+import java.io.File;
 
 /**
  * Singleton class for storing shared data
+ * <p>
+ * Facade over the shared ModelRegistry: holds the ID of the selected model, and gets its
+ * FitParams from the registry, so running the selected model again does not read it again.
  */
 public class FitParamsCache {
 
+    // ID of FitParams set without an ID, e.g. the last trained network
+    public static final String DEFAULT_ID = "current";
     //
     /**
-     * Network training FitParams, including weights and biases for all layers
+     * ID of the selected model, its FitParams include weights and biases for all layers
      * Note: does not include any back prop parameters
      */
-    private FitParams FitParams;
+    private String modelID;
 
     private final static FitParamsCache INSTANCE = new FitParamsCache();
 
@@ -23,11 +31,56 @@ public class FitParamsCache {
         return INSTANCE;
     }
 
+    /**
+     * Get the FitParams of the selected model, read on first use
+     *
+     * @return FitParams, or null if no model is selected
+     */
     public FitParams getFitParams() {
-        return FitParams;
+        String id = modelID;
+        return id != null ? ModelRegistry.getInstance().get(id) : null;
     }
 
     public void setFitParams(FitParams fitParams) {
-        this.FitParams = fitParams;
+        setFitParams(DEFAULT_ID, fitParams);
+    }
+
+    /**
+     * Put FitParams in the registry, and select them
+     *
+     * @param id        model ID
+     * @param fitParams model FitParams
+     */
+    public void setFitParams(String id, FitParams fitParams) {
+        ModelRegistry.getInstance().put(id, fitParams);
+        modelID = id;
+    }
+
+    /**
+     * Register a model file, and select it. A file already registered is registered again only if
+     * its size or modified time changed, so an unchanged model is not read again.
+     *
+     * @param id   model ID
+     * @param file FitParams file
+     */
+    public void selectFile(String id, File file) {
+        ModelRegistry registry = ModelRegistry.getInstance();
+        if (!registry.isCurrent(id, file)) {
+            registry.register(id, file);
+        }
+        modelID = id;
+    }
+
+    public String getModelID() {
+        return modelID;
+    }
+
+    /**
+     * Select a registered model
+     *
+     * @param modelID model ID
+     */
+    public void setModelID(String modelID) {
+        this.modelID = modelID;
     }
 }
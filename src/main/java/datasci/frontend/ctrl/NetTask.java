@@ -19,15 +19,27 @@ package datasci.frontend.ctrl;
 import datasci.backend.control.ConvoNetI;
 import datasci.backend.control.ConvoNetTest;
 import datasci.backend.control.ConvoNetTrain;
+import datasci.backend.model.AllocStatsR;
+import datasci.backend.model.EpochR;
 import datasci.backend.model.EvaluationR;
+import datasci.backend.model.LayerTimeR;
 import datasci.backend.model.NetConfig;
 import datasci.backend.model.NetResult;
+import datasci.backend.model.ProgressBus;
+import datasci.backend.model.RegistryStatsR;
 import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.ModelRegistry;
+import datasci.backend.model.TelemetryLog;
+import datasci.backend.model.TelemetryR;
 import javafx.concurrent.Task;
 
+import java.io.File;
 import java.text.DecimalFormat;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,6 +52,8 @@ public class NetTask extends Task<TaskResult> {
     private static Logger LOG = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
     public static final DecimalFormat SIZE_FMT = new DecimalFormat("##0.##");
+    // snapshots kept for the view between two frames
+    private static final int BUS_CAPACITY = 1024;
 
     private int totalSamples;
     private int batchSize;
@@ -55,6 +69,10 @@ public class NetTask extends Task<TaskResult> {
     private static final String TEST_NET = "Test Net";
     //
     private ConvoNetI net;
+    // telemetryLog: json lines log of each subset, null for none
+    private TelemetryLog telemetryLog;
+    // progressBus: snapshot of each subset for the view, which polls it once a frame
+    private final ProgressBus<TaskSnapshotR> progressBus = new ProgressBus<>(BUS_CAPACITY);
 
 
     /**
@@ -97,6 +115,15 @@ public class NetTask extends Task<TaskResult> {
         //   updateMessage("Task failed");
     }
 
+    /**
+     * Get the progress snapshots of this task, published after each subset
+     *
+     * @return progress bus
+     */
+    public ProgressBus<TaskSnapshotR> getProgressBus() {
+        return progressBus;
+    }
+
     public void setSubsetSize(int subsetSize) {
         this.subsetSize = subsetSize;
     }
@@ -114,23 +141,36 @@ public class NetTask extends Task<TaskResult> {
         try {
             String status = null;
             result.netResult = new NetResult();
-            FitParamsCache fitParamsCache = FitParamsCache.getInstance();
-            FitParams fitParams = fitParamsCache.getFitParams();
-            if(fitParams != null){
-                result.netResult.fitParams = fitParams;
-            }
-            if (TRAIN_NET.equalsIgnoreCase(netOption)) {
-                // training network
-                net = new ConvoNetTrain(result.netResult, config);
-            } else if (TEST_NET.equalsIgnoreCase(netOption)) {
-                // testing network
-                net = new ConvoNetTest(result.netResult, config);
+            // model selected in the cache
+            ModelRegistry registry = ModelRegistry.getInstance();
+            String id = FitParamsCache.getInstance().getModelID();
+            File modelFile = id != null ? registry.getFile(id) : null;
+            if (TEST_NET.equalsIgnoreCase(netOption) && modelFile != null && FitParamsBinary.isBinary(modelFile)) {
+                // testing network, weights read in place from the mapped binary file, not loaded to the heap
+                net = new ConvoNetTest(result.netResult, config, registry.getMapped(id));
+            } else {
+                FitParams fitParams = id != null ? registry.get(id) : null;
+                if (fitParams != null) {
+                    // training changes the weights in place; registry models are shared
+                    result.netResult.fitParams = TRAIN_NET.equalsIgnoreCase(netOption) ? fitParams.copy() : fitParams;
+                }
+                if (TRAIN_NET.equalsIgnoreCase(netOption)) {
+                    // training network
+                    net = new ConvoNetTrain(result.netResult, config);
+                } else if (TEST_NET.equalsIgnoreCase(netOption)) {
+                    // testing network
+                    net = new ConvoNetTest(result.netResult, config);
+                }
             }
             //
             totalSamples = net.getTotalSamples();
             batchSize = net.getBatchSize();
             //
             LOG.info("totalSamples: " + totalSamples + ", subsetSize: " + subsetSize + ", batchSize: " + batchSize);
+            String telemetryFile = config.generalConfig.telemetryLog;
+            if (telemetryFile != null && !telemetryFile.isBlank()) {
+                telemetryLog = new TelemetryLog(new File(telemetryFile));
+            }
             // loop over multiple subsetSize up to totalTrainingSamples
             for (int samples = 0; samples < totalSamples; samples += subsetSize) {
                 if (isCancelled()) {
@@ -139,6 +179,9 @@ public class NetTask extends Task<TaskResult> {
                     break;
                 }
                 LOG.info("samples: " + samples);
+                // layer times at the start of the subset
+                List<LayerTimeR> subsetStartTimes = result.netResult.layerTimes;
+                AllocStatsR subsetStartAlloc = result.netResult.allocStats;
                 // reset sub sample counts
                 subsetCompleted = 0;
                 subsetCorrect = 0;
@@ -179,8 +222,6 @@ public class NetTask extends Task<TaskResult> {
                 // after each subsetSize, update results
                 //
                 status = net.getStatus();
-                //
-                updateMessage(status);
                 LOG.info("status: " + status);
                 //
                 // evaluate after each subset
@@ -195,8 +236,10 @@ public class NetTask extends Task<TaskResult> {
                 result.subsetCorrect = subsetCorrect;
                 LOG.info("subsetCompleted: " + subsetCompleted + ", subsetCorrect: " + subsetCorrect);
                 //
-                // update task value before progress
-                updateValue(result);
+                if (samples == 0) {
+                    // the same result object throughout, so the view has it if the task is cancelled
+                    updateValue(result);
+                }
                 double percentSubset = 0;
                 double percentCorrect = 0;
                 if(subsetCompleted > 0) {
@@ -211,17 +254,44 @@ public class NetTask extends Task<TaskResult> {
                 LOG.info("accuracy: " + accuracy);
                 //
                 // Task has properties such as: message, progress
-                updateMessage("Overall Accuracy: " + accuracy + " %,    Subset Accuracy: " + subsetAccuracy + " %");
+                String epochMsg = "";
+                if (TRAIN_NET.equalsIgnoreCase(netOption)) {
+                    epochMsg = "Epoch " + (eval.epoch() + 1) + ",    ";
+                }
+                // allocation and garbage collection over the subset
+                AllocStatsR alloc = result.netResult.allocStats != null
+                        ? result.netResult.allocStats.minus(subsetStartAlloc) : new AllocStatsR(0, 0, 0, 0, 0);
+                String allocMsg = ",    Alloc: " + SIZE_FMT.format(alloc.bytesPerSample() / 1024.0) + " KB/sample"
+                        + ",    GC: " + SIZE_FMT.format(alloc.gcPercent()) + " %";
+                String message = epochMsg + "Overall Accuracy: " + accuracy + " %,    Subset Accuracy: " + subsetAccuracy + " %"
+                        + allocMsg;
+                LOG.info("subset alloc bytes: " + alloc.allocatedBytes() + ", bytes/sample: "
+                        + SIZE_FMT.format(alloc.bytesPerSample()) + ", gc count: " + alloc.gcCount()
+                        + ", gc ms: " + alloc.gcMillis() + ", gc %: " + SIZE_FMT.format(alloc.gcPercent()));
                 LOG.info("sampleCompleted: " + sampleCompleted + ", sampleCorrect: " + sampleCorrect);
                 //
-                // update progress last, since it will trigger listener
-                updateProgress(sampleCompleted, totalSamples);
+                // publish progress; the view samples it once a frame, so the task never waits on the UI
+                progressBus.publish(new TaskSnapshotR(message, (double) sampleCompleted / totalSamples,
+                        sampleCompleted, sampleCorrect, subsetCompleted, subsetCorrect));
                 // time passes
                 Instant end = Instant.now();
                 Duration timeElapsed = Duration.between(start, end);
                 LOG.info("subset timeElapsed (sec): " + timeElapsed.toSeconds());
+                List<LayerTimeR> subsetTimes = subsetLayerTimes(subsetStartTimes, result.netResult.layerTimes);
+                logLayerTimes(subsetTimes);
+                if (telemetryLog != null) {
+                    telemetryLog.write(new TelemetryR(System.currentTimeMillis(), netOption, sampleCompleted,
+                            subsetCompleted, subsetCorrect, alloc.bytesPerSample(), alloc.gcPercent(), alloc,
+                            subsetTimes));
+                }
             }
             //
+            for (EpochR epochR : result.netResult.epochResults) {
+                LOG.info("epoch: " + (epochR.epoch() + 1) + ", samples: " + epochR.samples()
+                        + ", accuracy: " + SIZE_FMT.format(epochR.accuracy()) + " %"
+                        + ", seconds: " + SIZE_FMT.format(epochR.seconds())
+                        + ", samples/sec: " + SIZE_FMT.format(epochR.samplesPerSec()));
+            }
             if (!isCancelled()) {
                 updateMessage("Training completed");
             }
@@ -230,10 +300,64 @@ public class NetTask extends Task<TaskResult> {
             updateMessage("Task exception: " + ex.getMessage());
             this.failed();
             throw new RuntimeException(ex);
+        } finally {
+            if (net != null) {
+                net.close();
+            }
+            if (telemetryLog != null) {
+                telemetryLog.close();
+            }
+            logRegistryStats();
         }
         return result;
     }
 
+    /**
+     * Get the time of each layer over a subset
+     *
+     * @param startTimes layer times at the start of the subset
+     * @param endTimes   layer times at the end of the subset
+     * @return layer times of the subset
+     */
+    private static List<LayerTimeR> subsetLayerTimes(List<LayerTimeR> startTimes, List<LayerTimeR> endTimes) {
+        List<LayerTimeR> subsetTimes = new ArrayList<>(endTimes.size());
+        for (int k = 0; k < endTimes.size(); k++) {
+            subsetTimes.add(endTimes.get(k).minus(k < startTimes.size() ? startTimes.get(k) : null));
+        }
+        return subsetTimes;
+    }
+
+    /**
+     * Log the time of each layer over a subset: total ms, and microseconds per call
+     *
+     * @param subsetTimes layer times of the subset
+     */
+    private void logLayerTimes(List<LayerTimeR> subsetTimes) {
+        for (LayerTimeR t : subsetTimes) {
+            LOG.info("layer: " + t.layer()
+                    + ", forward ms: " + SIZE_FMT.format(t.forwardNanos() / 1.0E6)
+                    + " (" + SIZE_FMT.format(t.forwardNanos() / 1.0E3 / Math.max(t.forwardCount(), 1)) + " us/call)"
+                    + ", backward ms: " + SIZE_FMT.format(t.backwardNanos() / 1.0E6)
+                    + " (" + SIZE_FMT.format(t.backwardNanos() / 1.0E3 / Math.max(t.backwardCount(), 1)) + " us/call)"
+                    + ", update ms: " + SIZE_FMT.format(t.updateNanos() / 1.0E6)
+                    + " (" + SIZE_FMT.format(t.updateNanos() / 1.0E3 / Math.max(t.updateCount(), 1)) + " us/batch)"
+                    + (t.allocatedBytes() > 0 ? ", alloc bytes/call: "
+                    + SIZE_FMT.format((double) t.allocatedBytes() / Math.max(t.forwardCount(), 1)) : ""));
+        }
+    }
+
+    /**
+     * Log the model registry metrics: resident models, and hit, miss, load and eviction counts
+     */
+    private static void logRegistryStats() {
+        RegistryStatsR stats = ModelRegistry.getInstance().getStats();
+        LOG.info("model registry, models: " + stats.models() + ", resident: " + stats.resident()
+                + ", resident MB: " + SIZE_FMT.format(stats.residentBytes() / 1.0E6)
+                + ", max MB: " + SIZE_FMT.format(stats.maxBytes() / 1.0E6)
+                + ", hits: " + stats.hits() + ", misses: " + stats.misses() + ", loads: " + stats.loads()
+                + ", load ms: " + SIZE_FMT.format(stats.loadNanos() / 1.0E6) + ", evictions: " + stats.evictions());
+    }
+
     public FitParams prepFitParams() {
         NetResult res = net.getNetResult();
         try {
@@ -0,0 +1,8 @@
+package datasci.frontend.ctrl;
+
+/**
+ * Progress of a running task after one subset, published by the task thread for the view
+ */
+public record TaskSnapshotR(String message, double progress, int samplesCompleted, int samplesCorrect,
+                            int subsetCompleted, int subsetCorrect) {
+}
@@ -22,8 +22,12 @@ import datasci.backend.model.JsonUtil;
 import datasci.backend.model.MTX;
 import datasci.backend.model.Matrix;
 import datasci.backend.model.NetConfig;
+import datasci.backend.model.ProgressBus;
+import datasci.frontend.util.Downsample;
+import datasci.frontend.util.PointRing;
 import datasci.frontend.util.SciFmtR;
 import datasci.frontend.util.ViewUtil;
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.value.ChangeListener;
@@ -76,7 +80,9 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.logging.Level;
@@ -125,6 +131,26 @@ public class TaskView {
     //
     private final XYChart.Series<Number, Number> barSeries = new XYChart.Series<>();
     private LineChart<Number, Number> histoChart;
+    //
+    // chart point budgets: longer histories are downsampled, so drawing cost stays the same
+    private static final int PLOT_POINTS = 500;
+    private static final int HISTO_BARS = 100;
+    // full resolution history, outside the scene graph; the oldest points are dropped when full
+    private static final int HISTORY_POINTS = 1 << 16;
+    private final PointRing plotHistory = new PointRing(HISTORY_POINTS);
+    private final PointRing histoHistory = new PointRing(HISTORY_POINTS);
+    // scratch arrays for copying and downsampling the history, allocated on first use
+    private double[] scratchX;
+    private double[] scratchY;
+    private double[] scratchW;
+    private double[] downX;
+    private double[] downY;
+    private double[] downLo;
+    //
+    // frameTimer: polls the task progress, at most FRAME_RATE times a second
+    private static final int FRAME_RATE = 30;
+    private static final long FRAME_NANOS = 1000000000L / FRAME_RATE;
+    private AnimationTimer frameTimer;
 
     //
     private final VBox summaryPanel = new VBox();
@@ -201,8 +227,9 @@ public class TaskView {
             setCompletedProp(false);
             //
             if (TRAIN_NET.equalsIgnoreCase(netOption)) {
-                // total data samples to load for training network
-                totalSamples = netConfig.generalConfig.totalTrainingSamples;
+                // total data samples to load for training network, trained once in each epoch
+                totalSamples = netConfig.generalConfig.totalTrainingSamples
+                        * Math.max(netConfig.generalConfig.numEpochs, 1);
                 // fit params not required before training run
                 runBtn.setDisable(false);
             } else if (TEST_NET.equalsIgnoreCase(netOption)) {
@@ -566,6 +593,7 @@ public class TaskView {
             performanceChart.setVerticalGridLinesVisible(true);
             //
             plotSeries.getData().clear();
+            plotHistory.clear();
             performanceChart.getData().add(plotSeries);
             //
             Set<Node> nodes = performanceChart.lookupAll(".series" + 0);
@@ -619,6 +647,7 @@ public class TaskView {
             //   ViewUtil.compact(histoChart);
             //
             barSeries.getData().clear();
+            histoHistory.clear();
             histoChart.getData().add(barSeries);
             //
 
@@ -795,6 +824,7 @@ public class TaskView {
             //
             task.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
                 public void handle(WorkerStateEvent event) {
+                    stopFrames();
                     // do something when task finishes
                     TaskResult finalResult = task.getValue();
                     // display confusion matrix
@@ -825,6 +855,7 @@ public class TaskView {
 
             task.setOnCancelled(new EventHandler<WorkerStateEvent>() {
                 public void handle(WorkerStateEvent event) {
+                    stopFrames();
                     // do something when task finishes
                     TaskResult finalResult = task.getValue();
                     if (finalResult != null && finalResult.netResult != null) {
@@ -838,6 +869,12 @@ public class TaskView {
                 }
             });
 
+            task.setOnFailed(new EventHandler<WorkerStateEvent>() {
+                public void handle(WorkerStateEvent event) {
+                    stopFrames();
+                }
+            });
+
             // listen for message changes:
             ChangeListener<String> msgListener = new ChangeListener<String>() {
                 @Override
@@ -851,38 +888,20 @@ public class TaskView {
             // add the message Listener
             task.messageProperty().addListener(msgListener);
             //
-            // Before starting a task, bind UI values to the task properties
-            //     progress.progressProperty().bind(task.progressProperty());
-            //
-            // alternative to bind: listen for progress changes:
-            // listener also allows task calls getValue, getMessage
-            ChangeListener<Number> progListener = new ChangeListener<Number>() {
-                @Override
-                public void changed(ObservableValue<? extends Number> observableValue, Number oldValue, Number newValue) {
-                    //
-                    double progress = (Double) newValue;
-                    LOG.log(Level.INFO, "progress: " + progress);
-                    // update progress bar
-                    progressBar.setProgress(progress);
-                    // update status
-                    String msg = task.getMessage();
-                    statusField.setText(msg);
-                    // check other values when progress changes
-                    taskResult = task.getValue();
-                    double completed = taskResult.netResult.samplesCompleted;
-                    double correct = taskResult.netResult.samplesCorrect;
-                    LOG.log(Level.INFO, "samplesCompleted: " + completed + ", samplesCorrect: " + correct);
-                    //
-                    // update plot of overall sample performance
-                    updatePerformancePlot(completed, correct);
-                    //
-                    // update plot of sub sample performance
-                    updateHistoChart(completed, taskResult.subsetCompleted, taskResult.subsetCorrect);
+            // the view polls the task progress once a frame, instead of listening for each change,
+            // so the task never waits on the UI thread, and the UI does the same work whatever the subset size
+            frameTimer = new AnimationTimer() {
+                private long lastFrame;
 
+                @Override
+                public void handle(long now) {
+                    if (now - lastFrame >= FRAME_NANOS) {
+                        lastFrame = now;
+                        showProgress();
+                    }
                 }
             };
-            // add the progress listener
-            task.progressProperty().addListener(progListener); //.addListener(progListener);
+            frameTimer.start();
             //
             // background thread, separate from JavaFX main thread
             //   Thread th = new Thread(task);
@@ -908,23 +927,83 @@ public class TaskView {
         this.taskResult = taskResult;
     }
 
+    /**
+     Show the task progress published since the last frame: progress bar, status and charts
+     */
+    private void showProgress() {
+        try {
+            ProgressBus<TaskSnapshotR> bus = task.getProgressBus();
+            int count = bus.drain(snapshot -> {
+                if (snapshot.samplesCompleted() > 0) {
+                    addPerformance(snapshot.samplesCompleted(), snapshot.samplesCorrect());
+                }
+                if (snapshot.subsetCompleted() > 0) {
+                    addHisto(snapshot.samplesCompleted(), snapshot.subsetCompleted(), snapshot.subsetCorrect());
+                }
+            });
+            if (count == 0) {
+                return;
+            }
+            TaskSnapshotR latest = bus.latest();
+            progressBar.setProgress(latest.progress());
+            statusField.setText(latest.message());
+            taskResult = task.getValue();
+            LOG.fine("snapshots: " + count + ", dropped: " + bus.getDropped() + ", samplesCompleted: "
+                    + latest.samplesCompleted() + ", samplesCorrect: " + latest.samplesCorrect());
+            drawPerformancePlot();
+            drawHistoChart();
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     Show the last progress, and stop polling
+     */
+    private void stopFrames() {
+        if (frameTimer != null) {
+            frameTimer.stop();
+            frameTimer = null;
+            showProgress();
+        }
+    }
+
     /**
      Update plot of network prediction accuracy
 
-     @param completed
-     @param correct
+     @param completed samples completed
+     @param correct   samples correct
      */
     public void updatePerformancePlot(double completed, double correct) {
+        addPerformance(completed, correct);
+        drawPerformancePlot();
+    }
+
+    private void addPerformance(double completed, double correct) {
+        // plot accuracy = cumulative percent correct
+        plotHistory.add(completed, (correct / completed) * 100.0);
+    }
+
+    /**
+     Draw the plot from its history: new points are added; past the point budget, the plot is
+     redrawn from the history downsampled with LTTB, so it never holds more than PLOT_POINTS points.
+     */
+    private void drawPerformancePlot() {
         try {
-            double x = completed;
-            // plot accuracy = cumulative percent correct
-            double y = (correct / completed) * 100.0;
-            XYChart.Data data = new XYChart.Data<>(x, y);
-            plotSeries.getData().add(data);
-            Node node = data.getNode();
-            if (node != null) {
-                node.setScaleX(0.25);
-                node.setScaleY(0.25);
+            int n = plotHistory.copy(scratchX(), scratchY, null);
+            int shown = plotSeries.getData().size();
+            if (n <= PLOT_POINTS && shown <= n) {
+                for (int k = shown; k < n; k++) {
+                    addPoint(plotSeries, scratchX[k], scratchY[k]);
+                }
+            } else {
+                int count = Downsample.lttb(scratchX, scratchY, n, PLOT_POINTS, downX, downY);
+                List<XYChart.Data<Number, Number>> points = new ArrayList<>(count);
+                for (int k = 0; k < count; k++) {
+                    points.add(new XYChart.Data<>(downX[k], downY[k]));
+                }
+                plotSeries.getData().setAll(points);
             }
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
@@ -935,29 +1014,43 @@ public class TaskView {
     /**
      Update bar chart of network prediction accuracy for one batch of samples
 
-     @param completedBatch
-     @param correctBatch
+     @param completed      samples completed
+     @param completedBatch samples completed in the batch
+     @param correctBatch   samples correct in the batch
      */
     public void updateHistoChart(double completed, double completedBatch, double correctBatch) {
+        addHisto(completed, completedBatch, correctBatch);
+        drawHistoChart();
+    }
+
+    private void addHisto(double completed, double completedBatch, double correctBatch) {
+        // plot accuracy = percent correct
+        histoHistory.add(completed, (correctBatch / completedBatch) * 100.0, completedBatch);
+    }
+
+    /**
+     Draw the bar chart from its history: new bars are added; past the bar budget, the chart is
+     redrawn from the history with consecutive bars merged, so it never holds more than HISTO_BARS bars.
+     */
+    private void drawHistoChart() {
         try {
-            double xLo = completed - completedBatch;
-            double xHi = completed;
-            // plot accuracy = percent correct
-            double y = (correctBatch / completedBatch) * 100.0;
-            XYChart.Data[] data = new XYChart.Data[4];
-            // form rectangular vertical bar
-            data[0] = new XYChart.Data<>(xLo, 0);
-            data[1] = new XYChart.Data<>(xLo, y);
-            data[2] = new XYChart.Data<>(xHi, y);
-            data[3] = new XYChart.Data<>(xHi, 0);
-            //
-            for (int k = 0; k < 4; k++) {
-                barSeries.getData().add(data[k]);
-                Node node = data[k].getNode();
-                if (node != null) {
-                    node.setScaleX(0.25);
-                    node.setScaleY(0.25);
+            int n = histoHistory.copy(scratchX(), scratchY, scratchW);
+            int shown = barSeries.getData().size() / 4;
+            if (n <= HISTO_BARS && shown <= n) {
+                for (int k = shown; k < n; k++) {
+                    addBar(barSeries, scratchX[k] - scratchW[k], scratchX[k], scratchY[k]);
+                }
+            } else {
+                int count = Downsample.bars(scratchX, scratchW, scratchY, n, HISTO_BARS, downLo, downX, downY);
+                List<XYChart.Data<Number, Number>> points = new ArrayList<>(4 * count);
+                for (int k = 0; k < count; k++) {
+                    // form rectangular vertical bar
+                    points.add(new XYChart.Data<>(downLo[k], 0));
+                    points.add(new XYChart.Data<>(downLo[k], downY[k]));
+                    points.add(new XYChart.Data<>(downX[k], downY[k]));
+                    points.add(new XYChart.Data<>(downX[k], 0));
                 }
+                barSeries.getData().setAll(points);
             }
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, ex.getMessage(), ex);
@@ -965,6 +1058,40 @@ public class TaskView {
         }
     }
 
+    private static void addBar(XYChart.Series<Number, Number> series, double xLo, double xHi, double y) {
+        // form rectangular vertical bar
+        addPoint(series, xLo, 0);
+        addPoint(series, xLo, y);
+        addPoint(series, xHi, y);
+        addPoint(series, xHi, 0);
+    }
+
+    private static void addPoint(XYChart.Series<Number, Number> series, double x, double y) {
+        XYChart.Data<Number, Number> data = new XYChart.Data<>(x, y);
+        series.getData().add(data);
+        Node node = data.getNode();
+        if (node != null) {
+            node.setScaleX(0.25);
+            node.setScaleY(0.25);
+        }
+    }
+
+    /**
+     Get the scratch x array, allocating the scratch arrays on first use
+     */
+    private double[] scratchX() {
+        if (scratchX == null) {
+            scratchX = new double[HISTORY_POINTS];
+            scratchY = new double[HISTORY_POINTS];
+            scratchW = new double[HISTORY_POINTS];
+            int budget = Math.max(PLOT_POINTS, HISTO_BARS);
+            downX = new double[budget];
+            downY = new double[budget];
+            downLo = new double[budget];
+        }
+        return scratchX;
+    }
+
     /**
      Show summary matrix of correct and incorrect predictions
 
@@ -0,0 +1,115 @@
+package datasci.frontend.util;
+
+/**
+ * Downsampling of chart points into a fixed point budget, so the cost of drawing a chart does
+ * not grow with the length of a run.
+ */
+public class Downsample {
+
+    private Downsample() {
+    }
+
+    /**
+     * Largest triangle three buckets (LTTB): keeps the first and last points, and from each of
+     * threshold - 2 buckets between, the point forming the largest triangle with the point kept
+     * before it and the mean of the next bucket. Keeps the visual shape of a line, peaks included.
+     *
+     * @param x         x values, ascending
+     * @param y         y values
+     * @param n         number of points
+     * @param threshold max number of points out
+     * @param outX      x values out, of at least min(n, threshold)
+     * @param outY      y values out, of at least min(n, threshold)
+     * @return number of points out
+     */
+    public static int lttb(double[] x, double[] y, int n, int threshold, double[] outX, double[] outY) {
+        if (threshold >= n) {
+            System.arraycopy(x, 0, outX, 0, n);
+            System.arraycopy(y, 0, outY, 0, n);
+            return n;
+        }
+        if (threshold < 3) {
+            // no bucket between: the first point, and the last for a budget of 2
+            int count = 0;
+            if (threshold >= 1) {
+                outX[count] = x[0];
+                outY[count++] = y[0];
+            }
+            if (threshold == 2) {
+                outX[count] = x[n - 1];
+                outY[count++] = y[n - 1];
+            }
+            return count;
+        }
+        double bucket = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        int count = 0;
+        outX[count] = x[0];
+        outY[count++] = y[0];
+        for (int i = 0; i < threshold - 2; i++) {
+            // mean of the next bucket, the last point for the last bucket
+            int avgStart = (int) Math.floor((i + 1) * bucket) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * bucket) + 1, n);
+            double avgX = 0.0;
+            double avgY = 0.0;
+            for (int k = avgStart; k < avgEnd; k++) {
+                avgX += x[k];
+                avgY += y[k];
+            }
+            int avgCount = avgEnd - avgStart;
+            avgX /= avgCount;
+            avgY /= avgCount;
+            // point of this bucket with the largest triangle
+            int from = (int) Math.floor(i * bucket) + 1;
+            int to = (int) Math.floor((i + 1) * bucket) + 1;
+            double maxArea = -1.0;
+            int next = from;
+            for (int k = from; k < to; k++) {
+                double area = Math.abs((x[a] - avgX) * (y[k] - y[a]) - (x[a] - x[k]) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = k;
+                }
+            }
+            outX[count] = x[next];
+            outY[count++] = y[next];
+            a = next;
+        }
+        outX[count] = x[n - 1];
+        outY[count++] = y[n - 1];
+        return count;
+    }
+
+    /**
+     * Merge consecutive histogram bars into at most maxBars bars. Each merged bar spans its bars,
+     * with their width weighted mean height, e.g. the accuracy over all their samples.
+     *
+     * @param xHi     bar right edges, ascending
+     * @param w       bar widths, the left edge is xHi - w
+     * @param y       bar heights
+     * @param n       number of bars
+     * @param maxBars max number of bars out
+     * @param outXLo  left edges out, of at least min(n, maxBars)
+     * @param outXHi  right edges out, of at least min(n, maxBars)
+     * @param outY    heights out, of at least min(n, maxBars)
+     * @return number of bars out
+     */
+    public static int bars(double[] xHi, double[] w, double[] y, int n, int maxBars,
+                           double[] outXLo, double[] outXHi, double[] outY) {
+        int numBars = Math.min(n, Math.max(maxBars, 1));
+        for (int b = 0; b < numBars; b++) {
+            int from = (int) ((long) b * n / numBars);
+            int to = (int) ((long) (b + 1) * n / numBars);
+            double sumW = 0.0;
+            double sumWY = 0.0;
+            for (int k = from; k < to; k++) {
+                sumW += w[k];
+                sumWY += w[k] * y[k];
+            }
+            outXLo[b] = xHi[from] - w[from];
+            outXHi[b] = xHi[to - 1];
+            outY[b] = sumW > 0.0 ? sumWY / sumW : y[to - 1];
+        }
+        return n > 0 ? numBars : 0;
+    }
+}  //end class
@@ -0,0 +1,86 @@
+package datasci.frontend.util;
+
+/**
+ * Fixed capacity ring buffer of chart points, outside the scene graph: x, y and a width, e.g. the
+ * samples of a histogram bar. When full, each new point replaces the oldest, so memory stays the
+ * same however long a run is. Points may be added on one thread and copied on another.
+ */
+public class PointRing {
+
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] ws;
+    // start: index of the oldest point
+    private int start;
+    private int size;
+
+    /**
+     * Instantiates a new point ring.
+     *
+     * @param capacity max number of points kept
+     */
+    public PointRing(int capacity) {
+        xs = new double[capacity];
+        ys = new double[capacity];
+        ws = new double[capacity];
+    }
+
+    public int capacity() {
+        return xs.length;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    public void add(double x, double y) {
+        add(x, y, 0.0);
+    }
+
+    /**
+     * Add a point, replacing the oldest when full
+     *
+     * @param x x value
+     * @param y y value
+     * @param w width
+     */
+    public synchronized void add(double x, double y, double w) {
+        int k;
+        if (size < xs.length) {
+            k = (start + size) % xs.length;
+            size++;
+        } else {
+            k = start;
+            start = (start + 1) % xs.length;
+        }
+        xs[k] = x;
+        ys[k] = y;
+        ws[k] = w;
+    }
+
+    /**
+     * Copy the points, oldest first
+     *
+     * @param x x values, of at least the capacity
+     * @param y y values, of at least the capacity
+     * @param w widths, of at least the capacity, or null
+     * @return number of points copied
+     */
+    public synchronized int copy(double[] x, double[] y, double[] w) {
+        int first = Math.min(size, xs.length - start);
+        System.arraycopy(xs, start, x, 0, first);
+        System.arraycopy(xs, 0, x, first, size - first);
+        System.arraycopy(ys, start, y, 0, first);
+        System.arraycopy(ys, 0, y, first, size - first);
+        if (w != null) {
+            System.arraycopy(ws, start, w, 0, first);
+            System.arraycopy(ws, 0, w, first, size - first);
+        }
+        return size;
+    }
+}  //end class
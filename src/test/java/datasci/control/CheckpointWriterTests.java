@@ -0,0 +1,111 @@
+package datasci.control;
+
+import datasci.backend.control.CheckpointWriter;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.FitParamsDelta;
+import datasci.backend.model.InternalFitParams;
+import datasci.backend.model.Matrix;
+import datasci.backend.model.OutputFitParams;
+import datasci.backend.model.PrecisionE;
+import datasci.backend.model.TrainState;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+
+public class CheckpointWriterTests {
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void keepLatest() {
+        File dir = tempDir.resolve("checkpoints").toFile();
+        CheckpointWriter writer = new CheckpointWriter(dir, 2);
+        for (int k = 1; k <= 5; k++) {
+            writer.submit(fitParams(k), null, k * 100L);
+        }
+        writer.close();
+
+        // skipped snapshots are replaced by later ones, the last is always written
+        Assertions.assertEquals(5, writer.getNumWritten() + writer.getNumSkipped(), "CheckpointWriter count failed");
+        Assertions.assertEquals(0, writer.getNumFailed(), "CheckpointWriter failures failed");
+        File[] files = dir.listFiles();
+        Assertions.assertTrue(files.length <= 2, "CheckpointWriter keep failed");
+        for (File file : files) {
+            Assertions.assertFalse(file.getName().endsWith(".tmp"), "CheckpointWriter rename failed");
+        }
+        File latest = CheckpointWriter.latest(dir);
+        Assertions.assertTrue(latest.getName().contains("000000000500"), "CheckpointWriter latest failed");
+        FitParams read = FitParamsBinary.read(latest);
+        Assertions.assertEquals(5.0, read.outputFitParams.w.a[0], "CheckpointWriter content failed");
+    }
+
+    @Test
+    void keepDeltaChain() {
+        File dir = tempDir.resolve("deltas").toFile();
+        CheckpointWriter writer = new CheckpointWriter(dir, 2, new FitParamsDelta(PrecisionE.DOUBLE, 4));
+        for (int k = 1; k <= 9; k++) {
+            writer.submit(fitParams(k), null, k * 100L);
+        }
+        writer.close();
+
+        Assertions.assertEquals(0, writer.getNumFailed(), "CheckpointWriter delta failures failed");
+        File latest = CheckpointWriter.latest(dir);
+        Assertions.assertTrue(latest.getName().endsWith(FitParamsDelta.EXTENSION), "CheckpointWriter delta name failed");
+        // every kept checkpoint is readable: its bases back to the keyframe were kept
+        File[] files = dir.listFiles();
+        for (File file : files) {
+            FitParams read = FitParamsDelta.read(file);
+            String count = file.getName().substring(CheckpointWriter.PREFIX.length(), file.getName().indexOf('.'));
+            Assertions.assertEquals(Long.parseLong(count) / 100.0, read.outputFitParams.w.a[0],
+                    "CheckpointWriter delta content failed");
+        }
+        Assertions.assertEquals(9.0, FitParamsDelta.read(latest).outputFitParams.w.a[0],
+                "CheckpointWriter delta latest failed");
+    }
+
+    @Test
+    void failedWrite() {
+        File dir = tempDir.resolve("failed").toFile();
+        CheckpointWriter writer = new CheckpointWriter(dir, 2);
+        // a directory in place of the temporary file: the state file is written, the checkpoint fails
+        File tmp = new File(dir, CheckpointWriter.PREFIX + String.format("%012d", 100) + FitParamsBinary.EXTENSION + ".tmp");
+        Assertions.assertTrue(tmp.mkdir(), "CheckpointWriter failed setup failed");
+        writer.submit(fitParams(1), new TrainState(), 100L);
+        writer.close();
+
+        Assertions.assertEquals(1, writer.getNumFailed(), "CheckpointWriter failed count failed");
+        Assertions.assertNull(CheckpointWriter.latest(dir), "CheckpointWriter failed latest failed");
+        File[] states = dir.listFiles((d, name) -> name.endsWith(TrainState.EXTENSION));
+        Assertions.assertEquals(0, states.length, "CheckpointWriter orphan state failed");
+    }
+
+    @Test
+    void snapshotCopy() {
+        FitParams fitParams = fitParams(1);
+        FitParams copy = fitParams.copy();
+        fitParams.outputFitParams.w.a[0] = 2.0;
+        fitParams.internalList.get(0).b.a[0] = 2.0;
+        Assertions.assertEquals(1.0, copy.outputFitParams.w.a[0], "FitParams copy output failed");
+        Assertions.assertEquals(1.0, copy.internalList.get(0).b.a[0], "FitParams copy internal failed");
+        Assertions.assertEquals("internal0", copy.internalList.get(0).layerID, "FitParams copy layerID failed");
+    }
+
+    private static FitParams fitParams(double value) {
+        FitParams fitParams = new FitParams();
+        InternalFitParams internal = new InternalFitParams();
+        internal.layerID = "internal0";
+        internal.w = new Matrix(20, 30, value);
+        internal.b = new Matrix(20, 1, value);
+        fitParams.internalList.add(internal);
+        OutputFitParams output = new OutputFitParams();
+        output.w = new Matrix(10, 20, value);
+        output.b = new Matrix(10, 1, value);
+        fitParams.outputFitParams = output;
+        return fitParams;
+    }
+}
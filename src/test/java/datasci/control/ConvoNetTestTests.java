@@ -0,0 +1,47 @@
+package datasci.control;
+
+import datasci.backend.control.ConvoNetTest;
+import datasci.backend.control.ConvoNetTrain;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.MappedModel;
+import datasci.backend.model.NetConfig;
+import datasci.backend.model.NetResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+
+public class ConvoNetTestTests {
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void mappedModel() throws Exception {
+        NetConfig config = NetFixture.netConfig(tempDir, false);
+        ConvoNetTrain net = new ConvoNetTrain(new NetResult(), config);
+        NetFixture.train(net);
+        FitParams fitParams = net.createFitParams();
+        File file = tempDir.resolve("model" + FitParamsBinary.EXTENSION).toFile();
+        FitParamsBinary.write(fitParams, file);
+
+        NetResult heapResult = new NetResult();
+        heapResult.fitParams = fitParams;
+        ConvoNetTest heapNet = new ConvoNetTest(heapResult, config);
+        heapNet.fit();
+        NetResult mappedResult = new NetResult();
+        ConvoNetTest mappedNet = new ConvoNetTest(mappedResult, config, MappedModel.open(file));
+        mappedNet.fit();
+
+        // same operations on the same values: same predictions
+        Assertions.assertEquals(heapNet.evaluate().sampleCount(), mappedNet.evaluate().sampleCount(),
+                "ConvoNetTest mapped samples failed");
+        Assertions.assertEquals(heapNet.evaluate().numCorrect(), mappedNet.evaluate().numCorrect(),
+                "ConvoNetTest mapped correct failed");
+        Assertions.assertArrayEquals(heapResult.summaryResults.a, mappedResult.summaryResults.a,
+                "ConvoNetTest mapped predictions failed");
+    }
+}
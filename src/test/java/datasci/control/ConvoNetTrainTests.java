@@ -0,0 +1,113 @@
+package datasci.control;
+
+import datasci.backend.control.ConvoNetTrain;
+import datasci.backend.model.EvaluationR;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.LayerTimeR;
+import datasci.backend.model.NetConfig;
+import datasci.backend.model.NetResult;
+import datasci.backend.model.TrainState;
+import datasci.backend.optimizers.OptE;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+
+public class ConvoNetTrainTests {
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void resumeExact() throws Exception {
+        for (boolean augment : new boolean[]{false, true}) {
+            File checkpointDir = tempDir.resolve("checkpoints-" + augment).toFile();
+            NetConfig config = NetFixture.netConfig(tempDir, augment);
+            config.generalConfig.checkpointDir = checkpointDir.getPath();
+            config.generalConfig.checkpointBatches = 3;
+            config.generalConfig.checkpointKeep = 10;
+            // uninterrupted run, writing checkpoints
+            NetResult netResult = new NetResult();
+            ConvoNetTrain net = new ConvoNetTrain(netResult, config);
+            NetFixture.train(net);
+            FitParams exFitParams = net.createFitParams();
+            EvaluationR exEval = net.evaluate();
+            // 12 batches, a snapshot every 3
+            Assertions.assertEquals(4, netResult.checkpointStats.snapshots(), "ConvoNetTrain checkpoint stats failed");
+            Assertions.assertTrue(netResult.checkpointStats.maxPauseNanos() > 0, "ConvoNetTrain checkpoint pause failed");
+
+            // resume from a checkpoint in the middle of the second epoch, and one at the epoch boundary
+            for (int samples : new int[]{45, 30}) {
+                NetConfig resumeConfig = NetFixture.netConfig(tempDir, augment);
+                resumeConfig.generalConfig.resumeFrom = new File(checkpointDir,
+                        String.format("checkpoint-%012d", samples) + FitParamsBinary.EXTENSION).getPath();
+                ConvoNetTrain resumed = new ConvoNetTrain(new NetResult(), resumeConfig);
+                Assertions.assertEquals(samples, resumed.evaluate().sampleCount(), "ConvoNetTrain resume count failed");
+                NetFixture.train(resumed);
+                EvaluationR eval = resumed.evaluate();
+                Assertions.assertEquals(exEval.sampleCount(), eval.sampleCount(), "ConvoNetTrain resume samples failed");
+                Assertions.assertEquals(exEval.numCorrect(), eval.numCorrect(), "ConvoNetTrain resume correct failed");
+                Assertions.assertEquals(NetFixture.toJson(exFitParams), NetFixture.toJson(resumed.createFitParams()),
+                        "ConvoNetTrain resume weights failed, augment: " + augment + ", samples: " + samples);
+            }
+        }
+    }
+
+    @Test
+    void resumeAdam() throws Exception {
+        File checkpointDir = tempDir.resolve("checkpoints-adam").toFile();
+        NetConfig config = NetFixture.netConfig(tempDir, false);
+        config.backPropConfig.optName = OptE.ADAM.label;
+        config.generalConfig.checkpointDir = checkpointDir.getPath();
+        config.generalConfig.checkpointBatches = 3;
+        config.generalConfig.checkpointKeep = 10;
+        ConvoNetTrain net = new ConvoNetTrain(new NetResult(), config);
+        NetFixture.train(net);
+        FitParams exFitParams = net.createFitParams();
+
+        // moments and step count come from the checkpoint state, bias moments included
+        File checkpoint = new File(checkpointDir, String.format("checkpoint-%012d", 45) + FitParamsBinary.EXTENSION);
+        TrainState state = TrainState.read(TrainState.stateFile(checkpoint));
+        // two convolution layers, one internal layer, output layer
+        Assertions.assertEquals(4, state.biasVelocityList.size(), "ConvoNetTrain bias state failed");
+        for (int k = 0; k < 4; k++) {
+            Assertions.assertNotNull(state.biasVelocityList.get(k), "ConvoNetTrain bias velocity failed: " + k);
+            Assertions.assertNotNull(state.biasSecondList.get(k), "ConvoNetTrain bias second failed: " + k);
+        }
+        NetConfig resumeConfig = NetFixture.netConfig(tempDir, false);
+        resumeConfig.backPropConfig.optName = OptE.ADAM.label;
+        resumeConfig.generalConfig.resumeFrom = checkpoint.getPath();
+        ConvoNetTrain resumed = new ConvoNetTrain(new NetResult(), resumeConfig);
+        NetFixture.train(resumed);
+        Assertions.assertEquals(NetFixture.toJson(exFitParams), NetFixture.toJson(resumed.createFitParams()),
+                "ConvoNetTrain resume Adam weights failed");
+    }
+
+    @Test
+    void layerTimes() throws Exception {
+        NetResult netResult = new NetResult();
+        NetConfig config = NetFixture.netConfig(tempDir, false);
+        config.generalConfig.profileLayerAlloc = true;
+        ConvoNetTrain net = new ConvoNetTrain(netResult, config);
+        NetFixture.train(net);
+        int samples = net.evaluate().sampleCount();
+        int batches = samples / net.getBatchSize();
+        // two convolution and pool pairs, one internal layer, output layer
+        Assertions.assertEquals(6, netResult.layerTimes.size(), "ConvoNetTrain layerTimes size failed");
+        for (LayerTimeR t : netResult.layerTimes) {
+            Assertions.assertEquals(samples, t.forwardCount(), "ConvoNetTrain forwardCount failed: " + t.layer());
+            Assertions.assertEquals(samples, t.backwardCount(), "ConvoNetTrain backwardCount failed: " + t.layer());
+            Assertions.assertTrue(t.forwardNanos() > 0, "ConvoNetTrain forwardNanos failed: " + t.layer());
+            Assertions.assertTrue(t.allocatedBytes() > 0, "ConvoNetTrain allocatedBytes failed: " + t.layer());
+            // pool layers have no weights
+            int exUpdates = t.layer().startsWith("Pool") ? 0 : batches;
+            Assertions.assertEquals(exUpdates, t.updateCount(), "ConvoNetTrain updateCount failed: " + t.layer());
+        }
+        Assertions.assertTrue(netResult.convoTime > 0, "ConvoNetTrain convoTime failed");
+        Assertions.assertEquals(samples, netResult.allocStats.samples(), "ConvoNetTrain allocStats samples failed");
+        Assertions.assertTrue(netResult.allocStats.bytesPerSample() > 0, "ConvoNetTrain allocStats bytes failed");
+    }
+}
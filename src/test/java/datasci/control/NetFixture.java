@@ -0,0 +1,98 @@
+package datasci.control;
+
+import datasci.backend.control.ConvoNetTrain;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.JsonUtil;
+import datasci.backend.model.NetConfig;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Small network and image set shared by the network tests: 30 16x16 gray images of 3 classes,
+ * two convolution and pool pairs, one internal layer, 2 epochs in batches of 5
+ */
+public class NetFixture {
+
+    private static final int NUM_CLASSES = 3;
+    private static final int NUM_EACH = 10;
+    private static final int SIZE = 16;
+
+    private NetFixture() {
+    }
+
+    /**
+     * Create the network configuration, writing the images on first use
+     *
+     * @param dir     directory of the images
+     * @param augment true to augment the training images
+     * @return network configuration
+     */
+    public static NetConfig netConfig(Path dir, boolean augment) throws Exception {
+        String json = """
+                {"generalConfig": {"trainingDir": "%1$s", "testingDir": "%1$s", "totalTrainingSamples": 30,
+                                   "totalTestingSamples": 30, "numEpochs": 2,
+                                   "augment": %2$b, "augmentElasticAlpha": 1.0},
+                 "backPropConfig": {"rateModel": {"stepCount": 20, "decayPerStep": 0.3, "minRate": 0.01,
+                                                  "maxRate": 0.05, "rateFn": "Step Decay"},
+                                    "lambda": 1.0E-4, "mu": 0.9, "batchSize": 5},
+                 "inputConfig": {"rows": 16, "cols": 16},
+                 "convoPoolList": [
+                   {"convoConfig": {"actName": "Tiny RELU", "filterSize": 5, "numFilters": 2},
+                    "poolConfig": {"actName": "None", "poolSize": 2}},
+                   {"convoConfig": {"actName": "Tiny RELU", "filterSize": 5, "numFilters": 3},
+                    "poolConfig": {"actName": "None", "poolSize": 2}}],
+                 "internalList": [{"actName": "Leaky RELU", "numOutputNodes": 8}],
+                 "outputConfig": {"actName": "Softmax", "numOutputNodes": 3}}
+                """.formatted(writeImages(dir).replace("\\", "\\\\"), augment);
+        return JsonUtil.jsonToConfig(json);
+    }
+
+    /**
+     * Train a network to the end of its configured samples, then close it
+     *
+     * @param net training network
+     */
+    public static void train(ConvoNetTrain net) {
+        try {
+            // batches beyond the end of training do nothing
+            for (int s = 0; s < net.getTotalSamples(); s += net.getBatchSize()) {
+                net.fitBatch();
+            }
+        } finally {
+            net.close();
+        }
+    }
+
+    public static String toJson(FitParams fitParams) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonUtil.FitParamsToJson(fitParams, out);
+        return out.toString();
+    }
+
+    private static String writeImages(Path dir) throws Exception {
+        File parent = dir.resolve("png").toFile();
+        if (!parent.isDirectory()) {
+            Random r = new Random(1234);
+            for (int k = 0; k < NUM_CLASSES; k++) {
+                File classDir = new File(parent, Integer.toString(k));
+                classDir.mkdirs();
+                for (int i = 0; i < NUM_EACH; i++) {
+                    BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_GRAY);
+                    for (int y = 0; y < SIZE; y++) {
+                        for (int x = 0; x < SIZE; x++) {
+                            int level = (x / 3) % NUM_CLASSES == k ? 200 : 0;
+                            image.getRaster().setSample(x, y, 0, level + r.nextInt(50));
+                        }
+                    }
+                    ImageIO.write(image, "png", new File(classDir, i + ".png"));
+                }
+            }
+        }
+        return parent.getPath();
+    }
+}
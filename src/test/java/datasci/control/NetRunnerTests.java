@@ -0,0 +1,66 @@
+package datasci.control;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import datasci.backend.control.NetRunner;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.JsonUtil;
+import datasci.backend.model.NetResult;
+import datasci.backend.model.ProgressR;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class NetRunnerTests {
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void trainAndTest() throws Exception {
+        File configFile = tempDir.resolve("runner-config.json").toFile();
+        Files.writeString(configFile.toPath(), JsonUtil.configToJson(NetFixture.netConfig(tempDir, false)));
+        File modelFile = tempDir.resolve("runner" + FitParamsBinary.EXTENSION).toFile();
+        NetRunner trainRunner = new NetRunner();
+        trainRunner.parseArgs(new String[]{"--config", configFile.getPath(), "--fit-params-out", modelFile.getPath(),
+                "--report-interval", "0", "--format", "json"});
+        ByteArrayOutputStream trainOut = new ByteArrayOutputStream();
+        trainRunner.out = new PrintStream(trainOut, true);
+        trainRunner.run();
+        String[] lines = trainOut.toString().trim().split("\\R");
+        // one line for each batch: 2 epochs of 30 samples, batches of 5
+        Assertions.assertEquals(12, lines.length, "NetRunner train progress failed");
+        ProgressR last = new ObjectMapper().readValue(lines[lines.length - 1], ProgressR.class);
+        Assertions.assertEquals(60, last.samplesCompleted(), "NetRunner train samples failed");
+        Assertions.assertTrue(modelFile.isFile(), "NetRunner FitParams out failed");
+        //
+        NetRunner testRunner = new NetRunner();
+        testRunner.parseArgs(new String[]{"--config", configFile.getPath(), "--mode", "test",
+                "--fit-params-in", modelFile.getPath()});
+        ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+        testRunner.out = new PrintStream(testOut, true);
+        NetResult mappedResult = testRunner.run();
+        Assertions.assertTrue(testOut.toString().startsWith("test epoch 1, samples 30 of 30"),
+                "NetRunner test progress failed: " + testOut);
+        // the binary model is mapped, json is read to the heap: same predictions
+        Assertions.assertNull(mappedResult.fitParams, "NetRunner mapped model failed");
+        File jsonFile = tempDir.resolve("runner.json").toFile();
+        Files.writeString(jsonFile.toPath(), NetFixture.toJson(FitParamsBinary.read(modelFile)));
+        NetRunner jsonRunner = new NetRunner();
+        jsonRunner.parseArgs(new String[]{"--config", configFile.getPath(), "--mode", "test",
+                "--fit-params-in", jsonFile.getPath()});
+        jsonRunner.out = new PrintStream(new ByteArrayOutputStream(), true);
+        NetResult jsonResult = jsonRunner.run();
+        Assertions.assertNotNull(jsonResult.fitParams, "NetRunner json model failed");
+        Assertions.assertArrayEquals(jsonResult.summaryResults.a, mappedResult.summaryResults.a,
+                "NetRunner mapped predictions failed");
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new NetRunner().parseArgs(new String[]{"--config", "x", "--mode", "test"}),
+                "NetRunner test without FitParams failed");
+    }
+}
@@ -0,0 +1,58 @@
+package datasci.control;
+
+import datasci.backend.control.TrainingMetrics;
+import datasci.backend.model.AllocStatsR;
+import datasci.backend.model.CheckpointStatsR;
+import datasci.backend.model.LayerTimeR;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+public class TrainingMetricsTests {
+
+    @Test
+    void mbean() throws Exception {
+        TrainingMetrics metrics = TrainingMetrics.getInstance();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(TrainingMetrics.OBJECT_NAME);
+        Assertions.assertTrue(server.isRegistered(name), "TrainingMetrics register failed");
+        //
+        metrics.start(0, 100);
+        Assertions.assertEquals(-1.0, metrics.getRemainingSeconds(), "TrainingMetrics no rate failed");
+        List<LayerTimeR> layers = List.of(new LayerTimeR("Convo 1", 4000, 2, 8000, 2, 3000, 1, 0));
+        AllocStatsR alloc = new AllocStatsR(20, 20480, 0, 0, 1000000);
+        Thread.sleep(5);
+        metrics.batch(0, 10, 5, 100, 10, 5, 0.01, alloc, layers);
+        Thread.sleep(5);
+        metrics.batch(0, 20, 12, 100, 10, 7, 0.02, alloc, layers);
+        //
+        Assertions.assertEquals(Boolean.TRUE, server.getAttribute(name, "Running"), "TrainingMetrics running failed");
+        Assertions.assertEquals(20L, server.getAttribute(name, "SamplesCompleted"), "TrainingMetrics samples failed");
+        Assertions.assertEquals(0.02, (Double) server.getAttribute(name, "Eta"), 1.0E-12, "TrainingMetrics eta failed");
+        Assertions.assertEquals(70.0, metrics.getBatchAccuracy(), 1.0E-9, "TrainingMetrics batch accuracy failed");
+        Assertions.assertEquals(60.0, metrics.getAccuracy(), 1.0E-9, "TrainingMetrics accuracy failed");
+        double rate = metrics.getSamplesPerSec();
+        Assertions.assertTrue(rate > 0.0 && rate < 10000.0, "TrainingMetrics rate failed: " + rate);
+        Assertions.assertEquals(80.0 / rate, metrics.getRemainingSeconds(), 1.0E-9, "TrainingMetrics remaining failed");
+        Assertions.assertEquals(1024.0, metrics.getAllocBytesPerSample(), 1.0E-9, "TrainingMetrics alloc failed");
+        Assertions.assertArrayEquals(new String[]{"Convo 1"}, (String[]) server.getAttribute(name, "LayerNames"),
+                "TrainingMetrics layer names failed");
+        Assertions.assertArrayEquals(new double[]{4.0}, metrics.getLayerBackwardMicros(), 1.0E-9,
+                "TrainingMetrics layer time failed");
+        Assertions.assertTrue(metrics.getHeapUsedBytes() > 0, "TrainingMetrics heap failed");
+        metrics.checkpoint(new CheckpointStatsR(2, 3000000, 2000000));
+        Assertions.assertEquals(2, server.getAttribute(name, "CheckpointSnapshots"),
+                "TrainingMetrics checkpoint count failed");
+        Assertions.assertEquals(3.0, metrics.getCheckpointPauseMillis(), 1.0E-9, "TrainingMetrics checkpoint pause failed");
+        Assertions.assertEquals(2.0, metrics.getCheckpointMaxPauseMillis(), 1.0E-9,
+                "TrainingMetrics checkpoint max pause failed");
+        //
+        metrics.stop();
+        Assertions.assertFalse(metrics.isRunning(), "TrainingMetrics stop failed");
+        Assertions.assertEquals(20L, metrics.getSamplesCompleted(), "TrainingMetrics stop keeps values failed");
+    }
+}
@@ -0,0 +1,71 @@
+package datasci.jfr;
+
+import datasci.backend.control.ConvoNetTrain;
+import datasci.backend.jfr.BatchEvent;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.NetResult;
+import datasci.control.NetFixture;
+import jdk.jfr.Configuration;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FlightRecorderTests {
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void trainingEvents() throws Exception {
+        Assertions.assertFalse(EventType.getEventType(BatchEvent.class).isEnabled(),
+                "FlightRecorder events disabled failed");
+        Configuration jfc;
+        try (Reader reader = new InputStreamReader(ConvoNetTrain.class.getResourceAsStream("/training.jfc"))) {
+            jfc = Configuration.create(reader);
+        }
+        Path file = tempDir.resolve("training.jfr");
+        int samples;
+        int batchSize;
+        try (Recording recording = new Recording(jfc)) {
+            // every layer call, not only the slow ones
+            recording.enable("datasci.Layer").withoutThreshold();
+            recording.start();
+            ConvoNetTrain net = new ConvoNetTrain(new NetResult(), NetFixture.netConfig(tempDir, false));
+            NetFixture.train(net);
+            samples = net.evaluate().sampleCount();
+            batchSize = net.getBatchSize();
+            FitParamsBinary.write(net.createFitParams(), tempDir.resolve("jfr" + FitParamsBinary.EXTENSION).toFile());
+            recording.stop();
+            recording.dump(file);
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            counts.merge(name, 1, Integer::sum);
+            if (name.equals("datasci.Layer")) {
+                Assertions.assertNotNull(event.getString("layerID"), "FlightRecorder layer event layerID failed");
+                Assertions.assertTrue(event.getInt("inputRows") > 0, "FlightRecorder layer event rows failed");
+            }
+        }
+        Assertions.assertEquals(samples / batchSize, counts.get("datasci.Batch"), "FlightRecorder batch events failed");
+        // six layers, forward and back propagation for each sample
+        Assertions.assertEquals(samples * 12, counts.get("datasci.Layer"), "FlightRecorder layer events failed");
+        // once per batch: 2 + 3 * 2 convolution filters, internal and output weights
+        Assertions.assertEquals(samples / batchSize * 10, counts.get("datasci.WeightUpdate"),
+                "FlightRecorder weight update events failed");
+        Assertions.assertEquals(1, counts.get("datasci.DataLoad"), "FlightRecorder data load events failed");
+        Assertions.assertEquals(1, counts.get("datasci.FitParamsIO"), "FlightRecorder FitParams events failed");
+    }
+}
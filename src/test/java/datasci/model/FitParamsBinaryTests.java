@@ -0,0 +1,125 @@
+package datasci.model;
+
+import datasci.backend.model.ConvoNode;
+import datasci.backend.model.ConvoPoolFitParams;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.InternalFitParams;
+import datasci.backend.model.JsonUtil;
+import datasci.backend.model.Matrix;
+import datasci.backend.model.OutputFitParams;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class FitParamsBinaryTests {
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void roundTrip() throws Exception {
+        FitParams fitParams = randomFitParams(new Random(1234));
+        File binFile = tempDir.resolve("fit" + FitParamsBinary.EXTENSION).toFile();
+        long size = FitParamsBinary.write(fitParams, binFile);
+        Assertions.assertEquals(binFile.length(), size, "FitParamsBinary write size failed");
+        Assertions.assertTrue(FitParamsBinary.isBinary(binFile), "FitParamsBinary isBinary failed");
+        Assertions.assertTrue(FitParamsBinary.isBinaryName(binFile), "FitParamsBinary isBinaryName failed");
+
+        FitParams read = FitParamsBinary.read(binFile);
+        assertFitParamsEquals(fitParams, read);
+
+        // json of the same FitParams, for comparison
+        File jsonFile = tempDir.resolve("fit.json").toFile();
+        try (OutputStream out = new FileOutputStream(jsonFile)) {
+            JsonUtil.FitParamsToJson(fitParams, out);
+        }
+        try (InputStream in = new FileInputStream(jsonFile)) {
+            // json and binary hold the same values
+            assertFitParamsEquals(JsonUtil.jsonToFitParams(in), read);
+        }
+
+        Assertions.assertFalse(FitParamsBinary.isBinary(jsonFile), "FitParamsBinary isBinary json failed");
+        Assertions.assertTrue(binFile.length() < jsonFile.length(), "FitParamsBinary size failed");
+    }
+
+    private static void assertFitParamsEquals(FitParams ex, FitParams actual) {
+        Assertions.assertEquals(ex.convoPoolList.size(), actual.convoPoolList.size(), "FitParamsBinary convo layers failed");
+        for (int k = 0; k < ex.convoPoolList.size(); k++) {
+            ConvoPoolFitParams exConvo = ex.convoPoolList.get(k);
+            ConvoPoolFitParams convo = actual.convoPoolList.get(k);
+            Assertions.assertEquals(exConvo.layerID, convo.layerID, "FitParamsBinary convo layerID failed");
+            Assertions.assertEquals(exConvo.filterList.size(), convo.filterList.size(), "FitParamsBinary filters failed");
+            for (int f = 0; f < exConvo.filterList.size(); f++) {
+                for (int i = 0; i < exConvo.filterList.get(f).size(); i++) {
+                    assertMatrixEquals(exConvo.filterList.get(f).get(i), convo.filterList.get(f).get(i));
+                }
+            }
+            assertMatrixEquals(exConvo.bias, convo.bias);
+        }
+        Assertions.assertEquals(ex.internalList.size(), actual.internalList.size(), "FitParamsBinary internal layers failed");
+        for (int k = 0; k < ex.internalList.size(); k++) {
+            Assertions.assertEquals(ex.internalList.get(k).layerID, actual.internalList.get(k).layerID,
+                    "FitParamsBinary internal layerID failed");
+            assertMatrixEquals(ex.internalList.get(k).w, actual.internalList.get(k).w);
+            assertMatrixEquals(ex.internalList.get(k).b, actual.internalList.get(k).b);
+        }
+        assertMatrixEquals(ex.outputFitParams.w, actual.outputFitParams.w);
+        assertMatrixEquals(ex.outputFitParams.b, actual.outputFitParams.b);
+    }
+
+    private static void assertMatrixEquals(Matrix ex, Matrix actual) {
+        Assertions.assertEquals(ex.rows, actual.rows, "FitParamsBinary matrix rows failed");
+        Assertions.assertEquals(ex.cols, actual.cols, "FitParamsBinary matrix cols failed");
+        Assertions.assertArrayEquals(ex.a, actual.a, "FitParamsBinary matrix values failed");
+    }
+
+    /**
+     * FitParams shaped like a small two convolution layer network
+     */
+    private static FitParams randomFitParams(Random r) {
+        FitParams fitParams = new FitParams();
+        int[][] convoShapes = {{8, 1, 5}, {16, 8, 5}};
+        for (int k = 0; k < convoShapes.length; k++) {
+            ConvoPoolFitParams convo = new ConvoPoolFitParams();
+            convo.layerID = "convo" + k;
+            convo.filterList = new ArrayList<>();
+            for (int f = 0; f < convoShapes[k][0]; f++) {
+                ConvoNode node = new ConvoNode();
+                for (int i = 0; i < convoShapes[k][1]; i++) {
+                    node.add(randomMatrix(r, convoShapes[k][2], convoShapes[k][2]));
+                }
+                convo.filterList.add(node);
+            }
+            convo.bias = randomMatrix(r, convoShapes[k][0], 1);
+            fitParams.convoPoolList.add(convo);
+        }
+        InternalFitParams internal = new InternalFitParams();
+        internal.layerID = "internal0";
+        internal.w = randomMatrix(r, 100, 256);
+        internal.b = randomMatrix(r, 100, 1);
+        fitParams.internalList.add(internal);
+        OutputFitParams output = new OutputFitParams();
+        output.w = randomMatrix(r, 10, 100);
+        output.b = randomMatrix(r, 10, 1);
+        fitParams.outputFitParams = output;
+        return fitParams;
+    }
+
+    private static Matrix randomMatrix(Random r, int rows, int cols) {
+        Matrix m = new Matrix(rows, cols);
+        for (int i = 0; i < m.size; i++) {
+            m.a[i] = r.nextGaussian();
+        }
+        return m;
+    }
+}
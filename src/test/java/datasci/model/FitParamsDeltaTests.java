@@ -0,0 +1,180 @@
+package datasci.model;
+
+import datasci.backend.model.ConvoNode;
+import datasci.backend.model.ConvoPoolFitParams;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.FitParamsDelta;
+import datasci.backend.model.InternalFitParams;
+import datasci.backend.model.Matrix;
+import datasci.backend.model.OutputFitParams;
+import datasci.backend.model.PrecisionE;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class FitParamsDeltaTests {
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void series() {
+        // checkpoints of slowly changing weights, like successive training batches
+        Random r = new Random(1234);
+        List<FitParams> series = new ArrayList<>();
+        FitParams fitParams = randomFitParams(r);
+        for (int k = 0; k < 4; k++) {
+            series.add(fitParams.copy());
+            for (Matrix m : matrices(fitParams)) {
+                for (int i = 0; i < m.size; i++) {
+                    m.a[i] += 1.0E-4 * r.nextGaussian();
+                }
+            }
+        }
+        File binFile = tempDir.resolve("full" + FitParamsBinary.EXTENSION).toFile();
+        long binSize = FitParamsBinary.write(series.get(0), binFile);
+
+        for (PrecisionE precision : PrecisionE.values()) {
+            File dir = tempDir.resolve(precision.label).toFile();
+            dir.mkdirs();
+            FitParamsDelta encoder = new FitParamsDelta(precision, 3);
+            long[] sizes = new long[series.size()];
+            for (int k = 0; k < series.size(); k++) {
+                String name = k + FitParamsDelta.EXTENSION;
+                sizes[k] = encoder.write(series.get(k), new File(dir, name), name);
+            }
+            // keyframe, delta, delta, keyframe
+            File file1 = new File(dir, 1 + FitParamsDelta.EXTENSION);
+            Assertions.assertTrue(FitParamsDelta.isDelta(file1), "FitParamsDelta isDelta failed");
+            Assertions.assertNull(FitParamsDelta.baseName(new File(dir, 0 + FitParamsDelta.EXTENSION)),
+                    "FitParamsDelta keyframe failed");
+            Assertions.assertEquals(1 + FitParamsDelta.EXTENSION, FitParamsDelta.baseName(new File(dir, 2 + FitParamsDelta.EXTENSION)),
+                    "FitParamsDelta base failed");
+            Assertions.assertNull(FitParamsDelta.baseName(new File(dir, 3 + FitParamsDelta.EXTENSION)),
+                    "FitParamsDelta keyframe interval failed");
+            Assertions.assertTrue(sizes[1] < sizes[0], "FitParamsDelta delta size failed");
+
+            for (int k = 0; k < series.size(); k++) {
+                FitParams read = FitParamsDelta.read(new File(dir, k + FitParamsDelta.EXTENSION));
+                assertClose(series.get(k), read, precision);
+            }
+        }
+        // rounded deltas of small changes are mostly zero
+        FitParamsDelta encoder = new FitParamsDelta(PrecisionE.BFLOAT16, 10);
+        encoder.write(series.get(0), tempDir.resolve("bf0").toFile(), "bf0");
+        long deltaSize = encoder.write(series.get(1), tempDir.resolve("bf1").toFile(), "bf1");
+        Assertions.assertTrue(deltaSize * 10 < binSize, "FitParamsDelta reduced delta size failed");
+    }
+
+    @Test
+    void float16() {
+        PrecisionE p = PrecisionE.FLOAT16;
+        // normal, largest, smallest normal and subnormal values, and rounding ties to even
+        Assertions.assertEquals(0x3C00L, p.toBits(1.0), "PrecisionE float16 one failed");
+        Assertions.assertEquals(0xC000L, p.toBits(-2.0), "PrecisionE float16 sign failed");
+        Assertions.assertEquals(0x7BFFL, p.toBits(65504.0), "PrecisionE float16 max failed");
+        Assertions.assertEquals(0x7C00L, p.toBits(65520.0), "PrecisionE float16 overflow failed");
+        Assertions.assertEquals(0x0400L, p.toBits(0x1.0p-14), "PrecisionE float16 min normal failed");
+        Assertions.assertEquals(0x0001L, p.toBits(0x1.0p-24), "PrecisionE float16 subnormal failed");
+        Assertions.assertEquals(0x3C00L, p.toBits(1.0 + 0x1.0p-11), "PrecisionE float16 tie even failed");
+        Assertions.assertEquals(0x3C02L, p.toBits(1.0 + 3 * 0x1.0p-11), "PrecisionE float16 tie odd failed");
+        Assertions.assertTrue(Double.isNaN(p.fromBits(p.toBits(Double.NaN))), "PrecisionE float16 NaN failed");
+        // every half value round trips, repeated so the conversions are compiled
+        for (int n = 0; n < 20; n++) {
+            for (int h = 0; h < 0x10000; h++) {
+                if ((h & 0x7C00) == 0x7C00 && (h & 0x3FF) != 0) {
+                    continue;
+                }
+                Assertions.assertEquals(h, p.toBits(p.fromBits(h)), "PrecisionE float16 round trip failed");
+            }
+        }
+    }
+
+    private static void assertClose(FitParams ex, FitParams actual, PrecisionE precision) {
+        // relative rounding error of each precision, and the absolute error of float16 subnormals
+        double rel = switch (precision) {
+            case DOUBLE -> 0.0;
+            case FLOAT -> 0x1.0p-24;
+            case BFLOAT16 -> 0x1.0p-8;
+            case FLOAT16 -> 0x1.0p-11;
+        };
+        double abs = precision == PrecisionE.FLOAT16 ? 0x1.0p-24 : 0.0;
+        List<Matrix> exList = matrices(ex);
+        List<Matrix> list = matrices(actual);
+        Assertions.assertEquals(exList.size(), list.size(), "FitParamsDelta matrix count failed");
+        for (int k = 0; k < exList.size(); k++) {
+            Matrix exM = exList.get(k);
+            Matrix m = list.get(k);
+            Assertions.assertEquals(exM.rows, m.rows, "FitParamsDelta matrix rows failed");
+            Assertions.assertEquals(exM.cols, m.cols, "FitParamsDelta matrix cols failed");
+            for (int i = 0; i < exM.size; i++) {
+                Assertions.assertEquals(exM.a[i], m.a[i], Math.abs(exM.a[i]) * rel + abs,
+                        "FitParamsDelta " + precision + " value failed");
+            }
+        }
+    }
+
+    private static List<Matrix> matrices(FitParams fitParams) {
+        List<Matrix> list = new ArrayList<>();
+        for (ConvoPoolFitParams convo : fitParams.convoPoolList) {
+            for (ConvoNode node : convo.filterList) {
+                list.addAll(node.getFilterNodeList());
+            }
+            list.add(convo.bias);
+        }
+        for (InternalFitParams internal : fitParams.internalList) {
+            list.add(internal.w);
+            list.add(internal.b);
+        }
+        list.add(fitParams.outputFitParams.w);
+        list.add(fitParams.outputFitParams.b);
+        return list;
+    }
+
+    /**
+     * FitParams shaped like a small two convolution layer network, with weights like a trained network
+     */
+    private static FitParams randomFitParams(Random r) {
+        FitParams fitParams = new FitParams();
+        int[][] convoShapes = {{8, 1, 5}, {16, 8, 5}};
+        for (int k = 0; k < convoShapes.length; k++) {
+            ConvoPoolFitParams convo = new ConvoPoolFitParams();
+            convo.layerID = "convo" + k;
+            convo.filterList = new ArrayList<>();
+            for (int f = 0; f < convoShapes[k][0]; f++) {
+                ConvoNode node = new ConvoNode();
+                for (int i = 0; i < convoShapes[k][1]; i++) {
+                    node.add(randomMatrix(r, convoShapes[k][2], convoShapes[k][2]));
+                }
+                convo.filterList.add(node);
+            }
+            convo.bias = randomMatrix(r, convoShapes[k][0], 1);
+            fitParams.convoPoolList.add(convo);
+        }
+        InternalFitParams internal = new InternalFitParams();
+        internal.layerID = "internal0";
+        internal.w = randomMatrix(r, 100, 256);
+        internal.b = randomMatrix(r, 100, 1);
+        fitParams.internalList.add(internal);
+        OutputFitParams output = new OutputFitParams();
+        output.w = randomMatrix(r, 10, 100);
+        output.b = randomMatrix(r, 10, 1);
+        fitParams.outputFitParams = output;
+        return fitParams;
+    }
+
+    private static Matrix randomMatrix(Random r, int rows, int cols) {
+        Matrix m = new Matrix(rows, cols);
+        for (int i = 0; i < m.size; i++) {
+            m.a[i] = 0.1 * r.nextGaussian();
+        }
+        return m;
+    }
+}
@@ -0,0 +1,127 @@
+package datasci.model;
+
+import datasci.backend.model.BatchFeeder;
+import datasci.backend.model.GeneralConfig;
+import datasci.backend.model.ImageAugmenter;
+import datasci.backend.model.ImageDataSet;
+import datasci.backend.model.MathUtil;
+import datasci.backend.model.Matrix;
+import datasci.backend.model.SampleBatch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class ImageAugmenterTests {
+
+    private static final int SIZE = 12;
+
+    @Test
+    void noDistortion() {
+        ImageDataSet dataSet = randomDataSet(1);
+        GeneralConfig generalConfig = new GeneralConfig();
+        generalConfig.augmentShift = 0.0;
+        generalConfig.augmentRotation = 0.0;
+        ImageAugmenter augmenter = new ImageAugmenter(generalConfig, SIZE, SIZE);
+        double[] dest = new double[SIZE * SIZE];
+        augmenter.augment(dataSet, 0, 5, dest, augmenter.createScratch());
+        Matrix exInput = dataSet.createInput();
+        dataSet.fillInput(0, exInput);
+
+        Assertions.assertArrayEquals(exInput.a, dest, 1e-12, "ImageAugmenter no distortion failed");
+    }
+
+    @Test
+    void sameSampleNumber() {
+        ImageDataSet dataSet = randomDataSet(1);
+        GeneralConfig generalConfig = new GeneralConfig();
+        generalConfig.augmentElasticAlpha = 2.0;
+        generalConfig.augmentNoise = 0.05;
+        ImageAugmenter augmenter = new ImageAugmenter(generalConfig, SIZE, SIZE);
+        ImageAugmenter.Scratch scratch = augmenter.createScratch();
+        double[] first = new double[SIZE * SIZE];
+        double[] other = new double[SIZE * SIZE];
+        double[] again = new double[SIZE * SIZE];
+        augmenter.augment(dataSet, 0, 7, first, scratch);
+        augmenter.augment(dataSet, 0, 8, other, scratch);
+        // a new augmenter and scratch, as on another thread
+        ImageAugmenter augmenter2 = new ImageAugmenter(generalConfig, SIZE, SIZE);
+        augmenter2.augment(dataSet, 0, 7, again, augmenter2.createScratch());
+
+        Assertions.assertArrayEquals(first, again, "ImageAugmenter sample number repeat failed");
+        Assertions.assertFalse(Arrays.equals(first, other), "ImageAugmenter sample number differ failed");
+    }
+
+    @Test
+    void feederEpochs() {
+        int numSamples = 10;
+        ImageDataSet dataSet = randomDataSet(numSamples);
+        int[] sampleOrder = new int[numSamples];
+        for (int i = 0; i < numSamples; i++) {
+            sampleOrder[i] = i;
+        }
+        MathUtil.shuffle(sampleOrder, new Random(4321));
+        int[] exOrder = sampleOrder.clone();
+        int[] exOrder2 = exOrder.clone();
+        MathUtil.shuffle(exOrder2, new Random(4321 + 1));
+        // batch size 4: two batches in each epoch, last two samples of each epoch not used
+        BatchFeeder feeder = new BatchFeeder(dataSet, sampleOrder, null, 4, numSamples, 2, 4321, null);
+        feeder.init(SIZE, SIZE, 0);
+        int[][] exBatches = {
+                {exOrder[0], exOrder[1], exOrder[2], exOrder[3]}, {exOrder[4], exOrder[5], exOrder[6], exOrder[7]},
+                {exOrder2[0], exOrder2[1], exOrder2[2], exOrder2[3]}, {exOrder2[4], exOrder2[5], exOrder2[6], exOrder2[7]}};
+        for (int[] exBatch : exBatches) {
+            SampleBatch batch = feeder.next();
+            Assertions.assertArrayEquals(exBatch, batch.sourceIndex, "BatchFeeder order failed");
+            Matrix exInput = dataSet.createInput();
+            dataSet.fillInput(exBatch[3], exInput);
+            Assertions.assertArrayEquals(exInput.a, batch.inputs[3].a, "BatchFeeder input failed");
+            Assertions.assertEquals(dataSet.getActualIndex(exBatch[3]), batch.labels[3], "BatchFeeder label failed");
+        }
+        Assertions.assertNull(feeder.next(), "BatchFeeder end failed");
+        feeder.close();
+    }
+
+    @Test
+    void feederAugment() {
+        int numSamples = 40;
+        ImageDataSet dataSet = randomDataSet(numSamples);
+        GeneralConfig generalConfig = new GeneralConfig();
+        generalConfig.augmentElasticAlpha = 1.0;
+        ImageAugmenter augmenter = new ImageAugmenter(generalConfig, SIZE, SIZE);
+        int[] sampleOrder = new int[numSamples];
+        for (int i = 0; i < numSamples; i++) {
+            sampleOrder[i] = i;
+        }
+        BatchFeeder feeder = new BatchFeeder(dataSet, sampleOrder, null, 8, numSamples, 1, 4321, augmenter);
+        // an explicit thread count, the distortions do not depend on it
+        feeder.init(SIZE, SIZE, 3);
+        Assertions.assertEquals(3, feeder.getAugmentThreads(), "BatchFeeder augment threads failed");
+        double[] exInput = new double[SIZE * SIZE];
+        ImageAugmenter.Scratch scratch = augmenter.createScratch();
+        int numBatches = 0;
+        SampleBatch batch;
+        while ((batch = feeder.next()) != null) {
+            // each input is distorted by its own training sample number
+            for (int i = 0; i < batch.size; i++) {
+                augmenter.augment(dataSet, batch.sourceIndex[i], batch.firstSample + i, exInput, scratch);
+                Assertions.assertArrayEquals(exInput, batch.inputs[i].a, "BatchFeeder augment failed");
+            }
+            numBatches++;
+        }
+        feeder.close();
+        Assertions.assertEquals(numSamples / 8, numBatches, "BatchFeeder augment batches failed");
+    }
+
+    private static ImageDataSet randomDataSet(int numSamples) {
+        Random r = new Random(1234);
+        ImageDataSet dataSet = new ImageDataSet(numSamples, SIZE, SIZE);
+        byte[] levels = new byte[SIZE * SIZE];
+        for (int n = 0; n < numSamples; n++) {
+            r.nextBytes(levels);
+            dataSet.setLevels(n, levels, 0, n % 10);
+        }
+        return dataSet;
+    }
+}
@@ -0,0 +1,146 @@
+package datasci.model;
+
+import datasci.backend.model.ImageDataSet;
+import datasci.backend.model.ImageDataUtil;
+import datasci.backend.model.Matrix;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ImageDataUtilTests {
+
+    private static final long SEED = 1234;
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void extractGray() {
+        BufferedImage image = randomImage(28, 28, BufferedImage.TYPE_BYTE_GRAY);
+        double[] fast = new double[28 * 28];
+        double[] exFast = new double[28 * 28];
+        ImageDataUtil.extractPixels(image, fast, 0);
+        ImageDataUtil.extractRGB(image, exFast, 0);
+
+        Assertions.assertArrayEquals(exFast, fast, "ImageDataUtil extractPixels gray failed");
+    }
+
+    @Test
+    void extractColor() {
+        int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR};
+        for (int type : types) {
+            BufferedImage image = randomImage(28, 28, type);
+            double[] fast = new double[28 * 28];
+            double[] exFast = new double[28 * 28];
+            ImageDataUtil.extractPixels(image, fast, 0);
+            ImageDataUtil.extractRGB(image, exFast, 0);
+
+            Assertions.assertArrayEquals(exFast, fast, "ImageDataUtil extractPixels color failed, type: " + type);
+        }
+    }
+
+    @Test
+    void nonSquare() {
+        // 3 rows, 5 columns; pixel value encodes its position
+        BufferedImage image = new BufferedImage(5, 3, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                int v = 10 * y + x;
+                image.setRGB(x, y, (v << 16) | (v << 8) | v);
+            }
+        }
+        Matrix m = ImageDataUtil.imageToMatrix(image);
+
+        Assertions.assertEquals(3, m.rows, "ImageDataUtil imageToMatrix rows failed");
+        Assertions.assertEquals(5, m.cols, "ImageDataUtil imageToMatrix cols failed");
+        // cell(i, j) = pixel at image row i, column j
+        Assertions.assertEquals(23 / 255.0, m.a[2 * 5 + 3], 1e-12, "ImageDataUtil imageToMatrix cell failed");
+    }
+
+    @Test
+    void dataSetInput() {
+        int[] types = {BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR};
+        ImageDataSet dataSet = new ImageDataSet(types.length, 28, 28);
+        for (int n = 0; n < types.length; n++) {
+            dataSet.setImage(n, randomImage(28, 28, types[n]), n + 3);
+        }
+        Matrix xIn = dataSet.createInput();
+        for (int n = 0; n < types.length; n++) {
+            BufferedImage image = randomImage(28, 28, types[n]);
+            double[] exPixels = new double[28 * 28];
+            ImageDataUtil.extractPixels(image, exPixels, 0);
+            dataSet.fillInput(n, xIn);
+            // gray images are exact; color averages are rounded to the nearest gray level
+            double delta = types[n] == BufferedImage.TYPE_BYTE_GRAY ? 0.0 : 0.5 / 255.0 + 1e-12;
+            Assertions.assertArrayEquals(exPixels, xIn.a, delta, "ImageDataSet fillInput failed, type: " + types[n]);
+            Assertions.assertEquals(n + 3, dataSet.getActualIndex(n), "ImageDataSet getActualIndex failed");
+        }
+    }
+
+    @Test
+    void decodeAndExtract() throws Exception {
+        // decoded PNGs have the raster types of image files, not those created in memory
+        int[] types = {BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR};
+        for (int type : types) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ImageIO.write(randomImage(28, 28, type), "png", bos);
+            BufferedImage image = ImageDataUtil.decodeImage(bos.toByteArray());
+            double[] fast = new double[28 * 28];
+            double[] exFast = new double[28 * 28];
+            ImageDataUtil.extractPixels(image, fast, 0);
+            ImageDataUtil.extractRGB(image, exFast, 0);
+
+            Assertions.assertArrayEquals(exFast, fast, "ImageDataUtil extractPixels decoded failed, type: " + type);
+        }
+    }
+
+    @Test
+    void decodeThreads() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int k = 0; k < 6; k++) {
+            File file = tempDir.resolve("image-" + k + ".png").toFile();
+            ImageIO.write(randomImage(28, 28, BufferedImage.TYPE_BYTE_GRAY), "png", file);
+            files.add(file);
+        }
+        List<Matrix> exList = ImageDataUtil.decodeFiles(files, (image, n) -> ImageDataUtil.imageToMatrix(image));
+        // an explicit thread count decodes on its own pool
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        List<Matrix> list = ImageDataUtil.decodeFiles(files, 2, (image, n) -> {
+            threadNames.add(Thread.currentThread().getName());
+            return ImageDataUtil.imageToMatrix(image);
+        });
+        for (int k = 0; k < files.size(); k++) {
+            Assertions.assertArrayEquals(exList.get(k).a, list.get(k).a, "ImageDataUtil decodeThreads failed: " + k);
+        }
+        for (String name : threadNames) {
+            Assertions.assertTrue(name.startsWith("png-decode-2-"), "ImageDataUtil decode pool failed: " + name);
+        }
+    }
+
+    private static BufferedImage randomImage(int w, int h, int type) {
+        Random r = new Random(SEED);
+        BufferedImage image = new BufferedImage(w, h, type);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int p = (r.nextInt(256) << 16) | (r.nextInt(256) << 8) | r.nextInt(256);
+                if (type == BufferedImage.TYPE_BYTE_GRAY) {
+                    image.getRaster().setSample(x, y, 0, r.nextInt(256));
+                } else {
+                    image.setRGB(x, y, 0xff000000 | p);
+                }
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,136 @@
+package datasci.model;
+
+import datasci.backend.model.GeneralConfig;
+import datasci.backend.model.ImageDataSet;
+import datasci.backend.model.ImageDataUtil;
+import datasci.backend.model.ImageStream;
+import datasci.backend.model.PackedImageFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class ImageStreamTests {
+
+    private static final int NUM_CLASSES = 3;
+    private static final int NUM_EACH = 20;
+    private static final int SIZE = 8;
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void streamAllSamples() throws Exception {
+        String parentDir = writeImages();
+        ImageDataSet exSet = ImageDataUtil.loadDataSet(parentDir, NUM_CLASSES, NUM_EACH, SIZE, SIZE);
+        GeneralConfig generalConfig = new GeneralConfig();
+        generalConfig.trainingDir = parentDir;
+        generalConfig.prefetchBatches = 2;
+        generalConfig.shuffleWindow = 16;
+        List<String> samples = streamSamples(generalConfig, 7);
+
+        Assertions.assertEquals(NUM_CLASSES * NUM_EACH, samples.size(), "ImageStream sample count failed");
+        // same samples as the in-memory data set, in a different order
+        List<String> exSamples = new ArrayList<>();
+        for (int n = 0; n < exSet.getSize(); n++) {
+            exSamples.add(sampleKey(exSet, n));
+        }
+        Assertions.assertNotEquals(exSamples, samples, "ImageStream shuffle failed");
+        Collections.sort(exSamples);
+        List<String> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        Assertions.assertEquals(exSamples, sorted, "ImageStream samples failed");
+    }
+
+    @Test
+    void packedFile() throws Exception {
+        String parentDir = writeImages();
+        File packed = tempDir.resolve("train.pack").toFile();
+        int count = PackedImageFile.pack(parentDir, NUM_CLASSES, NUM_EACH, SIZE, SIZE, packed);
+        Assertions.assertEquals(NUM_CLASSES * NUM_EACH, count, "PackedImageFile pack count failed");
+
+        GeneralConfig dirConfig = new GeneralConfig();
+        dirConfig.trainingDir = parentDir;
+        dirConfig.shuffleWindow = 10;
+        GeneralConfig packConfig = new GeneralConfig();
+        packConfig.trainingFile = packed.getPath();
+        packConfig.shuffleWindow = 10;
+        // same read order and seed, so the same stream
+        Assertions.assertEquals(streamSamples(dirConfig, 8), streamSamples(packConfig, 8),
+                "ImageStream packed file failed");
+    }
+
+    @Test
+    void multipleEpochs() throws Exception {
+        GeneralConfig generalConfig = new GeneralConfig();
+        generalConfig.trainingDir = writeImages();
+        generalConfig.shuffleWindow = 16;
+        int total = NUM_CLASSES * NUM_EACH;
+        List<String> samples = streamSamples(generalConfig, 8, 2);
+
+        Assertions.assertEquals(2 * total, samples.size(), "ImageStream epochs sample count failed");
+        List<String> first = new ArrayList<>(samples.subList(0, total));
+        List<String> second = new ArrayList<>(samples.subList(total, 2 * total));
+        // each epoch has every sample once, in a different order
+        Assertions.assertEquals(streamSamples(generalConfig, 8), first, "ImageStream first epoch failed");
+        Assertions.assertNotEquals(first, second, "ImageStream epoch shuffle failed");
+        Collections.sort(first);
+        Collections.sort(second);
+        Assertions.assertEquals(first, second, "ImageStream epoch samples failed");
+    }
+
+    private static List<String> streamSamples(GeneralConfig generalConfig, int batchSize) {
+        return streamSamples(generalConfig, batchSize, 1);
+    }
+
+    private static List<String> streamSamples(GeneralConfig generalConfig, int batchSize, int numEpochs) {
+        List<String> samples = new ArrayList<>();
+        try (ImageStream stream = new ImageStream(generalConfig, NUM_CLASSES, NUM_EACH, SIZE, SIZE, 4321)) {
+            stream.start(batchSize, numEpochs);
+            ImageDataSet batch;
+            while ((batch = stream.nextBatch()) != null) {
+                Assertions.assertTrue(batch.getSize() <= batchSize, "ImageStream batch size failed");
+                for (int n = 0; n < batch.getSize(); n++) {
+                    samples.add(sampleKey(batch, n));
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static String sampleKey(ImageDataSet dataSet, int n) {
+        byte[] levels = new byte[dataSet.getImageSize()];
+        dataSet.getLevels(n, levels, 0);
+        return dataSet.getActualIndex(n) + ":" + Arrays.toString(levels);
+    }
+
+    private static String writeImages() throws Exception {
+        File parent = tempDir.resolve("png").toFile();
+        if (!parent.isDirectory()) {
+            Random r = new Random(1234);
+            for (int k = 0; k < NUM_CLASSES; k++) {
+                File dir = new File(parent, Integer.toString(k));
+                dir.mkdirs();
+                for (int i = 0; i < NUM_EACH; i++) {
+                    BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_GRAY);
+                    for (int y = 0; y < SIZE; y++) {
+                        for (int x = 0; x < SIZE; x++) {
+                            image.getRaster().setSample(x, y, 0, r.nextInt(256));
+                        }
+                    }
+                    ImageIO.write(image, "png", new File(dir, i + ".png"));
+                }
+            }
+        }
+        return parent.getPath();
+    }
+}
@@ -0,0 +1,103 @@
+package datasci.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import datasci.backend.model.ConvoNode;
+import datasci.backend.model.ConvoPoolFitParams;
+import datasci.backend.model.FitParams;
+import datasci.backend.model.InternalFitParams;
+import datasci.backend.model.JsonStreamUtil;
+import datasci.backend.model.Matrix;
+import datasci.backend.model.OutputFitParams;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class JsonStreamUtilTests {
+
+    @Test
+    void streamToDatabind() throws Exception {
+        FitParams fitParams = randomFitParams(new Random(1234));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamUtil.FitParamsToJson(fitParams, out, false);
+        // same json as databinding the public fields
+        String exJson = new ObjectMapper().writeValueAsString(fitParams);
+        Assertions.assertEquals(exJson, out.toString(), "JsonStreamUtil FitParamsToJson failed");
+    }
+
+    @Test
+    void databindToStream() throws Exception {
+        FitParams fitParams = randomFitParams(new Random(4321));
+        byte[] json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsBytes(fitParams);
+        FitParams read = JsonStreamUtil.jsonToFitParams(new ByteArrayInputStream(json));
+        // compare by writing both the same way
+        ObjectMapper objectMapper = new ObjectMapper();
+        Assertions.assertEquals(objectMapper.writeValueAsString(fitParams), objectMapper.writeValueAsString(read),
+                "JsonStreamUtil jsonToFitParams failed");
+    }
+
+    @Test
+    void matrixList() throws Exception {
+        List<Matrix> matrixList = new ArrayList<>();
+        matrixList.add(randomMatrix(new Random(1), 3, 4));
+        Matrix special = new Matrix(1, 3);
+        special.a[0] = Double.NaN;
+        special.a[1] = Double.NEGATIVE_INFINITY;
+        special.a[2] = -0.0;
+        matrixList.add(special);
+        matrixList.add(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamUtil.matrixListToJson(matrixList, out);
+        List<Matrix> read = JsonStreamUtil.jsonToMatrixList(new ByteArrayInputStream(out.toByteArray()));
+
+        Assertions.assertEquals(matrixList.size(), read.size(), "JsonStreamUtil matrix list size failed");
+        Assertions.assertArrayEquals(matrixList.get(0).a, read.get(0).a, "JsonStreamUtil matrix list failed");
+        Assertions.assertArrayEquals(special.a, read.get(1).a, "JsonStreamUtil special values failed");
+        Assertions.assertNull(read.get(2), "JsonStreamUtil null matrix failed");
+
+        // values before the shape fields
+        String json = "[{\"a\":[1.0,2.0,3.0,4.0,5.0,6.0],\"rows\":2,\"cols\":3,\"size\":6,\"extra\":{\"x\":1}}]";
+        Matrix m = JsonStreamUtil.jsonToMatrixList(new ByteArrayInputStream(json.getBytes())).get(0);
+        Assertions.assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6}, m.a, "JsonStreamUtil field order failed");
+        Assertions.assertEquals(2, m.rows, "JsonStreamUtil field order rows failed");
+    }
+
+    private static FitParams randomFitParams(Random r) {
+        FitParams fitParams = new FitParams();
+        ConvoPoolFitParams convo = new ConvoPoolFitParams();
+        convo.layerID = "convo0";
+        convo.filterList = new ArrayList<>();
+        for (int f = 0; f < 4; f++) {
+            ConvoNode node = new ConvoNode();
+            for (int i = 0; i < 2; i++) {
+                node.add(randomMatrix(r, 3, 3));
+            }
+            convo.filterList.add(node);
+        }
+        convo.bias = randomMatrix(r, 4, 1);
+        fitParams.convoPoolList.add(convo);
+        InternalFitParams internal = new InternalFitParams();
+        internal.layerID = "internal0";
+        internal.w = randomMatrix(r, 5, 16);
+        internal.b = randomMatrix(r, 5, 1);
+        fitParams.internalList.add(internal);
+        OutputFitParams output = new OutputFitParams();
+        output.w = randomMatrix(r, 3, 5);
+        output.b = randomMatrix(r, 3, 1);
+        fitParams.outputFitParams = output;
+        return fitParams;
+    }
+
+    private static Matrix randomMatrix(Random r, int rows, int cols) {
+        Matrix m = new Matrix(rows, cols);
+        for (int i = 0; i < m.size; i++) {
+            m.a[i] = r.nextGaussian();
+        }
+        return m;
+    }
+}
@@ -1,9 +1,16 @@
 package datasci.model;
 
+import datasci.backend.model.MTX;
 import datasci.backend.model.MathUtil;
+import datasci.backend.model.Matrix;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
 public class MathUtilTests {
 
     private static final double DELTA = 1e-4;
@@ -192,4 +199,53 @@ public class MathUtilTests {
 
     }
 
+    @Test
+    void shuffle() {
+        int n = 1000;
+        int[] order = new int[n];
+        List<Integer> exOrder = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            exOrder.add(i);
+        }
+        MathUtil.shuffle(order, new Random(4321));
+        Collections.shuffle(exOrder, new Random(4321));
+        for (int i = 0; i < n; i++) {
+            Assertions.assertEquals(exOrder.get(i), order[i], "MathUtil shuffle failed at " + i);
+        }
+    }
+
+    @Test
+    void updateWeightMatrix() {
+        // small matrix updates in one pass, large matrix in parallel chunks
+        for (int rows : new int[]{7, 600}) {
+            int cols = 300;
+            Random random = new Random(rows);
+            Matrix g = new Matrix(rows, cols);
+            Matrix w = new Matrix(rows, cols);
+            Matrix v = new Matrix(rows, cols);
+            for (int k = 0; k < g.size; k++) {
+                g.a[k] = random.nextGaussian();
+                w.a[k] = random.nextGaussian();
+                v.a[k] = random.nextGaussian() * 0.1;
+            }
+            double inv = 1.0 / 3;
+            double eta = 0.01;
+            double mu = 0.9;
+            double oneMinusLambda = 1 - 1e-4;
+            // expected: separate matrix operations
+            Matrix exW = new Matrix(w);
+            Matrix exV = new Matrix(v);
+            Matrix dw = MTX.mulConstant(MTX.mulConstant(g, inv), -eta);
+            MTX.mulConstInPlace(exV, mu);
+            MTX.addInplace(exV, dw);
+            MTX.mulConstInPlace(exW, oneMinusLambda);
+            MTX.addInplace(exW, exV);
+            //
+            MathUtil.updateWeightMatrix(g, inv, eta, w, v, mu, oneMinusLambda);
+            Assertions.assertArrayEquals(exV.a, v.a, "MathUtil updateWeightMatrix v failed, rows: " + rows);
+            Assertions.assertArrayEquals(exW.a, w.a, "MathUtil updateWeightMatrix w failed, rows: " + rows);
+        }
+    }
+
 }
@@ -0,0 +1,127 @@
+package datasci.model;
+
+import datasci.backend.model.FitParams;
+import datasci.backend.model.FitParamsBinary;
+import datasci.backend.model.InternalFitParams;
+import datasci.backend.model.JsonUtil;
+import datasci.backend.model.MappedModel;
+import datasci.backend.model.Matrix;
+import datasci.backend.model.ModelRegistry;
+import datasci.backend.model.OutputFitParams;
+import datasci.backend.model.RegistryStatsR;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+public class ModelRegistryTests {
+
+    @TempDir
+    static Path tempDir;
+
+    @Test
+    void lruEviction() throws Exception {
+        long bytes = fitParams(0).valueBytes();
+        // room for two models
+        ModelRegistry registry = new ModelRegistry(2 * bytes + bytes / 2, false);
+        for (int k = 1; k <= 3; k++) {
+            registry.register("model" + k, writeFile(k));
+        }
+
+        Assertions.assertEquals(1.0, registry.get("model1").outputFitParams.w.a[0], "ModelRegistry get failed");
+        FitParams second = registry.get("model2");
+        Assertions.assertSame(second, registry.get("model2"), "ModelRegistry hit failed");
+        registry.get("model1");
+        // model2 is least recently used
+        registry.get("model3");
+        RegistryStatsR stats = registry.getStats();
+        Assertions.assertEquals(3, stats.models(), "ModelRegistry models failed");
+        Assertions.assertEquals(2, stats.resident(), "ModelRegistry resident failed");
+        Assertions.assertEquals(2 * bytes, stats.residentBytes(), "ModelRegistry bytes failed");
+        Assertions.assertEquals(3, stats.loads(), "ModelRegistry loads failed");
+        Assertions.assertEquals(2, stats.hits(), "ModelRegistry hits failed");
+        Assertions.assertEquals(1, stats.evictions(), "ModelRegistry evictions failed");
+
+        // read again after release
+        Assertions.assertNotSame(second, registry.get("model2"), "ModelRegistry reload failed");
+        Assertions.assertEquals(4, registry.getStats().loads(), "ModelRegistry reload count failed");
+
+        // a model without a file is never released
+        FitParams trained = fitParams(9);
+        registry.put("trained", trained);
+        for (int k = 1; k <= 3; k++) {
+            registry.get("model" + k);
+        }
+        Assertions.assertSame(trained, registry.get("trained"), "ModelRegistry put failed");
+    }
+
+    @Test
+    void current() throws Exception {
+        ModelRegistry registry = new ModelRegistry(1L << 20, false);
+        File file = writeFile(6);
+        Assertions.assertFalse(registry.isCurrent("model", file), "ModelRegistry current unregistered failed");
+        registry.register("model", file);
+        Assertions.assertTrue(registry.isCurrent("model", file), "ModelRegistry current failed");
+        Assertions.assertFalse(registry.isCurrent("model", writeFile(7)), "ModelRegistry current file failed");
+        Assertions.assertTrue(file.setLastModified(file.lastModified() - 10000), "ModelRegistry set time failed");
+        Assertions.assertFalse(registry.isCurrent("model", file), "ModelRegistry current changed failed");
+    }
+
+    @Test
+    void softRefs() throws Exception {
+        long bytes = fitParams(0).valueBytes();
+        ModelRegistry registry = new ModelRegistry(bytes, true);
+        registry.register("a", writeFile(1));
+        registry.register("b", writeFile(2));
+        FitParams a = registry.get("a");
+        registry.get("b");
+        // released, but kept by the soft reference while memory allows
+        FitParams again = registry.get("a");
+        Assertions.assertSame(a, again, "ModelRegistry soft reference failed");
+        Assertions.assertEquals(2, registry.getStats().loads(), "ModelRegistry soft loads failed");
+    }
+
+    @Test
+    void mapped() throws Exception {
+        ModelRegistry registry = new ModelRegistry(1L << 20, false);
+        File binFile = writeFile(4);
+        registry.register("bin", binFile);
+        Assertions.assertEquals(binFile, registry.getFile("bin"), "ModelRegistry getFile failed");
+        MappedModel mappedModel = registry.getMapped("bin");
+        Assertions.assertSame(mappedModel, registry.getMapped("bin"), "ModelRegistry mapped hit failed");
+        Assertions.assertEquals(4.0, mappedModel.getOutputW().get(0), "ModelRegistry mapped value failed");
+
+        File jsonFile = tempDir.resolve("model.json").toFile();
+        try (OutputStream out = new FileOutputStream(jsonFile)) {
+            JsonUtil.FitParamsToJson(fitParams(5), out);
+        }
+        registry.register("json", jsonFile);
+        Assertions.assertEquals(5.0, registry.get("json").internalList.get(0).w.a[0], "ModelRegistry json failed");
+        Assertions.assertThrows(RuntimeException.class, () -> registry.getMapped("json"),
+                "ModelRegistry mapped json failed");
+    }
+
+    private static File writeFile(double value) {
+        File file = tempDir.resolve("model-" + value + FitParamsBinary.EXTENSION).toFile();
+        FitParamsBinary.write(fitParams(value), file);
+        return file;
+    }
+
+    private static FitParams fitParams(double value) {
+        FitParams fitParams = new FitParams();
+        InternalFitParams internal = new InternalFitParams();
+        internal.layerID = "internal0";
+        internal.w = new Matrix(20, 30, value);
+        internal.b = new Matrix(20, 1, value);
+        fitParams.internalList.add(internal);
+        OutputFitParams output = new OutputFitParams();
+        output.w = new Matrix(10, 20, value);
+        output.b = new Matrix(10, 1, value);
+        fitParams.outputFitParams = output;
+        return fitParams;
+    }
+}
@@ -0,0 +1,54 @@
+package datasci.model;
+
+import datasci.backend.model.ProgressBus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProgressBusTests {
+
+    @Test
+    void coalesce() {
+        ProgressBus<Integer> bus = new ProgressBus<>(3);
+        Assertions.assertNull(bus.latest(), "ProgressBus empty failed");
+        List<Integer> drained = new ArrayList<>();
+        Assertions.assertEquals(0, bus.drain(drained::add), "ProgressBus empty drain failed");
+        // capacity rounded up to 4
+        for (int k = 0; k < 6; k++) {
+            bus.publish(k);
+        }
+        Assertions.assertEquals(5, bus.latest(), "ProgressBus latest failed");
+        Assertions.assertEquals(4, bus.drain(drained::add), "ProgressBus drain failed");
+        Assertions.assertEquals(List.of(0, 1, 2, 3), drained, "ProgressBus order failed");
+        Assertions.assertEquals(2, bus.getDropped(), "ProgressBus dropped failed");
+        bus.publish(6);
+        drained.clear();
+        bus.drain(drained::add);
+        Assertions.assertEquals(List.of(6), drained, "ProgressBus wrap failed");
+    }
+
+    @Test
+    void threads() throws Exception {
+        int count = 100000;
+        ProgressBus<Integer> bus = new ProgressBus<>(1024);
+        Thread publisher = new Thread(() -> {
+            for (int k = 0; k < count; k++) {
+                bus.publish(k);
+            }
+        });
+        publisher.start();
+        List<Integer> drained = new ArrayList<>();
+        while (publisher.isAlive()) {
+            bus.drain(drained::add);
+        }
+        publisher.join();
+        bus.drain(drained::add);
+        Assertions.assertEquals(count - 1, bus.latest(), "ProgressBus threads latest failed");
+        Assertions.assertEquals(count, drained.size() + bus.getDropped(), "ProgressBus threads count failed");
+        for (int k = 1; k < drained.size(); k++) {
+            Assertions.assertTrue(drained.get(k) > drained.get(k - 1), "ProgressBus threads order failed");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package datasci.optimizers;
+
+import datasci.backend.model.BackPropConfig;
+import datasci.backend.model.Matrix;
+import datasci.backend.optimizers.OptE;
+import datasci.backend.optimizers.OptimizerFactory;
+import datasci.backend.optimizers.OptimizerI;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class OptimizerTests {
+
+    private static final double DELTA = 1e-12;
+    private static final double ETA = 0.01;
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+    private static final double LAMBDA = 1e-3;
+
+    @Test
+    void adam() {
+        // small matrix in one pass, large matrix in parallel chunks
+        for (int rows : new int[]{3, 400}) {
+            for (boolean decoupled : new boolean[]{false, true}) {
+                OptimizerI optimizer = OptimizerFactory.getOptimizer(config(decoupled ? OptE.ADAMW : OptE.ADAM));
+                Assertions.assertTrue(optimizer.hasSecondMoment(), "Optimizer adam second moment failed");
+                Random random = new Random(rows);
+                Matrix w = randomMatrix(rows, random);
+                Matrix m = new Matrix(rows, 200);
+                Matrix s = new Matrix(rows, 200);
+                double[] exW = w.a.clone();
+                double[] exM = new double[w.size];
+                double[] exS = new double[w.size];
+                for (int t = 1; t <= 3; t++) {
+                    Matrix g = randomMatrix(rows, random);
+                    optimizer.nextStep();
+                    optimizer.update(g, 0.5, ETA, w, m, s);
+                    for (int k = 0; k < w.size; k++) {
+                        double gk = g.a[k] * 0.5 + (decoupled ? 0.0 : LAMBDA * exW[k]);
+                        exM[k] = BETA1 * exM[k] + (1 - BETA1) * gk;
+                        exS[k] = BETA2 * exS[k] + (1 - BETA2) * gk * gk;
+                        double mHat = exM[k] / (1 - Math.pow(BETA1, t));
+                        double sHat = exS[k] / (1 - Math.pow(BETA2, t));
+                        double decay = decoupled ? 1 - ETA * LAMBDA : 1;
+                        exW[k] = exW[k] * decay - ETA * mHat / (Math.sqrt(sHat) + EPSILON);
+                    }
+                }
+                Assertions.assertArrayEquals(exM, m.a, DELTA, "Optimizer adam m failed, decoupled: " + decoupled);
+                Assertions.assertArrayEquals(exS, s.a, DELTA, "Optimizer adam s failed, decoupled: " + decoupled);
+                Assertions.assertArrayEquals(exW, w.a, DELTA, "Optimizer adam w failed, decoupled: " + decoupled);
+            }
+        }
+    }
+
+    @Test
+    void rmsProp() {
+        OptimizerI optimizer = OptimizerFactory.getOptimizer(config(OptE.RMSPROP));
+        Assertions.assertFalse(optimizer.hasSecondMoment(), "Optimizer rmsProp second moment failed");
+        Random random = new Random(4321);
+        Matrix w = randomMatrix(5, random);
+        Matrix v = new Matrix(5, 200);
+        double[] exW = w.a.clone();
+        double[] exV = new double[w.size];
+        for (int t = 1; t <= 3; t++) {
+            Matrix g = randomMatrix(5, random);
+            optimizer.nextStep();
+            optimizer.update(g, 1.0, ETA, w, v, null);
+            for (int k = 0; k < w.size; k++) {
+                double gk = g.a[k] + LAMBDA * exW[k];
+                exV[k] = BETA2 * exV[k] + (1 - BETA2) * gk * gk;
+                exW[k] = exW[k] - ETA * gk / (Math.sqrt(exV[k]) + EPSILON);
+            }
+        }
+        Assertions.assertArrayEquals(exV, v.a, DELTA, "Optimizer rmsProp v failed");
+        Assertions.assertArrayEquals(exW, w.a, DELTA, "Optimizer rmsProp w failed");
+    }
+
+    @Test
+    void factory() {
+        BackPropConfig config = config(OptE.SGD);
+        config.optName = null;
+        Assertions.assertEquals(OptE.SGD.label, OptimizerFactory.getOptimizer(config).getOptName(),
+                "OptimizerFactory default failed");
+        for (OptE optE : OptE.values()) {
+            Assertions.assertEquals(optE.label, OptimizerFactory.getOptimizer(config(optE)).getOptName(),
+                    "OptimizerFactory " + optE + " failed");
+        }
+    }
+
+    private static BackPropConfig config(OptE optE) {
+        BackPropConfig config = new BackPropConfig();
+        config.optName = optE.label;
+        config.mu = BETA1;
+        config.beta2 = BETA2;
+        config.epsilon = EPSILON;
+        config.lambda = LAMBDA;
+        return config;
+    }
+
+    private static Matrix randomMatrix(int rows, Random random) {
+        Matrix m = new Matrix(rows, 200);
+        for (int k = 0; k < m.size; k++) {
+            m.a[k] = random.nextGaussian();
+        }
+        return m;
+    }
+}
@@ -0,0 +1,82 @@
+package datasci.util;
+
+import datasci.frontend.util.Downsample;
+import datasci.frontend.util.PointRing;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DownsampleTests {
+
+    @Test
+    void pointRing() {
+        PointRing ring = new PointRing(4);
+        double[] x = new double[4];
+        double[] y = new double[4];
+        double[] w = new double[4];
+        for (int k = 0; k < 3; k++) {
+            ring.add(k, 10 * k, k + 1);
+        }
+        Assertions.assertEquals(3, ring.copy(x, y, w), "PointRing size failed");
+        for (int k = 3; k < 10; k++) {
+            ring.add(k, 10 * k, k + 1);
+        }
+        Assertions.assertEquals(4, ring.copy(x, y, w), "PointRing capacity failed");
+        Assertions.assertArrayEquals(new double[]{6, 7, 8, 9}, x, "PointRing oldest first failed");
+        Assertions.assertArrayEquals(new double[]{60, 70, 80, 90}, y, "PointRing y failed");
+        Assertions.assertArrayEquals(new double[]{7, 8, 9, 10}, w, "PointRing w failed");
+        ring.clear();
+        Assertions.assertEquals(0, ring.size(), "PointRing clear failed");
+    }
+
+    @Test
+    void lttb() {
+        int n = 1000;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int k = 0; k < n; k++) {
+            x[k] = k;
+            y[k] = k == 500 ? 100.0 : 50.0 + Math.sin(k / 50.0);
+        }
+        double[] outX = new double[n];
+        double[] outY = new double[n];
+        int count = Downsample.lttb(x, y, n, 50, outX, outY);
+        Assertions.assertEquals(50, count, "Downsample lttb count failed");
+        Assertions.assertEquals(0.0, outX[0], "Downsample lttb first failed");
+        Assertions.assertEquals(n - 1.0, outX[count - 1], "Downsample lttb last failed");
+        boolean peak = false;
+        for (int k = 1; k < count; k++) {
+            Assertions.assertTrue(outX[k] > outX[k - 1], "Downsample lttb order failed");
+            peak |= outY[k] == 100.0;
+        }
+        Assertions.assertTrue(peak, "Downsample lttb peak failed");
+        Assertions.assertEquals(10, Downsample.lttb(x, y, 10, 50, outX, outY), "Downsample lttb small failed");
+        Assertions.assertEquals(2, Downsample.lttb(x, y, n, 2, outX, outY), "Downsample lttb budget failed");
+        Assertions.assertEquals(n - 1.0, outX[1], "Downsample lttb budget last failed");
+    }
+
+    @Test
+    void bars() {
+        // 10 bars of 100 samples, accuracy 10 * k percent
+        int n = 10;
+        double[] xHi = new double[n];
+        double[] w = new double[n];
+        double[] y = new double[n];
+        for (int k = 0; k < n; k++) {
+            xHi[k] = 100.0 * (k + 1);
+            w[k] = 100.0;
+            y[k] = 10.0 * k;
+        }
+        double[] lo = new double[n];
+        double[] hi = new double[n];
+        double[] h = new double[n];
+        Assertions.assertEquals(4, Downsample.bars(xHi, w, y, n, 4, lo, hi, h), "Downsample bars count failed");
+        Assertions.assertEquals(0.0, lo[0], "Downsample bars first edge failed");
+        Assertions.assertEquals(1000.0, hi[3], "Downsample bars last edge failed");
+        for (int b = 1; b < 4; b++) {
+            Assertions.assertEquals(hi[b - 1], lo[b], "Downsample bars adjacent failed");
+        }
+        // bars 0 and 1
+        Assertions.assertEquals(5.0, h[0], 1.0E-9, "Downsample bars mean failed");
+        Assertions.assertEquals(10, Downsample.bars(xHi, w, y, n, 20, lo, hi, h), "Downsample bars small failed");
+    }
+}